@@ -16,10 +16,15 @@
 
  package org.springframework.social.autoconfigure;
 
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertyName;
+import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
 import org.springframework.social.config.annotation.ConnectionFactoryConfigurer;
 import org.springframework.social.config.annotation.SocialConfigurerAdapter;
 import org.springframework.social.connect.ConnectionFactory;
+import org.springframework.social.support.ClientHttpRequestFactorySelector;
 
 /**
  * Base class for auto-configured {@link SocialConfigurerAdapter}s.
@@ -33,9 +38,41 @@ public abstract class SocialAutoConfigurerAdapter extends SocialConfigurerAdapte
 	@Override
 	public void addConnectionFactories(ConnectionFactoryConfigurer configurer,
 			Environment environment) {
-		configurer.addConnectionFactory(createConnectionFactory());
+		ConnectionFactory<?> connectionFactory = createConnectionFactory();
+		String providerId = connectionFactory.getProviderId();
+		SocialProperties properties = getProperties();
+		SocialProperties.Transport transport = properties != null ? properties.getTransport()
+				: bindTransport(environment, providerId);
+		if (transport != null) {
+			ClientHttpRequestFactorySelector.setHttpClientSettings(providerId,
+					transport.toHttpClientSettings());
+		}
+		configurer.addConnectionFactory(connectionFactory);
 	}
 
 	protected abstract ConnectionFactory<?> createConnectionFactory();
 
+	/**
+	 * Returns the properties of the provider being configured, so that its transport
+	 * settings are applied to the request factory shared under the provider id.
+	 * Defaults to {@code null}, in which case the transport settings are bound from the
+	 * {@code spring.social.<providerId>.transport} properties, if any are set.
+	 * @return the provider properties or {@code null}
+	 */
+	protected SocialProperties getProperties() {
+		return null;
+	}
+
+	private SocialProperties.Transport bindTransport(Environment environment,
+			String providerId) {
+		String name = "spring.social." + providerId + ".transport";
+		if (!(environment instanceof ConfigurableEnvironment)
+				|| !ConfigurationPropertyName.isValid(name)) {
+			return null;
+		}
+		return Binder.get(environment)
+				.bind(name, Bindable.of(SocialProperties.Transport.class))
+				.orElse(null);
+	}
+
 }
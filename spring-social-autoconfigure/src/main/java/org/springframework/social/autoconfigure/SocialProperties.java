@@ -17,6 +17,9 @@
  package org.springframework.social.autoconfigure;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.social.support.ClientHttpRequestFactorySelector;
+import org.springframework.social.support.HttpClientSettings;
+import org.springframework.social.support.HttpClientType;
 
 /**
  * Base {@link ConfigurationProperties properties} for spring social.
@@ -36,6 +39,11 @@ public abstract class SocialProperties {
 	 */
 	private String appSecret;
 
+	/**
+	 * HTTP transport settings.
+	 */
+	private final Transport transport = new Transport();
+
 	public String getAppId() {
 		return this.appId;
 	}
@@ -52,4 +60,134 @@ public abstract class SocialProperties {
 		this.appSecret = appSecret;
 	}
 
+	public Transport getTransport() {
+		return this.transport;
+	}
+
+	/**
+	 * Settings of the pooled HTTP transport used by API bindings of the provider that share their request factory under the provider id.
+	 * All durations are in milliseconds.
+	 * @see ClientHttpRequestFactorySelector#setHttpClientSettings(String, HttpClientSettings)
+	 */
+	public static class Transport {
+
+		/**
+		 * HTTP client library to use; OK_HTTP enables HTTP/2 with providers supporting it.
+		 */
+		private HttpClientType clientType = HttpClientType.AUTO;
+
+		/**
+		 * Maximum number of pooled connections.
+		 */
+		private int maxTotal = 200;
+
+		/**
+		 * Maximum number of pooled connections per route (host).
+		 */
+		private int maxPerRoute = 20;
+
+		/**
+		 * Timeout for establishing a connection, -1 for the system default.
+		 */
+		private int connectTimeout = -1;
+
+		/**
+		 * Timeout for waiting on data from an established connection, -1 for the system default.
+		 */
+		private int readTimeout = -1;
+
+		/**
+		 * Timeout for acquiring a connection from the pool, -1 to wait indefinitely.
+		 */
+		private int connectionRequestTimeout = -1;
+
+		/**
+		 * Time after which an idle pooled connection is evicted, 0 to never evict.
+		 */
+		private long maxIdleTime = 30 * 1000;
+
+		/**
+		 * Time a connection is kept alive when the server does not say, -1 to keep it alive indefinitely.
+		 */
+		private long keepAlive = 30 * 1000;
+
+		public HttpClientType getClientType() {
+			return this.clientType;
+		}
+
+		public void setClientType(HttpClientType clientType) {
+			this.clientType = clientType;
+		}
+
+		public int getMaxTotal() {
+			return this.maxTotal;
+		}
+
+		public void setMaxTotal(int maxTotal) {
+			this.maxTotal = maxTotal;
+		}
+
+		public int getMaxPerRoute() {
+			return this.maxPerRoute;
+		}
+
+		public void setMaxPerRoute(int maxPerRoute) {
+			this.maxPerRoute = maxPerRoute;
+		}
+
+		public int getConnectTimeout() {
+			return this.connectTimeout;
+		}
+
+		public void setConnectTimeout(int connectTimeout) {
+			this.connectTimeout = connectTimeout;
+		}
+
+		public int getReadTimeout() {
+			return this.readTimeout;
+		}
+
+		public void setReadTimeout(int readTimeout) {
+			this.readTimeout = readTimeout;
+		}
+
+		public int getConnectionRequestTimeout() {
+			return this.connectionRequestTimeout;
+		}
+
+		public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+			this.connectionRequestTimeout = connectionRequestTimeout;
+		}
+
+		public long getMaxIdleTime() {
+			return this.maxIdleTime;
+		}
+
+		public void setMaxIdleTime(long maxIdleTime) {
+			this.maxIdleTime = maxIdleTime;
+		}
+
+		public long getKeepAlive() {
+			return this.keepAlive;
+		}
+
+		public void setKeepAlive(long keepAlive) {
+			this.keepAlive = keepAlive;
+		}
+
+		public HttpClientSettings toHttpClientSettings() {
+			HttpClientSettings settings = new HttpClientSettings();
+			settings.setClientType(this.clientType);
+			settings.setMaxTotal(this.maxTotal);
+			settings.setMaxPerRoute(this.maxPerRoute);
+			settings.setConnectTimeout(this.connectTimeout);
+			settings.setReadTimeout(this.readTimeout);
+			settings.setConnectionRequestTimeout(this.connectionRequestTimeout);
+			settings.setMaxIdleTime(this.maxIdleTime);
+			settings.setKeepAlive(this.keepAlive);
+			return settings;
+		}
+
+	}
+
 }
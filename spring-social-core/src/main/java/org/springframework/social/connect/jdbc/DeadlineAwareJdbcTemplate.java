@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.connect.jdbc;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.social.support.Deadline;
+
+/**
+ * JdbcTemplate that keeps statements within the current thread's {@link Deadline}, if any:
+ * the query timeout of each statement is lowered to the time remaining, and no statement is executed once the deadline has passed.
+ */
+class DeadlineAwareJdbcTemplate extends JdbcTemplate {
+
+	public DeadlineAwareJdbcTemplate(DataSource dataSource) {
+		super(dataSource);
+	}
+
+	@Override
+	protected void applyStatementSettings(Statement stmt) throws SQLException {
+		super.applyStatementSettings(stmt);
+		Deadline deadline = Deadline.getCurrent();
+		if (deadline != null) {
+			deadline.check("executing a statement");
+			// query timeouts are in seconds; round up so that the last second of the budget is not taken as no timeout
+			int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (deadline.getRemaining() + 999) / 1000));
+			int queryTimeout = stmt.getQueryTimeout();
+			stmt.setQueryTimeout(queryTimeout > 0 ? Math.min(queryTimeout, remaining) : remaining);
+		}
+	}
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.connect.jdbc;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.security.crypto.encrypt.TextEncryptor;
+import org.springframework.social.connect.ConnectionKey;
+import org.springframework.social.connect.support.RefreshCoordinationException;
+import org.springframework.social.connect.support.RefreshCoordinator;
+import org.springframework.social.oauth2.AccessGrant;
+import org.springframework.util.Assert;
+
+/**
+ * {@link RefreshCoordinator} that uses a lease table to let a single node refresh a connection while the other nodes wait for, then read, the persisted result.
+ * A lease row is kept per connection while it is being refreshed, recording a hash of the refresh token consumed by the refresh together with the (encrypted) grant it produced.
+ * A node whose refresh token matches a completed lease simply reads the grant; otherwise it acquires the lease, refreshes and stores the result.
+ * Completed leases are kept for the wait timeout, for nodes waiting on the refresh to read its outcome, and deleted afterwards so that the grants they hold do not linger;
+ * leases released by a failed refresh are deleted right away.
+ * Leases expire after the lease timeout so that a node failing in the middle of a refresh does not block the connection forever;
+ * this relies on the clocks of the participating nodes being reasonably synchronized.
+ * The supporting schema is defined in JdbcRefreshCoordinator.sql.
+ */
+public class JdbcRefreshCoordinator implements RefreshCoordinator {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TextEncryptor textEncryptor;
+
+	private String tablePrefix = "";
+
+	private long leaseTimeout = 30 * 1000;
+
+	private long waitTimeout = 60 * 1000;
+
+	private long pollInterval = 100;
+
+	public JdbcRefreshCoordinator(DataSource dataSource, TextEncryptor textEncryptor) {
+		Assert.notNull(dataSource, "The dataSource property cannot be null");
+		Assert.notNull(textEncryptor, "The textEncryptor property cannot be null");
+		this.jdbcTemplate = new DeadlineAwareJdbcTemplate(dataSource);
+		this.textEncryptor = textEncryptor;
+	}
+
+	/**
+	 * Sets a table name prefix. This will be prefixed to all the table names before queries are executed. Defaults to "".
+	 * This is can be used to qualify the table name with a schema or to distinguish Spring Social tables from other application tables. 
+	 * @param tablePrefix the tablePrefix to set
+	 */
+	public void setTablePrefix(String tablePrefix) {
+		this.tablePrefix = tablePrefix;
+	}
+
+	/**
+	 * Sets how long (in milliseconds) a node may hold the refresh lease of a connection before other nodes may take it over.
+	 * Should comfortably exceed the time a refresh takes. Defaults to 30 seconds.
+	 * @param leaseTimeout the lease timeout in milliseconds
+	 */
+	public void setLeaseTimeout(long leaseTimeout) {
+		Assert.isTrue(leaseTimeout > 0, "The leaseTimeout property must be positive");
+		this.leaseTimeout = leaseTimeout;
+	}
+
+	/**
+	 * Sets how long (in milliseconds) a node waits for the outcome of a refresh performed by another node, which is also how long that outcome is kept.
+	 * Should exceed the lease timeout so that a waiting node gets the chance to take over an abandoned lease. Defaults to 60 seconds.
+	 * @param waitTimeout the wait timeout in milliseconds
+	 */
+	public void setWaitTimeout(long waitTimeout) {
+		Assert.isTrue(waitTimeout >= 0, "The waitTimeout property cannot be negative");
+		this.waitTimeout = waitTimeout;
+	}
+
+	/**
+	 * Sets how often (in milliseconds) a waiting node checks the lease table for the outcome of a refresh. Defaults to 100 milliseconds.
+	 * @param pollInterval the poll interval in milliseconds
+	 */
+	public void setPollInterval(long pollInterval) {
+		Assert.isTrue(pollInterval > 0, "The pollInterval property must be positive");
+		this.pollInterval = pollInterval;
+	}
+
+	public AccessGrant refresh(ConnectionKey connectionKey, String refreshToken, Supplier<AccessGrant> refreshOperation) {
+		String refreshTokenHash = hash(refreshToken);
+		long deadline = System.currentTimeMillis() + waitTimeout;
+		while (true) {
+			Lease lease = findLease(connectionKey);
+			long now = System.currentTimeMillis();
+			if (lease != null && lease.isCompletedFor(refreshTokenHash)) {
+				return lease.toAccessGrant(now);
+			}
+			String owner = UUID.randomUUID().toString();
+			if (lease == null ? insertLease(connectionKey, refreshTokenHash, owner, now) : lease.leaseExpireTime <= now && takeOverLease(connectionKey, lease, refreshTokenHash, owner, now)) {
+				return refreshUnderLease(connectionKey, owner, refreshOperation);
+			}
+			if (now >= deadline) {
+				throw new RefreshCoordinationException("Timed out waiting for the refresh of connection " + connectionKey + " to complete");
+			}
+			try {
+				Thread.sleep(pollInterval);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RefreshCoordinationException("Interrupted while waiting for the refresh of connection " + connectionKey + " to complete", e);
+			}
+		}
+	}
+
+	// internal helpers
+
+	private Lease findLease(ConnectionKey connectionKey) {
+		List<Lease> leases = jdbcTemplate.query("select refreshTokenHash, owner, leaseExpireTime, accessToken, refreshToken, expireTime, scope from " + tablePrefix + "UserConnectionRefreshLease where providerId = ? and providerUserId = ?",
+				leaseMapper, connectionKey.getProviderId(), connectionKey.getProviderUserId());
+		return leases.isEmpty() ? null : leases.get(0);
+	}
+
+	private boolean insertLease(ConnectionKey connectionKey, String refreshTokenHash, String owner, long now) {
+		try {
+			jdbcTemplate.update("insert into " + tablePrefix + "UserConnectionRefreshLease (providerId, providerUserId, refreshTokenHash, owner, leaseExpireTime) values (?, ?, ?, ?, ?)",
+					connectionKey.getProviderId(), connectionKey.getProviderUserId(), refreshTokenHash, owner, now + leaseTimeout);
+			return true;
+		} catch (DuplicateKeyException e) {
+			// another node got there first
+			return false;
+		}
+	}
+
+	private boolean takeOverLease(ConnectionKey connectionKey, Lease lease, String refreshTokenHash, String owner, long now) {
+		return jdbcTemplate.update("update " + tablePrefix + "UserConnectionRefreshLease set refreshTokenHash = ?, owner = ?, leaseExpireTime = ?, accessToken = null, refreshToken = null, expireTime = null, scope = null where providerId = ? and providerUserId = ? and owner = ? and leaseExpireTime = ?",
+				refreshTokenHash, owner, now + leaseTimeout, connectionKey.getProviderId(), connectionKey.getProviderUserId(), lease.owner, lease.leaseExpireTime) == 1;
+	}
+
+	private AccessGrant refreshUnderLease(ConnectionKey connectionKey, String owner, Supplier<AccessGrant> refreshOperation) {
+		AccessGrant accessGrant;
+		try {
+			accessGrant = refreshOperation.get();
+		} catch (RuntimeException e) {
+			// release the lease so that the next attempt does not have to wait for it to expire
+			jdbcTemplate.update("delete from " + tablePrefix + "UserConnectionRefreshLease where providerId = ? and providerUserId = ? and owner = ?",
+					connectionKey.getProviderId(), connectionKey.getProviderUserId(), owner);
+			throw e;
+		}
+		// the lease expires as it completes, its expire time then telling when it completed
+		long now = System.currentTimeMillis();
+		jdbcTemplate.update("update " + tablePrefix + "UserConnectionRefreshLease set accessToken = ?, refreshToken = ?, expireTime = ?, scope = ?, leaseExpireTime = ? where providerId = ? and providerUserId = ? and owner = ?",
+				encrypt(accessGrant.getAccessToken()), encrypt(accessGrant.getRefreshToken()), accessGrant.getExpireTime(), accessGrant.getScope(), now,
+				connectionKey.getProviderId(), connectionKey.getProviderUserId(), owner);
+		deleteExpiredLeases(now);
+		return accessGrant;
+	}
+
+	// deletes completed leases no node may still be waiting for, along with leases abandoned as long ago
+	private void deleteExpiredLeases(long now) {
+		jdbcTemplate.update("delete from " + tablePrefix + "UserConnectionRefreshLease where leaseExpireTime < ?", now - waitTimeout);
+	}
+
+	private String hash(String refreshToken) {
+		if (refreshToken == null) {
+			return "";
+		}
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(refreshToken.getBytes(UTF8));
+			char[] hex = new char[digest.length * 2];
+			for (int i = 0; i < digest.length; i++) {
+				hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+				hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+			}
+			return new String(hex);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+		}
+	}
+
+	private String encrypt(String text) {
+		return text != null ? textEncryptor.encrypt(text) : text;
+	}
+
+	private String decrypt(String encryptedText) {
+		return encryptedText != null ? textEncryptor.decrypt(encryptedText) : encryptedText;
+	}
+
+	private final RowMapper<Lease> leaseMapper = new RowMapper<Lease>() {
+		public Lease mapRow(ResultSet rs, int rowNum) throws SQLException {
+			Long expireTime = rs.getLong("expireTime");
+			if (rs.wasNull()) {
+				expireTime = null;
+			}
+			return new Lease(rs.getString("refreshTokenHash"), rs.getString("owner"), rs.getLong("leaseExpireTime"),
+					decrypt(rs.getString("accessToken")), decrypt(rs.getString("refreshToken")), expireTime, rs.getString("scope"));
+		}
+	};
+
+	private static class Lease {
+
+		private final String refreshTokenHash;
+
+		private final String owner;
+
+		private final long leaseExpireTime;
+
+		private final String accessToken;
+
+		private final String refreshToken;
+
+		private final Long expireTime;
+
+		private final String scope;
+
+		public Lease(String refreshTokenHash, String owner, long leaseExpireTime, String accessToken, String refreshToken, Long expireTime, String scope) {
+			this.refreshTokenHash = refreshTokenHash;
+			this.owner = owner;
+			this.leaseExpireTime = leaseExpireTime;
+			this.accessToken = accessToken;
+			this.refreshToken = refreshToken;
+			this.expireTime = expireTime;
+			this.scope = scope;
+		}
+
+		public boolean isCompletedFor(String refreshTokenHash) {
+			return accessToken != null && refreshTokenHash.equals(this.refreshTokenHash);
+		}
+
+		public AccessGrant toAccessGrant(long now) {
+			// AccessGrant works with relative expiration, so round up to the second to not expire early
+			Long expiresIn = expireTime != null ? (expireTime - now + 999) / 1000 : null;
+			return new AccessGrant(accessToken, scope, refreshToken, expiresIn);
+		}
+
+	}
+
+}
@@ -55,7 +55,7 @@ public class JdbcUsersConnectionRepository implements UsersConnectionRepository
 	private String tablePrefix = "";
 
 	public JdbcUsersConnectionRepository(DataSource dataSource, ConnectionFactoryLocator connectionFactoryLocator, TextEncryptor textEncryptor) {
-		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate = new DeadlineAwareJdbcTemplate(dataSource);
 		this.connectionFactoryLocator = connectionFactoryLocator;
 		this.textEncryptor = textEncryptor;
 	}
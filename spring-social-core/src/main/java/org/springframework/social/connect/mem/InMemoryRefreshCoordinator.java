@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.connect.mem;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.social.connect.ConnectionKey;
+import org.springframework.social.connect.support.RefreshCoordinator;
+import org.springframework.social.oauth2.AccessGrant;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * {@link RefreshCoordinator} that coordinates refreshes among the threads of a single application instance.
+ * The outcome of the most recent refresh of each connection is remembered for the {@link #setRetentionPeriod(long) retention period},
+ * so that callers still holding the refresh token it consumed receive the new grant instead of refreshing again; it is forgotten afterwards,
+ * so that connections refreshed once do not stay in memory for good.
+ * Suitable for single-node deployments and for testing; use a JdbcRefreshCoordinator when several nodes share connections.
+ */
+public class InMemoryRefreshCoordinator implements RefreshCoordinator {
+
+	private final ConcurrentMap<ConnectionKey, Refresh> refreshes = new ConcurrentHashMap<ConnectionKey, Refresh>();
+
+	private long retentionPeriod = 60 * 1000;
+
+	private final AtomicLong lastPurgeTime = new AtomicLong(System.currentTimeMillis());
+
+	/**
+	 * Sets how long (in milliseconds) the outcome of a completed refresh is remembered. Defaults to 60 seconds.
+	 * @param retentionPeriod the retention period in milliseconds
+	 */
+	public void setRetentionPeriod(long retentionPeriod) {
+		Assert.isTrue(retentionPeriod >= 0, "The retentionPeriod property cannot be negative");
+		this.retentionPeriod = retentionPeriod;
+	}
+
+	public AccessGrant refresh(ConnectionKey connectionKey, String refreshToken, Supplier<AccessGrant> refreshOperation) {
+		purgeExpiredRefreshes();
+		while (true) {
+			Refresh current = refreshes.get(connectionKey);
+			if (current != null && ObjectUtils.nullSafeEquals(current.refreshToken, refreshToken)) {
+				return await(current.result);
+			}
+			Refresh refresh = new Refresh(refreshToken);
+			boolean acquired = current == null ? refreshes.putIfAbsent(connectionKey, refresh) == null : refreshes.replace(connectionKey, current, refresh);
+			if (acquired) {
+				try {
+					AccessGrant accessGrant = refreshOperation.get();
+					refresh.completedTime = System.currentTimeMillis();
+					refresh.result.complete(accessGrant);
+					return accessGrant;
+				} catch (RuntimeException e) {
+					// let the next caller try again rather than handing out this failure forever
+					refreshes.remove(connectionKey, refresh);
+					refresh.result.completeExceptionally(e);
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forgets the outcome of the last refresh of every connection.
+	 */
+	public void clear() {
+		refreshes.clear();
+	}
+
+	// internal helpers
+
+	// sweeps the refreshes at most once per retention period, so that the sweeps cost no more than the refreshes
+	private void purgeExpiredRefreshes() {
+		long now = System.currentTimeMillis();
+		long lastPurge = lastPurgeTime.get();
+		if (now - lastPurge >= retentionPeriod && lastPurgeTime.compareAndSet(lastPurge, now)) {
+			refreshes.values().removeIf(refresh -> refresh.completedTime != 0 && now - refresh.completedTime >= retentionPeriod);
+		}
+	}
+
+	private AccessGrant await(CompletableFuture<AccessGrant> result) {
+		try {
+			return result.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static class Refresh {
+
+		private final String refreshToken;
+
+		private final CompletableFuture<AccessGrant> result = new CompletableFuture<AccessGrant>();
+
+		// 0 while the refresh is in progress
+		private volatile long completedTime;
+
+		public Refresh(String refreshToken) {
+			this.refreshToken = refreshToken;
+		}
+
+	}
+
+}
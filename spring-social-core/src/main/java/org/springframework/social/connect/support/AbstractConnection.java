@@ -15,6 +15,9 @@
  */
 package org.springframework.social.connect.support;
 
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 import org.springframework.social.connect.ApiAdapter;
 import org.springframework.social.connect.Connection;
 import org.springframework.social.connect.ConnectionData;
@@ -46,6 +49,9 @@ public abstract class AbstractConnection<A> implements Connection<A> {
 
 	private transient final Object monitor = new Object();
 
+	// not transient: a deserialized ReentrantLock is unlocked and ready for use
+	private final ReentrantLock lock = new ReentrantLock();
+
 	/**
 	 * Creates a new connection.
 	 * @param apiAdapter the Service API adapter
@@ -75,23 +81,32 @@ public abstract class AbstractConnection<A> implements Connection<A> {
 	}
 
 	public String getDisplayName() {
-		synchronized (monitor) {
+		lock.lock();
+		try {
 			initValues();
-			return displayName;			
+			return displayName;
+		} finally {
+			lock.unlock();
 		}
 	}
 
 	public String getProfileUrl() {
-		synchronized (monitor) {
+		lock.lock();
+		try {
 			initValues();
 			return profileUrl;
+		} finally {
+			lock.unlock();
 		}
 	}
 
 	public String getImageUrl() {
-		synchronized (monitor) {
-			initValues();			
+		lock.lock();
+		try {
+			initValues();
 			return imageUrl;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -116,8 +131,11 @@ public abstract class AbstractConnection<A> implements Connection<A> {
 	}
 
 	public void sync() {
-		synchronized (monitor) {
+		lock.lock();
+		try {
 			setValues();
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -139,10 +157,21 @@ public abstract class AbstractConnection<A> implements Connection<A> {
 		key = new ConnectionKey(providerId, providerUserId);		
 	}
 
+	/**
+	 * Provides subclasses with access to the lock guarding the state of this connection.
+	 * Unlike a monitor, the lock may be held while blocking on I/O without pinning the carrier thread of a virtual thread.
+	 * @return the lock
+	 */
+	protected Lock getLock() {
+		return lock;
+	}
+
 	/**
 	 * Provides subclasses with access to a monitor that can be used to synchronize access to this connection.
 	 * @return the monitor object
+	 * @deprecated the connection's own state is guarded by {@link #getLock()}, not by this monitor
 	 */
+	@Deprecated
 	protected Object getMonitor() {
 		return monitor;
 	}
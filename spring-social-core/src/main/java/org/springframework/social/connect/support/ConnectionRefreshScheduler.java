@@ -0,0 +1,462 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.connect.support;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.social.connect.ConnectionKey;
+import org.springframework.social.connect.ConnectionRepository;
+import org.springframework.social.support.SocialTaskExecutors;
+import org.springframework.util.Assert;
+
+/**
+ * Proactively refreshes live {@link OAuth2Connection}s shortly before they expire, so that the first request made after a period of inactivity
+ * does not have to wait for the refresh.
+ * Registered connections are kept in a hashed timing wheel keyed by their expiration time minus the lead time, which makes registering,
+ * re-registering and unregistering a connection O(1) regardless of how many connections are tracked.
+ * A single worker thread advances the wheel; due refreshes are handed to the refresh executor, at most {@link #setRefreshesPerSecond(double) refreshesPerSecond}
+ * per provider, and the new grant is persisted through {@link ConnectionRepository#updateConnection(org.springframework.social.connect.Connection)}.
+ * The worker never waits on the executor: a refresh the executor rejects is postponed to a later tick.
+ * Connections are only weakly referenced, so a connection discarded by the application simply drops out of the schedule.
+ */
+public class ConnectionRefreshScheduler implements DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(ConnectionRefreshScheduler.class);
+
+	private final ConcurrentMap<ConnectionKey, Entry> entries = new ConcurrentHashMap<ConnectionKey, Entry>();
+
+	private final Queue<Entry> pendingEntries = new ConcurrentLinkedQueue<Entry>();
+
+	private final ConcurrentMap<String, RateLimiter> rateLimiters = new ConcurrentHashMap<String, RateLimiter>();
+
+	private long leadTime = 5 * 60 * 1000;
+
+	private long retryInterval = 60 * 1000;
+
+	private long tickDuration = 1000;
+
+	private int wheelSize = 512;
+
+	private double refreshesPerSecond = 10;
+
+	private Executor refreshExecutor;
+
+	private ThreadPoolExecutor defaultRefreshExecutor;
+
+	private List<Entry>[] wheel;
+
+	private long startTime;
+
+	private long currentTick;
+
+	private volatile Thread worker;
+
+	private volatile boolean running;
+
+	private volatile boolean destroyed;
+
+	private final AtomicLong refreshCount = new AtomicLong();
+
+	private final AtomicLong refreshFailureCount = new AtomicLong();
+
+	private final AtomicLong throttledCount = new AtomicLong();
+
+	public ConnectionRefreshScheduler() {
+		this.defaultRefreshExecutor = new ThreadPoolExecutor(8, 8, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(256),
+				SocialTaskExecutors.newThreadFactory("connection-refresh-"), new ThreadPoolExecutor.AbortPolicy());
+		this.defaultRefreshExecutor.allowCoreThreadTimeOut(true);
+		this.refreshExecutor = defaultRefreshExecutor;
+	}
+
+	/**
+	 * Sets how long (in milliseconds) before its expiration time a connection is refreshed. Defaults to 5 minutes.
+	 * @param leadTime the lead time in milliseconds
+	 */
+	public void setLeadTime(long leadTime) {
+		Assert.isTrue(leadTime >= 0, "The leadTime property cannot be negative");
+		this.leadTime = leadTime;
+	}
+
+	/**
+	 * Sets how long (in milliseconds) to wait before trying again after a failed refresh.
+	 * A connection is retried until it expires, after which it is dropped from the schedule. Defaults to 1 minute.
+	 * @param retryInterval the retry interval in milliseconds
+	 */
+	public void setRetryInterval(long retryInterval) {
+		Assert.isTrue(retryInterval > 0, "The retryInterval property must be positive");
+		this.retryInterval = retryInterval;
+	}
+
+	/**
+	 * Sets the resolution (in milliseconds) of the timing wheel. Defaults to 1 second.
+	 * Must be set before the first connection is registered.
+	 * @param tickDuration the tick duration in milliseconds
+	 */
+	public void setTickDuration(long tickDuration) {
+		Assert.isTrue(tickDuration > 0, "The tickDuration property must be positive");
+		Assert.state(worker == null, "The tickDuration cannot be changed once the scheduler has started");
+		this.tickDuration = tickDuration;
+	}
+
+	/**
+	 * Sets the number of buckets in the timing wheel, rounded up to a power of two. Defaults to 512.
+	 * Must be set before the first connection is registered.
+	 * @param wheelSize the number of buckets
+	 */
+	public void setWheelSize(int wheelSize) {
+		Assert.isTrue(wheelSize > 0 && wheelSize <= 1 << 20, "The wheelSize property must be between 1 and 2^20");
+		Assert.state(worker == null, "The wheelSize cannot be changed once the scheduler has started");
+		int size = 1;
+		while (size < wheelSize) {
+			size <<= 1;
+		}
+		this.wheelSize = size;
+	}
+
+	/**
+	 * Sets the maximum number of refreshes started per second for any single provider. Defaults to 10.
+	 * Due refreshes beyond that rate are postponed to a later tick.
+	 * @param refreshesPerSecond the maximum refresh rate per provider
+	 */
+	public void setRefreshesPerSecond(double refreshesPerSecond) {
+		Assert.isTrue(refreshesPerSecond > 0, "The refreshesPerSecond property must be positive");
+		this.refreshesPerSecond = refreshesPerSecond;
+		rateLimiters.clear();
+	}
+
+	/**
+	 * Sets the executor refreshes are performed on.
+	 * It should reject work it cannot take on with a {@link RejectedExecutionException} rather than block the caller, which is the scheduler's worker thread.
+	 * Defaults to a pool of 8 threads created by {@link SocialTaskExecutors}, queueing up to 256 refreshes and rejecting any beyond them.
+	 * @param refreshExecutor the refresh executor
+	 */
+	public synchronized void setRefreshExecutor(Executor refreshExecutor) {
+		Assert.notNull(refreshExecutor, "The refreshExecutor property cannot be null");
+		if (defaultRefreshExecutor != null) {
+			defaultRefreshExecutor.shutdown();
+			defaultRefreshExecutor = null;
+		}
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	/**
+	 * Registers a connection to be refreshed ahead of its expiration, replacing any earlier registration of a connection with the same key.
+	 * Connections that do not expire are not registered.
+	 * @param connection the connection to keep fresh
+	 * @param connectionRepository the repository the refreshed connection is persisted to
+	 * @return true if the connection was registered
+	 * @throws IllegalStateException if the scheduler has been destroyed
+	 */
+	public boolean register(OAuth2Connection<?> connection, ConnectionRepository connectionRepository) {
+		Assert.notNull(connection, "The connection property cannot be null");
+		Assert.notNull(connectionRepository, "The connectionRepository property cannot be null");
+		Assert.state(!destroyed, "The scheduler has been destroyed");
+		Long expireTime = connection.createData().getExpireTime();
+		if (expireTime == null) {
+			return false;
+		}
+		Entry entry = new Entry(connection, connectionRepository, expireTime - leadTime, expireTime);
+		Entry previous = entries.put(connection.getKey(), entry);
+		if (previous != null) {
+			previous.cancelled = true;
+		}
+		schedule(entry);
+		return true;
+	}
+
+	/**
+	 * Stops tracking the connection with the given key.
+	 * @param connectionKey the key of the connection
+	 */
+	public void unregister(ConnectionKey connectionKey) {
+		Entry entry = entries.remove(connectionKey);
+		if (entry != null) {
+			entry.cancelled = true;
+		}
+	}
+
+	/**
+	 * Stops the worker thread, and the default refresh executor if it is in use. Registered connections are no longer refreshed,
+	 * and no more connections may be registered.
+	 */
+	public void destroy() {
+		Thread worker;
+		synchronized (this) {
+			destroyed = true;
+			running = false;
+			worker = this.worker;
+			if (defaultRefreshExecutor != null) {
+				defaultRefreshExecutor.shutdown();
+			}
+		}
+		if (worker != null) {
+			worker.interrupt();
+		}
+		entries.clear();
+		pendingEntries.clear();
+	}
+
+	// metrics
+
+	/**
+	 * @return the number of connections currently registered
+	 */
+	public int getTrackedConnectionCount() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of connections successfully refreshed
+	 */
+	public long getRefreshCount() {
+		return refreshCount.get();
+	}
+
+	/**
+	 * @return the number of failed refresh attempts
+	 */
+	public long getRefreshFailureCount() {
+		return refreshFailureCount.get();
+	}
+
+	/**
+	 * @return the number of due refreshes postponed because of the per-provider rate limit
+	 */
+	public long getThrottledCount() {
+		return throttledCount.get();
+	}
+
+	// internal helpers
+
+	private void schedule(Entry entry) {
+		if (destroyed) {
+			return;
+		}
+		pendingEntries.add(entry);
+		if (worker == null) {
+			start();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private synchronized void start() {
+		if (worker != null || destroyed) {
+			return;
+		}
+		wheel = new List[wheelSize];
+		for (int i = 0; i < wheelSize; i++) {
+			wheel[i] = new ArrayList<Entry>();
+		}
+		startTime = System.currentTimeMillis();
+		running = true;
+		Thread worker = new Thread(new Runnable() {
+			public void run() {
+				runWheel();
+			}
+		}, "connection-refresh-scheduler");
+		worker.setDaemon(true);
+		this.worker = worker;
+		worker.start();
+	}
+
+	private void runWheel() {
+		int mask = wheelSize - 1;
+		while (running) {
+			long sleep = startTime + (currentTick + 1) * tickDuration - System.currentTimeMillis();
+			if (sleep > 0) {
+				try {
+					Thread.sleep(sleep);
+				} catch (InterruptedException e) {
+					continue;
+				}
+			}
+			transferPendingEntries(mask);
+			expire(wheel[(int) (currentTick & mask)]);
+			currentTick++;
+		}
+	}
+
+	// only called from the worker thread, which owns the wheel
+	private void transferPendingEntries(int mask) {
+		Entry entry;
+		while ((entry = pendingEntries.poll()) != null) {
+			if (entry.cancelled) {
+				continue;
+			}
+			long tick = Math.max((entry.deadline - startTime) / tickDuration, currentTick);
+			entry.remainingRounds = (tick - currentTick) / wheelSize;
+			wheel[(int) (tick & mask)].add(entry);
+		}
+	}
+
+	private void expire(List<Entry> bucket) {
+		int kept = 0;
+		for (int i = 0; i < bucket.size(); i++) {
+			Entry entry = bucket.get(i);
+			if (entry.cancelled) {
+				continue;
+			}
+			if (entry.remainingRounds > 0) {
+				entry.remainingRounds--;
+				bucket.set(kept++, entry);
+			} else {
+				fire(entry);
+			}
+		}
+		bucket.subList(kept, bucket.size()).clear();
+	}
+
+	private void fire(final Entry entry) {
+		final OAuth2Connection<?> connection = entry.connection.get();
+		if (connection == null) {
+			entries.remove(entry.key, entry);
+			return;
+		}
+		if (!rateLimiterFor(entry.key.getProviderId()).tryAcquire()) {
+			throttledCount.incrementAndGet();
+			entry.deadline = System.currentTimeMillis() + tickDuration;
+			pendingEntries.add(entry);
+			return;
+		}
+		try {
+			refreshExecutor.execute(new Runnable() {
+				public void run() {
+					refresh(entry, connection);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			entry.deadline = System.currentTimeMillis() + tickDuration;
+			pendingEntries.add(entry);
+		}
+	}
+
+	private void refresh(Entry entry, OAuth2Connection<?> connection) {
+		if (entry.cancelled) {
+			return;
+		}
+		try {
+			connection.refresh();
+			entry.connectionRepository.updateConnection(connection);
+			refreshCount.incrementAndGet();
+		} catch (RuntimeException e) {
+			refreshFailureCount.incrementAndGet();
+			long retryTime = System.currentTimeMillis() + retryInterval;
+			if (retryTime < entry.expireTime) {
+				logger.warn("Unable to refresh connection " + entry.key + ", retrying in " + retryInterval + "ms: " + e.getMessage());
+				entry.deadline = retryTime;
+				schedule(entry);
+			} else {
+				logger.warn("Unable to refresh connection " + entry.key + ", no longer tracking it: " + e.getMessage());
+				entries.remove(entry.key, entry);
+			}
+			return;
+		}
+		Long expireTime = connection.createData().getExpireTime();
+		if (expireTime == null) {
+			entries.remove(entry.key, entry);
+			return;
+		}
+		Entry next = new Entry(connection, entry.connectionRepository, expireTime - leadTime, expireTime);
+		if (entries.replace(entry.key, entry, next)) {
+			schedule(next);
+		}
+	}
+
+	private RateLimiter rateLimiterFor(String providerId) {
+		RateLimiter rateLimiter = rateLimiters.get(providerId);
+		if (rateLimiter == null) {
+			RateLimiter newRateLimiter = new RateLimiter(refreshesPerSecond);
+			rateLimiter = rateLimiters.putIfAbsent(providerId, newRateLimiter);
+			if (rateLimiter == null) {
+				rateLimiter = newRateLimiter;
+			}
+		}
+		return rateLimiter;
+	}
+
+	private static class Entry {
+
+		private final ConnectionKey key;
+
+		private final WeakReference<OAuth2Connection<?>> connection;
+
+		private final ConnectionRepository connectionRepository;
+
+		private final long expireTime;
+
+		private volatile long deadline;
+
+		private volatile boolean cancelled;
+
+		// only accessed by the worker thread
+		private long remainingRounds;
+
+		public Entry(OAuth2Connection<?> connection, ConnectionRepository connectionRepository, long deadline, long expireTime) {
+			this.key = connection.getKey();
+			this.connection = new WeakReference<OAuth2Connection<?>>(connection);
+			this.connectionRepository = connectionRepository;
+			this.deadline = deadline;
+			this.expireTime = expireTime;
+		}
+
+	}
+
+	// token bucket allowing bursts of up to one second's worth of refreshes
+	private static class RateLimiter {
+
+		private final double permitsPerMilli;
+
+		private final double capacity;
+
+		private double permits;
+
+		private long lastRefill = System.currentTimeMillis();
+
+		public RateLimiter(double permitsPerSecond) {
+			this.permitsPerMilli = permitsPerSecond / 1000;
+			this.capacity = Math.max(1, permitsPerSecond);
+			this.permits = capacity;
+		}
+
+		public synchronized boolean tryAcquire() {
+			long now = System.currentTimeMillis();
+			permits = Math.min(capacity, permits + (now - lastRefill) * permitsPerMilli);
+			lastRefill = now;
+			if (permits >= 1) {
+				permits--;
+				return true;
+			}
+			return false;
+		}
+
+	}
+
+}
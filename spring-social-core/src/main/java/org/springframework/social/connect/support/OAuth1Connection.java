@@ -80,8 +80,11 @@ public class OAuth1Connection<A> extends AbstractConnection<A> {
 	}
 
 	public ConnectionData createData() {
-		synchronized (getMonitor()) {
+		getLock().lock();
+		try {
 			return new ConnectionData(getKey().getProviderId(), getKey().getProviderUserId(), getDisplayName(), getProfileUrl(), getImageUrl(), accessToken, secret, null, null);
+		} finally {
+			getLock().unlock();
 		}
 	}
 
@@ -53,6 +53,11 @@ public class OAuth2Connection<A> extends AbstractConnection<A> {
 	
 	private transient A apiProxy;
 
+	private transient RefreshCoordinator refreshCoordinator;
+
+	// counts the refreshes made, so that a caller that waited on another's refresh can tell it has nothing left to do
+	private transient volatile int refreshCount;
+
 	/**
 	 * Creates a new {@link OAuth2Connection} from a access grant response.
 	 * Designed to be called to establish a new {@link OAuth2Connection} after receiving an access grant successfully.
@@ -90,19 +95,41 @@ public class OAuth2Connection<A> extends AbstractConnection<A> {
 		initApiProxy();
 	}
 
+	/**
+	 * Sets the {@link RefreshCoordinator} that {@link #refresh()} goes through, so that a connection held by several threads or application nodes is refreshed only once per refresh token.
+	 * Null by default, meaning that the connection is refreshed directly with the provider.
+	 * @param refreshCoordinator the refresh coordinator
+	 */
+	public void setRefreshCoordinator(RefreshCoordinator refreshCoordinator) {
+		this.refreshCoordinator = refreshCoordinator;
+	}
+
 	// implementing Connection
 
 	public boolean hasExpired() {
-		synchronized (getMonitor()) {
+		getLock().lock();
+		try {
 			return expireTime != null && System.currentTimeMillis() >= expireTime;
+		} finally {
+			getLock().unlock();
 		}
 	}
 
 	public void refresh() {
-		synchronized (getMonitor()) {
-			AccessGrant accessGrant = serviceProvider.getOAuthOperations().refreshAccess(refreshToken, null);
+		int refreshesBefore = refreshCount;
+		// held across the token endpoint call so that concurrent callers wait for this refresh rather than start their own
+		getLock().lock();
+		try {
+			if (refreshCount != refreshesBefore) {
+				// refreshed by another caller while this one waited
+				return;
+			}
+			AccessGrant accessGrant = refreshCoordinator != null ? refreshCoordinator.refresh(getKey(), refreshToken, this::refreshAccess) : refreshAccess();
 			initAccessTokens(accessGrant.getAccessToken(), accessGrant.getRefreshToken(), accessGrant.getExpireTime());
 			initApi();
+			refreshCount++;
+		} finally {
+			getLock().unlock();
 		}
 	}
 
@@ -110,19 +137,29 @@ public class OAuth2Connection<A> extends AbstractConnection<A> {
 		if (apiProxy != null) {
 			return apiProxy;
 		} else {
-			synchronized (getMonitor()) {
+			getLock().lock();
+			try {
 				return api;
+			} finally {
+				getLock().unlock();
 			}
 		}
 	}
 
 	public ConnectionData createData() {
-		synchronized (getMonitor()) {
+		getLock().lock();
+		try {
 			return new ConnectionData(getKey().getProviderId(), getKey().getProviderUserId(), getDisplayName(), getProfileUrl(), getImageUrl(), accessToken, null, refreshToken, expireTime);
+		} finally {
+			getLock().unlock();
 		}
 	}
 
 	// internal helpers
+
+	private AccessGrant refreshAccess() {
+		return serviceProvider.getOAuthOperations().refreshAccess(refreshToken, null);
+	}
 	
 	private void initAccessTokens(String accessToken, String refreshToken, Long expireTime) {
 		this.accessToken = accessToken;
@@ -147,15 +184,21 @@ public class OAuth2Connection<A> extends AbstractConnection<A> {
 	private class ApiInvocationHandler implements InvocationHandler {
 
 		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-			synchronized (getMonitor()) {
+			A currentApi;
+			getLock().lock();
+			try {
 				if (hasExpired()) {
 					throw new ExpiredAuthorizationException(getKey().getProviderId());
 				}
-				try {
-					return method.invoke(OAuth2Connection.this.api, args);
-				} catch (InvocationTargetException e) {
-					throw e.getTargetException();
-				}
+				currentApi = OAuth2Connection.this.api;
+			} finally {
+				getLock().unlock();
+			}
+			// the call itself is made without holding the lock, so that calls through the same connection are not serialized
+			try {
+				return method.invoke(currentApi, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
 			}
 		}
 	}
@@ -34,6 +34,8 @@ import org.springframework.social.oauth2.OAuth2ServiceProvider;
 public class OAuth2ConnectionFactory<S> extends ConnectionFactory<S> {
 
 	private String scope = null;
+
+	private RefreshCoordinator refreshCoordinator;
 	
 	/**
 	 * Create a {@link OAuth2ConnectionFactory}.
@@ -58,6 +60,20 @@ public class OAuth2ConnectionFactory<S> extends ConnectionFactory<S> {
 		return scope;
 	}
 	
+	/**
+	 * Sets the {@link RefreshCoordinator} handed to the connections created by this factory.
+	 * Null by default, meaning that connections refresh directly with the provider.
+	 * @param refreshCoordinator the refresh coordinator
+	 * @see OAuth2Connection#setRefreshCoordinator(RefreshCoordinator)
+	 */
+	public void setRefreshCoordinator(RefreshCoordinator refreshCoordinator) {
+		this.refreshCoordinator = refreshCoordinator;
+	}
+
+	public RefreshCoordinator getRefreshCoordinator() {
+		return refreshCoordinator;
+	}
+
 	/**
 	 * Generates a value for the state parameter.
 	 * @return a random UUID by default. 
@@ -90,8 +106,10 @@ public class OAuth2ConnectionFactory<S> extends ConnectionFactory<S> {
 	 * @see OAuth2Operations#exchangeForAccess(String, String, org.springframework.util.MultiValueMap)
 	 */
 	public Connection<S> createConnection(AccessGrant accessGrant) {
-		return new OAuth2Connection<S>(getProviderId(), extractProviderUserId(accessGrant), accessGrant.getAccessToken(),
-				accessGrant.getRefreshToken(), accessGrant.getExpireTime(), getOAuth2ServiceProvider(), getApiAdapter());		
+		OAuth2Connection<S> connection = new OAuth2Connection<S>(getProviderId(), extractProviderUserId(accessGrant), accessGrant.getAccessToken(),
+				accessGrant.getRefreshToken(), accessGrant.getExpireTime(), getOAuth2ServiceProvider(), getApiAdapter());
+		connection.setRefreshCoordinator(refreshCoordinator);
+		return connection;
 	}
 
 	/**
@@ -99,7 +117,9 @@ public class OAuth2ConnectionFactory<S> extends ConnectionFactory<S> {
 	 * @param data connection data from which to create the connection
 	 */
 	public Connection<S> createConnection(ConnectionData data) {
-		return new OAuth2Connection<S>(data, getOAuth2ServiceProvider(), getApiAdapter());
+		OAuth2Connection<S> connection = new OAuth2Connection<S>(data, getOAuth2ServiceProvider(), getApiAdapter());
+		connection.setRefreshCoordinator(refreshCoordinator);
+		return connection;
 	}
 	
 	// subclassing hooks
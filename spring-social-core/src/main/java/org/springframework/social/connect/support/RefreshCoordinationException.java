@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.connect.support;
+
+import org.springframework.social.SocialException;
+
+/**
+ * Thrown by a {@link RefreshCoordinator} when the outcome of a connection refresh could not be obtained,
+ * for example because the refresh performed by another node did not complete in time.
+ */
+@SuppressWarnings("serial")
+public class RefreshCoordinationException extends SocialException {
+
+	public RefreshCoordinationException(String message) {
+		super(message);
+	}
+
+	public RefreshCoordinationException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.connect.support;
+
+import java.util.function.Supplier;
+
+import org.springframework.social.connect.ConnectionKey;
+import org.springframework.social.oauth2.AccessGrant;
+
+/**
+ * Strategy for coordinating the refresh of an {@link OAuth2Connection} among all of the parties (threads, application nodes) that may hold a copy of it.
+ * Providers that rotate refresh tokens invalidate a refresh token as soon as it has been used once, so only one party may refresh a given connection
+ * with a given refresh token; the others must pick up the grant that refresh produced.
+ * @see OAuth2ConnectionFactory#setRefreshCoordinator(RefreshCoordinator)
+ */
+public interface RefreshCoordinator {
+
+	/**
+	 * Refreshes the connection identified by the given key.
+	 * At most one caller per connection and refresh token will have the refresh operation invoked; all other callers receive the {@link AccessGrant} it returned.
+	 * @param connectionKey the key of the connection being refreshed
+	 * @param refreshToken the refresh token the connection currently holds
+	 * @param refreshOperation performs the actual refresh against the provider
+	 * @return the refreshed access grant
+	 * @throws RefreshCoordinationException if the outcome of a refresh performed elsewhere could not be obtained
+	 */
+	AccessGrant refresh(ConnectionKey connectionKey, String refreshToken, Supplier<AccessGrant> refreshOperation);
+
+}
@@ -43,9 +43,8 @@ class OAuth1RequestInterceptor implements ClientHttpRequestInterceptor {
 	}
 
 	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body, ClientHttpRequestExecution execution) throws IOException {
-		HttpRequest protectedResourceRequest = new HttpRequestDecorator(request);
-		protectedResourceRequest.getHeaders().add("Authorization", getAuthorizationHeaderValue(request, body));
-		return execution.execute(protectedResourceRequest, body);
+		// set rather than added: a request executed again, as a retry is, carries only its latest signature
+		return execution.execute(HttpRequestDecorator.setHeader(request, "Authorization", getAuthorizationHeaderValue(request, body)), body);
 	}
 
 	// internal helpers
@@ -15,9 +15,7 @@
  */
 package org.springframework.social.oauth1;
 
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -31,10 +29,12 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.converter.FormHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.social.support.ClientHttpRequestFactorySelector;
 import org.springframework.social.support.LoggingErrorHandler;
+import org.springframework.social.support.URITemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
@@ -52,9 +52,9 @@ public class OAuth1Template implements OAuth1Operations {
 
 	private final URI requestTokenUrl;
 
-	private final String authenticateUrl;
+	private final URITemplate authenticateUrl;
 	
-	private final String authorizeUrl;
+	private final URITemplate authorizeUrl;
 
 	private final URI accessTokenUrl;
 
@@ -85,8 +85,8 @@ public class OAuth1Template implements OAuth1Operations {
 		this.consumerKey = consumerKey;
 		this.consumerSecret = consumerSecret;
 		this.requestTokenUrl = encodeTokenUri(requestTokenUrl);
-		this.authorizeUrl = authorizeUrl;
-		this.authenticateUrl = authenticateUrl;
+		this.authorizeUrl = URITemplate.compile(authorizeUrl);
+		this.authenticateUrl = authenticateUrl != null ? URITemplate.compile(authenticateUrl) : null;
 		this.accessTokenUrl = encodeTokenUri(accessTokenUrl);
 		this.version = version;
 		this.restTemplate = createRestTemplate();
@@ -102,6 +102,28 @@ public class OAuth1Template implements OAuth1Operations {
 		Assert.notNull(requestFactory, "The requestFactory property cannot be null");
 		restTemplate.setRequestFactory(requestFactory);
 	}
+
+	/**
+	 * Sends the requests of the underlying RestTemplate through the request factory shared under the given key, typically the provider id.
+	 * The template then uses the connection pool and the {@link org.springframework.social.support.HttpClientSettings} registered for that key,
+	 * like the API bindings sharing the key, rather than the default transport.
+	 * @param sharedRequestFactoryKey the shared request factory key
+	 * @see ClientHttpRequestFactorySelector#getSharedRequestFactory(String)
+	 */
+	public void setSharedRequestFactoryKey(String sharedRequestFactoryKey) {
+		setRequestFactory(ClientHttpRequestFactorySelector.getSharedRequestFactory(sharedRequestFactoryKey));
+	}
+
+	/**
+	 * Add an interceptor to the end of the underlying RestTemplate's interceptor chain.
+	 * This can be used to plug in a {@link org.springframework.social.support.ResilienceRequestInterceptor} that fails fast while the provider is down
+	 * (token requests are POSTs, so they are not retried).
+	 * @param interceptor the interceptor to add
+	 */
+	public void addInterceptor(ClientHttpRequestInterceptor interceptor) {
+		Assert.notNull(interceptor, "The interceptor property cannot be null");
+		restTemplate.getInterceptors().add(interceptor);
+	}
 	
 	// implementing OAuth1Operations
 	
@@ -203,29 +225,19 @@ public class OAuth1Template implements OAuth1Operations {
 		return signingUtils.buildAuthorizationHeaderValue(HttpMethod.POST, tokenUrl, oauthParameters, additionalParameters, consumerSecret, tokenSecret);
 	}
 
-	private String buildAuthUrl(String baseAuthUrl, String requestToken, OAuth1Parameters parameters) {
-		StringBuilder authUrl = new StringBuilder(baseAuthUrl).append('?').append("oauth_token").append('=').append(formEncode(requestToken));
+	private String buildAuthUrl(URITemplate baseAuthUrl, String requestToken, OAuth1Parameters parameters) {
+		URITemplate.Builder authUrl = baseAuthUrl.newBuilder().queryParam("oauth_token", requestToken);
 		addCustomAuthorizationParameters(parameters);
 		if (parameters != null) {
 			for (Iterator<Entry<String, List<String>>> additionalParams = parameters.entrySet().iterator(); additionalParams.hasNext();) {
 				Entry<String, List<String>> param = additionalParams.next();
-				String name = formEncode(param.getKey());
+				String name = param.getKey();
 				for (Iterator<String> values = param.getValue().iterator(); values.hasNext();) {
-					authUrl.append('&').append(name).append('=').append(formEncode(values.next()));
+					authUrl.queryParam(name, values.next());
 				}
 			}
 		}		
-		return authUrl.toString();
-	}
-	
-	private String formEncode(String data) {
-		try {
-			return URLEncoder.encode(data, "UTF-8");
-		}
-		catch (UnsupportedEncodingException ex) {
-			// should not happen, UTF-8 is always supported
-			throw new IllegalStateException(ex);
-		}
+		return authUrl.build();
 	}
 	
 	// testing hooks
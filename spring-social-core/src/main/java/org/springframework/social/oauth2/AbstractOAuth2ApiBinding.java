@@ -20,6 +20,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.http.MediaType;
@@ -32,7 +34,18 @@ import org.springframework.http.converter.ResourceHttpMessageConverter;
 import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.social.ApiBinding;
-import org.springframework.social.support.ClientHttpRequestFactorySelector;
+import org.springframework.social.support.BatchDecoder;
+import org.springframework.social.support.BatchEncoder;
+import org.springframework.social.support.CompletableRestOperations;
+import org.springframework.social.support.CursorExtractor;
+import org.springframework.social.support.MessageConverterRegistry;
+import org.springframework.social.support.PageFetcher;
+import org.springframework.social.support.PagedResults;
+import org.springframework.social.support.ProviderClientPolicy;
+import org.springframework.social.support.RequestBatcher;
+import org.springframework.social.support.StreamingDownloader;
+import org.springframework.social.support.StreamingMultipartUploader;
+import org.springframework.util.Assert;
 import org.springframework.web.client.RestTemplate;
 
 /**
@@ -44,14 +57,31 @@ public abstract class AbstractOAuth2ApiBinding implements ApiBinding, Initializi
 
 	private final String accessToken;
 
+	private final ProviderClientPolicy clientPolicy;
+
 	private RestTemplate restTemplate;
 
+	private Executor asyncExecutor;
+
+	private ClientHttpRequestFactory requestFactory;
+
 	/**
 	 * Constructs the API template without user authorization. This is useful for accessing operations on a provider's API that do not require user authorization.
 	 */
 	protected AbstractOAuth2ApiBinding() {
+		this(new ProviderClientPolicy());
+	}
+
+	/**
+	 * Constructs the API template without user authorization, making calls as the given policy directs.
+	 * @param clientPolicy the policy shared by the provider's API bindings
+	 */
+	protected AbstractOAuth2ApiBinding(ProviderClientPolicy clientPolicy) {
+		Assert.notNull(clientPolicy, "Constructor argument 'clientPolicy' cannot be null.");
 		accessToken = null;
+		this.clientPolicy = clientPolicy;
 		restTemplate = createRestTemplateWithCulledMessageConverters();
+		clientPolicy.applyTo(restTemplate, null, null, true);
 		configureRestTemplate(restTemplate);
 	}
 	
@@ -69,7 +99,19 @@ public abstract class AbstractOAuth2ApiBinding implements ApiBinding, Initializi
 	 * @param tokenStrategy Specifies how access tokens are sent on API requests. Defaults to sending them in Authorization header.
 	 */
 	protected AbstractOAuth2ApiBinding(String accessToken, TokenStrategy tokenStrategy) {
+		this(accessToken, tokenStrategy, new ProviderClientPolicy());
+	}
+
+	/**
+	 * Constructs the API template with OAuth credentials necessary to perform operations on behalf of a user, making calls as the given policy directs.
+	 * @param accessToken the access token
+	 * @param tokenStrategy Specifies how access tokens are sent on API requests.
+	 * @param clientPolicy the policy shared by the provider's API bindings
+	 */
+	protected AbstractOAuth2ApiBinding(String accessToken, TokenStrategy tokenStrategy, ProviderClientPolicy clientPolicy) {
+		Assert.notNull(clientPolicy, "Constructor argument 'clientPolicy' cannot be null.");
 		this.accessToken = accessToken;
+		this.clientPolicy = clientPolicy;
 		restTemplate = createRestTemplate(accessToken, getOAuth2Version(), tokenStrategy);
 		configureRestTemplate(restTemplate);
 	}
@@ -80,6 +122,17 @@ public abstract class AbstractOAuth2ApiBinding implements ApiBinding, Initializi
 	 */
 	public void setRequestFactory(ClientHttpRequestFactory requestFactory) {
 		restTemplate.setRequestFactory(requestFactory);
+		this.requestFactory = requestFactory;
+	}
+
+	/**
+	 * Set the Executor that operations obtained through {@link #getAsyncOperations()} run on.
+	 * Defaults to the executor shared through {@link org.springframework.social.support.SocialTaskExecutors}.
+	 * @param asyncExecutor the executor for asynchronous operations
+	 */
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		Assert.notNull(asyncExecutor, "The asyncExecutor property cannot be null");
+		this.asyncExecutor = asyncExecutor;
 	}
 
 	// implementing ApiBinding
@@ -103,8 +156,77 @@ public abstract class AbstractOAuth2ApiBinding implements ApiBinding, Initializi
 		return restTemplate;
 	}
 
+	/**
+	 * Obtains asynchronous, {@link java.util.concurrent.CompletableFuture}-returning counterparts of the operations of this binding's {@link RestTemplate}.
+	 * Operations are performed with the RestTemplate returned by {@link #getRestTemplate()}, so they carry the same credentials and go through the same interceptors and error handler.
+	 * Subclasses may use {@link CompletableRestOperations#execute(java.util.function.Function)} to expose their own operations asynchronously.
+	 * @return asynchronous operations backed by this API binding's RestTemplate
+	 * @see #setAsyncExecutor(Executor)
+	 */
+	public CompletableRestOperations getAsyncOperations() {
+		return asyncExecutor != null ? new CompletableRestOperations(restTemplate, asyncExecutor) : new CompletableRestOperations(restTemplate);
+	}
+
+	/**
+	 * Obtains a downloader of binary resources, such as profile pictures and photos, that streams them rather than reading them into a byte[].
+	 * Downloads are performed with the RestTemplate returned by {@link #getRestTemplate()}, so they carry the same credentials and go through the same interceptors and error handler.
+	 * @return a downloader backed by this API binding's RestTemplate
+	 */
+	public StreamingDownloader getStreamingDownloader() {
+		return new StreamingDownloader(restTemplate);
+	}
+
+	/**
+	 * Obtains an uploader of multipart bodies, such as videos and photos posted to media endpoints, that streams them rather than buffering them on the heap.
+	 * Uploads go through the interceptors of the RestTemplate returned by {@link #getRestTemplate()}, so they carry the same credentials, and are read with its message converters and error handler.
+	 * The bodies are streamed into requests created by the request factory set with {@link #setRequestFactory(ClientHttpRequestFactory)}, if any,
+	 * which should then not buffer request bodies, or else by {@link ProviderClientPolicy#createStreamingRequestFactory()}.
+	 * @return an uploader backed by this API binding's RestTemplate
+	 */
+	public StreamingMultipartUploader getStreamingUploader() {
+		return new StreamingMultipartUploader(restTemplate, requestFactory != null ? requestFactory : clientPolicy.createStreamingRequestFactory());
+	}
+
 	// subclassing hooks
 
+	/**
+	 * Creates a {@link RequestBatcher} sending batches of logical requests with this binding's {@link RestTemplate}, for providers with a batch endpoint.
+	 * Typically called once during construction, with the provider's {@link BatchEncoder} and {@link BatchDecoder}, by bindings that fan out many small reads.
+	 * Batches are sent on the executor set with {@link #setAsyncExecutor(Executor)} before this method is called, if any.
+	 * @param encoder the encoder of batch requests
+	 * @param decoder the decoder of batch responses
+	 * @param <R> the type of the logical requests
+	 * @param <B> the type the batch response body is read as
+	 * @param <T> the type of the results of the logical requests
+	 * @return the request batcher
+	 */
+	protected <R, B, T> RequestBatcher<R, B, T> createRequestBatcher(BatchEncoder<R> encoder, BatchDecoder<R, B, T> decoder) {
+		RequestBatcher<R, B, T> batcher = new RequestBatcher<R, B, T>(restTemplate, encoder, decoder);
+		if (asyncExecutor != null) {
+			batcher.setExecutor(asyncExecutor);
+		}
+		return batcher;
+	}
+
+	/**
+	 * Creates {@link PagedResults} exposing the items of a paged endpoint as a lazy Iterator or Stream, for endpoints returning long lists such as friends or followers.
+	 * The pages are typically fetched with this binding's {@link RestTemplate} by the given {@link PageFetcher}.
+	 * Pages are prefetched on the executor set with {@link #setAsyncExecutor(Executor)}, if any.
+	 * @param pageFetcher the fetcher of pages
+	 * @param itemExtractor the function extracting the items of a page
+	 * @param cursorExtractor the extractor of the cursor of the next page
+	 * @param <P> the type of the pages
+	 * @param <T> the type of the items
+	 * @return the paged results
+	 */
+	protected <P, T> PagedResults<P, T> createPagedResults(PageFetcher<P> pageFetcher, Function<? super P, ? extends Iterable<T>> itemExtractor, CursorExtractor<? super P> cursorExtractor) {
+		PagedResults<P, T> results = new PagedResults<P, T>(pageFetcher, itemExtractor, cursorExtractor);
+		if (asyncExecutor != null) {
+			results.setExecutor(asyncExecutor);
+		}
+		return results;
+	}
+
 	/**
 	 * Returns the version of OAuth2 the API implements.
 	 * By default, returns {@link OAuth2Version#BEARER} indicating versions of OAuth2 that apply the bearer token scheme.
@@ -145,6 +267,7 @@ public abstract class AbstractOAuth2ApiBinding implements ApiBinding, Initializi
 	 * Returns an {@link FormHttpMessageConverter} to be used by the internal {@link RestTemplate}.
 	 * By default, the message converter is set to use "UTF-8" character encoding.
 	 * Override to customize the message converter (for example, to set supported media types or message converters for the parts of a multipart message). 
+	 * The parts of multipart messages written with this converter are held on the heap whole; large uploads are better streamed with {@link #getStreamingUploader()}.
 	 * To remove/replace this or any of the other message converters that are registered by default, override the getMessageConverters() method instead.
 	 * @return an {@link FormHttpMessageConverter} to be used by the internal {@link RestTemplate}. 
 	 */
@@ -175,6 +298,7 @@ public abstract class AbstractOAuth2ApiBinding implements ApiBinding, Initializi
 	 * Returns a {@link ByteArrayHttpMessageConverter} to be used by the internal {@link RestTemplate} when consuming image or other binary resources.
 	 * By default, the message converter supports "image/jpeg", "image/gif", and "image/png" media types.
 	 * Override to customize the message converter (for example, to set supported media types).
+	 * Resources read with this converter are held on the heap whole; large or numerous downloads are better streamed with {@link #getStreamingDownloader()}.
 	 * To remove/replace this or any of the other message converters that are registered by default, override the getMessageConverters() method instead.
 	 * @return a {@link ByteArrayHttpMessageConverter} to be used by the internal {@link RestTemplate} when consuming image or other binary resources.
 	 */
@@ -184,12 +308,24 @@ public abstract class AbstractOAuth2ApiBinding implements ApiBinding, Initializi
 		return converter;
 	}
 
+	/**
+	 * Indicates whether the message converters returned by {@link #getMessageConverters()} may be shared by all instances of this binding class.
+	 * When true, the converters (including the JSON converter's ObjectMapper) are built once per binding class and reused,
+	 * instead of being created anew for every binding instance; see {@link MessageConverterRegistry}.
+	 * Only override to return true if getMessageConverters() does not depend on instance state and the converters are not reconfigured per instance,
+	 * for example in {@link #configureRestTemplate(RestTemplate)}. Defaults to false.
+	 * @return true if the message converters may be shared
+	 */
+	protected boolean shareMessageConverters() {
+		return false;
+	}
+
 	private RestTemplate createRestTemplate(String accessToken, OAuth2Version version, TokenStrategy tokenStrategy) {
 		RestTemplate client = createRestTemplateWithCulledMessageConverters();
 		ClientHttpRequestInterceptor interceptor = tokenStrategy.interceptor(accessToken, version);
-		List<ClientHttpRequestInterceptor> interceptors = new LinkedList<ClientHttpRequestInterceptor>();
-		interceptors.add(interceptor);
-		client.setInterceptors(interceptors);
+		client.setInterceptors(new LinkedList<ClientHttpRequestInterceptor>());
+		// a bearer token may be sent again, by retries and hedges
+		clientPolicy.applyTo(client, interceptor, accessToken, true);
 		return client;
 	}
 
@@ -197,14 +333,14 @@ public abstract class AbstractOAuth2ApiBinding implements ApiBinding, Initializi
 	//            Remove this method and use that constructor exclusively when 3.1.x support is no longer necessary (Spring Social 2.0).
 	private RestTemplate createRestTemplateWithCulledMessageConverters() {
 		RestTemplate client;
-		List<HttpMessageConverter<?>> messageConverters = getMessageConverters();
+		List<HttpMessageConverter<?>> messageConverters = shareMessageConverters() ? MessageConverterRegistry.getMessageConverters(getClass(), this::getMessageConverters) : getMessageConverters();
 		try {
 			client = new RestTemplate(messageConverters);
 		} catch (NoSuchMethodError e) {
 			client = new RestTemplate();
 			client.setMessageConverters(messageConverters);
 		}
-		client.setRequestFactory(ClientHttpRequestFactorySelector.getRequestFactory());
+		client.setRequestFactory(clientPolicy.createRequestFactory());
 		return client;
 	}
 
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.oauth2;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads the response of an OAuth 2 access token endpoint into a Map without going through a full data binding pass.
+ * JSON responses are read with a streaming {@link JsonParser} created from a shared {@link JsonFactory}; form-encoded responses
+ * (as returned by some providers, sometimes with a text/plain content type) are tokenized directly.
+ * The well-known fields are normalized as they are read: "access_token", "refresh_token" and "scope" are Strings and a numeric
+ * "expires_in" is a Long; the "expires" field some providers send instead is read as "expires_in".
+ * All other fields remain available to {@link OAuth2Template#createAccessGrant(String, String, String, Long, Map)}: scalar values as read,
+ * and JSON objects and arrays as their JSON text, copied token by token rather than built into a tree of Maps and Lists.
+ */
+public class AccessTokenResponseHttpMessageConverter extends AbstractHttpMessageConverter<Map<String, Object>> {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	public AccessTokenResponseHttpMessageConverter() {
+		super(UTF8, MediaType.APPLICATION_JSON, new MediaType("application", "*+json"), MediaType.APPLICATION_FORM_URLENCODED, MediaType.TEXT_PLAIN);
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return Map.class.isAssignableFrom(clazz) && clazz.isAssignableFrom(LinkedHashMap.class);
+	}
+
+	@Override
+	public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+		return false;
+	}
+
+	@Override
+	protected Map<String, Object> readInternal(Class<? extends Map<String, Object>> clazz, HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
+		MediaType contentType = inputMessage.getHeaders().getContentType();
+		InputStream body = inputMessage.getBody();
+		if (contentType != null && MediaType.APPLICATION_FORM_URLENCODED.includes(contentType)) {
+			return readForm(body, getCharset(contentType));
+		}
+		if (contentType != null && (MediaType.APPLICATION_JSON.includes(contentType) || contentType.getSubtype().endsWith("+json"))) {
+			return readJson(body);
+		}
+		// content type missing or too generic (e.g. text/plain); decide on the first significant character
+		BufferedInputStream bufferedBody = new BufferedInputStream(body, 256);
+		bufferedBody.mark(256);
+		int first = firstSignificantByte(bufferedBody);
+		bufferedBody.reset();
+		return first == '{' ? readJson(bufferedBody) : readForm(bufferedBody, getCharset(contentType));
+	}
+
+	@Override
+	protected void writeInternal(Map<String, Object> map, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+		throw new HttpMessageNotWritableException("Access token responses are read-only");
+	}
+
+	// internal helpers
+
+	private Map<String, Object> readJson(InputStream body) throws IOException {
+		JsonParser parser = JSON_FACTORY.createParser(body);
+		try {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new HttpMessageNotReadableException("Access token response is not a JSON object");
+			}
+			Map<String, Object> response = new LinkedHashMap<String, Object>(16);
+			JsonToken token;
+			while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken valueToken = parser.nextToken();
+				if (isStringField(name) && valueToken.isScalarValue()) {
+					response.put(name, valueToken == JsonToken.VALUE_NULL ? null : parser.getText());
+				} else if (isExpiresField(name) && valueToken == JsonToken.VALUE_NUMBER_INT) {
+					response.put(name, parser.getLongValue());
+				} else if (isExpiresField(name) && valueToken == JsonToken.VALUE_STRING) {
+					response.put(name, toLong(parser.getText()));
+				} else {
+					response.put(name, readValue(parser, valueToken));
+				}
+			}
+			if (token != JsonToken.END_OBJECT) {
+				throw new HttpMessageNotReadableException("Malformed access token response");
+			}
+			return normalizeExpires(response);
+		} catch (JsonParseException e) {
+			throw new HttpMessageNotReadableException("Unable to parse access token response: " + e.getOriginalMessage(), e);
+		} finally {
+			parser.close();
+		}
+	}
+
+	private Object readValue(JsonParser parser, JsonToken token) throws IOException {
+		switch (token) {
+			case START_OBJECT:
+			case START_ARRAY:
+				StringWriter json = new StringWriter();
+				JsonGenerator generator = JSON_FACTORY.createGenerator(json);
+				generator.copyCurrentStructure(parser);
+				generator.close();
+				return json.toString();
+			case VALUE_STRING:
+				return parser.getText();
+			case VALUE_NUMBER_INT:
+				return parser.getNumberValue();
+			case VALUE_NUMBER_FLOAT:
+				return parser.getDoubleValue();
+			case VALUE_TRUE:
+				return Boolean.TRUE;
+			case VALUE_FALSE:
+				return Boolean.FALSE;
+			case VALUE_NULL:
+				return null;
+			default:
+				throw new HttpMessageNotReadableException("Unexpected token in access token response: " + token);
+		}
+	}
+
+	private Map<String, Object> readForm(InputStream body, Charset charset) throws IOException {
+		String form = StreamUtils.copyToString(body, charset);
+		Map<String, Object> response = new LinkedHashMap<String, Object>(16);
+		int start = 0;
+		int length = form.length();
+		while (start < length) {
+			int end = form.indexOf('&', start);
+			if (end == -1) {
+				end = length;
+			}
+			int equals = form.indexOf('=', start);
+			if (end > start) {
+				String name;
+				String value;
+				if (equals == -1 || equals > end) {
+					name = URLDecoder.decode(form.substring(start, end).trim(), charset.name());
+					value = null;
+				} else {
+					name = URLDecoder.decode(form.substring(start, equals).trim(), charset.name());
+					value = URLDecoder.decode(form.substring(equals + 1, end).trim(), charset.name());
+				}
+				if (!response.containsKey(name)) {
+					response.put(name, isExpiresField(name) ? toLong(value) : value);
+				}
+			}
+			start = end + 1;
+		}
+		return normalizeExpires(response);
+	}
+
+	private int firstSignificantByte(InputStream body) throws IOException {
+		int b;
+		while ((b = body.read()) != -1 && Character.isWhitespace(b)) {
+		}
+		return b;
+	}
+
+	private Charset getCharset(MediaType contentType) {
+		return contentType != null && contentType.getCharset() != null ? contentType.getCharset() : UTF8;
+	}
+
+	private boolean isStringField(String name) {
+		return STRING_FIELDS.contains(name);
+	}
+
+	private boolean isExpiresField(String name) {
+		return EXPIRES_IN.equals(name) || EXPIRES.equals(name);
+	}
+
+	// "expires" becomes "expires_in", unless the response also has an "expires_in", which takes precedence
+	private Map<String, Object> normalizeExpires(Map<String, Object> response) {
+		if (response.containsKey(EXPIRES)) {
+			Object expires = response.remove(EXPIRES);
+			if (!response.containsKey(EXPIRES_IN)) {
+				response.put(EXPIRES_IN, expires);
+			}
+		}
+		return response;
+	}
+
+	// numeric strings become Longs; anything else is kept as-is so that it may still be inspected
+	private Object toLong(String value) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Long.valueOf(value.trim());
+		} catch (NumberFormatException e) {
+			return value;
+		}
+	}
+
+	private static final String EXPIRES_IN = "expires_in";
+
+	private static final String EXPIRES = "expires";
+
+	private static final List<String> STRING_FIELDS = Arrays.asList("access_token", "refresh_token", "scope", "token_type");
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.oauth2;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.social.support.SocialTaskExecutors;
+import org.springframework.util.Assert;
+
+/**
+ * Caches client credentials grants obtained via {@link OAuth2Operations#authenticateClient(String)}, keyed by scope.
+ * A cached grant is handed out until it comes within the renewal skew of its expiration time.
+ * From that point on it is still handed out while a renewal is performed in the background, so callers never wait on the token endpoint for a grant that is still valid.
+ * Once a grant has actually expired (or none has been obtained yet), callers wait for a new one.
+ * Concurrent requests for the same scope are coalesced into a single token endpoint call.
+ */
+public class ClientCredentialsGrantManager {
+
+	private static final Log logger = LogFactory.getLog(ClientCredentialsGrantManager.class);
+
+	private static final long DEFAULT_RENEWAL_SKEW = 60 * 1000;
+
+	private static final String NO_SCOPE = "";
+
+	private final OAuth2Operations oauthOperations;
+
+	private final ConcurrentMap<String, CachedGrant> grants = new ConcurrentHashMap<String, CachedGrant>();
+
+	private long renewalSkew = DEFAULT_RENEWAL_SKEW;
+
+	private Executor renewalExecutor;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong renewalCount = new AtomicLong();
+
+	private final AtomicLong renewalFailureCount = new AtomicLong();
+
+	/**
+	 * Creates a grant manager that obtains client credentials grants through the given {@link OAuth2Operations}.
+	 * @param oauthOperations the OAuth2Operations (typically an {@link OAuth2Template}) used to authenticate the client
+	 */
+	public ClientCredentialsGrantManager(OAuth2Operations oauthOperations) {
+		Assert.notNull(oauthOperations, "The oauthOperations property cannot be null");
+		this.oauthOperations = oauthOperations;
+		this.renewalExecutor = new SimpleAsyncTaskExecutor(SocialTaskExecutors.newThreadFactory("oauth2-grant-renewal-"));
+	}
+
+	/**
+	 * Sets how long (in milliseconds) before a grant's expiration time the grant should be renewed in the background.
+	 * Defaults to 60 seconds.
+	 * @param renewalSkew the renewal skew in milliseconds
+	 */
+	public void setRenewalSkew(long renewalSkew) {
+		Assert.isTrue(renewalSkew >= 0, "The renewalSkew property cannot be negative");
+		this.renewalSkew = renewalSkew;
+	}
+
+	/**
+	 * Sets the executor used to perform background renewals.
+	 * Defaults to a {@link SimpleAsyncTaskExecutor} creating threads with {@link SocialTaskExecutors}.
+	 * @param renewalExecutor the executor for background renewals
+	 */
+	public void setRenewalExecutor(Executor renewalExecutor) {
+		Assert.notNull(renewalExecutor, "The renewalExecutor property cannot be null");
+		this.renewalExecutor = renewalExecutor;
+	}
+
+	/**
+	 * Returns a client credentials grant that has not been requested with any specific scope.
+	 * @return a valid client credentials grant
+	 */
+	public AccessGrant getAccessGrant() {
+		return getAccessGrant(null);
+	}
+
+	/**
+	 * Returns a client credentials grant for the given scope, obtaining one from the provider only when no valid grant is cached.
+	 * @param scope the scope of the grant (may be null)
+	 * @return a valid client credentials grant
+	 */
+	public AccessGrant getAccessGrant(String scope) {
+		CachedGrant cachedGrant = cachedGrantFor(scope);
+		AccessGrant grant = cachedGrant.grant;
+		long now = System.currentTimeMillis();
+		if (grant != null && !hasExpired(grant, now)) {
+			hitCount.incrementAndGet();
+			if (isDueForRenewal(grant, now)) {
+				renew(cachedGrant, scope, true);
+			}
+			return grant;
+		}
+		missCount.incrementAndGet();
+		return await(renew(cachedGrant, scope, false));
+	}
+
+	/**
+	 * Discards the cached grant for the given scope, forcing the next request for it to go to the provider.
+	 * @param scope the scope of the grant to discard (may be null)
+	 */
+	public void evict(String scope) {
+		grants.remove(keyFor(scope));
+	}
+
+	/**
+	 * Discards all cached grants.
+	 */
+	public void clear() {
+		grants.clear();
+	}
+
+	// metrics
+
+	/**
+	 * @return the number of requests answered with a cached grant
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of requests that had to wait for a grant from the provider
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of grants successfully obtained from the provider
+	 */
+	public long getRenewalCount() {
+		return renewalCount.get();
+	}
+
+	/**
+	 * @return the number of failed attempts to obtain a grant from the provider
+	 */
+	public long getRenewalFailureCount() {
+		return renewalFailureCount.get();
+	}
+
+	// internal helpers
+
+	private CachedGrant cachedGrantFor(String scope) {
+		String key = keyFor(scope);
+		CachedGrant cachedGrant = grants.get(key);
+		if (cachedGrant == null) {
+			CachedGrant newGrant = new CachedGrant();
+			cachedGrant = grants.putIfAbsent(key, newGrant);
+			if (cachedGrant == null) {
+				cachedGrant = newGrant;
+			}
+		}
+		return cachedGrant;
+	}
+
+	private String keyFor(String scope) {
+		return scope != null ? scope : NO_SCOPE;
+	}
+
+	private boolean hasExpired(AccessGrant grant, long now) {
+		Long expireTime = grant.getExpireTime();
+		return expireTime != null && now >= expireTime;
+	}
+
+	private boolean isDueForRenewal(AccessGrant grant, long now) {
+		Long expireTime = grant.getExpireTime();
+		return expireTime != null && now >= expireTime - renewalSkew;
+	}
+
+	private CompletableFuture<AccessGrant> renew(final CachedGrant cachedGrant, final String scope, boolean inBackground) {
+		while (true) {
+			CompletableFuture<AccessGrant> pending = cachedGrant.pending.get();
+			if (pending != null) {
+				return pending;
+			}
+			final CompletableFuture<AccessGrant> renewal = new CompletableFuture<AccessGrant>();
+			if (cachedGrant.pending.compareAndSet(null, renewal)) {
+				if (inBackground) {
+					try {
+						renewalExecutor.execute(new Runnable() {
+							public void run() {
+								obtainGrant(cachedGrant, scope, renewal);
+							}
+						});
+					} catch (RejectedExecutionException e) {
+						// the cached grant is still valid; the next request will try again
+						cachedGrant.pending.compareAndSet(renewal, null);
+						renewal.completeExceptionally(e);
+					}
+				} else {
+					obtainGrant(cachedGrant, scope, renewal);
+				}
+				return renewal;
+			}
+		}
+	}
+
+	private void obtainGrant(CachedGrant cachedGrant, String scope, CompletableFuture<AccessGrant> renewal) {
+		try {
+			AccessGrant grant = oauthOperations.authenticateClient(scope);
+			cachedGrant.grant = grant;
+			renewalCount.incrementAndGet();
+			renewal.complete(grant);
+		} catch (Throwable e) {
+			// whatever the failure, the renewal must complete, or the callers waiting on it would wait forever
+			renewalFailureCount.incrementAndGet();
+			logger.warn("Unable to obtain client credentials grant for scope '" + keyFor(scope) + "': " + e);
+			renewal.completeExceptionally(e);
+			if (e instanceof Error) {
+				throw (Error) e;
+			}
+		} finally {
+			cachedGrant.pending.compareAndSet(renewal, null);
+		}
+	}
+
+	private AccessGrant await(CompletableFuture<AccessGrant> renewal) {
+		try {
+			return renewal.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static class CachedGrant {
+
+		private volatile AccessGrant grant;
+
+		private final AtomicReference<CompletableFuture<AccessGrant>> pending = new AtomicReference<CompletableFuture<AccessGrant>>();
+
+	}
+
+}
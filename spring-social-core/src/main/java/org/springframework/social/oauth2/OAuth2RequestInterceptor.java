@@ -30,19 +30,15 @@ import org.springframework.social.support.HttpRequestDecorator;
  */
 class OAuth2RequestInterceptor implements ClientHttpRequestInterceptor {
 
-	private final String accessToken;
-	
-	private final OAuth2Version oauth2Version;
+	// the access token is fixed for the life of the binding, so the header value is too
+	private final String authorizationHeaderValue;
 
 	public OAuth2RequestInterceptor(String accessToken, OAuth2Version oauth2Version) {
-		this.accessToken = accessToken;
-		this.oauth2Version = oauth2Version;
+		this.authorizationHeaderValue = oauth2Version.getAuthorizationHeaderValue(accessToken);
 	}
 	
 	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body, ClientHttpRequestExecution execution) throws IOException {
-		HttpRequest protectedResourceRequest = new HttpRequestDecorator(request);
-		protectedResourceRequest.getHeaders().set("Authorization", oauth2Version.getAuthorizationHeaderValue(accessToken));
-		return execution.execute(protectedResourceRequest, body);
+		return execution.execute(HttpRequestDecorator.setHeader(request, "Authorization", authorizationHeaderValue), body);
 	}
 
 }
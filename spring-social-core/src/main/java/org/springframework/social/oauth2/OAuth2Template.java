@@ -15,9 +15,8 @@
  */
 package org.springframework.social.oauth2;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -29,8 +28,8 @@ import org.springframework.http.converter.FormHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.social.support.ClientHttpRequestFactorySelector;
-import org.springframework.social.support.FormMapHttpMessageConverter;
 import org.springframework.social.support.LoggingErrorHandler;
+import org.springframework.social.support.URITemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -51,9 +50,9 @@ public class OAuth2Template implements OAuth2Operations {
 
 	private final String accessTokenUrl;
 
-	private final String authorizeUrl;
+	private final Map<GrantType, URITemplate> authorizeUrls;
 
-	private String authenticateUrl;
+	private Map<GrantType, URITemplate> authenticateUrls;
 	
 	private RestTemplate restTemplate;
 	
@@ -86,12 +85,11 @@ public class OAuth2Template implements OAuth2Operations {
 		Assert.notNull(accessTokenUrl, "The accessTokenUrl property cannot be null");
 		this.clientId = clientId;
 		this.clientSecret = clientSecret;
-		String clientInfo = "?client_id=" + formEncode(clientId);
-		this.authorizeUrl = authorizeUrl + clientInfo;
+		this.authorizeUrls = compileAuthUrls(authorizeUrl, clientId);
 		if (authenticateUrl != null) {
-			this.authenticateUrl = authenticateUrl + clientInfo;
+			this.authenticateUrls = compileAuthUrls(authenticateUrl, clientId);
 		} else {
-			this.authenticateUrl = null;
+			this.authenticateUrls = null;
 		}
 		this.accessTokenUrl = accessTokenUrl;
 	}
@@ -114,20 +112,43 @@ public class OAuth2Template implements OAuth2Operations {
 		getRestTemplate().setRequestFactory(requestFactory);
 	}
 
+	/**
+	 * Sends the requests of the underlying RestTemplate through the request factory shared under the given key, typically the provider id.
+	 * The template then uses the connection pool and the {@link org.springframework.social.support.HttpClientSettings} registered for that key,
+	 * like the API bindings sharing the key, rather than the default transport.
+	 * @param sharedRequestFactoryKey the shared request factory key
+	 * @see ClientHttpRequestFactorySelector#getSharedRequestFactory(String)
+	 */
+	public void setSharedRequestFactoryKey(String sharedRequestFactoryKey) {
+		setRequestFactory(ClientHttpRequestFactorySelector.getSharedRequestFactory(sharedRequestFactoryKey));
+	}
+
+	/**
+	 * Add an interceptor to the end of the underlying RestTemplate's interceptor chain.
+	 * This can be used to plug in a {@link org.springframework.social.support.ResilienceRequestInterceptor} that fails fast while the provider is down
+	 * (access token requests are POSTs, so they are not retried).
+	 * As the RestTemplate is created on first use, call this after {@link #setUseParametersForClientAuthentication(boolean)}.
+	 * @param interceptor the interceptor to add
+	 */
+	public void addInterceptor(ClientHttpRequestInterceptor interceptor) {
+		Assert.notNull(interceptor, "The interceptor property cannot be null");
+		getRestTemplate().getInterceptors().add(interceptor);
+	}
+
 	public String buildAuthorizeUrl(OAuth2Parameters parameters) {
-		return buildAuthUrl(authorizeUrl, GrantType.AUTHORIZATION_CODE, parameters);
+		return buildAuthUrl(authorizeUrls, GrantType.AUTHORIZATION_CODE, parameters);
 	}
 
 	public String buildAuthorizeUrl(GrantType grantType, OAuth2Parameters parameters) {
-		return buildAuthUrl(authorizeUrl, grantType, parameters);
+		return buildAuthUrl(authorizeUrls, grantType, parameters);
 	}
 
 	public String buildAuthenticateUrl(OAuth2Parameters parameters) {
-		return authenticateUrl != null ? buildAuthUrl(authenticateUrl, GrantType.AUTHORIZATION_CODE, parameters) : buildAuthorizeUrl(GrantType.AUTHORIZATION_CODE, parameters);
+		return authenticateUrls != null ? buildAuthUrl(authenticateUrls, GrantType.AUTHORIZATION_CODE, parameters) : buildAuthorizeUrl(GrantType.AUTHORIZATION_CODE, parameters);
 	}
 
 	public String buildAuthenticateUrl(GrantType grantType, OAuth2Parameters parameters) {
-		return authenticateUrl != null ? buildAuthUrl(authenticateUrl, grantType, parameters) : buildAuthorizeUrl(grantType, parameters);
+		return authenticateUrls != null ? buildAuthUrl(authenticateUrls, grantType, parameters) : buildAuthorizeUrl(grantType, parameters);
 	}
 
 	public AccessGrant exchangeForAccess(String authorizationCode, String redirectUri, MultiValueMap<String, String> additionalParameters) {
@@ -202,7 +223,7 @@ public class OAuth2Template implements OAuth2Operations {
 	
 	/**
 	 * Creates the {@link RestTemplate} used to communicate with the provider's OAuth 2 API.
-	 * This implementation creates a RestTemplate with a minimal set of HTTP message converters ({@link FormHttpMessageConverter} and {@link MappingJackson2HttpMessageConverter}).
+	 * This implementation creates a RestTemplate with a minimal set of HTTP message converters ({@link FormHttpMessageConverter}, {@link AccessTokenResponseHttpMessageConverter} and {@link MappingJackson2HttpMessageConverter}).
 	 * May be overridden to customize how the RestTemplate is created.
 	 * For example, if the provider returns data in some format other than JSON for form-encoded, you might override to register an appropriate message converter.
 	 * @return a {@link RestTemplate} used to communicate with the provider's OAuth 2 API 
@@ -210,9 +231,9 @@ public class OAuth2Template implements OAuth2Operations {
 	protected RestTemplate createRestTemplate() {
 		ClientHttpRequestFactory requestFactory = ClientHttpRequestFactorySelector.getRequestFactory();
 		RestTemplate restTemplate = new RestTemplate(requestFactory);
-		List<HttpMessageConverter<?>> converters = new ArrayList<HttpMessageConverter<?>>(2);
+		List<HttpMessageConverter<?>> converters = new ArrayList<HttpMessageConverter<?>>(3);
 		converters.add(new FormHttpMessageConverter());
-		converters.add(new FormMapHttpMessageConverter());
+		converters.add(new AccessTokenResponseHttpMessageConverter());
 		converters.add(new MappingJackson2HttpMessageConverter());
 		restTemplate.setMessageConverters(converters);
 		restTemplate.setErrorHandler(new LoggingErrorHandler());
@@ -230,6 +251,7 @@ public class OAuth2Template implements OAuth2Operations {
 	/**
 	 * Posts the request for an access grant to the provider.
 	 * The default implementation uses RestTemplate to request the access token and expects a JSON response to be bound to a Map. The information in the Map will be used to create an {@link AccessGrant}.
+	 * With the default RestTemplate, the response is read by an {@link AccessTokenResponseHttpMessageConverter}, which also accepts form-encoded responses.
 	 * Since the OAuth 2 specification indicates that an access token response should be in JSON format, there's often no need to override this method.
 	 * If all you need to do is capture provider-specific data in the response, you should override createAccessGrant() instead.
 	 * However, in the event of a provider whose access token response is non-JSON, you may need to override this method to request that the response be bound to something other than a Map.
@@ -274,48 +296,58 @@ public class OAuth2Template implements OAuth2Operations {
 	
 	// internal helpers
 
-	private String buildAuthUrl(String baseAuthUrl, GrantType grantType, OAuth2Parameters parameters) {
-		StringBuilder authUrl = new StringBuilder(baseAuthUrl);
-		if (grantType == GrantType.AUTHORIZATION_CODE) {
-			authUrl.append('&').append("response_type").append('=').append("code");
-		} else if (grantType == GrantType.IMPLICIT_GRANT) {
-			authUrl.append('&').append("response_type").append('=').append("token");
-		}
+	// the client id and response type are the same on every redirect, so they are encoded once up front
+	private Map<GrantType, URITemplate> compileAuthUrls(String baseAuthUrl, String clientId) {
+		URITemplate clientInfo = URITemplate.compile(baseAuthUrl).queryParam("client_id", clientId);
+		Map<GrantType, URITemplate> authUrls = new EnumMap<GrantType, URITemplate>(GrantType.class);
+		authUrls.put(GrantType.AUTHORIZATION_CODE, clientInfo.queryParam("response_type", "code"));
+		authUrls.put(GrantType.IMPLICIT_GRANT, clientInfo.queryParam("response_type", "token"));
+		return authUrls;
+	}
+
+	private String buildAuthUrl(Map<GrantType, URITemplate> authUrls, GrantType grantType, OAuth2Parameters parameters) {
+		URITemplate.Builder authUrl = authUrls.get(grantType).newBuilder();
 		for (Iterator<Entry<String, List<String>>> additionalParams = parameters.entrySet().iterator(); additionalParams.hasNext();) {
 			Entry<String, List<String>> param = additionalParams.next();
-			String name = formEncode(param.getKey());
+			String name = param.getKey();
 			for (Iterator<String> values = param.getValue().iterator(); values.hasNext();) {
-				authUrl.append('&').append(name);
 				String value = values.next();
 				if (StringUtils.hasLength(value)) {
-					authUrl.append('=').append(formEncode(value));
+					authUrl.queryParam(name, value);
+				} else {
+					authUrl.queryParam(name);
 				}
 			}
 		}
-		return authUrl.toString();		
-	}
-	
-	private String formEncode(String data) {
-		try {
-			return URLEncoder.encode(data, "UTF-8");
-		}
-		catch (UnsupportedEncodingException ex) {
-			// should not happen, UTF-8 is always supported
-			throw new IllegalStateException(ex);
-		}
+		return authUrl.build();
 	}
 	
 	private AccessGrant extractAccessGrant(Map<String, Object> result) {
-		return createAccessGrant((String) result.get("access_token"), (String) result.get("scope"), (String) result.get("refresh_token"), getIntegerValue(result, "expires_in"), result);
+		return createAccessGrant(getStringValue(result, "access_token"), getStringValue(result, "scope"), getStringValue(result, "refresh_token"), getLongValue(result, "expires_in"), result);
 	}
 
-	// Retrieves object from map into an Integer, regardless of the object's actual type. Allows for flexibility in object type (eg, "3600" vs 3600).
-	private Long getIntegerValue(Map<String, Object> map, String key) {
-		try {
-			return Long.valueOf(String.valueOf(map.get(key))); // normalize to String before creating integer value;			
-		} catch (NumberFormatException e) {
-			return null;
+	private String getStringValue(Map<String, Object> map, String key) {
+		Object value = map.get(key);
+		return value != null ? value.toString() : null;
+	}
+
+	// Retrieves object from map into a Long, regardless of the object's actual type. Allows for flexibility in object type (eg, "3600" vs 3600).
+	private Long getLongValue(Map<String, Object> map, String key) {
+		Object value = map.get(key);
+		if (value instanceof Long) {
+			return (Long) value;
+		}
+		if (value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+		if (value instanceof String) {
+			try {
+				return Long.valueOf(((String) value).trim());
+			} catch (NumberFormatException e) {
+				return null;
+			}
 		}
+		return null;
 	}
 
 }
@@ -16,15 +16,20 @@
 package org.springframework.social.oauth2;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.http.HttpRequest;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
-import org.springframework.social.support.HttpRequestDecorator;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.social.support.URITemplate;
 
 /**
  * ClientHttpRequestInterceptor implementation that adds the OAuth2 access token as a query parameter to protected resource requests before execution.
+ * Rewritten URIs are cached, since bindings tend to request the same few resources over and over again.
  * @author Craig Walls
  */
 class OAuth2TokenParameterRequestInterceptor implements ClientHttpRequestInterceptor {
@@ -32,6 +37,8 @@ class OAuth2TokenParameterRequestInterceptor implements ClientHttpRequestInterce
 	private final String parameterName;
 	
 	private final String accessToken;
+
+	private final ConcurrentMap<URI, URI> rewrittenUris = new ConcurrentHashMap<URI, URI>();
 	
 	/**
 	 * Creates an instance of the interceptor, defaulting to use a parameter named "access_token".
@@ -52,9 +59,31 @@ class OAuth2TokenParameterRequestInterceptor implements ClientHttpRequestInterce
 	}
 
 	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body, ClientHttpRequestExecution execution) throws IOException {
-		HttpRequestDecorator protectedResourceRequest = new HttpRequestDecorator(request);
-		protectedResourceRequest.addParameter(parameterName, accessToken);
+		final URI protectedResourceUri = rewrite(request.getURI());
+		HttpRequest protectedResourceRequest = new HttpRequestWrapper(request) {
+			@Override
+			public URI getURI() {
+				return protectedResourceUri;
+			}
+		};
 		return execution.execute(protectedResourceRequest, body);
 	}
 
+	// internal helpers
+
+	private URI rewrite(URI uri) {
+		URI rewritten = rewrittenUris.get(uri);
+		if (rewritten == null) {
+			rewritten = URITemplate.compile(uri.toString()).newBuilder().queryParam(parameterName, accessToken).buildURI();
+			if (rewrittenUris.size() >= MAX_CACHED_URIS) {
+				// resource URIs carrying ids or paging parameters are rarely repeated; start over rather than track recency
+				rewrittenUris.clear();
+			}
+			rewrittenUris.put(uri, rewritten);
+		}
+		return rewritten;
+	}
+
+	private static final int MAX_CACHED_URIS = 256;
+
 }
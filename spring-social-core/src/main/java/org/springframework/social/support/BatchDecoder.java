@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.List;
+
+/**
+ * Strategy for decoding the response of a provider's batch endpoint into the results of the logical requests it was sent for.
+ * Implemented for each provider supporting batched requests; see {@link RequestBatcher}.
+ * @param <R> the type of the logical requests
+ * @param <B> the type the batch response body is read as
+ * @param <T> the type of the results of the logical requests
+ */
+public interface BatchDecoder<R, B, T> {
+
+	/**
+	 * @return the type the batch response body is read as, using the message converters of the {@link org.springframework.web.client.RestOperations} the batch is sent with
+	 */
+	Class<B> getResponseType();
+
+	/**
+	 * Decodes a batch response, reporting the outcome of each logical request to the given results.
+	 * Requests whose outcome is not reported fail with a {@link BatchException}.
+	 * @param requests the logical requests, in the order they were encoded
+	 * @param response the batch response body
+	 * @param results the results of the logical requests
+	 */
+	void decode(List<R> requests, B response, Results<T> results);
+
+	/**
+	 * The results of the logical requests of a batch, addressed by the index of the request in the batch.
+	 * @param <T> the type of the results
+	 */
+	interface Results<T> {
+
+		/**
+		 * Completes a logical request.
+		 * @param index the index of the request
+		 * @param result the result of the request (may be null)
+		 */
+		void complete(int index, T result);
+
+		/**
+		 * Fails a logical request, leaving the other requests in the batch unaffected.
+		 * @param index the index of the request
+		 * @param failure the failure of the request
+		 */
+		void fail(int index, RuntimeException failure);
+
+	}
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.List;
+
+import org.springframework.http.RequestEntity;
+
+/**
+ * Strategy for encoding logical requests into a single HTTP request to a provider's batch endpoint.
+ * Implemented for each provider supporting batched requests; see {@link RequestBatcher}.
+ * @param <R> the type of the logical requests
+ */
+public interface BatchEncoder<R> {
+
+	/**
+	 * Encodes the given logical requests into a single batch request.
+	 * @param requests the logical requests, never empty
+	 * @return the batch request
+	 */
+	RequestEntity<?> encode(List<R> requests);
+
+}
@@ -35,6 +35,11 @@ public class BufferingClientHttpResponse implements ClientHttpResponse {
 		this.response = response;
 	}
 
+	BufferingClientHttpResponse(ClientHttpResponse response, byte[] body) {
+		this.response = response;
+		this.body = body;
+	}
+
 
 	@Override
 	public HttpStatus getStatusCode() throws IOException {
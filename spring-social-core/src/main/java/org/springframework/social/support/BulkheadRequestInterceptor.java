@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.social.ConcurrencyLimitExceededException;
+import org.springframework.util.Assert;
+
+/**
+ * ClientHttpRequestInterceptor implementation that keeps the calls to a provider within the limit of a {@link ConcurrencyLimiter}.
+ * Calls beyond the limit are rejected with a {@link ConcurrencyLimitExceededException} without reaching the provider.
+ * The latency of every call is fed back to the limiter; calls answered 429 Too Many Requests, 503 Service Unavailable or 504 Gateway Timeout,
+ * or timing out, shrink the limit. A call counts as in flight until its response is closed, as reading a large body from a slow provider keeps a connection busy.
+ * Together with a connection pool of the provider's own (see {@link ClientHttpRequestFactorySelector#setHttpClientSettings(String, HttpClientSettings)}),
+ * this isolates the provider from the application's other providers: when it slows down, it does not take more than its share of threads and connections.
+ */
+public class BulkheadRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	private final ConcurrencyLimiter concurrencyLimiter;
+
+	/**
+	 * Creates a bulkhead interceptor.
+	 * @param concurrencyLimiter the concurrency limiter of the provider
+	 */
+	public BulkheadRequestInterceptor(ConcurrencyLimiter concurrencyLimiter) {
+		Assert.notNull(concurrencyLimiter, "The concurrencyLimiter property cannot be null");
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		if (!concurrencyLimiter.tryAcquire()) {
+			throw new ConcurrencyLimitExceededException(concurrencyLimiter.getProviderId());
+		}
+		return execute(concurrencyLimiter, request, body, execution);
+	}
+
+	// package-private, used by HedgingRequestInterceptor
+
+	/**
+	 * Executes a request for which a slot of the given limiter has been acquired.
+	 * The slot is released once the response is closed, as the connection stays in use while the body is read, or as soon as the request fails.
+	 */
+	static ClientHttpResponse execute(ConcurrencyLimiter concurrencyLimiter, HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		long start = System.nanoTime();
+		ClientHttpResponse response;
+		try {
+			response = execution.execute(request, body);
+		} catch (SocketTimeoutException e) {
+			concurrencyLimiter.onDropped();
+			throw e;
+		} catch (Throwable e) {
+			concurrencyLimiter.onIgnore();
+			throw e;
+		}
+		int statusCode;
+		try {
+			statusCode = response.getRawStatusCode();
+		} catch (Throwable e) {
+			concurrencyLimiter.onIgnore();
+			response.close();
+			throw e;
+		}
+		return new SlotHoldingClientHttpResponse(response, concurrencyLimiter, start, statusCode == 429 || statusCode == 503 || statusCode == 504);
+	}
+
+	private static class SlotHoldingClientHttpResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+
+		private final ConcurrencyLimiter concurrencyLimiter;
+
+		private final long start;
+
+		private volatile boolean dropped;
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private InputStream body;
+
+		public SlotHoldingClientHttpResponse(ClientHttpResponse response, ConcurrencyLimiter concurrencyLimiter, long start, boolean dropped) {
+			this.response = response;
+			this.concurrencyLimiter = concurrencyLimiter;
+			this.start = start;
+			this.dropped = dropped;
+		}
+
+		public HttpStatus getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+		public int getRawStatusCode() throws IOException {
+			return response.getRawStatusCode();
+		}
+
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+		public HttpHeaders getHeaders() {
+			return response.getHeaders();
+		}
+
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				body = new FilterInputStream(response.getBody()) {
+					@Override
+					public int read() throws IOException {
+						try {
+							return super.read();
+						} catch (SocketTimeoutException e) {
+							dropped = true;
+							throw e;
+						}
+					}
+
+					@Override
+					public int read(byte[] b, int off, int len) throws IOException {
+						try {
+							return super.read(b, off, len);
+						} catch (SocketTimeoutException e) {
+							dropped = true;
+							throw e;
+						}
+					}
+				};
+			}
+			return body;
+		}
+
+		public void close() {
+			try {
+				response.close();
+			} finally {
+				if (released.compareAndSet(false, true)) {
+					if (dropped) {
+						concurrencyLimiter.onDropped();
+					} else {
+						concurrencyLimiter.onSuccess(System.nanoTime() - start);
+					}
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.social.support.HttpResponseCache.CachedResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * ClientHttpRequestInterceptor implementation that answers GET requests from an {@link HttpResponseCache} where HTTP caching rules allow.
+ * A cached response is served without contacting the provider for as long as its Cache-Control max-age allows.
+ * Past that point the request is made conditional with If-None-Match and/or If-Modified-Since, and a 304 Not Modified answer is served the cached body.
+ * Responses are cached only if they carry a validator (an ETag or Last-Modified header) or a positive max-age, and never if they are marked no-store.
+ * Responses are cached per Accept header, so that a JSON and an image request for the same URL never answer each other; responses varying on
+ * request headers other than Accept, Accept-Encoding and Authorization are not cached. Bodies larger than the cache's maximum entry size are passed on as they are read,
+ * without being held in memory, even when no Content-Length announces their size. The requests of a {@link StreamingDownloader} go through as they are.
+ * Responses are cached per credentials: the credentials given to the interceptor (typically the access token) are hashed into the cache keys,
+ * so that bindings for different users may share a cache without ever seeing each other's responses.
+ */
+public class CachingRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	// the request headers a cached response may vary on: the Accept header, part of the cache keys, and headers that are the same for every request of a binding
+	private static final Set<String> VARY_HEADERS = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+
+	static {
+		VARY_HEADERS.add(HttpHeaders.ACCEPT);
+		VARY_HEADERS.add(HttpHeaders.ACCEPT_ENCODING);
+		VARY_HEADERS.add(HttpHeaders.AUTHORIZATION);
+	}
+
+	private final HttpResponseCache cache;
+
+	private final String partition;
+
+	/**
+	 * Creates a caching interceptor.
+	 * @param cache the response cache
+	 * @param credentials the credentials the requests are made with, identifying the partition of the cache used (may be null for requests made without credentials)
+	 */
+	public CachingRequestInterceptor(HttpResponseCache cache, String credentials) {
+		Assert.notNull(cache, "The cache property cannot be null");
+		this.cache = cache;
+		this.partition = credentials != null ? CredentialDigest.of(credentials) + " " : "- ";
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		if (request.getMethod() != HttpMethod.GET || isConditional(request.getHeaders()) || StreamingDownloader.isDownloading()) {
+			return execution.execute(request, body);
+		}
+		String key = partition + request.getHeaders().getFirst(HttpHeaders.ACCEPT) + " " + request.getURI();
+		CachedResponse cached = cache.get(key);
+		long now = System.currentTimeMillis();
+		if (cached != null && cached.isFresh(now)) {
+			cache.recordHit();
+			return new CachedClientHttpResponse(cached);
+		}
+		HttpRequest conditionalRequest = request;
+		if (cached != null) {
+			if (cached.getETag() != null) {
+				conditionalRequest = HttpRequestDecorator.setHeader(conditionalRequest, HttpHeaders.IF_NONE_MATCH, cached.getETag());
+			}
+			if (cached.getLastModified() != null) {
+				conditionalRequest = HttpRequestDecorator.setHeader(conditionalRequest, HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+			}
+		}
+		ClientHttpResponse response = execution.execute(conditionalRequest, body);
+		if (cached != null && response.getRawStatusCode() == HttpStatus.NOT_MODIFIED.value()) {
+			HttpHeaders notModifiedHeaders = response.getHeaders();
+			long expiresAt = notModifiedHeaders.getCacheControl() != null ? expiresAt(notModifiedHeaders, now) : expiresAt(cached.headers, now);
+			response.close();
+			CachedResponse revalidated = cached.withExpiresAt(expiresAt);
+			cache.put(key, revalidated);
+			cache.recordRevalidation();
+			return new CachedClientHttpResponse(revalidated);
+		}
+		cache.recordMiss();
+		return store(key, response, now);
+	}
+
+	// internal helpers
+
+	private ClientHttpResponse store(String key, ClientHttpResponse response, long now) throws IOException {
+		HttpHeaders headers = response.getHeaders();
+		if (response.getRawStatusCode() != HttpStatus.OK.value() || !isCacheable(headers) || headers.getContentLength() > cache.getMaxEntrySize()) {
+			return response;
+		}
+		// read one byte past the maximum, to tell a body of the maximum size from a larger one without a Content-Length
+		InputStream in = response.getBody();
+		byte[] body = PrefixedClientHttpResponse.readAtMost(in, cache.getMaxEntrySize() + 1);
+		if (body.length > cache.getMaxEntrySize()) {
+			return new PrefixedClientHttpResponse(response, body, in);
+		}
+		cache.put(key, new CachedResponse(response.getRawStatusCode(), response.getStatusText(), headers, body, expiresAt(headers, now)));
+		return new BufferingClientHttpResponse(response, body);
+	}
+
+	private boolean isConditional(HttpHeaders headers) {
+		return headers.containsKey(HttpHeaders.IF_NONE_MATCH) || headers.containsKey(HttpHeaders.IF_MODIFIED_SINCE) || headers.containsKey(HttpHeaders.RANGE);
+	}
+
+	private boolean isCacheable(HttpHeaders headers) {
+		String cacheControl = headers.getCacheControl();
+		if (cacheControl != null && StringUtils.commaDelimitedListToSet(cacheControl.toLowerCase().replace(" ", "")).contains("no-store")) {
+			return false;
+		}
+		for (String vary : headers.getOrDefault(HttpHeaders.VARY, Collections.<String>emptyList())) {
+			for (String name : StringUtils.commaDelimitedListToStringArray(vary)) {
+				if (!VARY_HEADERS.contains(name.trim())) {
+					// including "*"
+					return false;
+				}
+			}
+		}
+		return headers.getETag() != null || headers.getFirst(HttpHeaders.LAST_MODIFIED) != null || maxAge(cacheControl) > 0;
+	}
+
+	private long expiresAt(HttpHeaders headers, long now) {
+		return now + maxAge(headers.getCacheControl()) * 1000;
+	}
+
+	// the max-age directive in seconds; 0 if absent, invalid or overridden by no-cache
+	private long maxAge(String cacheControl) {
+		if (cacheControl == null) {
+			return 0;
+		}
+		long maxAge = 0;
+		for (String directive : StringUtils.commaDelimitedListToStringArray(cacheControl)) {
+			directive = directive.trim().toLowerCase();
+			if (directive.equals("no-cache")) {
+				return 0;
+			}
+			if (directive.startsWith("max-age=")) {
+				try {
+					maxAge = Math.max(0, Long.parseLong(directive.substring(8).replace("\"", "")));
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return maxAge;
+	}
+
+	static class CachedClientHttpResponse implements ClientHttpResponse {
+
+		private final CachedResponse cached;
+
+		public CachedClientHttpResponse(CachedResponse cached) {
+			this.cached = cached;
+		}
+
+		public HttpStatus getStatusCode() {
+			return HttpStatus.valueOf(cached.statusCode);
+		}
+
+		public int getRawStatusCode() {
+			return cached.statusCode;
+		}
+
+		public String getStatusText() {
+			return cached.statusText;
+		}
+
+		public HttpHeaders getHeaders() {
+			return cached.headers;
+		}
+
+		public InputStream getBody() {
+			return new ByteArrayInputStream(cached.body);
+		}
+
+		public void close() {
+		}
+
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Tracks the health of a provider so that calls to it fail fast while it is down, instead of each one waiting for a timeout or an error.
+ * The circuit opens after a number of consecutive failed calls. While open, calls are not permitted.
+ * Once the open duration has passed, the circuit is half open: a single trial call is permitted, and closes the circuit if it succeeds or reopens it if it fails.
+ * A circuit breaker is meant to be shared by all callers of a provider; see {@link ResilienceRequestInterceptor}.
+ */
+public class CircuitBreaker {
+
+	/**
+	 * The states of a circuit breaker.
+	 */
+	public enum State {
+
+		/**
+		 * Calls are permitted.
+		 */
+		CLOSED,
+
+		/**
+		 * Calls are not permitted.
+		 */
+		OPEN,
+
+		/**
+		 * A single trial call is permitted.
+		 */
+		HALF_OPEN
+
+	}
+
+	private static final Log logger = LogFactory.getLog(CircuitBreaker.class);
+
+	private final String providerId;
+
+	private int failureThreshold = 5;
+
+	private long openDuration = 30 * 1000;
+
+	private State state = State.CLOSED;
+
+	private int consecutiveFailures;
+
+	private long openedAt;
+
+	private boolean trialInProgress;
+
+	private final AtomicLong openCount = new AtomicLong();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	/**
+	 * Creates a circuit breaker.
+	 * @param providerId the id of the provider whose health is tracked
+	 */
+	public CircuitBreaker(String providerId) {
+		Assert.notNull(providerId, "The providerId property cannot be null");
+		this.providerId = providerId;
+	}
+
+	/**
+	 * Sets the number of consecutive failed calls that opens the circuit. Defaults to 5.
+	 * @param failureThreshold the failure threshold
+	 */
+	public void setFailureThreshold(int failureThreshold) {
+		Assert.isTrue(failureThreshold > 0, "The failureThreshold property must be positive");
+		this.failureThreshold = failureThreshold;
+	}
+
+	/**
+	 * Sets how long (in milliseconds) the circuit stays open before a trial call is permitted. Defaults to 30 seconds.
+	 * @param openDuration the open duration in milliseconds
+	 */
+	public void setOpenDuration(long openDuration) {
+		Assert.isTrue(openDuration >= 0, "The openDuration property cannot be negative");
+		this.openDuration = openDuration;
+	}
+
+	/**
+	 * @return the id of the provider whose health is tracked
+	 */
+	public String getProviderId() {
+		return providerId;
+	}
+
+	/**
+	 * Asks for permission to make a call. A permitted call must be followed by a call to {@link #recordSuccess()}, {@link #recordFailure()} or {@link #recordIgnored()}.
+	 * @return true if the call is permitted
+	 */
+	public synchronized boolean tryAcquire() {
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDuration) {
+			state = State.HALF_OPEN;
+			trialInProgress = false;
+		}
+		if (state == State.CLOSED || (state == State.HALF_OPEN && !trialInProgress)) {
+			if (state == State.HALF_OPEN) {
+				trialInProgress = true;
+			}
+			return true;
+		}
+		rejectedCount.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Records a successful call, closing the circuit if it was half open.
+	 */
+	public synchronized void recordSuccess() {
+		if (state != State.CLOSED) {
+			logger.info("Circuit for " + providerId + " closed");
+		}
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		trialInProgress = false;
+	}
+
+	/**
+	 * Records a failed call, opening the circuit once the failure threshold is reached or if the failed call was the trial call of a half open circuit.
+	 */
+	public synchronized void recordFailure() {
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+			logger.warn("Circuit for " + providerId + " opened after " + consecutiveFailures + " consecutive failures");
+			state = State.OPEN;
+			openedAt = System.currentTimeMillis();
+			trialInProgress = false;
+			openCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records a permitted call whose outcome says nothing of the provider's health, such as a call abandoned when its deadline passed.
+	 * The failure count is left as it is; if the circuit is half open, another trial call is permitted.
+	 */
+	public synchronized void recordIgnored() {
+		trialInProgress = false;
+	}
+
+	// metrics
+
+	/**
+	 * @return the current state of the circuit
+	 */
+	public synchronized State getState() {
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDuration) {
+			return State.HALF_OPEN;
+		}
+		return state;
+	}
+
+	/**
+	 * @return the number of times the circuit was opened
+	 */
+	public long getOpenCount() {
+		return openCount.get();
+	}
+
+	/**
+	 * @return the number of calls that were not permitted
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+}
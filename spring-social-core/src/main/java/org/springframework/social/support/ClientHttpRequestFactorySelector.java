@@ -15,6 +15,8 @@
  */
 package org.springframework.social.support;
 
+import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.URI;
@@ -24,29 +26,60 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 
 import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLContexts;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
 
 /**
  * Chooses a request factory. Picks a HttpComponentsClientRequestFactory factory if Apache HttpComponents HttpClient is in the classpath.
- * If not, falls back to SimpleClientHttpRequestFactory.
+ * If not, falls back to SimpleClientHttpRequestFactory. An OkHttp-based request factory, capable of HTTP/2, may be selected through {@link HttpClientSettings#setClientType(HttpClientType)}.
+ * With HttpComponents, the request factories handed out share a pooling HTTP client configured by {@link HttpClientSettings},
+ * so that connections are kept alive and reused across request factories.
+ * The request factories lower their connect and read timeouts (and OkHttp's write timeout) to the time remaining before the current thread's {@link Deadline},
+ * if any, and refuse to send requests once it has passed. These bound each connect and each read, not the request as a whole:
+ * a response trickling in more slowly than the read timeout may still outlast the deadline.
  * @author Craig Walls
  * @author Roy Clarkson
  */
@@ -57,20 +90,110 @@ public class ClientHttpRequestFactorySelector {
 	}
 	
 	public static ClientHttpRequestFactory getRequestFactory() {
-		Properties properties = System.getProperties();
-		String proxyHost = properties.getProperty("http.proxyHost");
-		int proxyPort = properties.containsKey("http.proxyPort") ? Integer.valueOf(properties.getProperty("http.proxyPort")) : 80;
-		if (HTTP_COMPONENTS_AVAILABLE) {
-			return HttpComponentsClientRequestFactoryCreator.createRequestFactory(proxyHost, proxyPort);
-		} else {
-			SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
-			if (proxyHost != null) {
-				requestFactory.setProxy(new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyHost, proxyPort)));
+		return createRequestFactory(null);
+	}
+	
+	/**
+	 * Returns the request factory shared under the given key, creating it the first time the key is used.
+	 * Sharing a request factory shares the underlying HTTP client and its connection pool, so that connections can be kept alive and reused
+	 * by all of its users. The request factory holds no credentials, so it may safely be shared by API bindings acting for different users.
+	 * The HTTP client is configured with the settings registered for the key, if any, or else with the default settings.
+	 * @param key the key identifying the shared request factory, typically a provider id
+	 * @return the shared request factory
+	 * @see #setHttpClientSettings(String, HttpClientSettings)
+	 */
+	public static ClientHttpRequestFactory getSharedRequestFactory(String key) {
+		Assert.notNull(key, "The key property cannot be null");
+		ClientHttpRequestFactory requestFactory = SHARED_REQUEST_FACTORIES.get(key);
+		if (requestFactory == null) {
+			ClientHttpRequestFactory newRequestFactory = createRequestFactory(key);
+			requestFactory = SHARED_REQUEST_FACTORIES.putIfAbsent(key, newRequestFactory);
+			if (requestFactory == null) {
+				requestFactory = newRequestFactory;
 			}
-			return requestFactory;
 		}
+		return requestFactory;
 	}
-	
+
+	/**
+	 * Returns a request factory whose requests stream their body to the connection as it is written, rather than buffering it, for large uploads.
+	 * The request factory uses the same HTTP client and connection pool as the request factory shared under the given key.
+	 * Bodies are sent with the Content-Length set on the request, if any, or else with chunked transfer encoding.
+	 * OkHttp 3 request factories always buffer request bodies, so with OkHttp the request factory returned does too.
+	 * @param key the key identifying the shared request factory, typically a provider id; null for the default transport
+	 * @return the streaming request factory
+	 * @see #getSharedRequestFactory(String)
+	 */
+	public static ClientHttpRequestFactory getStreamingRequestFactory(String key) {
+		ClientHttpRequestFactory requestFactory = createRequestFactory(key);
+		if (requestFactory instanceof HttpComponentsClientHttpRequestFactory) {
+			((HttpComponentsClientHttpRequestFactory) requestFactory).setBufferRequestBody(false);
+		} else if (requestFactory instanceof SimpleClientHttpRequestFactory) {
+			((SimpleClientHttpRequestFactory) requestFactory).setBufferRequestBody(false);
+		}
+		return requestFactory;
+	}
+
+	/**
+	 * Sets the default settings of the HTTP transport.
+	 * The transports created with the previous default settings are replaced: request factories, including those obtained earlier, send their next requests
+	 * through a transport created with the new settings, and a replaced transport is closed once the requests still in flight over it have completed.
+	 * Transports of keys with settings of their own are left as they are.
+	 * @param httpClientSettings the default transport settings
+	 */
+	public static void setHttpClientSettings(HttpClientSettings httpClientSettings) {
+		Assert.notNull(httpClientSettings, "The httpClientSettings property cannot be null");
+		defaultHttpClientSettings = httpClientSettings;
+		resetTransports("");
+	}
+
+	/**
+	 * Sets the settings of the HTTP transport behind the request factory shared under the given key, giving that key its own connection pool.
+	 * The transport previously created for the key, if any, is replaced and closed once the requests in flight over it have completed;
+	 * the transports of other keys are left as they are. Request factories obtained earlier for the key keep the transport they were created over,
+	 * which is the default transport if the key had no settings of its own then, so settings are best registered before the key is first used.
+	 * @param key the key identifying the shared request factory, typically a provider id
+	 * @param httpClientSettings the transport settings
+	 * @see #getSharedRequestFactory(String)
+	 */
+	public static void setHttpClientSettings(String key, HttpClientSettings httpClientSettings) {
+		Assert.hasLength(key, "The key property cannot be empty");
+		Assert.notNull(httpClientSettings, "The httpClientSettings property cannot be null");
+		HTTP_CLIENT_SETTINGS.put(key, httpClientSettings);
+		resetTransports(key);
+	}
+
+	/**
+	 * @return the default settings of the HTTP transport
+	 */
+	public static HttpClientSettings getHttpClientSettings() {
+		return defaultHttpClientSettings;
+	}
+
+	/**
+	 * Returns statistics of the connection pools behind the request factories handed out, summed over all pools.
+	 * Connections pooled by the JDK for HttpURLConnection are not accounted for. OkHttp does not queue requests waiting for a connection,
+	 * so its pools never report pending requests.
+	 * @return the connection pool statistics
+	 */
+	public static ConnectionPoolStatistics getConnectionPoolStatistics() {
+		int leased = 0, pending = 0, available = 0, max = 0;
+		if (HTTP_COMPONENTS_AVAILABLE) {
+			ConnectionPoolStatistics statistics = HttpComponentsClientRequestFactoryCreator.getConnectionPoolStatistics();
+			leased += statistics.getLeased();
+			pending += statistics.getPending();
+			available += statistics.getAvailable();
+			max += statistics.getMax();
+		}
+		if (OK_HTTP_AVAILABLE) {
+			ConnectionPoolStatistics statistics = OkHttpClientRequestFactoryCreator.getConnectionPoolStatistics();
+			leased += statistics.getLeased();
+			available += statistics.getAvailable();
+			max += statistics.getMax();
+		}
+		return new ConnectionPoolStatistics(leased, pending, available, max);
+	}
+
 	/**
 	 * Decorates a request factory to buffer responses so that the responses may be repeatedly read.
 	 * @param requestFactory the request factory to be decorated for buffering
@@ -79,46 +202,190 @@ public class ClientHttpRequestFactorySelector {
 	public static ClientHttpRequestFactory bufferRequests(ClientHttpRequestFactory requestFactory) {
 		return new BufferingClientHttpRequestFactory(requestFactory);
 	}
-	
+
+	private static ClientHttpRequestFactory createRequestFactory(String key) {
+		Properties properties = System.getProperties();
+		String proxyHost = properties.getProperty("http.proxyHost");
+		int proxyPort = properties.containsKey("http.proxyPort") ? Integer.valueOf(properties.getProperty("http.proxyPort")) : 80;
+		HttpClientSettings settings = key != null && HTTP_CLIENT_SETTINGS.containsKey(key) ? HTTP_CLIENT_SETTINGS.get(key) : defaultHttpClientSettings;
+		String transportKey = key != null && HTTP_CLIENT_SETTINGS.containsKey(key) ? key : "";
+		HttpClientType clientType = settings.getClientType();
+		if (clientType == HttpClientType.AUTO) {
+			clientType = HTTP_COMPONENTS_AVAILABLE ? HttpClientType.HTTP_COMPONENTS : HttpClientType.JDK;
+		}
+		switch (clientType) {
+			case HTTP_COMPONENTS:
+				Assert.state(HTTP_COMPONENTS_AVAILABLE, "Apache HttpComponents HttpClient is not in the classpath");
+				return HttpComponentsClientRequestFactoryCreator.createRequestFactory(proxyHost, proxyPort, transportKey, settings);
+			case OK_HTTP:
+				Assert.state(OK_HTTP_AVAILABLE, "OkHttp 3 is not in the classpath");
+				return OkHttpClientRequestFactoryCreator.createRequestFactory(proxyHost, proxyPort, transportKey, settings);
+			default:
+				SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory() {
+					@Override
+					protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+						super.prepareConnection(connection, httpMethod);
+						Deadline deadline = Deadline.getCurrent();
+						if (deadline != null) {
+							deadline.check(httpMethod + " " + connection.getURL());
+							connection.setConnectTimeout(deadline.capTimeout(connection.getConnectTimeout()));
+							connection.setReadTimeout(deadline.capTimeout(connection.getReadTimeout()));
+						}
+					}
+				};
+				if (proxyHost != null) {
+					requestFactory.setProxy(new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyHost, proxyPort)));
+				}
+				requestFactory.setConnectTimeout(settings.getConnectTimeout());
+				requestFactory.setReadTimeout(settings.getReadTimeout());
+				return requestFactory;
+		}
+	}
+
+	// restores the default settings, forgetting the settings of each key and replacing every transport; for tests
+	static void resetHttpClientSettings() {
+		for (String key : HTTP_CLIENT_SETTINGS.keySet()) {
+			resetTransports(key);
+			HTTP_CLIENT_SETTINGS.remove(key);
+		}
+		defaultHttpClientSettings = new HttpClientSettings();
+		resetTransports("");
+	}
+
+	// the settings the transports of the given transport key ("" for the default transport) are created with
+	private static HttpClientSettings getHttpClientSettings(String transportKey) {
+		HttpClientSettings settings = transportKey.isEmpty() ? null : HTTP_CLIENT_SETTINGS.get(transportKey);
+		return settings != null ? settings : defaultHttpClientSettings;
+	}
+
+	// replaces the transports of the given transport key ("" for the default transport) and forgets the request factories shared over them
+	private static void resetTransports(String transportKey) {
+		for (String key : SHARED_REQUEST_FACTORIES.keySet()) {
+			if (transportKey.equals(HTTP_CLIENT_SETTINGS.containsKey(key) ? key : "")) {
+				SHARED_REQUEST_FACTORIES.remove(key);
+			}
+		}
+		if (HTTP_COMPONENTS_AVAILABLE) {
+			HttpComponentsClientRequestFactoryCreator.resetTransports(transportKey);
+		}
+		if (OK_HTTP_AVAILABLE) {
+			OkHttpClientRequestFactoryCreator.resetTransports(transportKey);
+		}
+	}
+
+	private static volatile HttpClientSettings defaultHttpClientSettings = new HttpClientSettings();
+
+	private static final ConcurrentMap<String, HttpClientSettings> HTTP_CLIENT_SETTINGS = new ConcurrentHashMap<String, HttpClientSettings>();
+
+	private static final ConcurrentMap<String, ClientHttpRequestFactory> SHARED_REQUEST_FACTORIES = new ConcurrentHashMap<String, ClientHttpRequestFactory>();
+
 	private static final boolean HTTP_COMPONENTS_AVAILABLE = ClassUtils.isPresent("org.apache.http.client.HttpClient", ClientHttpRequestFactory.class.getClassLoader());
 
+	private static final boolean OK_HTTP_AVAILABLE = ClassUtils.isPresent("okhttp3.OkHttpClient", ClientHttpRequestFactory.class.getClassLoader());
+
 	public static class HttpComponentsClientRequestFactoryCreator {
 		
 		private static boolean isAllTrust = false;
+
+		private static final ConcurrentMap<String, PooledTransport> transports = new ConcurrentHashMap<String, PooledTransport>();
+
+		// transports replaced by new settings, closed once no connection of theirs is leased
+		private static final Queue<PooledTransport> retiredTransports = new ConcurrentLinkedQueue<PooledTransport>();
 		
 		public static ClientHttpRequestFactory createRequestFactory(String proxyHost, int proxyPort) {
-			
-			HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory() {
+			return createRequestFactory(proxyHost, proxyPort, "", getHttpClientSettings());
+		}
+
+		static ClientHttpRequestFactory createRequestFactory(String proxyHost, int proxyPort, final String transportKey, HttpClientSettings settings) {
+			final HttpHost proxy = proxyHost != null ? new HttpHost(proxyHost, proxyPort) : null;
+			final boolean allTrust = proxy != null && isAllTrust;
+			final String key = transportKey + "|" + proxy + "|" + allTrust;
+			HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(getTransport(key, proxy, allTrust, settings).httpClient) {
+				@Override
+				public HttpClient getHttpClient() {
+					// looked up for every request, so that a transport replaced by new settings is no longer used
+					return currentTransport().httpClient;
+				}
+
 				@Override
 				protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
 					HttpClientContext context = new HttpClientContext();
 					context.setAttribute("http.protocol.expect-continue", false);
+					Deadline deadline = Deadline.getCurrent();
+					if (deadline != null) {
+						deadline.check(httpMethod + " " + uri);
+						RequestConfig requestConfig = currentTransport().requestConfig;
+						context.setRequestConfig(RequestConfig.copy(requestConfig)
+								.setConnectTimeout(deadline.capTimeout(requestConfig.getConnectTimeout()))
+								.setSocketTimeout(deadline.capTimeout(requestConfig.getSocketTimeout()))
+								.setConnectionRequestTimeout(deadline.capTimeout(requestConfig.getConnectionRequestTimeout()))
+								.build());
+					}
 					return context;
 				}
+
+				@Override
+				public void destroy() {
+					// the HttpClient is shared with other request factories and must outlive this one
+				}
+
+				private PooledTransport currentTransport() {
+					if (!retiredTransports.isEmpty()) {
+						closeDrainedTransports();
+					}
+					return getTransport(key, proxy, allTrust, ClientHttpRequestFactorySelector.getHttpClientSettings(transportKey));
+				}
 			};
-			
-			if (proxyHost != null) {
-				HttpHost proxy = new HttpHost(proxyHost, proxyPort);
-				CloseableHttpClient httpClient = isAllTrust ? getAllTrustClient(proxy) : getClient(proxy);
-				requestFactory.setHttpClient(httpClient);
-			}
-			
 			return requestFactory;
-			
 		}
 
-		private static CloseableHttpClient getClient(HttpHost proxy) {
-			return HttpClients.custom()
-					.setProxy(proxy)
-					.build();
+		static ConnectionPoolStatistics getConnectionPoolStatistics() {
+			closeDrainedTransports();
+			int leased = 0, pending = 0, available = 0, max = 0;
+			for (PooledTransport transport : transports.values()) {
+				PoolStats stats = transport.connectionManager.getTotalStats();
+				leased += stats.getLeased();
+				pending += stats.getPending();
+				available += stats.getAvailable();
+				max += stats.getMax();
+			}
+			return new ConnectionPoolStatistics(leased, pending, available, max);
 		}
 
-		private static CloseableHttpClient getAllTrustClient(HttpHost proxy) {
-			return HttpClients.custom()
-					.setProxy(proxy)
-					.setSSLContext(getSSLContext())
-					.setSSLHostnameVerifier(new NoopHostnameVerifier())
-					.build();
+		static void resetTransports(String transportKey) {
+			for (String key : transports.keySet()) {
+				if (key.startsWith(transportKey + "|")) {
+					PooledTransport transport = transports.remove(key);
+					if (transport != null) {
+						retiredTransports.add(transport);
+					}
+				}
+			}
+			closeDrainedTransports();
+		}
+
+		private static void closeDrainedTransports() {
+			for (PooledTransport transport : retiredTransports) {
+				PoolStats stats = transport.connectionManager.getTotalStats();
+				if (stats.getLeased() == 0 && stats.getPending() == 0 && retiredTransports.remove(transport)) {
+					// also stops the thread evicting idle connections, if any
+					transport.close();
+				}
+			}
+		}
+
+		private static PooledTransport getTransport(String key, HttpHost proxy, boolean allTrust, HttpClientSettings settings) {
+			PooledTransport transport = transports.get(key);
+			if (transport == null) {
+				PooledTransport newTransport = new PooledTransport(proxy, allTrust, settings);
+				transport = transports.putIfAbsent(key, newTransport);
+				if (transport == null) {
+					transport = newTransport;
+				} else {
+					newTransport.close();
+				}
+			}
+			return transport;
 		}
 
 		private static SSLContext getSSLContext() {
@@ -140,9 +407,178 @@ public class ClientHttpRequestFactorySelector {
 			}
 			return null;
 		}
+
+		private static class PooledTransport {
+
+			private final PoolingHttpClientConnectionManager connectionManager;
+
+			private final CloseableHttpClient httpClient;
+
+			private final RequestConfig requestConfig;
+
+			public PooledTransport(HttpHost proxy, boolean allTrust, HttpClientSettings settings) {
+				SSLContext allTrustContext = allTrust ? getSSLContext() : null;
+				Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+						.register("http", PlainConnectionSocketFactory.getSocketFactory())
+						.register("https", allTrustContext != null ? new SSLConnectionSocketFactory(allTrustContext, NoopHostnameVerifier.INSTANCE) : SSLConnectionSocketFactory.getSystemSocketFactory())
+						.build();
+				connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+				connectionManager.setMaxTotal(settings.getMaxTotal());
+				connectionManager.setDefaultMaxPerRoute(settings.getMaxPerRoute());
+				requestConfig = RequestConfig.custom()
+						.setConnectTimeout(settings.getConnectTimeout())
+						.setSocketTimeout(settings.getReadTimeout())
+						.setConnectionRequestTimeout(settings.getConnectionRequestTimeout())
+						.build();
+				HttpClientBuilder builder = HttpClients.custom()
+						.useSystemProperties()
+						.setConnectionManager(connectionManager)
+						.setDefaultRequestConfig(requestConfig)
+						.setKeepAliveStrategy(keepAliveStrategy(settings.getKeepAlive()));
+				if (settings.getMaxIdleTime() > 0) {
+					builder.evictExpiredConnections().evictIdleConnections(settings.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+				}
+				if (proxy != null) {
+					builder.setProxy(proxy);
+				}
+				httpClient = builder.build();
+			}
+
+			public void close() {
+				try {
+					httpClient.close();
+				} catch (IOException e) {
+					// nothing more can be released
+				}
+			}
+
+			private static ConnectionKeepAliveStrategy keepAliveStrategy(final long keepAlive) {
+				return new ConnectionKeepAliveStrategy() {
+					public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+						long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+						return duration > 0 ? duration : keepAlive;
+					}
+				};
+			}
+
+		}
 		
 	}
 
+	private static class OkHttpClientRequestFactoryCreator {
+
+		private static final ConcurrentMap<String, OkHttpTransport> transports = new ConcurrentHashMap<String, OkHttpTransport>();
+
+		// transports replaced by new settings, closed once no call of theirs is running
+		private static final Queue<OkHttpTransport> retiredTransports = new ConcurrentLinkedQueue<OkHttpTransport>();
+
+		public static ClientHttpRequestFactory createRequestFactory(final String proxyHost, final int proxyPort, final String transportKey, HttpClientSettings settings) {
+			final String key = transportKey + "|" + proxyHost + ":" + proxyPort;
+			return new OkHttp3ClientHttpRequestFactory(getTransport(key, proxyHost, proxyPort, settings).client) {
+				@Override
+				public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+					if (!retiredTransports.isEmpty()) {
+						closeDrainedTransports();
+					}
+					// looked up for every request, so that a transport replaced by new settings is no longer used
+					OkHttpClient client = getTransport(key, proxyHost, proxyPort, ClientHttpRequestFactorySelector.getHttpClientSettings(transportKey)).client;
+					Deadline deadline = Deadline.getCurrent();
+					if (deadline == null) {
+						return new OkHttp3ClientHttpRequestFactory(client).createRequest(uri, httpMethod);
+					}
+					deadline.check(httpMethod + " " + uri);
+					// OkHttp 3 has no per-request timeouts, but a client derived from the shared one shares its connection pool and dispatcher
+					OkHttpClient deadlineClient = client.newBuilder()
+							.connectTimeout(deadline.capTimeout(client.connectTimeoutMillis()), TimeUnit.MILLISECONDS)
+							.readTimeout(deadline.capTimeout(client.readTimeoutMillis()), TimeUnit.MILLISECONDS)
+							.writeTimeout(deadline.capTimeout(client.writeTimeoutMillis()), TimeUnit.MILLISECONDS)
+							.build();
+					return new OkHttp3ClientHttpRequestFactory(deadlineClient).createRequest(uri, httpMethod);
+				}
+
+				@Override
+				public void destroy() {
+					// the OkHttpClient is shared with other request factories and must outlive this one
+				}
+			};
+		}
+
+		public static ConnectionPoolStatistics getConnectionPoolStatistics() {
+			closeDrainedTransports();
+			int leased = 0, available = 0, max = 0;
+			for (OkHttpTransport transport : transports.values()) {
+				ConnectionPool connectionPool = transport.client.connectionPool();
+				int idle = connectionPool.idleConnectionCount();
+				leased += connectionPool.connectionCount() - idle;
+				available += idle;
+				max += transport.maxIdleConnections;
+			}
+			return new ConnectionPoolStatistics(leased, 0, available, max);
+		}
+
+		public static void resetTransports(String transportKey) {
+			for (String key : transports.keySet()) {
+				if (key.startsWith(transportKey + "|")) {
+					OkHttpTransport transport = transports.remove(key);
+					if (transport != null) {
+						retiredTransports.add(transport);
+					}
+				}
+			}
+			closeDrainedTransports();
+		}
+
+		private static OkHttpTransport getTransport(String key, String proxyHost, int proxyPort, HttpClientSettings settings) {
+			OkHttpTransport transport = transports.get(key);
+			if (transport == null) {
+				OkHttpTransport newTransport = new OkHttpTransport(proxyHost, proxyPort, settings);
+				transport = transports.putIfAbsent(key, newTransport);
+				if (transport == null) {
+					transport = newTransport;
+				}
+			}
+			return transport;
+		}
+
+		private static void closeDrainedTransports() {
+			for (OkHttpTransport transport : retiredTransports) {
+				if (transport.client.dispatcher().runningCallsCount() == 0 && retiredTransports.remove(transport)) {
+					transport.close();
+				}
+			}
+		}
+
+		private static class OkHttpTransport {
+
+			private final OkHttpClient client;
+
+			private final int maxIdleConnections;
+
+			public OkHttpTransport(String proxyHost, int proxyPort, HttpClientSettings settings) {
+				maxIdleConnections = settings.getMaxTotal();
+				long maxIdleTime = settings.getMaxIdleTime() > 0 ? settings.getMaxIdleTime() : 5 * 60 * 1000;
+				// OkHttp treats 0 as no timeout and rejects negative values
+				OkHttpClient.Builder builder = new OkHttpClient.Builder()
+						.connectionPool(new ConnectionPool(maxIdleConnections, maxIdleTime, TimeUnit.MILLISECONDS))
+						.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+						.connectTimeout(Math.max(settings.getConnectTimeout(), 0), TimeUnit.MILLISECONDS)
+						.readTimeout(Math.max(settings.getReadTimeout(), 0), TimeUnit.MILLISECONDS)
+						.writeTimeout(Math.max(settings.getReadTimeout(), 0), TimeUnit.MILLISECONDS);
+				if (proxyHost != null) {
+					builder.proxy(new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyHost, proxyPort)));
+				}
+				client = builder.build();
+			}
+
+			public void close() {
+				client.dispatcher().executorService().shutdown();
+				client.connectionPool().evictAll();
+			}
+
+		}
+
+	}
+
 	/**
 	 * Trust all SSL certificates.
 	 * For use when using {@link HttpComponentsClientHttpRequestFactory} in a test environment. Not recommended for general use.
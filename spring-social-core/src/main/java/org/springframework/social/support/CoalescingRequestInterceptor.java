@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.social.DeadlineExceededException;
+import org.springframework.social.support.CachingRequestInterceptor.CachedClientHttpResponse;
+import org.springframework.social.support.HttpResponseCache.CachedResponse;
+import org.springframework.util.Assert;
+
+/**
+ * ClientHttpRequestInterceptor implementation that coalesces identical GET requests in flight at the same moment into a single call to the provider,
+ * tracked by a {@link RequestCoalescer}. Whichever comes first is sent; the others wait for its response instead of being sent themselves.
+ * The response is read into memory once and every waiter is given its own copy, whatever its status; if the call fails, every waiter fails with it.
+ * A response whose body is larger than the coalescer's {@link RequestCoalescer#setMaxBodySize(int) maximum body size} is not read into memory:
+ * it is handed on as it is read, with no more than the maximum size buffered to find out, and the waiters send their requests themselves.
+ * Waiters wait no longer than their current {@link Deadline}, if any, and then fail with a {@link DeadlineExceededException}.
+ * Requests are coalesced per credentials: the credentials given to the interceptor (typically the access token) are hashed into the keys of the requests,
+ * so that bindings for different users never share a response. Requests that are conditional or ranged, and those of a {@link StreamingDownloader}, go through as they are.
+ */
+public class CoalescingRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	private final RequestCoalescer coalescer;
+
+	private final String partition;
+
+	/**
+	 * Creates a coalescing interceptor.
+	 * @param coalescer the request coalescer of the provider
+	 * @param credentials the credentials the requests are made with (may be null for requests made without credentials)
+	 */
+	public CoalescingRequestInterceptor(RequestCoalescer coalescer, String credentials) {
+		Assert.notNull(coalescer, "The coalescer property cannot be null");
+		this.coalescer = coalescer;
+		this.partition = credentials != null ? CredentialDigest.of(credentials) + " " : "- ";
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		HttpHeaders headers = request.getHeaders();
+		if (request.getMethod() != HttpMethod.GET || headers.containsKey(HttpHeaders.IF_NONE_MATCH) || headers.containsKey(HttpHeaders.IF_MODIFIED_SINCE) || headers.containsKey(HttpHeaders.RANGE)
+				|| StreamingDownloader.isDownloading()) {
+			return execution.execute(request, body);
+		}
+		String key = partition + headers.getFirst(HttpHeaders.ACCEPT) + " " + request.getURI();
+		CompletableFuture<CachedResponse> call = new CompletableFuture<CachedResponse>();
+		CompletableFuture<CachedResponse> inFlight = coalescer.register(key, call);
+		if (inFlight != null) {
+			CachedResponse answer = await(inFlight, request);
+			// null when the response was too large to be shared
+			return answer != null ? new CachedClientHttpResponse(answer) : execution.execute(request, body);
+		}
+		CachedResponse shared;
+		ClientHttpResponse passedThrough = null;
+		try {
+			ClientHttpResponse response = execution.execute(request, body);
+			try {
+				int maxBodySize = coalescer.getMaxBodySize();
+				if (response.getHeaders().getContentLength() > maxBodySize) {
+					passedThrough = response;
+					shared = null;
+				} else {
+					// read one byte past the maximum, to tell a body of the maximum size from a larger one without a Content-Length
+					InputStream in = response.getBody();
+					byte[] sharedBody = PrefixedClientHttpResponse.readAtMost(in, maxBodySize + 1);
+					if (sharedBody.length > maxBodySize) {
+						passedThrough = new PrefixedClientHttpResponse(response, sharedBody, in);
+						shared = null;
+					} else {
+						shared = new CachedResponse(response.getRawStatusCode(), response.getStatusText(), response.getHeaders(), sharedBody, 0);
+					}
+				}
+			} finally {
+				if (passedThrough == null) {
+					response.close();
+				}
+			}
+		} catch (Throwable e) {
+			// whatever the failure, waiters must not be left waiting for a call that will never complete
+			coalescer.unregister(key, call);
+			call.completeExceptionally(e);
+			throw e;
+		}
+		// unregistered first, so that requests from now on are sent afresh
+		coalescer.unregister(key, call);
+		call.complete(shared);
+		if (passedThrough != null) {
+			coalescer.recordPassedThrough();
+			return passedThrough;
+		}
+		return new CachedClientHttpResponse(shared);
+	}
+
+	// internal helpers
+
+	private CachedResponse await(CompletableFuture<CachedResponse> inFlight, HttpRequest request) throws IOException {
+		Deadline deadline = Deadline.getCurrent();
+		try {
+			return deadline != null ? inFlight.get(deadline.getRemaining(), TimeUnit.MILLISECONDS) : inFlight.get();
+		} catch (TimeoutException e) {
+			throw new DeadlineExceededException("Deadline exceeded before the coalesced request for " + request.getURI() + " was answered");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + request.getURI());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException("Coalesced request for " + request.getURI() + " failed: " + cause.getMessage(), cause);
+		}
+	}
+
+}
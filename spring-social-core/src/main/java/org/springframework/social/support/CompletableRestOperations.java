@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.Assert;
+import org.springframework.web.client.RestOperations;
+
+/**
+ * Performs the operations of a {@link RestOperations} (typically an API binding's RestTemplate) asynchronously, returning {@link CompletableFuture}s.
+ * Each operation is run against the given RestOperations on the given executor, so it goes through the same interceptors
+ * (and thus carries the same credentials), message converters and error handler as a blocking call would.
+ * Calls to several providers can then be composed without blocking the calling thread:
+ * <pre>
+ * CompletableFuture&lt;Profile&gt; profile = facebook.getAsyncOperations().getForObject(profileUrl, Profile.class);
+ * CompletableFuture&lt;Feed&gt; feed = twitter.getAsyncOperations().getForObject(feedUrl, Feed.class);
+ * profile.thenCombine(feed, Page::new);
+ * </pre>
+ * Unless another executor is given, operations run on the executor shared through {@link SocialTaskExecutors}, which uses virtual threads where enabled.
+ * Operations keep to the calling thread's {@link Deadline}, if any.
+ */
+public class CompletableRestOperations {
+
+	private final RestOperations restOperations;
+
+	private final Executor executor;
+
+	/**
+	 * Creates a CompletableRestOperations running operations on the shared default executor.
+	 * @param restOperations the RestOperations to perform operations with
+	 */
+	public CompletableRestOperations(RestOperations restOperations) {
+		this(restOperations, getDefaultExecutor());
+	}
+
+	/**
+	 * Creates a CompletableRestOperations running operations on the given executor.
+	 * @param restOperations the RestOperations to perform operations with
+	 * @param executor the executor to run operations on
+	 */
+	public CompletableRestOperations(RestOperations restOperations, Executor executor) {
+		Assert.notNull(restOperations, "The restOperations property cannot be null");
+		Assert.notNull(executor, "The executor property cannot be null");
+		this.restOperations = restOperations;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return the RestOperations operations are performed with
+	 */
+	public RestOperations getRestOperations() {
+		return restOperations;
+	}
+
+	/**
+	 * Asynchronous {@link RestOperations#getForObject(String, Class, Object...)}.
+	 * @param url the URL
+	 * @param responseType the type of the return value
+	 * @param uriVariables the variables to expand the template
+	 * @param <T> the type of the return value
+	 * @return a future of the converted object
+	 */
+	public <T> CompletableFuture<T> getForObject(String url, Class<T> responseType, Object... uriVariables) {
+		return execute(rest -> rest.getForObject(url, responseType, uriVariables));
+	}
+
+	/**
+	 * Asynchronous {@link RestOperations#getForObject(URI, Class)}.
+	 * @param url the URL
+	 * @param responseType the type of the return value
+	 * @param <T> the type of the return value
+	 * @return a future of the converted object
+	 */
+	public <T> CompletableFuture<T> getForObject(URI url, Class<T> responseType) {
+		return execute(rest -> rest.getForObject(url, responseType));
+	}
+
+	/**
+	 * Asynchronous {@link RestOperations#getForEntity(String, Class, Object...)}.
+	 * @param url the URL
+	 * @param responseType the type of the return value
+	 * @param uriVariables the variables to expand the template
+	 * @param <T> the type of the return value
+	 * @return a future of the entity
+	 */
+	public <T> CompletableFuture<ResponseEntity<T>> getForEntity(String url, Class<T> responseType, Object... uriVariables) {
+		return execute(rest -> rest.getForEntity(url, responseType, uriVariables));
+	}
+
+	/**
+	 * Asynchronous {@link RestOperations#postForObject(String, Object, Class, Object...)}.
+	 * @param url the URL
+	 * @param request the Object to be POSTed (may be null)
+	 * @param responseType the type of the return value
+	 * @param uriVariables the variables to expand the template
+	 * @param <T> the type of the return value
+	 * @return a future of the converted object
+	 */
+	public <T> CompletableFuture<T> postForObject(String url, Object request, Class<T> responseType, Object... uriVariables) {
+		return execute(rest -> rest.postForObject(url, request, responseType, uriVariables));
+	}
+
+	/**
+	 * Asynchronous {@link RestOperations#exchange(String, HttpMethod, HttpEntity, Class, Object...)}.
+	 * @param url the URL
+	 * @param method the HTTP method
+	 * @param requestEntity the entity (headers and/or body) to write to the request (may be null)
+	 * @param responseType the type of the return value
+	 * @param uriVariables the variables to expand the template
+	 * @param <T> the type of the return value
+	 * @return a future of the response entity
+	 */
+	public <T> CompletableFuture<ResponseEntity<T>> exchange(String url, HttpMethod method, HttpEntity<?> requestEntity, Class<T> responseType, Object... uriVariables) {
+		return execute(rest -> rest.exchange(url, method, requestEntity, responseType, uriVariables));
+	}
+
+	/**
+	 * Asynchronous {@link RestOperations#exchange(String, HttpMethod, HttpEntity, ParameterizedTypeReference, Object...)}.
+	 * @param url the URL
+	 * @param method the HTTP method
+	 * @param requestEntity the entity (headers and/or body) to write to the request (may be null)
+	 * @param responseType the type of the return value
+	 * @param uriVariables the variables to expand the template
+	 * @param <T> the type of the return value
+	 * @return a future of the response entity
+	 */
+	public <T> CompletableFuture<ResponseEntity<T>> exchange(String url, HttpMethod method, HttpEntity<?> requestEntity, ParameterizedTypeReference<T> responseType, Object... uriVariables) {
+		return execute(rest -> rest.exchange(url, method, requestEntity, responseType, uriVariables));
+	}
+
+	/**
+	 * Asynchronous {@link RestOperations#delete(String, Object...)}.
+	 * @param url the URL
+	 * @param uriVariables the variables to expand the template
+	 * @return a future completed once the resource has been deleted
+	 */
+	public CompletableFuture<Void> delete(String url, Object... uriVariables) {
+		return execute(rest -> {
+			rest.delete(url, uriVariables);
+			return null;
+		});
+	}
+
+	/**
+	 * Runs any operation against the RestOperations asynchronously.
+	 * Useful for API bindings exposing their own operations (which are typically built on several RestOperations calls) asynchronously.
+	 * @param operation the operation
+	 * @param <T> the type of the operation's result
+	 * @return a future of the operation's result, completed exceptionally with whatever the operation throws
+	 */
+	public <T> CompletableFuture<T> execute(Function<RestOperations, T> operation) {
+		return CompletableFuture.supplyAsync(Deadline.bindCurrent(() -> operation.apply(restOperations)), executor);
+	}
+
+	/**
+	 * @return the executor shared by all CompletableRestOperations not given an executor of their own
+	 * @see SocialTaskExecutors#getSharedExecutor()
+	 */
+	public static Executor getDefaultExecutor() {
+		return SocialTaskExecutors.getSharedExecutor();
+	}
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+
+/**
+ * ClientHttpRequestInterceptor implementation that asks for compressed responses and decodes them as they are read, counting bytes in a {@link ResponseCompression}.
+ * Requests without an Accept-Encoding header are given one advertising gzip and deflate. Responses with a gzip or deflate Content-Encoding
+ * are handed on with a body decoded on the fly, and without their Content-Encoding and Content-Length headers, which no longer apply.
+ * Deflate responses are decoded whether they come zlib-wrapped, as the HTTP specification has it, or raw, as some servers send them.
+ */
+public class CompressionRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	private final ResponseCompression compression;
+
+	/**
+	 * Creates a compression interceptor.
+	 * @param compression the response compression of the provider
+	 */
+	public CompressionRequestInterceptor(ResponseCompression compression) {
+		Assert.notNull(compression, "The compression property cannot be null");
+		this.compression = compression;
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		if (!request.getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+			request = HttpRequestDecorator.setHeader(request, HttpHeaders.ACCEPT_ENCODING, ResponseCompression.ACCEPT_ENCODING);
+		}
+		ClientHttpResponse response = execution.execute(request, body);
+		String contentEncoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+		boolean gzip = "gzip".equalsIgnoreCase(contentEncoding) || "x-gzip".equalsIgnoreCase(contentEncoding);
+		boolean deflate = "deflate".equalsIgnoreCase(contentEncoding);
+		int statusCode = response.getRawStatusCode();
+		boolean hasBody = request.getMethod() != HttpMethod.HEAD && statusCode != HttpStatus.NO_CONTENT.value() && statusCode != HttpStatus.NOT_MODIFIED.value();
+		compression.recordResponse(gzip || deflate);
+		return new DecodingClientHttpResponse(response, hasBody && gzip, hasBody && deflate, compression);
+	}
+
+	private static class DecodingClientHttpResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+
+		private final boolean gzip;
+
+		private final boolean deflate;
+
+		private final ResponseCompression compression;
+
+		private HttpHeaders headers;
+
+		private InputStream body;
+
+		private InputStream decoder;
+
+		private Inflater inflater;
+
+		public DecodingClientHttpResponse(ClientHttpResponse response, boolean gzip, boolean deflate, ResponseCompression compression) {
+			this.response = response;
+			this.gzip = gzip;
+			this.deflate = deflate;
+			this.compression = compression;
+		}
+
+		public HttpStatus getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+		public int getRawStatusCode() throws IOException {
+			return response.getRawStatusCode();
+		}
+
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+		public HttpHeaders getHeaders() {
+			if (headers == null) {
+				if (gzip || deflate) {
+					HttpHeaders decodedHeaders = new HttpHeaders();
+					decodedHeaders.putAll(response.getHeaders());
+					decodedHeaders.remove(HttpHeaders.CONTENT_ENCODING);
+					decodedHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+					headers = decodedHeaders;
+				} else {
+					headers = response.getHeaders();
+				}
+			}
+			return headers;
+		}
+
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				InputStream received = new CountingInputStream(response.getBody(), compression.bytesReceivedCounter());
+				body = new CountingInputStream(gzip || deflate ? decode(received) : received, compression.bytesDecodedCounter());
+			}
+			return body;
+		}
+
+		public void close() {
+			// the decoder's inflater holds native memory until it is ended, which closing the response alone does not do
+			try {
+				if (decoder != null) {
+					decoder.close();
+				}
+			} catch (IOException e) {
+				// the inflater is ended and the response closed all the same
+			} finally {
+				if (inflater != null) {
+					inflater.end();
+				}
+				response.close();
+			}
+		}
+
+		private InputStream decode(InputStream received) throws IOException {
+			PushbackInputStream pushback = new PushbackInputStream(received, 2);
+			byte[] header = new byte[2];
+			int length = pushback.read(header);
+			if (length <= 0) {
+				// an empty body: nothing to decode
+				return new ByteArrayInputStream(new byte[0]);
+			}
+			if (length == 1) {
+				int second = pushback.read();
+				if (second != -1) {
+					header[1] = (byte) second;
+					length = 2;
+				}
+			}
+			pushback.unread(header, 0, length);
+			if (gzip) {
+				decoder = new GZIPInputStream(pushback);
+			} else {
+				// an inflater handed to an InflaterInputStream is not ended when the stream is closed
+				inflater = new Inflater(!isZlibHeader(header, length));
+				decoder = new InflaterInputStream(pushback, inflater);
+			}
+			return decoder;
+		}
+
+		private boolean isZlibHeader(byte[] header, int length) {
+			return length == 2 && (header[0] & 0x0F) == 8 && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+		}
+
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+
+		private final AtomicLong counter;
+
+		public CountingInputStream(InputStream in, AtomicLong counter) {
+			super(in);
+			this.counter = counter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				counter.incrementAndGet();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				counter.addAndGet(n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			counter.addAndGet(skipped);
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+	}
+
+}
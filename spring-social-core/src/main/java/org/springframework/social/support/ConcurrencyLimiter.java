@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * Limits the number of calls to a provider that may be in flight at once, so that a slow provider cannot tie up every thread of the application.
+ * Calls beyond the limit are rejected immediately instead of waiting for the provider.
+ * The limit adapts to the provider's latency, following the gradient algorithm: it grows while calls take about as long as the fastest calls observed,
+ * and shrinks in proportion as they take longer (a sign that calls queue up at the provider) or fail because the provider is overloaded.
+ * The fastest latency is relearned every so many calls, so that the limit recovers from a lasting change in the provider's latency.
+ * A concurrency limiter is meant to be shared by all callers of a provider; see {@link BulkheadRequestInterceptor}.
+ */
+public class ConcurrencyLimiter {
+
+	private static final int MIN_RTT_RESET_SAMPLES = 1000;
+
+	private static final double BACKOFF_RATIO = 0.9;
+
+	private static final double SMOOTHING = 0.2;
+
+	private final String providerId;
+
+	private int minLimit = 2;
+
+	private int maxLimit = 200;
+
+	private double limit;
+
+	private int inFlight;
+
+	private long minRtt;
+
+	private int samples;
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	/**
+	 * Creates a concurrency limiter with an initial limit of 20 calls.
+	 * @param providerId the id of the provider whose calls are limited
+	 */
+	public ConcurrencyLimiter(String providerId) {
+		this(providerId, 20);
+	}
+
+	/**
+	 * Creates a concurrency limiter.
+	 * @param providerId the id of the provider whose calls are limited
+	 * @param initialLimit the number of calls allowed in flight until the limit has adapted to the provider's latency
+	 */
+	public ConcurrencyLimiter(String providerId, int initialLimit) {
+		Assert.notNull(providerId, "The providerId property cannot be null");
+		Assert.isTrue(initialLimit > 0, "The initialLimit property must be positive");
+		this.providerId = providerId;
+		this.limit = initialLimit;
+	}
+
+	/**
+	 * Sets the lowest the limit may adapt to. Defaults to 2.
+	 * @param minLimit the minimum limit
+	 */
+	public synchronized void setMinLimit(int minLimit) {
+		Assert.isTrue(minLimit > 0, "The minLimit property must be positive");
+		this.minLimit = minLimit;
+		this.limit = Math.max(limit, minLimit);
+	}
+
+	/**
+	 * Sets the highest the limit may adapt to. Defaults to 200.
+	 * @param maxLimit the maximum limit
+	 */
+	public synchronized void setMaxLimit(int maxLimit) {
+		Assert.isTrue(maxLimit > 0, "The maxLimit property must be positive");
+		this.maxLimit = maxLimit;
+		this.limit = Math.min(limit, maxLimit);
+	}
+
+	/**
+	 * @return the id of the provider whose calls are limited
+	 */
+	public String getProviderId() {
+		return providerId;
+	}
+
+	/**
+	 * Asks for permission to make a call. A permitted call must be followed by a call to {@link #onSuccess(long)}, {@link #onDropped()} or {@link #onIgnore()}.
+	 * @return true if the call is permitted; false if the limit has been reached
+	 */
+	public synchronized boolean tryAcquire() {
+		if (inFlight >= (int) limit) {
+			rejectedCount.incrementAndGet();
+			return false;
+		}
+		inFlight++;
+		return true;
+	}
+
+	/**
+	 * Records a call that completed, adapting the limit to its latency.
+	 * @param rttNanos how long the call took, in nanoseconds
+	 */
+	public synchronized void onSuccess(long rttNanos) {
+		int callsInFlight = inFlight;
+		inFlight--;
+		if (rttNanos <= 0) {
+			return;
+		}
+		if (minRtt == 0 || rttNanos < minRtt || ++samples >= MIN_RTT_RESET_SAMPLES) {
+			minRtt = rttNanos;
+			samples = 0;
+		}
+		if (callsInFlight < limit / 2) {
+			// too few calls in flight to tell whether the provider could take more
+			return;
+		}
+		double gradient = Math.max(0.5, Math.min(1.0, (double) minRtt / rttNanos));
+		double newLimit = limit * gradient + Math.sqrt(limit);
+		limit = clamp(limit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+	}
+
+	/**
+	 * Records a call that failed because the provider is overloaded or timed out, shrinking the limit.
+	 */
+	public synchronized void onDropped() {
+		inFlight--;
+		droppedCount.incrementAndGet();
+		limit = clamp(limit * BACKOFF_RATIO);
+	}
+
+	/**
+	 * Records a call whose outcome says nothing about the provider's load (for example, one that failed on the client side), leaving the limit as is.
+	 */
+	public synchronized void onIgnore() {
+		inFlight--;
+	}
+
+	// metrics
+
+	/**
+	 * @return the number of calls currently allowed in flight
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * @return the number of calls currently in flight
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * @return the fastest latency recently observed, in milliseconds, or 0 if no call has completed yet
+	 */
+	public synchronized long getMinRtt() {
+		return TimeUnit.NANOSECONDS.toMillis(minRtt);
+	}
+
+	/**
+	 * @return the number of calls rejected because the limit had been reached
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @return the number of calls that failed because the provider was overloaded or timed out
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	// internal helpers
+
+	private double clamp(double limit) {
+		return Math.max(minLimit, Math.min(maxLimit, limit));
+	}
+
+}
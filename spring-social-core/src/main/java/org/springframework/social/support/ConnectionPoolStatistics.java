@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+/**
+ * A snapshot of the connection pools of the HTTP transport created by {@link ClientHttpRequestFactorySelector}.
+ * @see ClientHttpRequestFactorySelector#getConnectionPoolStatistics()
+ */
+public class ConnectionPoolStatistics {
+
+	private final int leased;
+
+	private final int pending;
+
+	private final int available;
+
+	private final int max;
+
+	public ConnectionPoolStatistics(int leased, int pending, int available, int max) {
+		this.leased = leased;
+		this.pending = pending;
+		this.available = available;
+		this.max = max;
+	}
+
+	/**
+	 * @return the number of connections currently in use
+	 */
+	public int getLeased() {
+		return leased;
+	}
+
+	/**
+	 * @return the number of requests waiting for a connection
+	 */
+	public int getPending() {
+		return pending;
+	}
+
+	/**
+	 * @return the number of idle connections ready for reuse
+	 */
+	public int getAvailable() {
+		return available;
+	}
+
+	/**
+	 * @return the maximum number of connections
+	 */
+	public int getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "[leased: " + leased + "; pending: " + pending + "; available: " + available + "; max: " + max + "]";
+	}
+
+}
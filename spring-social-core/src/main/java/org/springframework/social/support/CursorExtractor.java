@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+/**
+ * Strategy for telling where the page following a page of a paged provider endpoint is; see {@link PagedResults}.
+ * Cursor-paged endpoints typically return the next cursor in the page itself; for offset-paged endpoints,
+ * see {@link PagedResults#offsetCursor(int, java.util.function.Function)}.
+ * @param <P> the type of the pages
+ */
+public interface CursorExtractor<P> {
+
+	/**
+	 * Extracts the cursor of the next page.
+	 * @param page the page
+	 * @param cursor the cursor the page was fetched at; null for the first page
+	 * @return the cursor of the next page, or null if the page is the last one
+	 */
+	String extractNextCursor(P page, String cursor);
+
+}
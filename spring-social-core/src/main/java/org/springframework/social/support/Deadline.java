@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.social.DeadlineExceededException;
+import org.springframework.util.Assert;
+
+/**
+ * A point in time by which a request must be completed, shared by all the work done on its behalf.
+ * The deadline of the current request is held by the current thread (see {@link #setCurrent(Deadline)}), so that it reaches code far down the call stack:
+ * the HTTP transports handed out by {@link ClientHttpRequestFactorySelector} lower their timeouts to the time remaining and refuse to send requests once it has run out,
+ * and JDBC repositories do the same with their query timeouts.
+ * Work started once the deadline has passed fails fast with a {@link DeadlineExceededException} instead of piling up behind a slow provider.
+ * <p>A deadline is typically set at the start of a request and restored at its end:</p>
+ * <pre>
+ * Deadline previous = Deadline.setCurrent(Deadline.after(10000));
+ * try {
+ *     ...
+ * } finally {
+ *     Deadline.setCurrent(previous);
+ * }
+ * </pre>
+ */
+public final class Deadline {
+
+	private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+	private final long expiresAt;
+
+	private Deadline(long expiresAt) {
+		this.expiresAt = expiresAt;
+	}
+
+	/**
+	 * Creates a deadline the given time from now.
+	 * @param timeout the time budget in milliseconds
+	 * @return the deadline
+	 */
+	public static Deadline after(long timeout) {
+		Assert.isTrue(timeout >= 0, "The timeout property cannot be negative");
+		return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
+	}
+
+	/**
+	 * @return the deadline of the current thread, or null if it has none
+	 */
+	public static Deadline getCurrent() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Sets the deadline of the current thread.
+	 * @param deadline the deadline (may be null to clear it)
+	 * @return the deadline the current thread had before, to be restored once the work bound by the new deadline is done
+	 */
+	public static Deadline setCurrent(Deadline deadline) {
+		Deadline previous = CURRENT.get();
+		if (deadline != null) {
+			CURRENT.set(deadline);
+		} else {
+			CURRENT.remove();
+		}
+		return previous;
+	}
+
+	/**
+	 * Binds a task to the deadline of the current thread, for the task to keep to it when run by another thread.
+	 * @param task the task
+	 * @param <T> the type of the task's result
+	 * @return a task running the given one with the current thread's deadline as its own, or the given task if the current thread has no deadline
+	 */
+	public static <T> Supplier<T> bindCurrent(Supplier<T> task) {
+		Deadline deadline = CURRENT.get();
+		if (deadline == null) {
+			return task;
+		}
+		return () -> {
+			Deadline previous = setCurrent(deadline);
+			try {
+				return task.get();
+			} finally {
+				setCurrent(previous);
+			}
+		};
+	}
+
+	/**
+	 * Binds a function to the deadline of the current thread, for the function to keep to it when applied by another thread.
+	 * @param function the function
+	 * @param <T> the type of the function's argument
+	 * @param <R> the type of the function's result
+	 * @return a function applying the given one with the current thread's deadline as its own, or the given function if the current thread has no deadline
+	 */
+	public static <T, R> Function<T, R> bindCurrent(Function<T, R> function) {
+		Deadline deadline = CURRENT.get();
+		if (deadline == null) {
+			return function;
+		}
+		return argument -> {
+			Deadline previous = setCurrent(deadline);
+			try {
+				return function.apply(argument);
+			} finally {
+				setCurrent(previous);
+			}
+		};
+	}
+
+	/**
+	 * Checks that the deadline of the current thread, if any, has not passed.
+	 * @param operation a description of the operation about to be performed, for the exception message
+	 * @throws DeadlineExceededException if the deadline has passed
+	 */
+	public static void checkCurrent(String operation) {
+		Deadline deadline = CURRENT.get();
+		if (deadline != null) {
+			deadline.check(operation);
+		}
+	}
+
+	/**
+	 * Sleeps for the given time, unless the deadline of the current thread would pass first:
+	 * then fails right away, as the work waited for could not be done in time anyway.
+	 * @param millis the time to sleep in milliseconds
+	 * @param operation a description of the operation waited for, for the exception message
+	 * @throws DeadlineExceededException if the current thread's deadline would pass before the sleep is over
+	 * @throws InterruptedException if interrupted while sleeping
+	 */
+	public static void sleepCurrent(long millis, String operation) throws InterruptedException {
+		Deadline deadline = CURRENT.get();
+		if (deadline != null && deadline.getRemaining() < millis) {
+			throw new DeadlineExceededException("Deadline exceeded before " + operation + " (" + millis + " ms away)");
+		}
+		Thread.sleep(millis);
+	}
+
+	/**
+	 * @return the time remaining in milliseconds, 0 once the deadline has passed
+	 */
+	public long getRemaining() {
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+	}
+
+	/**
+	 * @return true if the deadline has passed
+	 */
+	public boolean isExpired() {
+		return expiresAt - System.nanoTime() <= 0;
+	}
+
+	/**
+	 * Checks that the deadline has not passed.
+	 * @param operation a description of the operation about to be performed, for the exception message
+	 * @throws DeadlineExceededException if the deadline has passed
+	 */
+	public void check(String operation) {
+		if (isExpired()) {
+			throw new DeadlineExceededException("Deadline exceeded before " + operation);
+		}
+	}
+
+	/**
+	 * Lowers a timeout to the time remaining.
+	 * @param timeout a timeout in milliseconds, where 0 or less means none
+	 * @return the lower of the timeout and the time remaining, in milliseconds; at least 1 so that it is not taken as no timeout
+	 */
+	public int capTimeout(int timeout) {
+		long remaining = Math.max(1, Math.min(getRemaining(), Integer.MAX_VALUE));
+		return timeout > 0 ? (int) Math.min(timeout, remaining) : (int) remaining;
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.nio.charset.Charset;
+
+/**
+ * Encodes text as application/x-www-form-urlencoded UTF-8, producing the same output as {@link java.net.URLEncoder#encode(String, String)} with "UTF-8".
+ * ASCII characters are looked up in a table, so that the common case of text needing little or no encoding involves no intermediate byte arrays or strings.
+ */
+public final class FormEncoder {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	// true for the ASCII characters that are written as-is
+	private static final boolean[] UNRESERVED = new boolean[128];
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			UNRESERVED[c] = true;
+		}
+		for (char c = 'A'; c <= 'Z'; c++) {
+			UNRESERVED[c] = true;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			UNRESERVED[c] = true;
+		}
+		UNRESERVED['.'] = true;
+		UNRESERVED['-'] = true;
+		UNRESERVED['*'] = true;
+		UNRESERVED['_'] = true;
+	}
+
+	private FormEncoder() {
+	}
+
+	/**
+	 * Encodes the given text.
+	 * @param text the text to encode
+	 * @return the encoded text, the same String instance if no character needed encoding
+	 */
+	public static String encode(String text) {
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c >= 128 || !UNRESERVED[c]) {
+				StringBuilder builder = new StringBuilder(length + 16);
+				builder.append(text, 0, i);
+				encode(text, i, builder);
+				return builder.toString();
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * Encodes the given text, appending the result to the given builder.
+	 * @param text the text to encode
+	 * @param builder the builder to append to
+	 * @return the builder
+	 */
+	public static StringBuilder encode(String text, StringBuilder builder) {
+		return encode(text, 0, builder);
+	}
+
+	private static StringBuilder encode(String text, int start, StringBuilder builder) {
+		int length = text.length();
+		int i = start;
+		while (i < length) {
+			char c = text.charAt(i);
+			if (c < 128) {
+				if (UNRESERVED[c]) {
+					builder.append(c);
+				} else if (c == ' ') {
+					builder.append('+');
+				} else {
+					appendEscaped(builder, c);
+				}
+				i++;
+			} else {
+				// encode the whole run of non-ASCII characters at once so that surrogate pairs are kept together
+				int end = i + 1;
+				while (end < length && text.charAt(end) >= 128) {
+					end++;
+				}
+				for (byte b : text.substring(i, end).getBytes(UTF8)) {
+					appendEscaped(builder, b & 0xFF);
+				}
+				i = end;
+			}
+		}
+		return builder;
+	}
+
+	private static void appendEscaped(StringBuilder builder, int b) {
+		builder.append('%').append(HEX[b >> 4]).append(HEX[b & 0xF]);
+	}
+
+}
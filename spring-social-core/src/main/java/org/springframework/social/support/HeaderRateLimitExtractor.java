@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.social.support.RateLimit.Scope;
+import org.springframework.util.Assert;
+
+/**
+ * Reads a rate limit from a set of limit/remaining/reset response headers, "X-RateLimit-Limit", "X-RateLimit-Remaining" and "X-RateLimit-Reset" by default.
+ * The reset header may hold either the epoch second the window resets at, or the number of seconds until it does; values below one billion are taken as the latter.
+ */
+public class HeaderRateLimitExtractor implements RateLimitExtractor {
+
+	private static final long EPOCH_SECONDS_THRESHOLD = 1000000000L;
+
+	private final Scope scope;
+
+	private final String limitHeader;
+
+	private final String remainingHeader;
+
+	private final String resetHeader;
+
+	/**
+	 * Creates an extractor reading a rate limit of the given scope from the "X-RateLimit-*" headers.
+	 * @param scope whose calls the rate limit applies to
+	 */
+	public HeaderRateLimitExtractor(Scope scope) {
+		this(scope, "X-RateLimit-Limit", "X-RateLimit-Remaining", "X-RateLimit-Reset");
+	}
+
+	/**
+	 * Creates an extractor reading a rate limit of the given scope from the given headers.
+	 * @param scope whose calls the rate limit applies to
+	 * @param limitHeader the header holding the number of calls allowed per window
+	 * @param remainingHeader the header holding the number of calls left in the window
+	 * @param resetHeader the header holding the time the window resets at
+	 */
+	public HeaderRateLimitExtractor(Scope scope, String limitHeader, String remainingHeader, String resetHeader) {
+		Assert.notNull(scope, "The scope property cannot be null");
+		Assert.notNull(remainingHeader, "The remainingHeader property cannot be null");
+		Assert.notNull(resetHeader, "The resetHeader property cannot be null");
+		this.scope = scope;
+		this.limitHeader = limitHeader;
+		this.remainingHeader = remainingHeader;
+		this.resetHeader = resetHeader;
+	}
+
+	public List<RateLimit> extract(HttpHeaders headers) {
+		long remaining = parse(headers.getFirst(remainingHeader));
+		long reset = parse(headers.getFirst(resetHeader));
+		if (remaining < 0 || reset < 0) {
+			return Collections.emptyList();
+		}
+		long limit = limitHeader != null ? parse(headers.getFirst(limitHeader)) : -1;
+		long resetTime = reset >= EPOCH_SECONDS_THRESHOLD ? reset * 1000 : System.currentTimeMillis() + reset * 1000;
+		return Collections.singletonList(new RateLimit(scope, limit, remaining, resetTime));
+	}
+
+	// internal helpers
+
+	private long parse(String value) {
+		if (value == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * Decides how long a request may go unanswered before a second, hedged request is sent; see {@link HedgingRequestInterceptor}.
+ * The delay is a percentile (by default the 95th) of the latencies recently observed, so that only the slowest requests are hedged
+ * and the extra load on the provider stays around the share of requests beyond the percentile.
+ * Until enough latencies have been observed, a fixed initial delay is used.
+ * A hedging policy is meant to be shared by all callers of a provider, so that it learns the provider's latency from all of them.
+ */
+public class HedgingPolicy {
+
+	private static final int MIN_SAMPLES = 20;
+
+	private static final int RECOMPUTE_INTERVAL = 16;
+
+	private final long[] latencies;
+
+	private int latencyCount;
+
+	private int nextLatency;
+
+	private double percentile = 0.95;
+
+	private long initialDelay = 1000;
+
+	private long minDelay = 10;
+
+	private volatile long delay = initialDelay;
+
+	private final AtomicLong hedgedCount = new AtomicLong();
+
+	private final AtomicLong hedgeWinCount = new AtomicLong();
+
+	/**
+	 * Creates a hedging policy computing its delay over the last 1000 latencies observed.
+	 */
+	public HedgingPolicy() {
+		this(1000);
+	}
+
+	/**
+	 * Creates a hedging policy.
+	 * @param windowSize the number of latencies, most recent first, the delay is computed over
+	 */
+	public HedgingPolicy(int windowSize) {
+		Assert.isTrue(windowSize >= MIN_SAMPLES, "The windowSize property must be at least " + MIN_SAMPLES);
+		this.latencies = new long[windowSize];
+	}
+
+	/**
+	 * Sets the percentile of the observed latencies that a request may take before it is hedged. Defaults to 0.95.
+	 * @param percentile the percentile, between 0 (exclusive) and 1 (inclusive)
+	 */
+	public synchronized void setPercentile(double percentile) {
+		Assert.isTrue(percentile > 0 && percentile <= 1, "The percentile property must be between 0 and 1");
+		this.percentile = percentile;
+		recomputeDelay();
+	}
+
+	/**
+	 * Sets the delay (in milliseconds) before hedging used until enough latencies have been observed. Defaults to 1 second.
+	 * @param initialDelay the initial delay in milliseconds
+	 */
+	public synchronized void setInitialDelay(long initialDelay) {
+		Assert.isTrue(initialDelay >= 0, "The initialDelay property cannot be negative");
+		this.initialDelay = initialDelay;
+		recomputeDelay();
+	}
+
+	/**
+	 * Sets the shortest delay (in milliseconds) before hedging, however fast the provider usually answers. Defaults to 10 milliseconds.
+	 * @param minDelay the minimum delay in milliseconds
+	 */
+	public synchronized void setMinDelay(long minDelay) {
+		Assert.isTrue(minDelay >= 0, "The minDelay property cannot be negative");
+		this.minDelay = minDelay;
+		recomputeDelay();
+	}
+
+	/**
+	 * @return how long (in milliseconds) a request may currently go unanswered before it is hedged
+	 */
+	public long getDelay() {
+		return delay;
+	}
+
+	// metrics
+
+	/**
+	 * @return the number of requests hedged
+	 */
+	public long getHedgedCount() {
+		return hedgedCount.get();
+	}
+
+	/**
+	 * @return the number of hedged requests answered first by the hedge
+	 */
+	public long getHedgeWinCount() {
+		return hedgeWinCount.get();
+	}
+
+	// package-private, used by HedgingRequestInterceptor
+
+	synchronized void recordLatency(long latency) {
+		latencies[nextLatency] = latency;
+		nextLatency = (nextLatency + 1) % latencies.length;
+		if (latencyCount < latencies.length) {
+			latencyCount++;
+		}
+		if (latencyCount == MIN_SAMPLES || nextLatency % RECOMPUTE_INTERVAL == 0) {
+			recomputeDelay();
+		}
+	}
+
+	void recordHedge() {
+		hedgedCount.incrementAndGet();
+	}
+
+	void recordHedgeWin() {
+		hedgeWinCount.incrementAndGet();
+	}
+
+	// internal helpers
+
+	private void recomputeDelay() {
+		if (latencyCount < MIN_SAMPLES) {
+			delay = Math.max(minDelay, initialDelay);
+			return;
+		}
+		long[] sorted = Arrays.copyOf(latencies, latencyCount);
+		Arrays.sort(sorted);
+		int index = Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1);
+		delay = Math.max(minDelay, sorted[index]);
+	}
+
+}
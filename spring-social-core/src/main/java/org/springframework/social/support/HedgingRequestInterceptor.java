@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+
+/**
+ * ClientHttpRequestInterceptor implementation that cuts the tail latency of GET requests by hedging them:
+ * if a request has not been answered within the delay given by a {@link HedgingPolicy}, the same request is sent again and whichever answer comes first is used,
+ * unless it is an error answer and the other attempt still answers without error. The other answer is closed as soon as it arrives. Only GET and HEAD requests are hedged, as sending them twice is harmless; other requests go through as they are.
+ * If the first request fails before the delay, the failure is reported without hedging; once hedged, a request fails only if both attempts fail.
+ * The attempts run on the given executor, while the calling thread waits for the answer.
+ * <p>This interceptor must be the last in the chain, after a {@link ResilienceRequestInterceptor} if any, as it executes the request twice from that point on.
+ * Requests retried by a ResilienceRequestInterceptor are not hedged.
+ * A hedge is sent with the headers of the request it duplicates, so requests whose credentials may not be sent twice, such as OAuth 1 signed requests, must not be hedged.
+ * As hedges are sent from the end of the chain, they pass by throttling and bulkhead interceptors; to have them count against the same limits,
+ * see {@link #setRateLimitThrottle(RateLimitThrottle, String)} and {@link #setConcurrencyLimiter(ConcurrencyLimiter)}.</p>
+ */
+public class HedgingRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	private final HedgingPolicy hedgingPolicy;
+
+	private final Executor executor;
+
+	private RateLimitThrottle rateLimitThrottle;
+
+	private String userKey;
+
+	private ConcurrencyLimiter concurrencyLimiter;
+
+	/**
+	 * Creates a hedging interceptor running attempts on the executor shared through {@link SocialTaskExecutors}.
+	 * @param hedgingPolicy the hedging policy of the provider
+	 */
+	public HedgingRequestInterceptor(HedgingPolicy hedgingPolicy) {
+		this(hedgingPolicy, SocialTaskExecutors.getSharedExecutor());
+	}
+
+	/**
+	 * Creates a hedging interceptor.
+	 * @param hedgingPolicy the hedging policy of the provider
+	 * @param executor the executor attempts run on
+	 */
+	public HedgingRequestInterceptor(HedgingPolicy hedgingPolicy, Executor executor) {
+		Assert.notNull(hedgingPolicy, "The hedgingPolicy property cannot be null");
+		Assert.notNull(executor, "The executor property cannot be null");
+		this.hedgingPolicy = hedgingPolicy;
+		this.executor = executor;
+	}
+
+	/**
+	 * Has hedges take a permit of the given throttle, as the requests they duplicate do; a request is then only hedged if a permit is available right away.
+	 * Without it, hedges are extra calls to the provider that the throttle does not know of.
+	 * @param rateLimitThrottle the rate limit throttle of the provider
+	 * @param credentials the credentials the requests are made with (may be null)
+	 */
+	public void setRateLimitThrottle(RateLimitThrottle rateLimitThrottle, String credentials) {
+		Assert.notNull(rateLimitThrottle, "The rateLimitThrottle property cannot be null");
+		this.rateLimitThrottle = rateLimitThrottle;
+		this.userKey = RateLimitThrottle.userKey(credentials);
+	}
+
+	/**
+	 * Has hedges take a slot of the given limiter, as the requests they duplicate do; a request is then only hedged if a slot is available.
+	 * Without it, hedges are calls in flight that the limiter does not know of.
+	 * @param concurrencyLimiter the concurrency limiter of the provider
+	 */
+	public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+		Assert.notNull(concurrencyLimiter, "The concurrencyLimiter property cannot be null");
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		HttpMethod method = request.getMethod();
+		if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+			return execution.execute(request, body);
+		}
+		CompletableFuture<ClientHttpResponse> first = attempt(request, body, execution, false);
+		try {
+			return first.get(hedgingPolicy.getDelay(), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			// hedge below
+		} catch (ExecutionException e) {
+			throw unwrap(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + request.getURI());
+		}
+		if (!acquireHedgePermits()) {
+			return await(first, request);
+		}
+		hedgingPolicy.recordHedge();
+		CompletableFuture<ClientHttpResponse> hedge = attempt(request, body, execution, true);
+		Race race = new Race();
+		first.whenComplete(race::complete);
+		hedge.whenComplete(race::complete);
+		ClientHttpResponse response = await(race.winner, request);
+		if (response == hedge.getNow(null)) {
+			hedgingPolicy.recordHedgeWin();
+		}
+		return response;
+	}
+
+	// internal helpers
+
+	private boolean acquireHedgePermits() {
+		if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire()) {
+			return false;
+		}
+		if (rateLimitThrottle != null && !rateLimitThrottle.tryAcquire(userKey)) {
+			if (concurrencyLimiter != null) {
+				concurrencyLimiter.onIgnore();
+			}
+			return false;
+		}
+		return true;
+	}
+
+	private CompletableFuture<ClientHttpResponse> attempt(HttpRequest request, byte[] body, ClientHttpRequestExecution execution, boolean hedge) {
+		return CompletableFuture.supplyAsync(Deadline.bindCurrent(() -> {
+			long start = System.currentTimeMillis();
+			try {
+				ClientHttpResponse response;
+				if (hedge && concurrencyLimiter != null) {
+					response = BulkheadRequestInterceptor.execute(concurrencyLimiter, request, body, execution);
+				} else {
+					response = execution.execute(request, body);
+				}
+				hedgingPolicy.recordLatency(System.currentTimeMillis() - start);
+				if (hedge && rateLimitThrottle != null) {
+					rateLimitThrottle.update(userKey, response.getRawStatusCode(), response.getHeaders());
+				}
+				return response;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}), executor);
+	}
+
+	private ClientHttpResponse await(CompletableFuture<ClientHttpResponse> response, HttpRequest request) throws IOException {
+		try {
+			return response.get();
+		} catch (ExecutionException e) {
+			throw unwrap(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + request.getURI());
+		}
+	}
+
+	private IOException unwrap(Throwable failure) {
+		if (failure instanceof CompletionException && failure.getCause() != null) {
+			failure = failure.getCause();
+		}
+		if (failure instanceof UncheckedIOException) {
+			return ((UncheckedIOException) failure).getCause();
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		return new IOException(failure);
+	}
+
+	// picks the first answer without an error status; failing that, the first error answer; failing that, the first failure
+	private static class Race {
+
+		private final CompletableFuture<ClientHttpResponse> winner = new CompletableFuture<ClientHttpResponse>();
+
+		private int pending = 2;
+
+		private ClientHttpResponse errorResponse;
+
+		private Throwable failure;
+
+		public synchronized void complete(ClientHttpResponse response, Throwable failure) {
+			pending--;
+			if (response != null) {
+				if (winner.isDone() || errorResponse != null && isError(response)) {
+					response.close();
+				} else if (isError(response)) {
+					errorResponse = response;
+				} else {
+					winner.complete(response);
+					if (errorResponse != null) {
+						errorResponse.close();
+						errorResponse = null;
+					}
+				}
+			} else if (this.failure == null) {
+				this.failure = failure;
+			}
+			if (pending == 0 && !winner.isDone()) {
+				if (errorResponse != null) {
+					winner.complete(errorResponse);
+				} else {
+					winner.completeExceptionally(this.failure);
+				}
+			}
+		}
+
+		private boolean isError(ClientHttpResponse response) {
+			try {
+				return response.getRawStatusCode() >= 400;
+			} catch (IOException e) {
+				return true;
+			}
+		}
+
+	}
+
+}
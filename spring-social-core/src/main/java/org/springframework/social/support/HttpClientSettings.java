@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+/**
+ * Settings of the pooled HTTP transport created by {@link ClientHttpRequestFactorySelector}.
+ * All durations are in milliseconds; a timeout of -1 leaves it to the system default (typically no timeout).
+ * @see ClientHttpRequestFactorySelector#setHttpClientSettings(HttpClientSettings)
+ */
+public class HttpClientSettings {
+
+	private HttpClientType clientType = HttpClientType.AUTO;
+
+	private int maxTotal = 200;
+
+	private int maxPerRoute = 20;
+
+	private int connectTimeout = -1;
+
+	private int readTimeout = -1;
+
+	private int connectionRequestTimeout = -1;
+
+	private long maxIdleTime = 30 * 1000;
+
+	private long keepAlive = 30 * 1000;
+
+	/**
+	 * @return the HTTP client library to use
+	 */
+	public HttpClientType getClientType() {
+		return clientType;
+	}
+
+	/**
+	 * Sets the HTTP client library to use. Defaults to {@link HttpClientType#AUTO}.
+	 * @param clientType the HTTP client library
+	 */
+	public void setClientType(HttpClientType clientType) {
+		this.clientType = clientType;
+	}
+
+	/**
+	 * @return the maximum number of pooled connections
+	 */
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	/**
+	 * Sets the maximum number of pooled connections. Defaults to 200.
+	 * With OkHttp, this is the maximum number of idle connections kept in the pool.
+	 * @param maxTotal the maximum number of pooled connections
+	 */
+	public void setMaxTotal(int maxTotal) {
+		this.maxTotal = maxTotal;
+	}
+
+	/**
+	 * @return the maximum number of pooled connections per route (host)
+	 */
+	public int getMaxPerRoute() {
+		return maxPerRoute;
+	}
+
+	/**
+	 * Sets the maximum number of pooled connections per route (host). Defaults to 20.
+	 * @param maxPerRoute the maximum number of pooled connections per route
+	 */
+	public void setMaxPerRoute(int maxPerRoute) {
+		this.maxPerRoute = maxPerRoute;
+	}
+
+	/**
+	 * @return the timeout for establishing a connection
+	 */
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * Sets the timeout for establishing a connection. Defaults to -1 (system default).
+	 * @param connectTimeout the connect timeout in milliseconds
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * @return the timeout for waiting on data from an established connection
+	 */
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * Sets the timeout for waiting on data from an established connection. Defaults to -1 (system default).
+	 * @param readTimeout the read timeout in milliseconds
+	 */
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * @return the timeout for acquiring a connection from the pool
+	 */
+	public int getConnectionRequestTimeout() {
+		return connectionRequestTimeout;
+	}
+
+	/**
+	 * Sets the timeout for acquiring a connection from the pool once the pool limits have been reached. Defaults to -1 (wait indefinitely).
+	 * Only applies to Apache HttpComponents.
+	 * @param connectionRequestTimeout the pool acquire timeout in milliseconds
+	 */
+	public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+		this.connectionRequestTimeout = connectionRequestTimeout;
+	}
+
+	/**
+	 * @return how long a pooled connection may stay idle before it is evicted
+	 */
+	public long getMaxIdleTime() {
+		return maxIdleTime;
+	}
+
+	/**
+	 * Sets how long a pooled connection may stay idle before it is evicted by a background thread. Defaults to 30 seconds; 0 disables eviction.
+	 * Applies to Apache HttpComponents and OkHttp (which always evicts, after 5 minutes if eviction is disabled).
+	 * @param maxIdleTime the maximum idle time in milliseconds
+	 */
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	/**
+	 * @return how long a connection is kept alive when the server does not say
+	 */
+	public long getKeepAlive() {
+		return keepAlive;
+	}
+
+	/**
+	 * Sets how long a connection is kept alive for reuse when the server's response carries no Keep-Alive timeout. Defaults to 30 seconds; -1 keeps it alive indefinitely.
+	 * Only applies to Apache HttpComponents.
+	 * @param keepAlive the keep-alive duration in milliseconds
+	 */
+	public void setKeepAlive(long keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+/**
+ * The HTTP client libraries {@link ClientHttpRequestFactorySelector} can build request factories on.
+ * @see HttpClientSettings#setClientType(HttpClientType)
+ */
+public enum HttpClientType {
+
+	/**
+	 * Apache HttpComponents HttpClient if it is in the classpath, else the JDK's HttpURLConnection.
+	 */
+	AUTO,
+
+	/**
+	 * Apache HttpComponents HttpClient (HTTP/1.1 with a pool of persistent connections).
+	 */
+	HTTP_COMPONENTS,
+
+	/**
+	 * OkHttp 3, which negotiates HTTP/2 with providers that support it and multiplexes concurrent requests to a host over a single connection.
+	 * HTTP/2 is negotiated through TLS ALPN, which requires a JVM supporting it; otherwise OkHttp falls back to HTTP/1.1.
+	 */
+	OK_HTTP,
+
+	/**
+	 * The JDK's HttpURLConnection.
+	 */
+	JDK
+
+}
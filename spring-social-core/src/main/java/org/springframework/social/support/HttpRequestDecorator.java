@@ -42,6 +42,44 @@ public class HttpRequestDecorator extends HttpRequestWrapper {
 	public void addParameter(String name, String value) {
 		parameters.add(name, value);
 	}
+
+	/**
+	 * Sets a header on the given request.
+	 * The request's own headers are modified in place when they are writable, as they are for requests passing through an interceptor chain;
+	 * otherwise the request is decorated with a copy of its headers.
+	 * @param request the request
+	 * @param name the header name
+	 * @param value the header value
+	 * @return the request carrying the header (either the given request or a decorator of it)
+	 */
+	public static HttpRequest setHeader(HttpRequest request, String name, String value) {
+		try {
+			request.getHeaders().set(name, value);
+			return request;
+		} catch (UnsupportedOperationException readOnlyHeaders) {
+			HttpRequestDecorator decorator = new HttpRequestDecorator(request);
+			decorator.getHeaders().set(name, value);
+			return decorator;
+		}
+	}
+
+	/**
+	 * Adds a header value to the given request, in the same way as {@link #setHeader(HttpRequest, String, String)}.
+	 * @param request the request
+	 * @param name the header name
+	 * @param value the header value
+	 * @return the request carrying the header (either the given request or a decorator of it)
+	 */
+	public static HttpRequest addHeader(HttpRequest request, String name, String value) {
+		try {
+			request.getHeaders().add(name, value);
+			return request;
+		} catch (UnsupportedOperationException readOnlyHeaders) {
+			HttpRequestDecorator decorator = new HttpRequestDecorator(request);
+			decorator.getHeaders().add(name, value);
+			return decorator;
+		}
+	}
 	
 	public HttpHeaders getHeaders() {
 		if (!existingHeadersAdded) {
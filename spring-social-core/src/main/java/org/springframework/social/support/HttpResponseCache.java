@@ -0,0 +1,278 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.Assert;
+
+/**
+ * A bounded, in-memory cache of API responses, used by {@link CachingRequestInterceptor}.
+ * The cache is bounded by the total number of bytes held by its responses (bodies, headers and keys) rather than by a number of entries,
+ * since provider responses vary from a few bytes to many kilobytes; least recently used responses are evicted first once the budget is exceeded.
+ * A cache may be shared by any number of API bindings: each binding's responses are partitioned by its credentials.
+ */
+public class HttpResponseCache {
+
+	private static final long DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+
+	private static final int DEFAULT_MAX_ENTRY_SIZE = 512 * 1024;
+
+	// rough per-entry cost of the map entry, the response object and its header map
+	private static final int ENTRY_OVERHEAD = 256;
+
+	private final long maxSize;
+
+	private int maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final LinkedHashMap<String, CachedResponse> responses = new LinkedHashMap<String, CachedResponse>(64, 0.75f, true);
+
+	private long size;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong revalidatedCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * Creates a response cache holding up to 16MB of responses.
+	 */
+	public HttpResponseCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Creates a response cache holding up to the given number of bytes of responses.
+	 * @param maxSize the maximum size of the cache in bytes
+	 */
+	public HttpResponseCache(long maxSize) {
+		Assert.isTrue(maxSize > 0, "The maxSize property must be positive");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Sets the size (in bytes) of the largest response body that is cached. Larger responses are passed through uncached. Defaults to 512KB.
+	 * @param maxEntrySize the maximum size of a cached response body in bytes
+	 */
+	public void setMaxEntrySize(int maxEntrySize) {
+		Assert.isTrue(maxEntrySize > 0, "The maxEntrySize property must be positive");
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	/**
+	 * @return the size of the largest response body that is cached
+	 */
+	public int getMaxEntrySize() {
+		return maxEntrySize;
+	}
+
+	/**
+	 * Removes all responses from the cache.
+	 */
+	public void clear() {
+		lock.lock();
+		try {
+			responses.clear();
+			size = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// metrics
+
+	/**
+	 * @return the number of requests answered from the cache without contacting the provider
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of requests answered from the cache after the provider confirmed the cached response was still current (304 Not Modified)
+	 */
+	public long getRevalidatedCount() {
+		return revalidatedCount.get();
+	}
+
+	/**
+	 * @return the number of cacheable requests that had to be answered by a full response from the provider
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of responses evicted to stay within the size budget
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * @return the fraction of cacheable requests answered with a cached body, with or without revalidation (0 if there were no requests)
+	 */
+	public double getHitRatio() {
+		long hits = hitCount.get() + revalidatedCount.get();
+		long total = hits + missCount.get();
+		return total > 0 ? (double) hits / total : 0;
+	}
+
+	/**
+	 * @return the number of responses currently cached
+	 */
+	public int getResponseCount() {
+		lock.lock();
+		try {
+			return responses.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the current size of the cache in bytes
+	 */
+	public long getSize() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// package-private operations for CachingRequestInterceptor
+
+	CachedResponse get(String key) {
+		lock.lock();
+		try {
+			return responses.get(key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void put(String key, CachedResponse response) {
+		long weight = weigh(key, response);
+		if (weight > maxSize) {
+			return;
+		}
+		lock.lock();
+		try {
+			CachedResponse previous = responses.put(key, response);
+			if (previous != null) {
+				size -= weigh(key, previous);
+			}
+			size += weight;
+			for (Iterator<Entry<String, CachedResponse>> eldest = responses.entrySet().iterator(); size > maxSize && eldest.hasNext();) {
+				Entry<String, CachedResponse> entry = eldest.next();
+				size -= weigh(entry.getKey(), entry.getValue());
+				eldest.remove();
+				evictionCount.incrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void recordHit() {
+		hitCount.incrementAndGet();
+	}
+
+	void recordRevalidation() {
+		revalidatedCount.incrementAndGet();
+	}
+
+	void recordMiss() {
+		missCount.incrementAndGet();
+	}
+
+	// internal helpers
+
+	private long weigh(String key, CachedResponse response) {
+		return ENTRY_OVERHEAD + 2L * key.length() + response.weight;
+	}
+
+	/**
+	 * A cached response: its status, headers and body, with the validators and the time until which it may be used without revalidation.
+	 */
+	static final class CachedResponse {
+
+		final int statusCode;
+
+		final String statusText;
+
+		final HttpHeaders headers;
+
+		final byte[] body;
+
+		final long expiresAt;
+
+		final int weight;
+
+		CachedResponse(int statusCode, String statusText, HttpHeaders headers, byte[] body, long expiresAt) {
+			this.statusCode = statusCode;
+			this.statusText = statusText;
+			HttpHeaders copy = new HttpHeaders();
+			copy.putAll(headers);
+			this.headers = HttpHeaders.readOnlyHttpHeaders(copy);
+			this.body = body;
+			this.expiresAt = expiresAt;
+			this.weight = body.length + headerWeight(copy);
+		}
+
+		CachedResponse withExpiresAt(long expiresAt) {
+			return new CachedResponse(statusCode, statusText, headers, body, expiresAt);
+		}
+
+		boolean isFresh(long now) {
+			return now < expiresAt;
+		}
+
+		String getETag() {
+			return headers.getETag();
+		}
+
+		String getLastModified() {
+			return headers.getFirst(HttpHeaders.LAST_MODIFIED);
+		}
+
+		private static int headerWeight(HttpHeaders headers) {
+			int weight = 0;
+			for (Entry<String, List<String>> header : headers.entrySet()) {
+				weight += 2 * header.getKey().length();
+				for (String value : header.getValue()) {
+					weight += 2 * value.length();
+				}
+			}
+			return weight;
+		}
+
+	}
+
+}
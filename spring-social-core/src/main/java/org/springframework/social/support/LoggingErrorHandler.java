@@ -15,38 +15,160 @@
  */
 package org.springframework.social.support;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
 import org.springframework.web.client.DefaultResponseErrorHandler;
 
+/**
+ * {@link DefaultResponseErrorHandler} that logs the body of error responses.
+ * The body is read once, through a per-thread buffer, and no more than its first {@link #setMaxCapturedBodySize(int) maxCapturedBodySize} bytes are kept:
+ * that capture is handed on to {@link #handleError(ClientHttpResponse, byte[])}, so a larger body reaches the exceptions raised truncated.
+ * Of the capture, only the first {@link #setMaxBodySize(int) maxBodySize} bytes are logged.
+ * Client errors are logged at WARN level and server errors at ERROR level; to keep a provider outage from flooding the logs,
+ * only a sample of error responses is logged and no more than {@link #setMaxLogsPerSecond(int) maxLogsPerSecond} are logged per second.
+ */
 public class LoggingErrorHandler extends DefaultResponseErrorHandler {
 
 	private static final Log LOG = LogFactory.getLog(LoggingErrorHandler.class);
-	
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>();
+
+	private int maxBodySize = 8 * 1024;
+
+	private int maxCapturedBodySize = 64 * 1024;
+
+	private int maxLogsPerSecond = 10;
+
+	private double sampleRate = 1.0;
+
+	private final AtomicLong currentSecond = new AtomicLong();
+
+	private final AtomicInteger logsThisSecond = new AtomicInteger();
+
+	private final AtomicLong suppressedCount = new AtomicLong();
+
+	/**
+	 * Sets the maximum number of bytes of an error response body that are logged. Defaults to 8 KB.
+	 * @param maxBodySize the maximum body size in bytes
+	 */
+	public void setMaxBodySize(int maxBodySize) {
+		Assert.isTrue(maxBodySize >= 0, "The maxBodySize property cannot be negative");
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * Sets the maximum number of bytes of an error response body that are captured and handed on to the exceptions raised;
+	 * the rest of the body is never read. Defaults to 64 KB.
+	 * @param maxCapturedBodySize the maximum captured body size in bytes
+	 */
+	public void setMaxCapturedBodySize(int maxCapturedBodySize) {
+		Assert.isTrue(maxCapturedBodySize >= 0, "The maxCapturedBodySize property cannot be negative");
+		this.maxCapturedBodySize = maxCapturedBodySize;
+	}
+
+	/**
+	 * Sets the maximum number of error responses logged per second. Defaults to 10.
+	 * @param maxLogsPerSecond the maximum number of error responses logged per second
+	 */
+	public void setMaxLogsPerSecond(int maxLogsPerSecond) {
+		Assert.isTrue(maxLogsPerSecond >= 0, "The maxLogsPerSecond property cannot be negative");
+		this.maxLogsPerSecond = maxLogsPerSecond;
+	}
+
+	/**
+	 * Sets the fraction (between 0 and 1) of error responses that are logged. Defaults to 1, logging all of them (within the rate limit).
+	 * @param sampleRate the fraction of error responses to log
+	 */
+	public void setSampleRate(double sampleRate) {
+		Assert.isTrue(sampleRate >= 0 && sampleRate <= 1, "The sampleRate property must be between 0 and 1");
+		this.sampleRate = sampleRate;
+	}
+
 	@Override
 	public void handleError(ClientHttpResponse response) throws IOException {
-		
-		BufferingClientHttpResponse bufferedResponse = new BufferingClientHttpResponse(response);
-		
-		InputStream bodyStream = bufferedResponse.getBody();
-		BufferedReader reader = new BufferedReader(new InputStreamReader(bodyStream));
-		StringBuffer buffer = new StringBuffer();
-		while(reader.ready()) {
-			buffer.append(reader.readLine());
+		InputStream in = response.getBody();
+		byte[] body = in != null ? capture(in) : new byte[0];
+		boolean truncated = in != null && body.length == maxCapturedBodySize && in.read() != -1;
+		int statusCode = response.getRawStatusCode();
+		boolean serverError = statusCode >= 500;
+		if ((serverError ? LOG.isErrorEnabled() : LOG.isWarnEnabled()) && shouldLog()) {
+			int logged = Math.min(body.length, maxBodySize);
+			String message = "Response " + statusCode + " body: " + new String(body, 0, logged, getCharset(response)) + (logged < body.length || truncated ? "..." : "");
+			long suppressed = suppressedCount.getAndSet(0);
+			if (suppressed > 0) {
+				message += " (" + suppressed + " error responses not logged)";
+			}
+			if (serverError) {
+				LOG.error(message);
+			} else {
+				LOG.warn(message);
+			}
+		}
+		handleError(response, body);
+	}
+
+	/**
+	 * Handles the error response once its body has been captured.
+	 * By default, raises the exceptions of {@link DefaultResponseErrorHandler}, carrying the captured body.
+	 * Subclasses may override to map the error to a more specific exception, such as a {@link org.springframework.social.SocialException}, using the captured body
+	 * rather than reading the response again.
+	 * @param response the error response
+	 * @param body the captured response body, at most maxCapturedBodySize bytes long and truncated if the response body was longer
+	 * @throws IOException in case of I/O errors
+	 */
+	protected void handleError(ClientHttpResponse response, byte[] body) throws IOException {
+		super.handleError(new BufferingClientHttpResponse(response, body));
+	}
+
+	// internal helpers
+
+	private byte[] capture(InputStream in) throws IOException {
+		byte[] buffer = BUFFER.get();
+		if (buffer == null || buffer.length != maxCapturedBodySize) {
+			buffer = new byte[maxCapturedBodySize];
+			BUFFER.set(buffer);
+		}
+		int length = 0;
+		int read;
+		while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+		}
+		return Arrays.copyOf(buffer, length);
+	}
+
+	private boolean shouldLog() {
+		if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+			suppressedCount.incrementAndGet();
+			return false;
+		}
+		long second = System.currentTimeMillis() / 1000;
+		long current = currentSecond.get();
+		if (second != current && currentSecond.compareAndSet(current, second)) {
+			logsThisSecond.set(0);
 		}
-		
-		if (LOG.isErrorEnabled()) {
-			LOG.error("Response body: " + buffer.toString());
+		if (logsThisSecond.incrementAndGet() > maxLogsPerSecond) {
+			suppressedCount.incrementAndGet();
+			return false;
 		}
-		
-		
-		super.handleError(bufferedResponse);
+		return true;
+	}
+
+	private Charset getCharset(ClientHttpResponse response) {
+		MediaType contentType = response.getHeaders().getContentType();
+		return contentType != null && contentType.getCharset() != null ? contentType.getCharset() : UTF8;
 	}
 	
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.util.Assert;
+
+/**
+ * Holds the message converter chains of API bindings that share their converters, one chain per binding class.
+ * A chain is built once, the first time a binding of a given class is constructed, and handed to every later binding of that class.
+ * Sharing converters shares their state, most notably the ObjectMapper of a JSON converter along with its warmed-up serializer and deserializer caches,
+ * so shared converters must not be reconfigured by individual bindings.
+ */
+public final class MessageConverterRegistry {
+
+	private static final ConcurrentMap<Class<?>, List<HttpMessageConverter<?>>> MESSAGE_CONVERTERS = new ConcurrentHashMap<Class<?>, List<HttpMessageConverter<?>>>();
+
+	private MessageConverterRegistry() {
+	}
+
+	/**
+	 * Returns the message converters shared by bindings of the given class, building them with the given factory the first time the class is seen.
+	 * @param bindingClass the API binding class
+	 * @param messageConverterFactory creates the message converter chain, typically the binding's getMessageConverters() method
+	 * @return an unmodifiable list of the shared message converters
+	 */
+	public static List<HttpMessageConverter<?>> getMessageConverters(Class<?> bindingClass, Supplier<List<HttpMessageConverter<?>>> messageConverterFactory) {
+		Assert.notNull(bindingClass, "The bindingClass property cannot be null");
+		List<HttpMessageConverter<?>> messageConverters = MESSAGE_CONVERTERS.get(bindingClass);
+		if (messageConverters == null) {
+			List<HttpMessageConverter<?>> newMessageConverters = Collections.unmodifiableList(new ArrayList<HttpMessageConverter<?>>(messageConverterFactory.get()));
+			messageConverters = MESSAGE_CONVERTERS.putIfAbsent(bindingClass, newMessageConverters);
+			if (messageConverters == null) {
+				messageConverters = newMessageConverters;
+			}
+		}
+		return messageConverters;
+	}
+
+	/**
+	 * Discards the message converters shared by bindings of the given class; the next binding constructed builds them anew.
+	 * @param bindingClass the API binding class
+	 */
+	public static void evict(Class<?> bindingClass) {
+		MESSAGE_CONVERTERS.remove(bindingClass);
+	}
+
+	/**
+	 * Discards all shared message converters.
+	 */
+	public static void clear() {
+		MESSAGE_CONVERTERS.clear();
+	}
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+/**
+ * Strategy for fetching one page of a paged provider endpoint; see {@link PagedResults}.
+ * Typically implemented by an API binding with a call to its RestTemplate.
+ * @param <P> the type of the pages
+ */
+public interface PageFetcher<P> {
+
+	/**
+	 * Fetches the page at the given cursor.
+	 * @param cursor the cursor (or offset) of the page, as extracted by the {@link CursorExtractor} from the previous page; null for the first page
+	 * @return the page
+	 */
+	P fetchPage(String cursor);
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.springframework.util.Assert;
+
+/**
+ * Exposes the items of a paged provider endpoint (such as a friend or follower list) as a lazy {@link Iterator} or {@link Stream}, fetching pages as they are needed
+ * instead of loading every page into memory up front. Pages are fetched by a {@link PageFetcher}, split into items by an item extractor,
+ * and followed from one to the next by a {@link CursorExtractor}, so that both cursor-paged and offset-paged endpoints are supported.
+ * While the items of a page are consumed, the following pages are fetched in the background, up to the configured number of pages ahead;
+ * memory use is thus bounded by that many pages, however long the list.
+ * <pre>
+ * PagedResults&lt;FollowerPage, Profile&gt; followers = new PagedResults&lt;&gt;(this::fetchFollowerPage, FollowerPage::getProfiles, (page, cursor) -&gt; page.getNextCursor());
+ * try (Stream&lt;Profile&gt; stream = followers.stream()) {
+ *     stream.filter(Profile::isVerified).forEach(this::process);
+ * }
+ * </pre>
+ * Pages fetched in the background keep to the {@link Deadline} of the thread consuming the items, if any, as of when their fetch was scheduled.
+ * Each call to {@link #iterator()} or {@link #stream()} goes through the pages afresh.
+ * @param <P> the type of the pages
+ * @param <T> the type of the items
+ */
+public class PagedResults<P, T> implements Iterable<T> {
+
+	private final PageFetcher<P> pageFetcher;
+
+	private final Function<? super P, ? extends Iterable<T>> itemExtractor;
+
+	private final CursorExtractor<? super P> cursorExtractor;
+
+	private int prefetchPages = 1;
+
+	private Executor executor = SocialTaskExecutors.getSharedExecutor();
+
+	/**
+	 * Creates paged results.
+	 * @param pageFetcher the fetcher of pages
+	 * @param itemExtractor the function extracting the items of a page
+	 * @param cursorExtractor the extractor of the cursor of the next page
+	 */
+	public PagedResults(PageFetcher<P> pageFetcher, Function<? super P, ? extends Iterable<T>> itemExtractor, CursorExtractor<? super P> cursorExtractor) {
+		Assert.notNull(pageFetcher, "The pageFetcher property cannot be null");
+		Assert.notNull(itemExtractor, "The itemExtractor property cannot be null");
+		Assert.notNull(cursorExtractor, "The cursorExtractor property cannot be null");
+		this.pageFetcher = pageFetcher;
+		this.itemExtractor = itemExtractor;
+		this.cursorExtractor = cursorExtractor;
+	}
+
+	/**
+	 * Sets how many pages are fetched in the background ahead of the page being consumed. Defaults to 1.
+	 * With 0, pages are fetched by the consuming thread when it runs out of items.
+	 * @param prefetchPages the number of pages to prefetch
+	 */
+	public void setPrefetchPages(int prefetchPages) {
+		Assert.isTrue(prefetchPages >= 0, "The prefetchPages property cannot be negative");
+		this.prefetchPages = prefetchPages;
+	}
+
+	/**
+	 * Sets the executor pages are prefetched on. Defaults to the executor shared through {@link SocialTaskExecutors}.
+	 * @param executor the executor
+	 */
+	public void setExecutor(Executor executor) {
+		Assert.notNull(executor, "The executor property cannot be null");
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns an iterator over the items, fetching the first page on first use.
+	 * The iterator may be cast to {@link Closeable} to stop prefetching if it is abandoned before the end.
+	 * @return an iterator over the items
+	 */
+	public Iterator<T> iterator() {
+		return new PageIterator();
+	}
+
+	/**
+	 * Returns a sequential stream of the items, fetching the first page when the stream is consumed.
+	 * Closing the stream stops prefetching if it is abandoned before the end.
+	 * @return a stream of the items
+	 */
+	public Stream<T> stream() {
+		PageIterator iterator = new PageIterator();
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close);
+	}
+
+	/**
+	 * Creates a cursor extractor for offset-paged endpoints: the cursor of a page is the offset of its first item, as a String, and a page with fewer items than the page size is the last one.
+	 * @param pageSize the number of items per page
+	 * @param itemExtractor the function extracting the items of a page
+	 * @param <P> the type of the pages
+	 * @return the cursor extractor
+	 */
+	public static <P> CursorExtractor<P> offsetCursor(int pageSize, Function<? super P, ? extends Collection<?>> itemExtractor) {
+		Assert.isTrue(pageSize > 0, "The pageSize property must be positive");
+		Assert.notNull(itemExtractor, "The itemExtractor property cannot be null");
+		return (page, cursor) -> {
+			int count = itemExtractor.apply(page).size();
+			return count < pageSize ? null : String.valueOf((cursor != null ? Long.parseLong(cursor) : 0) + count);
+		};
+	}
+
+	private class PageIterator implements Iterator<T>, Closeable {
+
+		private final Deque<CompletableFuture<Fetched<P>>> ahead = new ArrayDeque<CompletableFuture<Fetched<P>>>();
+
+		private CompletableFuture<Fetched<P>> last;
+
+		private Iterator<T> items = Collections.<T>emptyIterator();
+
+		private boolean finished;
+
+		public boolean hasNext() {
+			while (!items.hasNext()) {
+				if (finished) {
+					return false;
+				}
+				Fetched<P> fetched = takePage();
+				if (fetched == null) {
+					finished = true;
+					return false;
+				}
+				Iterable<T> pageItems = itemExtractor.apply(fetched.page);
+				items = pageItems != null ? pageItems.iterator() : Collections.<T>emptyIterator();
+			}
+			return true;
+		}
+
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return items.next();
+		}
+
+		public void close() {
+			finished = true;
+			items = Collections.<T>emptyIterator();
+			for (CompletableFuture<Fetched<P>> page : ahead) {
+				page.cancel(false);
+			}
+			ahead.clear();
+		}
+
+		private Fetched<P> takePage() {
+			if (ahead.isEmpty()) {
+				schedule(false);
+			}
+			Fetched<P> fetched = await(ahead.poll());
+			if (fetched != null) {
+				while (ahead.size() < prefetchPages) {
+					schedule(true);
+				}
+			}
+			return fetched;
+		}
+
+		private void schedule(boolean inBackground) {
+			CompletableFuture<Fetched<P>> next;
+			if (inBackground) {
+				// bound to the consumer's deadline, which the executor's threads do not otherwise have
+				next = last == null ? CompletableFuture.supplyAsync(Deadline.bindCurrent(() -> fetch(null)), executor)
+						: last.thenApplyAsync(Deadline.bindCurrent(this::fetchNext), executor);
+			} else {
+				next = CompletableFuture.completedFuture(last == null ? fetch(null) : fetchNext(await(last)));
+			}
+			ahead.add(next);
+			last = next;
+		}
+
+		// null once there are no more pages
+		private Fetched<P> fetchNext(Fetched<P> previous) {
+			if (previous == null) {
+				return null;
+			}
+			String cursor = cursorExtractor.extractNextCursor(previous.page, previous.cursor);
+			return cursor != null ? fetch(cursor) : null;
+		}
+
+		private Fetched<P> fetch(String cursor) {
+			return new Fetched<P>(pageFetcher.fetchPage(cursor), cursor);
+		}
+
+		private Fetched<P> await(CompletableFuture<Fetched<P>> page) {
+			try {
+				return page.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+
+	}
+
+	private static class Fetched<P> {
+
+		private final P page;
+
+		private final String cursor;
+
+		public Fetched(P page, String cursor) {
+			this.page = page;
+			this.cursor = cursor;
+		}
+
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * A response whose body has been read in part, handed on with a body made of the bytes already read followed by the rest, read as it is consumed.
+ * Used by interceptors that buffer bodies up to a size, to pass larger ones on without holding them in memory.
+ */
+class PrefixedClientHttpResponse implements ClientHttpResponse {
+
+	private static final int CHUNK_SIZE = 8192;
+
+	private final ClientHttpResponse response;
+
+	private final InputStream body;
+
+	PrefixedClientHttpResponse(ClientHttpResponse response, byte[] prefix, InputStream rest) {
+		this.response = response;
+		this.body = new SequenceInputStream(new ByteArrayInputStream(prefix), rest);
+	}
+
+	public HttpStatus getStatusCode() throws IOException {
+		return response.getStatusCode();
+	}
+
+	public int getRawStatusCode() throws IOException {
+		return response.getRawStatusCode();
+	}
+
+	public String getStatusText() throws IOException {
+		return response.getStatusText();
+	}
+
+	public HttpHeaders getHeaders() {
+		return response.getHeaders();
+	}
+
+	public InputStream getBody() {
+		return body;
+	}
+
+	public void close() {
+		response.close();
+	}
+
+	/**
+	 * Reads a stream up to the given number of bytes, or to its end if that comes first.
+	 * @param in the stream to read
+	 * @param maxBytes the maximum number of bytes to read
+	 * @return the bytes read
+	 * @throws IOException if the stream cannot be read
+	 */
+	static byte[] readAtMost(InputStream in, int maxBytes) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.min(maxBytes, CHUNK_SIZE));
+		byte[] chunk = new byte[Math.min(maxBytes, CHUNK_SIZE)];
+		int remaining = maxBytes;
+		while (remaining > 0) {
+			int n = in.read(chunk, 0, Math.min(remaining, chunk.length));
+			if (n == -1) {
+				break;
+			}
+			bytes.write(chunk, 0, n);
+			remaining -= n;
+		}
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * The resources the API bindings of a provider share to make their calls: the request factory they send requests with,
+ * and the response cache, request coalescer, rate limit throttle, concurrency limiter, response compression, resilience interceptor and hedging policy
+ * their requests go through. All of them are optional and unused unless set.
+ * A policy is typically created once per provider and handed to the constructor of each of its bindings,
+ * which installs its interceptors, in the order they must run in, around the interceptor adding the binding's credentials.
+ * A policy should be fully configured before it is handed to a binding: changes made later do not reach bindings created earlier.
+ * @see org.springframework.social.oauth1.AbstractOAuth1ApiBinding
+ * @see org.springframework.social.oauth2.AbstractOAuth2ApiBinding
+ */
+public class ProviderClientPolicy {
+
+	private String sharedRequestFactoryKey;
+
+	private HttpResponseCache responseCache;
+
+	private RequestCoalescer requestCoalescer;
+
+	private RateLimitThrottle rateLimitThrottle;
+
+	private ConcurrencyLimiter concurrencyLimiter;
+
+	private ResponseCompression responseCompression;
+
+	private ResilienceRequestInterceptor resilienceInterceptor;
+
+	private HedgingPolicy hedgingPolicy;
+
+	/**
+	 * Sets the key under which bindings share a single request factory; if not set, each binding creates its own.
+	 * Bindings sharing a key (typically the provider id) share one HTTP client and its connection pool, so that keep-alive connections
+	 * and TLS sessions are reused across users. Credentials are unaffected: they are applied to each request by each binding's own interceptor.
+	 * @param sharedRequestFactoryKey the shared request factory key (may be null)
+	 * @see ClientHttpRequestFactorySelector#getSharedRequestFactory(String)
+	 */
+	public void setSharedRequestFactoryKey(String sharedRequestFactoryKey) {
+		this.sharedRequestFactoryKey = sharedRequestFactoryKey;
+	}
+
+	/**
+	 * Sets the cache responses to GET requests are kept in; if not set, responses are not cached.
+	 * Responses are cached and revalidated according to their ETag, Last-Modified and Cache-Control headers, and kept apart by the credentials
+	 * of the binding they were received by; see {@link CachingRequestInterceptor}.
+	 * @param responseCache the response cache (may be null)
+	 */
+	public void setResponseCache(HttpResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	/**
+	 * Sets the coalescer through which identical GET requests in flight at the same moment are sent once; if not set, requests are not coalesced.
+	 * A GET request identical to one already in flight (same URL, credentials and Accept header) waits for that request's response
+	 * instead of being sent; see {@link CoalescingRequestInterceptor}.
+	 * @param requestCoalescer the request coalescer (may be null)
+	 */
+	public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+		this.requestCoalescer = requestCoalescer;
+	}
+
+	/**
+	 * Sets the throttle pacing requests according to the provider's rate limits; if not set, requests are not throttled.
+	 * Shared by all bindings of the provider, the throttle tracks the application's rate limit as well as each user's; see {@link RateLimitThrottle}.
+	 * @param rateLimitThrottle the rate limit throttle (may be null)
+	 */
+	public void setRateLimitThrottle(RateLimitThrottle rateLimitThrottle) {
+		this.rateLimitThrottle = rateLimitThrottle;
+	}
+
+	/**
+	 * Sets the limiter keeping the number of requests in flight within an adaptive limit; if not set, requests are not limited.
+	 * Requests beyond the limit are rejected with a {@link org.springframework.social.ConcurrencyLimitExceededException}; see {@link BulkheadRequestInterceptor}.
+	 * A limiter is best combined with a request factory of the provider's own (see {@link #setSharedRequestFactoryKey(String)}).
+	 * @param concurrencyLimiter the concurrency limiter (may be null)
+	 */
+	public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * Sets the response compression negotiating compressed responses; if not set, responses are received as the transport negotiates them.
+	 * Requests then ask for gzip or deflate responses, which are decoded as they are read; see {@link CompressionRequestInterceptor}.
+	 * @param responseCompression the response compression (may be null)
+	 */
+	public void setResponseCompression(ResponseCompression responseCompression) {
+		this.responseCompression = responseCompression;
+	}
+
+	/**
+	 * Sets the interceptor retrying requests when the provider is overloaded or down; if not set, requests are not retried.
+	 * Only idempotent requests are retried, with jittered exponential backoff; if the interceptor has a {@link CircuitBreaker},
+	 * requests fail fast while the circuit is open. Where credentials may not be sent twice, as OAuth 1 signatures may not, every attempt is credentialed anew.
+	 * Retries take permits of the rate limit throttle, and every attempt a slot of the concurrency limiter, if any, so that no slot is held while backing off.
+	 * @param resilienceInterceptor the resilience interceptor (may be null)
+	 */
+	public void setResilienceInterceptor(ResilienceRequestInterceptor resilienceInterceptor) {
+		this.resilienceInterceptor = resilienceInterceptor;
+	}
+
+	/**
+	 * Sets the policy hedging GET requests; if not set, requests are not hedged.
+	 * A GET request not answered within the policy's delay is sent a second time and the first answer is used; see {@link HedgingRequestInterceptor}.
+	 * Hedges take permits of the rate limit throttle and slots of the concurrency limiter, if any; a request is not hedged when none is free.
+	 * Requests whose credentials may not be sent twice, such as OAuth 1 signed requests, are never hedged.
+	 * @param hedgingPolicy the hedging policy (may be null)
+	 */
+	public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+		this.hedgingPolicy = hedgingPolicy;
+	}
+
+	/**
+	 * @return the shared request factory key, or null
+	 */
+	public String getSharedRequestFactoryKey() {
+		return sharedRequestFactoryKey;
+	}
+
+	/**
+	 * @return the response cache, or null
+	 */
+	public HttpResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * @return the request coalescer, or null
+	 */
+	public RequestCoalescer getRequestCoalescer() {
+		return requestCoalescer;
+	}
+
+	/**
+	 * @return the rate limit throttle, or null
+	 */
+	public RateLimitThrottle getRateLimitThrottle() {
+		return rateLimitThrottle;
+	}
+
+	/**
+	 * @return the concurrency limiter, or null
+	 */
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
+	/**
+	 * @return the response compression, or null
+	 */
+	public ResponseCompression getResponseCompression() {
+		return responseCompression;
+	}
+
+	/**
+	 * @return the resilience interceptor, or null
+	 */
+	public ResilienceRequestInterceptor getResilienceInterceptor() {
+		return resilienceInterceptor;
+	}
+
+	/**
+	 * @return the hedging policy, or null
+	 */
+	public HedgingPolicy getHedgingPolicy() {
+		return hedgingPolicy;
+	}
+
+	/**
+	 * Returns a request factory for a binding: the one shared under the shared request factory key, if set, or else a new one.
+	 * @return the request factory
+	 */
+	public ClientHttpRequestFactory createRequestFactory() {
+		return sharedRequestFactoryKey != null ? ClientHttpRequestFactorySelector.getSharedRequestFactory(sharedRequestFactoryKey) : ClientHttpRequestFactorySelector.getRequestFactory();
+	}
+
+	/**
+	 * Returns a request factory streaming request bodies rather than buffering them, over the same transport as {@link #createRequestFactory()}.
+	 * @return the streaming request factory
+	 * @see ClientHttpRequestFactorySelector#getStreamingRequestFactory(String)
+	 */
+	public ClientHttpRequestFactory createStreamingRequestFactory() {
+		return ClientHttpRequestFactorySelector.getStreamingRequestFactory(sharedRequestFactoryKey);
+	}
+
+	/**
+	 * Adds the interceptors of this policy to the interceptors of a binding's RestTemplate, around the interceptor adding the binding's credentials.
+	 * @param restTemplate the binding's RestTemplate
+	 * @param credentialsInterceptor the interceptor adding credentials to requests (may be null for bindings making requests without credentials)
+	 * @param credentials the credentials, keeping responses and rate limits apart per user (may be null for bindings making requests without credentials)
+	 * @param resendableCredentials whether the credentials added to a request may be sent again, as a bearer token may;
+	 * if not, as with an OAuth 1 signature and its nonce, a retried request is credentialed anew and requests are not hedged
+	 */
+	public void applyTo(RestTemplate restTemplate, ClientHttpRequestInterceptor credentialsInterceptor, String credentials, boolean resendableCredentials) {
+		List<ClientHttpRequestInterceptor> interceptors = new ArrayList<ClientHttpRequestInterceptor>();
+		// ahead of the credentials interceptor: cached and coalesced responses need no credentials and do not count against rate limits
+		if (responseCache != null) {
+			interceptors.add(new CachingRequestInterceptor(responseCache, credentials));
+		}
+		if (requestCoalescer != null) {
+			interceptors.add(new CoalescingRequestInterceptor(requestCoalescer, credentials));
+		}
+		if (rateLimitThrottle != null) {
+			interceptors.add(new ThrottlingRequestInterceptor(rateLimitThrottle, credentials));
+		}
+		if (concurrencyLimiter != null && resilienceInterceptor == null) {
+			// after the throttle, so that requests held back by the throttle do not count as in flight
+			interceptors.add(new BulkheadRequestInterceptor(concurrencyLimiter));
+		}
+		if (responseCompression != null) {
+			// after the cache and the coalescer, so that they keep decoded bodies
+			interceptors.add(new CompressionRequestInterceptor(responseCompression));
+		}
+		if (resilienceInterceptor != null) {
+			// last: a retry executes the request again from this point on, past the credentials interceptor if it comes first;
+			// credentials that may not be sent twice are added by the resilience interceptor itself, anew for every attempt.
+			// Retries pass neither the throttle nor the bulkhead again, so the resilience interceptor takes their permits and slots itself
+			if (credentialsInterceptor != null && resendableCredentials) {
+				interceptors.add(credentialsInterceptor);
+			}
+			ClientHttpRequestInterceptor signer = credentialsInterceptor != null && !resendableCredentials ? credentialsInterceptor : null;
+			interceptors.add(resilienceInterceptor.forBinding(signer, rateLimitThrottle, credentials, concurrencyLimiter));
+		} else if (credentialsInterceptor != null) {
+			interceptors.add(credentialsInterceptor);
+		}
+		if (hedgingPolicy != null && resendableCredentials) {
+			// very last: both attempts are executed from this point on, past the throttle and the bulkhead, so hedges take their permits and slots here
+			HedgingRequestInterceptor hedgingInterceptor = new HedgingRequestInterceptor(hedgingPolicy);
+			if (rateLimitThrottle != null) {
+				hedgingInterceptor.setRateLimitThrottle(rateLimitThrottle, credentials);
+			}
+			if (concurrencyLimiter != null) {
+				hedgingInterceptor.setConcurrencyLimiter(concurrencyLimiter);
+			}
+			interceptors.add(hedgingInterceptor);
+		}
+		restTemplate.getInterceptors().addAll(interceptors);
+	}
+
+}
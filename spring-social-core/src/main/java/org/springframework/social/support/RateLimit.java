@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+/**
+ * A rate limit as reported by a provider: how many calls are allowed per window, how many are left, and when the window resets.
+ * @see RateLimitExtractor
+ */
+public final class RateLimit {
+
+	/**
+	 * Whose calls a rate limit applies to.
+	 */
+	public enum Scope {
+
+		/**
+		 * The calls made with one user's credentials.
+		 */
+		USER,
+
+		/**
+		 * All calls made by the application, whatever credentials they are made with.
+		 */
+		APP
+
+	}
+
+	private final Scope scope;
+
+	private final long limit;
+
+	private final long remaining;
+
+	private final long resetTime;
+
+	/**
+	 * Creates a rate limit.
+	 * @param scope whose calls the rate limit applies to
+	 * @param limit the number of calls allowed per window, or -1 if unknown
+	 * @param remaining the number of calls left in the current window
+	 * @param resetTime the time (in milliseconds since the epoch) the current window resets at
+	 */
+	public RateLimit(Scope scope, long limit, long remaining, long resetTime) {
+		this.scope = scope;
+		this.limit = limit;
+		this.remaining = remaining;
+		this.resetTime = resetTime;
+	}
+
+	/**
+	 * @return whose calls the rate limit applies to
+	 */
+	public Scope getScope() {
+		return scope;
+	}
+
+	/**
+	 * @return the number of calls allowed per window, or -1 if unknown
+	 */
+	public long getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return the number of calls left in the current window
+	 */
+	public long getRemaining() {
+		return remaining;
+	}
+
+	/**
+	 * @return the time (in milliseconds since the epoch) the current window resets at
+	 */
+	public long getResetTime() {
+		return resetTime;
+	}
+
+	@Override
+	public String toString() {
+		return scope + " " + remaining + "/" + limit + " until " + resetTime;
+	}
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Strategy for reading the rate limits a provider reports in its response headers.
+ * @see HeaderRateLimitExtractor
+ * @see RateLimitThrottle
+ */
+public interface RateLimitExtractor {
+
+	/**
+	 * Extracts the rate limits reported by a response.
+	 * @param headers the response headers
+	 * @return the reported rate limits, empty if the response reports none
+	 */
+	List<RateLimit> extract(HttpHeaders headers);
+
+}
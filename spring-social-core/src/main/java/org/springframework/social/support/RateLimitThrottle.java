@@ -0,0 +1,312 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.social.RateLimitExceededException;
+import org.springframework.social.support.RateLimit.Scope;
+import org.springframework.util.Assert;
+
+/**
+ * Paces the calls made to a provider according to the rate limits it reports, so that calls are slowed down before the provider starts rejecting them.
+ * Rate limits are read from every response by a {@link RateLimitExtractor} and tracked in one bucket for the application and one bucket per user (per credentials).
+ * As long as plenty of a bucket's calls remain, calls go through undelayed. Once fewer than the pacing threshold remain (20% of the limit by default),
+ * the remaining calls are spread evenly over what is left of the window. Once none remain, calls wait for the window to reset.
+ * A call that would have to wait longer than the maximum delay is rejected with a {@link RateLimitExceededException} instead, without reaching the provider.
+ * A throttle is typically shared by all API bindings of a provider; see {@link ThrottlingRequestInterceptor}.
+ */
+public class RateLimitThrottle {
+
+	private static final int USER_BUCKET_CLEANUP_THRESHOLD = 4096;
+
+	private static final long DEFAULT_RETRY_AFTER = 1000;
+
+	private static final long RESET_TIME_TOLERANCE = 1000;
+
+	private final String providerId;
+
+	private final RateLimitExtractor extractor;
+
+	private long maxDelay = 5000;
+
+	private double pacingThreshold = 0.2;
+
+	private final Bucket appBucket = new Bucket();
+
+	private final ConcurrentMap<String, Bucket> userBuckets = new ConcurrentHashMap<String, Bucket>();
+
+	private final AtomicLong delayedCount = new AtomicLong();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	/**
+	 * Creates a rate limit throttle.
+	 * @param providerId the id of the provider, reported by the exceptions thrown for rejected calls
+	 * @param extractor the extractor of the rate limits the provider reports
+	 */
+	public RateLimitThrottle(String providerId, RateLimitExtractor extractor) {
+		Assert.notNull(providerId, "The providerId property cannot be null");
+		Assert.notNull(extractor, "The extractor property cannot be null");
+		this.providerId = providerId;
+		this.extractor = extractor;
+	}
+
+	/**
+	 * Sets the longest time (in milliseconds) a call is delayed; calls that would have to wait longer are rejected. Defaults to 5 seconds.
+	 * @param maxDelay the maximum delay in milliseconds
+	 */
+	public void setMaxDelay(long maxDelay) {
+		Assert.isTrue(maxDelay >= 0, "The maxDelay property cannot be negative");
+		this.maxDelay = maxDelay;
+	}
+
+	/**
+	 * Sets the fraction of a bucket's limit below which its remaining calls are paced. Defaults to 0.2.
+	 * When the provider does not report a limit, the highest remaining count seen in the current window stands in for it.
+	 * @param pacingThreshold the pacing threshold, between 0 (never pace, only wait for exhausted buckets to reset) and 1 (always pace)
+	 */
+	public void setPacingThreshold(double pacingThreshold) {
+		Assert.isTrue(pacingThreshold >= 0 && pacingThreshold <= 1, "The pacingThreshold property must be between 0 and 1");
+		this.pacingThreshold = pacingThreshold;
+	}
+
+	/**
+	 * Reserves a call for the given user.
+	 * @param userKey the key of the user's bucket
+	 * @return how long (in milliseconds) the caller must wait before making the call
+	 * @throws RateLimitExceededException if the call would have to wait longer than the maximum delay
+	 */
+	long acquire(String userKey) {
+		long delay = reserve(userKey, maxDelay);
+		if (delay < 0) {
+			rejectedCount.incrementAndGet();
+			throw new RateLimitExceededException(providerId);
+		}
+		if (delay > 0) {
+			delayedCount.incrementAndGet();
+		}
+		return delay;
+	}
+
+	/**
+	 * Reserves a call for the given user only if it may be made right away, for calls that may as well not be made, such as hedges.
+	 * @param userKey the key of the user's bucket
+	 * @return true if the call was reserved
+	 */
+	boolean tryAcquire(String userKey) {
+		return reserve(userKey, 0) == 0;
+	}
+
+	/**
+	 * Records the rate limits reported by a response to a call made for the given user.
+	 * @param userKey the key of the user's bucket
+	 * @param statusCode the status code of the response
+	 * @param headers the headers of the response
+	 */
+	void update(String userKey, int statusCode, HttpHeaders headers) {
+		boolean reported = false;
+		for (RateLimit rateLimit : extractor.extract(headers)) {
+			(rateLimit.getScope() == Scope.APP ? appBucket : userBucket(userKey)).update(rateLimit);
+			reported = true;
+		}
+		if (statusCode == 429) {
+			long retryAfter = retryAfter(headers);
+			if (retryAfter >= 0 || !reported) {
+				userBucket(userKey).exhaust(System.currentTimeMillis() + (retryAfter >= 0 ? retryAfter : DEFAULT_RETRY_AFTER));
+			}
+		}
+	}
+
+	// metrics
+
+	/**
+	 * @return the application's rate limit as last reported by the provider (adjusted for the calls made since), or null if none is known
+	 */
+	public RateLimit getAppRateLimit() {
+		return appBucket.snapshot(Scope.APP, System.currentTimeMillis());
+	}
+
+	/**
+	 * @param credentials the credentials of the user (typically the access token)
+	 * @return the user's rate limit as last reported by the provider (adjusted for the calls made since), or null if none is known
+	 */
+	public RateLimit getUserRateLimit(String credentials) {
+		Bucket bucket = userBuckets.get(userKey(credentials));
+		return bucket != null ? bucket.snapshot(Scope.USER, System.currentTimeMillis()) : null;
+	}
+
+	/**
+	 * @return the number of users whose rate limits are tracked
+	 */
+	public int getTrackedUserCount() {
+		return userBuckets.size();
+	}
+
+	/**
+	 * @return the number of calls that were delayed
+	 */
+	public long getDelayedCount() {
+		return delayedCount.get();
+	}
+
+	/**
+	 * @return the number of calls that were rejected
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	// internal helpers
+
+	static String userKey(String credentials) {
+		return credentials != null ? CredentialDigest.of(credentials) : "-";
+	}
+
+	// the delay before the call may be made, or -1 if it would exceed maxDelay (in which case nothing is reserved)
+	private long reserve(String userKey, long maxDelay) {
+		long now = System.currentTimeMillis();
+		Bucket userBucket = userBucket(userKey);
+		// the user's bucket is always locked ahead of the application's, so buckets cannot deadlock
+		synchronized (userBucket) {
+			synchronized (appBucket) {
+				long userDelay = userBucket.delay(now, maxDelay, pacingThreshold);
+				long appDelay = userDelay >= 0 ? appBucket.delay(now, maxDelay, pacingThreshold) : -1;
+				if (userDelay < 0 || appDelay < 0) {
+					return -1;
+				}
+				// reserved in both buckets only once both allow the call, so that a rejected call costs neither a permit
+				userBucket.reserve(now, pacingThreshold);
+				appBucket.reserve(now, pacingThreshold);
+				return Math.max(userDelay, appDelay);
+			}
+		}
+	}
+
+	private Bucket userBucket(String userKey) {
+		Bucket bucket = userBuckets.get(userKey);
+		if (bucket == null) {
+			if (userBuckets.size() >= USER_BUCKET_CLEANUP_THRESHOLD) {
+				removeExpiredUserBuckets();
+			}
+			Bucket newBucket = new Bucket();
+			bucket = userBuckets.putIfAbsent(userKey, newBucket);
+			if (bucket == null) {
+				bucket = newBucket;
+			}
+		}
+		return bucket;
+	}
+
+	private void removeExpiredUserBuckets() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Bucket> buckets = userBuckets.values().iterator(); buckets.hasNext();) {
+			if (buckets.next().hasExpired(now)) {
+				buckets.remove();
+			}
+		}
+	}
+
+	// Retry-After in milliseconds, if given in seconds; -1 otherwise
+	private long retryAfter(HttpHeaders headers) {
+		String retryAfter = headers.getFirst("Retry-After");
+		if (retryAfter != null) {
+			try {
+				return Long.parseLong(retryAfter.trim()) * 1000;
+			} catch (NumberFormatException e) {
+				// an HTTP date; fall back to the rate limit headers or the default
+			}
+		}
+		return -1;
+	}
+
+	private static final class Bucket {
+
+		private long limit = -1;
+
+		private long windowMax;
+
+		private long remaining;
+
+		private long resetTime;
+
+		private long nextPermitTime;
+
+		// the delay before a call may be made, or -1 if it would exceed maxDelay; called with the bucket locked
+		long delay(long now, long maxDelay, double pacingThreshold) {
+			if (resetTime <= now) {
+				return 0;
+			}
+			if (remaining <= 0) {
+				long delay = resetTime - now;
+				return delay <= maxDelay ? delay : -1;
+			}
+			if (!isPacing(pacingThreshold)) {
+				return 0;
+			}
+			long delay = Math.max(0, nextPermitTime - now);
+			return delay <= maxDelay ? delay : -1;
+		}
+
+		// reserves a call allowed by delay(); called with the bucket locked
+		void reserve(long now, double pacingThreshold) {
+			if (resetTime <= now || remaining <= 0) {
+				return;
+			}
+			if (isPacing(pacingThreshold)) {
+				long start = Math.max(now, nextPermitTime);
+				nextPermitTime = start + (resetTime - now) / remaining;
+			}
+			remaining--;
+		}
+
+		synchronized void update(RateLimit rateLimit) {
+			// relative reset headers give a slightly different reset time with every response: only a clearly different one starts a new window
+			if (Math.abs(rateLimit.getResetTime() - resetTime) > RESET_TIME_TOLERANCE) {
+				windowMax = 0;
+				nextPermitTime = 0;
+				resetTime = rateLimit.getResetTime();
+			}
+			limit = rateLimit.getLimit();
+			remaining = rateLimit.getRemaining();
+			windowMax = Math.max(windowMax, remaining);
+		}
+
+		synchronized void exhaust(long until) {
+			remaining = 0;
+			resetTime = Math.max(resetTime, until);
+		}
+
+		synchronized boolean hasExpired(long now) {
+			return resetTime <= now;
+		}
+
+		synchronized RateLimit snapshot(Scope scope, long now) {
+			return resetTime > now ? new RateLimit(scope, limit, remaining, resetTime) : null;
+		}
+
+		private boolean isPacing(double pacingThreshold) {
+			long effectiveLimit = limit > 0 ? limit : windowMax;
+			return remaining < effectiveLimit * pacingThreshold || pacingThreshold >= 1;
+		}
+
+	}
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.Assert;
+import org.springframework.util.CustomizableThreadCreator;
+import org.springframework.web.client.RestOperations;
+
+/**
+ * Collects logical requests to a provider into batches, each sent to the provider's batch endpoint in a single HTTP round trip.
+ * A batch is sent once it holds the maximum batch size of requests, or once the flush interval has passed since its first request was submitted, whichever comes first.
+ * Batches are encoded and decoded by a provider-specific {@link BatchEncoder} and {@link BatchDecoder}, and sent with the given {@link RestOperations}
+ * (typically an API binding's RestTemplate, so that batches carry the binding's credentials).
+ * Each caller gets a future of the result of its own request, failed on its own if the provider reports a failure for that request only.
+ * <pre>
+ * RequestBatcher&lt;String, JsonNode[], JsonNode&gt; batcher = new RequestBatcher&lt;&gt;(getRestTemplate(), graphBatchEncoder, graphBatchDecoder);
+ * CompletableFuture&lt;JsonNode&gt; me = batcher.submit("me");
+ * CompletableFuture&lt;JsonNode&gt; friends = batcher.submit("me/friends");
+ * </pre>
+ * @param <R> the type of the logical requests
+ * @param <B> the type the batch response body is read as
+ * @param <T> the type of the results of the logical requests
+ */
+public class RequestBatcher<R, B, T> {
+
+	private static final Log logger = LogFactory.getLog(RequestBatcher.class);
+
+	private final RestOperations restOperations;
+
+	private final BatchEncoder<R> encoder;
+
+	private final BatchDecoder<R, B, T> decoder;
+
+	private int maxBatchSize = 50;
+
+	private long flushInterval = 10;
+
+	private Executor executor = SocialTaskExecutors.getSharedExecutor();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private List<Pending<R, T>> pending = new ArrayList<Pending<R, T>>();
+
+	private ScheduledFuture<?> scheduledFlush;
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong batchCount = new AtomicLong();
+
+	/**
+	 * Creates a request batcher.
+	 * @param restOperations the RestOperations batches are sent with
+	 * @param encoder the encoder of batch requests
+	 * @param decoder the decoder of batch responses
+	 */
+	public RequestBatcher(RestOperations restOperations, BatchEncoder<R> encoder, BatchDecoder<R, B, T> decoder) {
+		Assert.notNull(restOperations, "The restOperations property cannot be null");
+		Assert.notNull(encoder, "The encoder property cannot be null");
+		Assert.notNull(decoder, "The decoder property cannot be null");
+		this.restOperations = restOperations;
+		this.encoder = encoder;
+		this.decoder = decoder;
+	}
+
+	/**
+	 * Sets the maximum number of logical requests sent in one batch, typically the limit imposed by the provider. Defaults to 50.
+	 * @param maxBatchSize the maximum batch size
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		Assert.isTrue(maxBatchSize > 0, "The maxBatchSize property must be positive");
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * Sets how long (in milliseconds) a request waits for others to join its batch before the batch is sent anyway. Defaults to 10 milliseconds.
+	 * @param flushInterval the flush interval in milliseconds
+	 */
+	public void setFlushInterval(long flushInterval) {
+		Assert.isTrue(flushInterval >= 0, "The flushInterval property cannot be negative");
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Sets the executor batches are sent on. Defaults to the executor shared through {@link SocialTaskExecutors}.
+	 * @param executor the executor
+	 */
+	public void setExecutor(Executor executor) {
+		Assert.notNull(executor, "The executor property cannot be null");
+		this.executor = executor;
+	}
+
+	/**
+	 * Submits a logical request to be sent as part of a batch.
+	 * @param request the logical request
+	 * @return a future of the result of the request
+	 */
+	public CompletableFuture<T> submit(R request) {
+		Pending<R, T> submitted = new Pending<R, T>(request);
+		List<Pending<R, T>> batch = null;
+		lock.lock();
+		try {
+			pending.add(submitted);
+			if (pending.size() >= maxBatchSize) {
+				batch = drain();
+			} else if (pending.size() == 1) {
+				scheduledFlush = Scheduler.SCHEDULER.schedule(this::flush, flushInterval, TimeUnit.MILLISECONDS);
+			}
+		} finally {
+			lock.unlock();
+		}
+		requestCount.incrementAndGet();
+		if (batch != null) {
+			dispatch(batch);
+		}
+		return submitted.result;
+	}
+
+	/**
+	 * Sends the requests submitted so far without waiting for the batch to fill up or for the flush interval to pass.
+	 */
+	public void flush() {
+		List<Pending<R, T>> batch = null;
+		lock.lock();
+		try {
+			if (!pending.isEmpty()) {
+				batch = drain();
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (batch != null) {
+			dispatch(batch);
+		}
+	}
+
+	// metrics
+
+	/**
+	 * @return the number of logical requests submitted
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the number of batches sent
+	 */
+	public long getBatchCount() {
+		return batchCount.get();
+	}
+
+	// internal helpers
+
+	// called with the lock held
+	private List<Pending<R, T>> drain() {
+		List<Pending<R, T>> batch = pending;
+		pending = new ArrayList<Pending<R, T>>(Math.min(maxBatchSize, 64));
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		return batch;
+	}
+
+	private void dispatch(final List<Pending<R, T>> batch) {
+		try {
+			executor.execute(() -> send(batch));
+		} catch (RejectedExecutionException e) {
+			failAll(batch, e);
+		}
+	}
+
+	private void send(List<Pending<R, T>> batch) {
+		batchCount.incrementAndGet();
+		List<R> requests = new ArrayList<R>(batch.size());
+		for (Pending<R, T> submitted : batch) {
+			requests.add(submitted.request);
+		}
+		try {
+			RequestEntity<?> batchRequest = encoder.encode(requests);
+			ResponseEntity<B> batchResponse = restOperations.exchange(batchRequest, decoder.getResponseType());
+			decoder.decode(requests, batchResponse.getBody(), new BatchResults<T>(batch));
+		} catch (RuntimeException e) {
+			logger.debug("Batch of " + batch.size() + " requests failed", e);
+			failAll(batch, e);
+			return;
+		}
+		for (Pending<R, T> submitted : batch) {
+			if (!submitted.result.isDone()) {
+				submitted.result.completeExceptionally(new BatchException("The batch response holds no result for request " + submitted.request));
+			}
+		}
+	}
+
+	private void failAll(List<Pending<R, T>> batch, RuntimeException failure) {
+		for (Pending<R, T> submitted : batch) {
+			submitted.result.completeExceptionally(failure);
+		}
+	}
+
+	private static class Pending<R, T> {
+
+		private final R request;
+
+		private final CompletableFuture<T> result = new CompletableFuture<T>();
+
+		public Pending(R request) {
+			this.request = request;
+		}
+
+	}
+
+	private static class BatchResults<T> implements BatchDecoder.Results<T> {
+
+		private final List<? extends Pending<?, T>> batch;
+
+		public BatchResults(List<? extends Pending<?, T>> batch) {
+			this.batch = batch;
+		}
+
+		public void complete(int index, T result) {
+			batch.get(index).result.complete(result);
+		}
+
+		public void fail(int index, RuntimeException failure) {
+			batch.get(index).result.completeExceptionally(failure);
+		}
+
+	}
+
+	// only triggers flushes; batches themselves are sent on the executor
+	private static class Scheduler {
+
+		private static final ScheduledExecutorService SCHEDULER;
+
+		static {
+			CustomizableThreadCreator threadCreator = new CustomizableThreadCreator("request-batcher-");
+			threadCreator.setDaemon(true);
+			ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, threadCreator::createThread);
+			scheduler.setRemoveOnCancelPolicy(true);
+			SCHEDULER = scheduler;
+		}
+
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.social.support.HttpResponseCache.CachedResponse;
+import org.springframework.util.Assert;
+
+/**
+ * Keeps track of the GET requests in flight to a provider, so that identical requests made at the same moment are sent once; see {@link CoalescingRequestInterceptor}.
+ * Requests are identical if they are for the same URL with the same credentials and Accept header.
+ * The first of them is sent to the provider; the others wait for its response, and each gets its own copy of the response body.
+ * Only responses whose body fits within a maximum size are shared; see {@link #setMaxBodySize(int)}.
+ * A request coalescer is meant to be shared by all bindings of a provider, so that identical requests are coalesced across bindings
+ * (as happens for bindings acting with the same application token).
+ */
+public class RequestCoalescer {
+
+	private static final int DEFAULT_MAX_BODY_SIZE = 512 * 1024;
+
+	private final ConcurrentMap<String, CompletableFuture<CachedResponse>> inFlight = new ConcurrentHashMap<String, CompletableFuture<CachedResponse>>();
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	private final AtomicLong passedThroughCount = new AtomicLong();
+
+	private volatile int maxBodySize = DEFAULT_MAX_BODY_SIZE;
+
+	/**
+	 * Sets the size (in bytes) of the largest response body that is shared. Defaults to 512KB.
+	 * A response announced larger than that by its Content-Length, or found larger while it is read, is handed on as it is read,
+	 * and the identical requests waiting for it are sent themselves.
+	 * @param maxBodySize the maximum size of a shared response body in bytes
+	 */
+	public void setMaxBodySize(int maxBodySize) {
+		Assert.isTrue(maxBodySize > 0, "The maxBodySize property must be positive");
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * @return the maximum size of a shared response body in bytes
+	 */
+	public int getMaxBodySize() {
+		return maxBodySize;
+	}
+
+	// metrics
+
+	/**
+	 * @return the number of requests sent to the provider
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the number of requests answered with the response to an identical request already in flight
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * @return the number of responses too large to be shared, handed on as they were read
+	 */
+	public long getPassedThroughCount() {
+		return passedThroughCount.get();
+	}
+
+	/**
+	 * @return the number of distinct requests currently in flight
+	 */
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	// package-private, used by CoalescingRequestInterceptor
+
+	/**
+	 * Registers a request about to be sent, unless an identical one is already in flight.
+	 * @param key the key identifying the request
+	 * @param call the call to complete with the response once it arrives
+	 * @return the call of the identical request already in flight, or null if the request was registered and should be sent
+	 */
+	CompletableFuture<CachedResponse> register(String key, CompletableFuture<CachedResponse> call) {
+		CompletableFuture<CachedResponse> existing = inFlight.putIfAbsent(key, call);
+		if (existing != null) {
+			coalescedCount.incrementAndGet();
+		} else {
+			requestCount.incrementAndGet();
+		}
+		return existing;
+	}
+
+	void unregister(String key, CompletableFuture<CachedResponse> call) {
+		inFlight.remove(key, call);
+	}
+
+	void recordPassedThrough() {
+		passedThroughCount.incrementAndGet();
+	}
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.social.ConcurrencyLimitExceededException;
+import org.springframework.social.RateLimitExceededException;
+import org.springframework.social.ServerDownException;
+import org.springframework.util.Assert;
+
+/**
+ * ClientHttpRequestInterceptor implementation that retries requests failing because a provider is overloaded or down,
+ * and fails fast while a {@link CircuitBreaker} deems the provider down.
+ * A request fails in that way if it cannot be sent or answered (an I/O error), or if it is answered 502 Bad Gateway, 503 Service Unavailable or 504 Gateway Timeout,
+ * the statuses providers signal overload and outages with (and that their error handlers turn into {@link org.springframework.social.ServerOverloadedException} or {@link ServerDownException}).
+ * Other errors, including 500 Internal Server Error, are left to the error handler: retrying them is unlikely to help.
+ * Only idempotent requests (GET, HEAD, OPTIONS, PUT, DELETE and TRACE) are retried, with exponential backoff and full jitter so that many callers do not retry in lockstep;
+ * a 503 answer's Retry-After header is honored if it asks for a delay within the maximum backoff.
+ * A retry whose backoff would end past the current {@link Deadline} is not waited for: the request fails right away with a {@link org.springframework.social.DeadlineExceededException}.
+ * While the circuit is open, requests are rejected with a {@link ServerDownException} without reaching the provider.
+ * <p>This interceptor must come after all others in the chain but a {@link HedgingRequestInterceptor}, as it executes a retried request again from that point on.
+ * Interceptors ahead of it, the one adding credentials included, are not run again: a retry is sent with the headers of the first attempt.
+ * Where those may not be sent twice, as with OAuth 1 signatures, use {@link #signingWith(ClientHttpRequestInterceptor)} in place of the signing interceptor.
+ * Nor do retries pass a {@link ThrottlingRequestInterceptor} or a {@link BulkheadRequestInterceptor} ahead of it again;
+ * use {@link #forBinding(ClientHttpRequestInterceptor, RateLimitThrottle, String, ConcurrencyLimiter)} to have retries take permits of the throttle,
+ * and every attempt a slot of the limiter, in place of the bulkhead interceptor.</p>
+ */
+public class ResilienceRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	private static final Log logger = LogFactory.getLog(ResilienceRequestInterceptor.class);
+
+	private static final Set<HttpMethod> IDEMPOTENT_METHODS = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.TRACE);
+
+	private final String providerId;
+
+	private final CircuitBreaker circuitBreaker;
+
+	private int maxAttempts = 3;
+
+	private long initialBackoff = 100;
+
+	private long maxBackoff = 2000;
+
+	private final AtomicLong retryCount = new AtomicLong();
+
+	/**
+	 * Creates a resilience interceptor retrying requests without circuit breaking.
+	 * @param providerId the id of the provider
+	 */
+	public ResilienceRequestInterceptor(String providerId) {
+		this(providerId, null);
+	}
+
+	/**
+	 * Creates a resilience interceptor retrying requests and failing fast while the given circuit is open.
+	 * @param providerId the id of the provider
+	 * @param circuitBreaker the circuit breaker tracking the health of the provider (may be null)
+	 */
+	public ResilienceRequestInterceptor(String providerId, CircuitBreaker circuitBreaker) {
+		Assert.notNull(providerId, "The providerId property cannot be null");
+		this.providerId = providerId;
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	/**
+	 * Sets the maximum number of attempts made for an idempotent request, the first one included. Defaults to 3; 1 disables retries.
+	 * @param maxAttempts the maximum number of attempts
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		Assert.isTrue(maxAttempts > 0, "The maxAttempts property must be positive");
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * Sets the backoff (in milliseconds) before the first retry; it doubles with every further retry, up to the maximum backoff. Defaults to 100 milliseconds.
+	 * The actual delay before each retry is picked at random between 0 and the backoff.
+	 * @param initialBackoff the initial backoff in milliseconds
+	 */
+	public void setInitialBackoff(long initialBackoff) {
+		Assert.isTrue(initialBackoff >= 0, "The initialBackoff property cannot be negative");
+		this.initialBackoff = initialBackoff;
+	}
+
+	/**
+	 * Sets the maximum backoff (in milliseconds) before a retry. Defaults to 2 seconds.
+	 * @param maxBackoff the maximum backoff in milliseconds
+	 */
+	public void setMaxBackoff(long maxBackoff) {
+		Assert.isTrue(maxBackoff >= 0, "The maxBackoff property cannot be negative");
+		this.maxBackoff = maxBackoff;
+	}
+
+	/**
+	 * @return the number of retries made
+	 */
+	public long getRetryCount() {
+		return retryCount.get();
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		return intercept(request, body, execution, null);
+	}
+
+	/**
+	 * Returns a view of this interceptor that has the given interceptor sign every attempt anew, for credentials that may not be sent twice,
+	 * such as OAuth 1 signatures, whose nonce and timestamp a provider rejects as a replay when it sees them again.
+	 * The view takes the place of the signing interceptor in the chain; it shares this interceptor's settings, circuit breaker and metrics.
+	 * @param signer the interceptor signing requests
+	 * @return an interceptor retrying requests signed anew for each attempt
+	 */
+	public ClientHttpRequestInterceptor signingWith(ClientHttpRequestInterceptor signer) {
+		Assert.notNull(signer, "The signer property cannot be null");
+		return new BindingInterceptor(signer, null, null, null);
+	}
+
+	/**
+	 * Returns a view of this interceptor for the requests of one API binding, keeping retries within the provider's rate limits and concurrency limit.
+	 * Every retry takes a permit of the given throttle, as the first attempt does in a {@link ThrottlingRequestInterceptor} ahead of this interceptor;
+	 * a request is not retried when no permit would be available in time.
+	 * Every attempt takes a slot of the given limiter, released as the attempt fails, so that a request backing off holds none;
+	 * the view then takes the place of the {@link BulkheadRequestInterceptor} in the chain, and a retry finding the limit reached is rejected.
+	 * The view shares this interceptor's settings, circuit breaker and metrics.
+	 * @param signer the interceptor signing every attempt anew, as {@link #signingWith(ClientHttpRequestInterceptor)} does (may be null)
+	 * @param rateLimitThrottle the rate limit throttle of the provider (may be null)
+	 * @param credentials the credentials the binding's requests are made with, identifying the user whose rate limit applies (may be null)
+	 * @param concurrencyLimiter the concurrency limiter of the provider (may be null)
+	 * @return an interceptor retrying the binding's requests within the throttle and limiter
+	 */
+	public ClientHttpRequestInterceptor forBinding(ClientHttpRequestInterceptor signer, RateLimitThrottle rateLimitThrottle, String credentials, ConcurrencyLimiter concurrencyLimiter) {
+		return new BindingInterceptor(signer, rateLimitThrottle, rateLimitThrottle != null ? RateLimitThrottle.userKey(credentials) : null, concurrencyLimiter);
+	}
+
+	// internal helpers
+
+	private ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution, BindingInterceptor binding) throws IOException {
+		if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+			throw new ServerDownException(providerId, "Not calling " + providerId + " while it is considered down");
+		}
+		// every permitted call records exactly one outcome, lest a half open circuit wait forever for its trial call
+		boolean recorded = false;
+		try {
+			int attempts = IDEMPOTENT_METHODS.contains(request.getMethod()) ? maxAttempts : 1;
+			for (int attempt = 1; ; attempt++) {
+				ClientHttpResponse response;
+				try {
+					response = binding != null ? binding.attempt(request, body, execution) : execution.execute(request, body);
+				} catch (IOException e) {
+					long throttleDelay = attempt < attempts && binding != null ? binding.reserveRetry(null) : 0;
+					if (attempt >= attempts || throttleDelay < 0) {
+						recorded = true;
+						recordFailure();
+						throw e;
+					}
+					logger.debug("Retrying " + request.getMethod() + " " + request.getURI() + " after " + e);
+					backOff(attempt, -1, throttleDelay);
+					continue;
+				}
+				int statusCode = response.getRawStatusCode();
+				if (!isOverloadedOrDown(statusCode)) {
+					recorded = true;
+					recordSuccess();
+					return response;
+				}
+				long throttleDelay = attempt < attempts && binding != null ? binding.reserveRetry(response) : 0;
+				if (attempt >= attempts || throttleDelay < 0) {
+					recorded = true;
+					recordFailure();
+					return response;
+				}
+				long retryAfter = statusCode == 503 ? retryAfter(response) : -1;
+				response.close();
+				logger.debug("Retrying " + request.getMethod() + " " + request.getURI() + " after status " + statusCode);
+				backOff(attempt, retryAfter, throttleDelay);
+			}
+		} finally {
+			if (!recorded && circuitBreaker != null) {
+				// interrupted, out of time, or failed for reasons that say nothing of the provider's health
+				circuitBreaker.recordIgnored();
+			}
+		}
+	}
+
+	private boolean isOverloadedOrDown(int statusCode) {
+		return statusCode == 502 || statusCode == 503 || statusCode == 504;
+	}
+
+	private void backOff(int attempt, long retryAfter, long throttleDelay) throws IOException {
+		retryCount.incrementAndGet();
+		long delay;
+		if (retryAfter >= 0 && retryAfter <= maxBackoff) {
+			delay = retryAfter;
+		} else {
+			long backoff = Math.min(maxBackoff, initialBackoff << Math.min(attempt - 1, 30));
+			delay = backoff > 0 ? ThreadLocalRandom.current().nextLong(backoff + 1) : 0;
+		}
+		delay = Math.max(delay, throttleDelay);
+		try {
+			Deadline.sleepCurrent(delay, "retrying a request to " + providerId);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while backing off before retrying a request to " + providerId);
+		}
+	}
+
+	// Retry-After in milliseconds, if given in seconds; -1 otherwise
+	private long retryAfter(ClientHttpResponse response) {
+		String retryAfter = response.getHeaders().getFirst("Retry-After");
+		if (retryAfter != null) {
+			try {
+				return Long.parseLong(retryAfter.trim()) * 1000;
+			} catch (NumberFormatException e) {
+				// an HTTP date
+			}
+		}
+		return -1;
+	}
+
+	private void recordSuccess() {
+		if (circuitBreaker != null) {
+			circuitBreaker.recordSuccess();
+		}
+	}
+
+	private void recordFailure() {
+		if (circuitBreaker != null) {
+			circuitBreaker.recordFailure();
+		}
+	}
+
+	private class BindingInterceptor implements ClientHttpRequestInterceptor {
+
+		private final ClientHttpRequestInterceptor signer;
+
+		private final RateLimitThrottle rateLimitThrottle;
+
+		private final String userKey;
+
+		private final ConcurrencyLimiter concurrencyLimiter;
+
+		public BindingInterceptor(ClientHttpRequestInterceptor signer, RateLimitThrottle rateLimitThrottle, String userKey, ConcurrencyLimiter concurrencyLimiter) {
+			this.signer = signer;
+			this.rateLimitThrottle = rateLimitThrottle;
+			this.userKey = userKey;
+			this.concurrencyLimiter = concurrencyLimiter;
+		}
+
+		public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+			return ResilienceRequestInterceptor.this.intercept(request, body, execution, this);
+		}
+
+		ClientHttpResponse attempt(HttpRequest request, byte[] body, final ClientHttpRequestExecution execution) throws IOException {
+			ClientHttpRequestExecution attemptExecution = execution;
+			if (concurrencyLimiter != null) {
+				// the slot is taken once the request is signed, so that a signer failing cannot leave it taken
+				attemptExecution = (attemptRequest, attemptBody) -> {
+					if (!concurrencyLimiter.tryAcquire()) {
+						throw new ConcurrencyLimitExceededException(concurrencyLimiter.getProviderId());
+					}
+					return BulkheadRequestInterceptor.execute(concurrencyLimiter, attemptRequest, attemptBody, execution);
+				};
+			}
+			return signer != null ? signer.intercept(request, body, attemptExecution) : attemptExecution.execute(request, body);
+		}
+
+		// records the rate limits reported by the failed attempt, if answered, and reserves a permit for the retry;
+		// returns how long to wait for the permit, or -1 if none would be available in time
+		long reserveRetry(ClientHttpResponse failed) throws IOException {
+			if (rateLimitThrottle == null) {
+				return 0;
+			}
+			if (failed != null) {
+				rateLimitThrottle.update(userKey, failed.getRawStatusCode(), failed.getHeaders());
+			}
+			try {
+				return rateLimitThrottle.acquire(userKey);
+			} catch (RateLimitExceededException e) {
+				return -1;
+			}
+		}
+
+	}
+
+}
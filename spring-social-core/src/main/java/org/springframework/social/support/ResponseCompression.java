@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Negotiates compressed responses with a provider and keeps count of the bytes saved; see {@link CompressionRequestInterceptor}.
+ * Requests advertise gzip and deflate in their Accept-Encoding header, and compressed responses are decoded as their body is read,
+ * so that message converters stream the decoded body without it ever being held in memory whole.
+ * A response compression is meant to be shared by all bindings of a provider, so that its metrics cover the provider's traffic.
+ * <p>Apache HttpComponents HttpClient negotiates and decodes gzip and deflate by itself, so responses it has decoded are counted as uncompressed.
+ * OkHttp does so too unless a request sets Accept-Encoding itself, which this class has requests do, so that OkHttp responses are decoded and counted here.</p>
+ */
+public class ResponseCompression {
+
+	static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	private final AtomicLong responseCount = new AtomicLong();
+
+	private final AtomicLong compressedResponseCount = new AtomicLong();
+
+	private final AtomicLong bytesReceived = new AtomicLong();
+
+	private final AtomicLong bytesDecoded = new AtomicLong();
+
+	// metrics
+
+	/**
+	 * @return the number of responses received
+	 */
+	public long getResponseCount() {
+		return responseCount.get();
+	}
+
+	/**
+	 * @return the number of responses received compressed
+	 */
+	public long getCompressedResponseCount() {
+		return compressedResponseCount.get();
+	}
+
+	/**
+	 * @return the number of body bytes read from the transport, compressed or not
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	/**
+	 * @return the number of body bytes handed to readers once decoded
+	 */
+	public long getBytesDecoded() {
+		return bytesDecoded.get();
+	}
+
+	/**
+	 * @return the ratio of body bytes received to body bytes decoded (lower is better), or 1 if no body has been read yet
+	 */
+	public double getCompressionRatio() {
+		long decoded = bytesDecoded.get();
+		return decoded > 0 ? (double) bytesReceived.get() / decoded : 1;
+	}
+
+	// package-private, used by CompressionRequestInterceptor
+
+	void recordResponse(boolean compressed) {
+		responseCount.incrementAndGet();
+		if (compressed) {
+			compressedResponseCount.incrementAndGet();
+		}
+	}
+
+	AtomicLong bytesReceivedCounter() {
+		return bytesReceived;
+	}
+
+	AtomicLong bytesDecodedCounter() {
+		return bytesDecoded;
+	}
+
+}
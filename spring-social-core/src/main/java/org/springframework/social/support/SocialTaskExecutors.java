@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.CustomizableThreadCreator;
+
+/**
+ * Creates the threads and executors the library runs blocking work on: asynchronous API binding operations,
+ * background connection refreshes and client credentials renewals.
+ * Each of these mostly waits on a provider, so when running on Java 21 or later they may be run on virtual threads,
+ * allowing many thousands of calls in flight without sizing a pool of platform threads.
+ * Virtual threads are used when enabled with {@link #setVirtualThreadsEnabled(boolean)}, or with the "spring.social.threads.virtual" system property,
+ * and supported by the running JVM; otherwise daemon platform threads are created.
+ * The virtual thread API is looked up reflectively so that the library still runs on Java 8.
+ */
+public final class SocialTaskExecutors {
+
+	/**
+	 * The system property enabling virtual threads ("true" to enable).
+	 */
+	public static final String VIRTUAL_THREADS_PROPERTY = "spring.social.threads.virtual";
+
+	private static final Log logger = LogFactory.getLog(SocialTaskExecutors.class);
+
+	private static final int DEFAULT_MAX_THREADS = 64;
+
+	private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	private static final Method OF_VIRTUAL_METHOD;
+
+	private static final Method NAME_METHOD;
+
+	private static final Method FACTORY_METHOD;
+
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR_METHOD;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		Method newThreadPerTaskExecutor = null;
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			name = builderClass.getMethod("name", String.class, long.class);
+			factory = builderClass.getMethod("factory");
+			newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL_METHOD = ofVirtual;
+		NAME_METHOD = name;
+		FACTORY_METHOD = factory;
+		NEW_THREAD_PER_TASK_EXECUTOR_METHOD = newThreadPerTaskExecutor;
+	}
+
+	private static volatile boolean virtualThreadsEnabled = Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY);
+
+	private static volatile ExecutorService sharedExecutor;
+
+	private SocialTaskExecutors() {
+	}
+
+	/**
+	 * @return true if the running JVM supports virtual threads
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		return OF_VIRTUAL_METHOD != null;
+	}
+
+	/**
+	 * @return true if threads created from now on are virtual threads
+	 */
+	public static boolean isVirtualThreadsEnabled() {
+		return virtualThreadsEnabled && isVirtualThreadsSupported();
+	}
+
+	/**
+	 * Enables or disables virtual threads for threads and executors created from now on.
+	 * Enabling them has no effect on JVMs that do not support them.
+	 * Disabled by default, unless the "spring.social.threads.virtual" system property is set to "true".
+	 * @param enabled true to create virtual threads
+	 */
+	public static void setVirtualThreadsEnabled(boolean enabled) {
+		if (enabled && !isVirtualThreadsSupported()) {
+			logger.warn("Virtual threads are not supported by this JVM; falling back to platform threads");
+		}
+		virtualThreadsEnabled = enabled;
+	}
+
+	/**
+	 * Creates a thread factory for blocking work: a virtual thread factory if virtual threads are enabled, a daemon platform thread factory otherwise.
+	 * @param threadNamePrefix the prefix of the names of the created threads
+	 * @return the thread factory
+	 */
+	public static ThreadFactory newThreadFactory(String threadNamePrefix) {
+		if (isVirtualThreadsEnabled()) {
+			ThreadFactory virtualThreadFactory = newVirtualThreadFactory(threadNamePrefix);
+			if (virtualThreadFactory != null) {
+				return virtualThreadFactory;
+			}
+		}
+		CustomizableThreadCreator threadCreator = new CustomizableThreadCreator(threadNamePrefix);
+		threadCreator.setDaemon(true);
+		return threadCreator::createThread;
+	}
+
+	/**
+	 * Creates an executor for blocking work with the default bounds: at most 64 platform threads and 1000 queued tasks.
+	 * @param threadNamePrefix the prefix of the names of the created threads
+	 * @return the executor
+	 * @see #newExecutor(String, int, int)
+	 */
+	public static ExecutorService newExecutor(String threadNamePrefix) {
+		return newExecutor(threadNamePrefix, DEFAULT_MAX_THREADS, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Creates an executor for blocking work: one creating a virtual thread per task if virtual threads are enabled,
+	 * which are cheap enough not to need bounding, or a pool of daemon platform threads otherwise.
+	 * The pool starts threads as tasks come, up to the given maximum, and lets them end when idle; tasks beyond that wait in a queue of the given capacity,
+	 * and once that is full, a task is run by the thread submitting it, which slows submitters down rather than failing their tasks.
+	 * @param threadNamePrefix the prefix of the names of the created threads
+	 * @param maxThreads the maximum number of platform threads
+	 * @param queueCapacity the maximum number of tasks waiting for a platform thread
+	 * @return the executor
+	 */
+	public static ExecutorService newExecutor(String threadNamePrefix, int maxThreads, int queueCapacity) {
+		Assert.isTrue(maxThreads > 0, "The maxThreads property must be positive");
+		Assert.isTrue(queueCapacity > 0, "The queueCapacity property must be positive");
+		ThreadFactory threadFactory = newThreadFactory(threadNamePrefix);
+		if (isVirtualThreadsEnabled()) {
+			try {
+				return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR_METHOD.invoke(null, threadFactory);
+			} catch (Exception e) {
+				logger.warn("Unable to create a virtual thread per task executor; falling back to platform threads", e);
+			}
+		}
+		// as many core threads as the maximum, so that threads are added before tasks are queued
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity),
+				threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Returns the executor shared by library components not given an executor of their own, created on first use by {@link #newExecutor(String)}
+	 * and so bounded the same way.
+	 * @return the shared executor
+	 */
+	public static ExecutorService getSharedExecutor() {
+		ExecutorService executor = sharedExecutor;
+		if (executor == null) {
+			synchronized (SocialTaskExecutors.class) {
+				executor = sharedExecutor;
+				if (executor == null) {
+					executor = newExecutor("social-async-");
+					sharedExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	// internal helpers
+
+	private static ThreadFactory newVirtualThreadFactory(String threadNamePrefix) {
+		try {
+			Object builder = OF_VIRTUAL_METHOD.invoke(null);
+			builder = NAME_METHOD.invoke(builder, threadNamePrefix, 1L);
+			return (ThreadFactory) FACTORY_METHOD.invoke(builder);
+		} catch (Exception e) {
+			logger.warn("Unable to create a virtual thread factory; falling back to platform threads", e);
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Downloads binary resources such as profile pictures and photos through an API binding's {@link RestTemplate} without buffering them in memory.
+ * Where reading a resource as a byte[] holds the whole resource on the heap, the downloader hands the response body on as it is received:
+ * as an InputStream, into a {@link WritableByteChannel}, or into a file by way of {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}.
+ * Requests go through the RestTemplate's interceptors (and thus carry its credentials), and error responses are handled by its error handler.
+ * <pre>
+ * facebook.getStreamingDownloader().download(pictureUrl, Paths.get("picture.jpg"));
+ * </pre>
+ * Downloads go past any {@link CachingRequestInterceptor} or {@link CoalescingRequestInterceptor} among those interceptors,
+ * since both would read the body into memory to keep or share it.
+ */
+public class StreamingDownloader {
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<Boolean> downloading = new ThreadLocal<Boolean>();
+
+	private final RestTemplate restTemplate;
+
+	/**
+	 * Creates a downloader.
+	 * @param restTemplate the RestTemplate to download with
+	 */
+	public StreamingDownloader(RestTemplate restTemplate) {
+		Assert.notNull(restTemplate, "The restTemplate property cannot be null");
+		this.restTemplate = restTemplate;
+	}
+
+	/**
+	 * Opens the body of the resource at the given URL for reading.
+	 * The response stays open until the returned stream is closed, so callers must close it (typically with try-with-resources).
+	 * @param url the URL template of the resource
+	 * @param uriVariables the variables to expand the template
+	 * @return the body of the resource
+	 */
+	public InputStream openStream(String url, Object... uriVariables) {
+		return openStream(restTemplate.getUriTemplateHandler().expand(url, uriVariables));
+	}
+
+	/**
+	 * Opens the body of the resource at the given URL for reading.
+	 * The response stays open until the returned stream is closed, so callers must close it (typically with try-with-resources).
+	 * @param url the URL of the resource
+	 * @return the body of the resource
+	 */
+	public InputStream openStream(URI url) {
+		Assert.notNull(url, "The url property cannot be null");
+		ClientHttpResponse response = null;
+		try {
+			ClientHttpRequest request = restTemplate.getRequestFactory().createRequest(url, HttpMethod.GET);
+			if (request.getHeaders().getAccept().isEmpty()) {
+				request.getHeaders().setAccept(Collections.singletonList(MediaType.ALL));
+			}
+			downloading.set(Boolean.TRUE);
+			try {
+				response = request.execute();
+			} finally {
+				downloading.remove();
+			}
+			if (restTemplate.getErrorHandler().hasError(response)) {
+				restTemplate.getErrorHandler().handleError(response);
+			}
+			return new ResponseInputStream(response);
+		} catch (IOException e) {
+			close(response);
+			throw new ResourceAccessException("I/O error on GET request for \"" + url + "\": " + e.getMessage(), e);
+		} catch (RuntimeException e) {
+			close(response);
+			throw e;
+		}
+	}
+
+	/**
+	 * Downloads the resource at the given URL into the given channel, a chunk at a time.
+	 * The channel is left open.
+	 * @param url the URL of the resource
+	 * @param target the channel to write the body of the resource to
+	 * @return the number of bytes written
+	 */
+	public long download(URI url, WritableByteChannel target) {
+		Assert.notNull(target, "The target property cannot be null");
+		try (InputStream body = openStream(url)) {
+			ReadableByteChannel source = Channels.newChannel(body);
+			ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+			long written = 0;
+			while (source.read(buffer) != -1) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					written += target.write(buffer);
+				}
+				buffer.clear();
+			}
+			return written;
+		} catch (IOException e) {
+			throw new ResourceAccessException("I/O error while downloading \"" + url + "\": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Downloads the resource at the given URL into the given channel, a chunk at a time.
+	 * @param url the URL template of the resource
+	 * @param target the channel to write the body of the resource to
+	 * @param uriVariables the variables to expand the template
+	 * @return the number of bytes written
+	 * @see #download(URI, WritableByteChannel)
+	 */
+	public long download(String url, WritableByteChannel target, Object... uriVariables) {
+		return download(restTemplate.getUriTemplateHandler().expand(url, uriVariables), target);
+	}
+
+	/**
+	 * Downloads the resource at the given URL into the given file, which is created or replaced.
+	 * The body is transferred into the file with {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}, a chunk at a time.
+	 * @param url the URL of the resource
+	 * @param file the file to write the body of the resource to
+	 * @return the number of bytes written
+	 */
+	public long download(URI url, Path file) {
+		Assert.notNull(file, "The file property cannot be null");
+		try (InputStream body = openStream(url);
+				FileChannel target = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ReadableByteChannel source = Channels.newChannel(body);
+			long position = 0;
+			long transferred;
+			while ((transferred = target.transferFrom(source, position, CHUNK_SIZE)) > 0) {
+				position += transferred;
+			}
+			return position;
+		} catch (IOException e) {
+			throw new ResourceAccessException("I/O error while downloading \"" + url + "\" to " + file + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Downloads the resource at the given URL into the given file, which is created or replaced.
+	 * @param url the URL template of the resource
+	 * @param file the file to write the body of the resource to
+	 * @param uriVariables the variables to expand the template
+	 * @return the number of bytes written
+	 * @see #download(URI, Path)
+	 */
+	public long download(String url, Path file, Object... uriVariables) {
+		return download(restTemplate.getUriTemplateHandler().expand(url, uriVariables), file);
+	}
+
+	/**
+	 * Whether the current thread is executing a download's request, which the buffering interceptors let through untouched.
+	 */
+	static boolean isDownloading() {
+		return downloading.get() != null;
+	}
+
+	// internal helpers
+
+	private void close(ClientHttpResponse response) {
+		if (response != null) {
+			response.close();
+		}
+	}
+
+	private static class ResponseInputStream extends FilterInputStream {
+
+		private final ClientHttpResponse response;
+
+		public ResponseInputStream(ClientHttpResponse response) throws IOException {
+			super(response.getBody());
+			this.response = response;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				response.close();
+			}
+		}
+
+	}
+
+}
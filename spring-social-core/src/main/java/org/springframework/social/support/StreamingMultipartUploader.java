@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Iterator;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Uploads multipart bodies written by a {@link StreamingMultipartWriter} through an API binding's {@link RestTemplate} without buffering them in memory.
+ * A RestTemplate with interceptors buffers request bodies whole, so that its interceptors may be handed the body as a byte[].
+ * The uploader instead runs the RestTemplate's interceptors itself, handing them an empty body, and then streams the multipart body
+ * into a request created by a non-buffering request factory (see {@link ClientHttpRequestFactorySelector#getStreamingRequestFactory(String)}).
+ * Interceptors thus add credentials and apply their policies to uploads as usual, but do not see the body.
+ * Responses are read with the RestTemplate's message converters, and error responses are handled by its error handler.
+ */
+public class StreamingMultipartUploader {
+
+	private static final byte[] NO_BODY = new byte[0];
+
+	private final RestTemplate restTemplate;
+
+	private final ClientHttpRequestFactory requestFactory;
+
+	/**
+	 * Creates an uploader.
+	 * @param restTemplate the RestTemplate whose interceptors, message converters and error handler are used
+	 * @param requestFactory the request factory creating the requests the bodies are streamed into; should not buffer request bodies
+	 */
+	public StreamingMultipartUploader(RestTemplate restTemplate, ClientHttpRequestFactory requestFactory) {
+		Assert.notNull(restTemplate, "The restTemplate property cannot be null");
+		Assert.notNull(requestFactory, "The requestFactory property cannot be null");
+		this.restTemplate = restTemplate;
+		this.requestFactory = requestFactory;
+	}
+
+	/**
+	 * Posts a multipart body to the given URL.
+	 * @param url the URL template
+	 * @param multipart the multipart body
+	 * @param responseType the type the response is read as, or null to discard the response
+	 * @param uriVariables the variables to expand the template
+	 * @param <T> the type of the response
+	 * @return the response, or null if no response type is given
+	 */
+	public <T> T post(String url, StreamingMultipartWriter multipart, Class<T> responseType, Object... uriVariables) {
+		return post(restTemplate.getUriTemplateHandler().expand(url, uriVariables), multipart, responseType);
+	}
+
+	/**
+	 * Posts a multipart body to the given URL.
+	 * @param url the URL
+	 * @param multipart the multipart body
+	 * @param responseType the type the response is read as, or null to discard the response
+	 * @param <T> the type of the response
+	 * @return the response, or null if no response type is given
+	 */
+	public <T> T post(URI url, StreamingMultipartWriter multipart, Class<T> responseType) {
+		Assert.notNull(url, "The url property cannot be null");
+		Assert.notNull(multipart, "The multipart property cannot be null");
+		UploadRequest request = new UploadRequest(url);
+		request.getHeaders().setContentType(multipart.getContentType());
+		long contentLength = multipart.getContentLength();
+		if (contentLength >= 0) {
+			request.getHeaders().setContentLength(contentLength);
+		}
+		ClientHttpResponse response = null;
+		try {
+			response = new UploadExecution(multipart).execute(request, NO_BODY);
+			if (restTemplate.getErrorHandler().hasError(response)) {
+				restTemplate.getErrorHandler().handleError(response);
+			}
+			return responseType != null ? new HttpMessageConverterExtractor<T>(responseType, restTemplate.getMessageConverters()).extractData(response) : null;
+		} catch (IOException e) {
+			throw new ResourceAccessException("I/O error on POST request for \"" + url + "\": " + e.getMessage(), e);
+		} finally {
+			if (response != null) {
+				response.close();
+			}
+		}
+	}
+
+	private class UploadExecution implements ClientHttpRequestExecution {
+
+		private final Iterator<ClientHttpRequestInterceptor> interceptors = restTemplate.getInterceptors().iterator();
+
+		private final StreamingMultipartWriter multipart;
+
+		public UploadExecution(StreamingMultipartWriter multipart) {
+			this.multipart = multipart;
+		}
+
+		public ClientHttpResponse execute(HttpRequest request, byte[] body) throws IOException {
+			if (interceptors.hasNext()) {
+				return interceptors.next().intercept(request, body, this);
+			}
+			ClientHttpRequest transportRequest = requestFactory.createRequest(request.getURI(), request.getMethod());
+			transportRequest.getHeaders().putAll(request.getHeaders());
+			if (transportRequest instanceof StreamingHttpOutputMessage) {
+				((StreamingHttpOutputMessage) transportRequest).setBody(multipart::writeTo);
+			} else {
+				multipart.writeTo(transportRequest.getBody());
+			}
+			return transportRequest.execute();
+		}
+
+	}
+
+	private static class UploadRequest implements HttpRequest {
+
+		private final URI uri;
+
+		private final HttpHeaders headers = new HttpHeaders();
+
+		public UploadRequest(URI uri) {
+			this.uri = uri;
+		}
+
+		public HttpMethod getMethod() {
+			return HttpMethod.POST;
+		}
+
+		public String getMethodValue() {
+			return HttpMethod.POST.name();
+		}
+
+		public URI getURI() {
+			return uri;
+		}
+
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+
+	}
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+
+/**
+ * Writes a multipart/form-data body without holding its parts in memory, for uploading videos and large images.
+ * Where {@link org.springframework.http.converter.FormHttpMessageConverter} reads file parts whole before writing them,
+ * the writer reads each file part from a {@link FileChannel} a chunk at a time as the body is written, so the heap used does not grow with the size of the files.
+ * The length of the body is known in advance, so it is sent with a Content-Length, unless chunked transfer encoding is asked for with {@link #setChunked(boolean)}.
+ * The writer may write its body more than once, reading the files anew each time.
+ * <pre>
+ * StreamingMultipartWriter multipart = new StreamingMultipartWriter();
+ * multipart.addPart("caption", "At the beach");
+ * multipart.addPart("source", Paths.get("beach.mp4"), MediaType.parseMediaType("video/mp4"));
+ * facebook.getStreamingUploader().post(uploadUrl, multipart, Map.class);
+ * </pre>
+ * @see StreamingMultipartUploader
+ */
+public class StreamingMultipartWriter {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private static final byte[] CRLF = { '\r', '\n' };
+
+	private static final char[] BOUNDARY_CHARS = "-_1234567890abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+	private final String boundary;
+
+	private final List<Part> parts = new ArrayList<Part>();
+
+	private boolean chunked;
+
+	private UploadProgressListener progressListener;
+
+	/**
+	 * Creates a multipart writer with a random boundary.
+	 */
+	public StreamingMultipartWriter() {
+		this.boundary = generateBoundary();
+	}
+
+	/**
+	 * Sets whether the body is sent with chunked transfer encoding rather than with a Content-Length.
+	 * Defaults to false: the length of the body is computed from the sizes of its files, which most providers' upload endpoints prefer.
+	 * @param chunked true to send the body with chunked transfer encoding
+	 */
+	public void setChunked(boolean chunked) {
+		this.chunked = chunked;
+	}
+
+	/**
+	 * Sets the listener notified of the progress of the upload as the body is written.
+	 * @param progressListener the progress listener
+	 */
+	public void setProgressListener(UploadProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * Adds a text part.
+	 * @param name the name of the part
+	 * @param value the value of the part, written in UTF-8
+	 */
+	public void addPart(String name, String value) {
+		Assert.hasText(name, "The name property cannot be empty");
+		Assert.notNull(value, "The value property cannot be null");
+		parts.add(new Part(headers(name, null, null), value.getBytes(UTF8), null));
+	}
+
+	/**
+	 * Adds a file part, named after the file.
+	 * The file is read as the body is written, not before.
+	 * @param name the name of the part
+	 * @param file the file whose content is the value of the part
+	 * @param contentType the content type of the file
+	 */
+	public void addPart(String name, Path file, MediaType contentType) {
+		Assert.notNull(file, "The file property cannot be null");
+		addPart(name, file, file.getFileName().toString(), contentType);
+	}
+
+	/**
+	 * Adds a file part.
+	 * The file is read as the body is written, not before.
+	 * @param name the name of the part
+	 * @param file the file whose content is the value of the part
+	 * @param filename the filename the part is sent with
+	 * @param contentType the content type of the file
+	 */
+	public void addPart(String name, Path file, String filename, MediaType contentType) {
+		Assert.hasText(name, "The name property cannot be empty");
+		Assert.notNull(file, "The file property cannot be null");
+		Assert.hasText(filename, "The filename property cannot be empty");
+		Assert.notNull(contentType, "The contentType property cannot be null");
+		Assert.isTrue(Files.isReadable(file), "The file " + file + " cannot be read");
+		parts.add(new Part(headers(name, filename, contentType), null, file));
+	}
+
+	/**
+	 * @return the content type of the body, including its boundary
+	 */
+	public MediaType getContentType() {
+		return new MediaType(MediaType.MULTIPART_FORM_DATA, Collections.singletonMap("boundary", boundary));
+	}
+
+	/**
+	 * @return the length of the body in bytes, or -1 if the body is sent with chunked transfer encoding
+	 */
+	public long getContentLength() {
+		return chunked ? -1 : computeContentLength();
+	}
+
+	/**
+	 * Writes the body to the given stream, reading file parts a chunk at a time.
+	 * The stream is left open.
+	 * @param out the stream to write the body to
+	 * @throws IOException if a file cannot be read or the body cannot be written
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		long contentLength = getContentLength();
+		long written = 0;
+		byte[] delimiter = ("--" + boundary + "\r\n").getBytes(UTF8);
+		ByteBuffer buffer = null;
+		for (Part part : parts) {
+			out.write(delimiter);
+			out.write(part.headers);
+			written += delimiter.length + part.headers.length;
+			if (part.file == null) {
+				out.write(part.value);
+				written += part.value.length;
+			} else {
+				if (buffer == null) {
+					buffer = ByteBuffer.allocate(CHUNK_SIZE);
+				}
+				try (FileChannel channel = FileChannel.open(part.file, StandardOpenOption.READ)) {
+					while (channel.read(buffer) != -1) {
+						out.write(buffer.array(), 0, buffer.position());
+						written += buffer.position();
+						buffer.clear();
+						reportProgress(written, contentLength);
+					}
+				}
+			}
+			out.write(CRLF);
+			written += CRLF.length;
+			reportProgress(written, contentLength);
+		}
+		byte[] closeDelimiter = ("--" + boundary + "--\r\n").getBytes(UTF8);
+		out.write(closeDelimiter);
+		out.flush();
+		reportProgress(written + closeDelimiter.length, contentLength);
+	}
+
+	// internal helpers
+
+	private long computeContentLength() {
+		long length = 0;
+		int delimiterLength = ("--" + boundary + "\r\n").getBytes(UTF8).length;
+		for (Part part : parts) {
+			length += delimiterLength + part.headers.length + CRLF.length;
+			if (part.file == null) {
+				length += part.value.length;
+			} else {
+				try {
+					length += Files.size(part.file);
+				} catch (IOException e) {
+					throw new IllegalStateException("Unable to determine the size of " + part.file, e);
+				}
+			}
+		}
+		return length + ("--" + boundary + "--\r\n").getBytes(UTF8).length;
+	}
+
+	private void reportProgress(long written, long contentLength) {
+		if (progressListener != null) {
+			progressListener.onProgress(written, contentLength);
+		}
+	}
+
+	private byte[] headers(String name, String filename, MediaType contentType) {
+		StringBuilder headers = new StringBuilder("Content-Disposition: form-data; name=\"").append(quote(name)).append('"');
+		if (filename != null) {
+			headers.append("; filename=\"").append(quote(filename)).append('"');
+		}
+		headers.append("\r\n");
+		if (contentType != null) {
+			headers.append("Content-Type: ").append(contentType).append("\r\n");
+		}
+		return headers.append("\r\n").toString().getBytes(UTF8);
+	}
+
+	// quotes and line breaks would end the quoted string or the header early; browsers send them percent-encoded
+	private String quote(String value) {
+		return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+	}
+
+	private String generateBoundary() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		char[] boundary = new char[32];
+		for (int i = 0; i < boundary.length; i++) {
+			boundary[i] = BOUNDARY_CHARS[random.nextInt(BOUNDARY_CHARS.length)];
+		}
+		return new String(boundary);
+	}
+
+	private static class Part {
+
+		private final byte[] headers;
+
+		private final byte[] value;
+
+		private final Path file;
+
+		public Part(byte[] headers, byte[] value, Path file) {
+			this.headers = headers;
+			this.value = value;
+			this.file = file;
+		}
+
+	}
+
+}
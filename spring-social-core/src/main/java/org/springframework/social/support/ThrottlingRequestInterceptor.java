@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+
+/**
+ * ClientHttpRequestInterceptor implementation that paces requests according to a {@link RateLimitThrottle},
+ * and feeds the rate limits reported by each response back into it.
+ * A request that would have to wait past the current {@link Deadline} fails right away with a {@link org.springframework.social.DeadlineExceededException}.
+ */
+public class ThrottlingRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	private final RateLimitThrottle throttle;
+
+	private final String userKey;
+
+	/**
+	 * Creates a throttling interceptor.
+	 * @param throttle the rate limit throttle
+	 * @param credentials the credentials the requests are made with, identifying the user whose rate limit applies (may be null for requests made without credentials)
+	 */
+	public ThrottlingRequestInterceptor(RateLimitThrottle throttle, String credentials) {
+		Assert.notNull(throttle, "The throttle property cannot be null");
+		this.throttle = throttle;
+		this.userKey = RateLimitThrottle.userKey(credentials);
+	}
+
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		long delay = throttle.acquire(userKey);
+		if (delay > 0) {
+			try {
+				Deadline.sleepCurrent(delay, request.getMethod() + " " + request.getURI() + " is allowed by the rate limit");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+			}
+		}
+		ClientHttpResponse response = execution.execute(request, body);
+		throttle.update(userKey, response.getRawStatusCode(), response.getHeaders());
+		return response;
+	}
+
+}
@@ -15,20 +15,14 @@
  */
 package org.springframework.social.support;
 
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URLEncoder;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map.Entry;
-import java.util.Set;
 
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
 /**
  * Builds up a URI from individual URI components. Ensures that query parameters are application/x-www-form-urlencoded.
+ * For URIs built repeatedly from the same base, prefer a {@link URITemplate} compiled once.
  * @author Craig Walls
  */
 public class URIBuilder {
@@ -86,44 +80,7 @@ public class URIBuilder {
 	 * @return the URI
 	 */
 	public URI build() {
-		try {
-			StringBuilder builder = new StringBuilder();
-			Set<Entry<String, List<String>>> entrySet = parameters.entrySet();
-			for (Iterator<Entry<String, List<String>>> entryIt = entrySet.iterator(); entryIt.hasNext();) {
-				Entry<String, List<String>> entry = entryIt.next();
-				String name = entry.getKey();
-				List<String> values = entry.getValue();
-				for(Iterator<String> valueIt = values.iterator(); valueIt.hasNext();) {
-					String value = valueIt.next();
-					builder.append(formEncode(name)).append("=");
-					if(value != null) {
-						builder.append(formEncode(value));
-					}
-					if(valueIt.hasNext()) {
-						builder.append("&");
-					}
-				}
-				if(entryIt.hasNext()) {
-					builder.append("&");
-				}
-			}
-			
-			String queryDelimiter = "?";
-			if(URI.create(baseUri).getQuery() != null) {
-				queryDelimiter = "&";
-			}
-			return new URI(baseUri + (builder.length() > 0 ? queryDelimiter + builder.toString() : ""));
-		} catch (URISyntaxException e) {
-			throw new URIBuilderException("Unable to build URI: Bad URI syntax", e);
-		}
-	}
-	
-	private String formEncode(String data) {
-		try {
-			return URLEncoder.encode(data, "UTF-8");
-		}
-		catch (UnsupportedEncodingException wontHappen) {
-			throw new IllegalStateException(wontHappen);
-		}
+		return URITemplate.compile(baseUri).newBuilder().queryParams(parameters).buildURI();
 	}
+
 }
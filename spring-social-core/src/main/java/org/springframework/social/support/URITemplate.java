@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.springframework.util.Assert;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * A base URI compiled once, together with any static query parameters, for building URIs that only differ in their dynamic query parameters.
+ * The base is examined for an existing query when the template is compiled, and static parameters are form-encoded at that point;
+ * dynamic parameters are form-encoded with {@link FormEncoder} straight into a builder sized for the result.
+ * Templates are immutable and may be shared between threads.
+ * <pre>
+ * URITemplate authorize = URITemplate.compile("https://provider.com/oauth/authorize").queryParam("client_id", clientId);
+ * String url = authorize.newBuilder().queryParam("redirect_uri", redirectUri).build();
+ * </pre>
+ * @see URIBuilder
+ */
+public final class URITemplate {
+
+	private final String prefix;
+
+	private final boolean hasQuery;
+
+	private URITemplate(String prefix, boolean hasQuery) {
+		this.prefix = prefix;
+		this.hasQuery = hasQuery;
+	}
+
+	/**
+	 * Compiles a URI template from a base URI, which may already have a query.
+	 * @param baseUri the base URI
+	 * @return the URI template
+	 */
+	public static URITemplate compile(String baseUri) {
+		Assert.notNull(baseUri, "The baseUri property cannot be null");
+		int fragment = baseUri.indexOf('#');
+		int query = baseUri.indexOf('?');
+		return new URITemplate(baseUri, query != -1 && (fragment == -1 || query < fragment));
+	}
+
+	/**
+	 * Returns a template with a static query parameter added to this one.
+	 * @param name the parameter name
+	 * @param value the parameter value (may be null)
+	 * @return a new URI template
+	 */
+	public URITemplate queryParam(String name, String value) {
+		Builder builder = newBuilder();
+		builder.queryParam(name, value);
+		return new URITemplate(builder.builder.toString(), true);
+	}
+
+	/**
+	 * Starts building a URI from this template.
+	 * @return a builder for adding dynamic query parameters
+	 */
+	public Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return the URI this template expands to without any dynamic query parameters
+	 */
+	@Override
+	public String toString() {
+		return prefix;
+	}
+
+	/**
+	 * Adds dynamic query parameters to a URI template.
+	 */
+	public final class Builder {
+
+		private final StringBuilder builder = new StringBuilder(prefix.length() + 128).append(prefix);
+
+		private boolean hasQuery = URITemplate.this.hasQuery;
+
+		private Builder() {
+		}
+
+		/**
+		 * Adds a query parameter, written as "name=value" ("name=" if the value is null).
+		 * @param name the parameter name
+		 * @param value the parameter value (may be null)
+		 * @return this builder
+		 */
+		public Builder queryParam(String name, String value) {
+			appendName(name).append('=');
+			if (value != null) {
+				FormEncoder.encode(value, builder);
+			}
+			return this;
+		}
+
+		/**
+		 * Adds a query parameter without a value, written as just its name.
+		 * @param name the parameter name
+		 * @return this builder
+		 */
+		public Builder queryParam(String name) {
+			appendName(name);
+			return this;
+		}
+
+		/**
+		 * Adds query parameters, in the iteration order of the given map.
+		 * @param params the parameters to add
+		 * @return this builder
+		 */
+		public Builder queryParams(MultiValueMap<String, String> params) {
+			for (Iterator<Entry<String, List<String>>> entries = params.entrySet().iterator(); entries.hasNext();) {
+				Entry<String, List<String>> entry = entries.next();
+				for (String value : entry.getValue()) {
+					queryParam(entry.getKey(), value);
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * @return the URI as a String
+		 */
+		public String build() {
+			return builder.toString();
+		}
+
+		/**
+		 * @return the URI
+		 * @throws URIBuilderException if the result is not a valid URI
+		 */
+		public URI buildURI() {
+			try {
+				return new URI(builder.toString());
+			} catch (URISyntaxException e) {
+				throw new URIBuilderException("Unable to build URI: Bad URI syntax", e);
+			}
+		}
+
+		private StringBuilder appendName(String name) {
+			builder.append(hasQuery ? '&' : '?');
+			hasQuery = true;
+			return FormEncoder.encode(name, builder);
+		}
+
+	}
+
+}
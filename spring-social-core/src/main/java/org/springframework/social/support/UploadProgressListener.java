@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+/**
+ * Notified of the progress of a {@link StreamingMultipartWriter} as it writes a multipart body.
+ * Called on the thread writing the body, after each chunk, so implementations should return quickly.
+ */
+public interface UploadProgressListener {
+
+	/**
+	 * Called after a chunk of the body has been written.
+	 * @param bytesWritten the number of bytes of the body written so far
+	 * @param contentLength the length of the body, or -1 if it is sent with chunked transfer encoding
+	 */
+	void onProgress(long bytesWritten, long contentLength);
+
+}
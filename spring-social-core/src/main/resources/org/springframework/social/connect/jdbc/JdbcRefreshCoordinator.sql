@@ -0,0 +1,16 @@
+-- This SQL contains a "create table" that can be used to create a table that JdbcRefreshCoordinator can keep
+-- refresh leases in. It is, however, not to be assumed to be production-ready, all-purpose SQL. It is merely representative
+-- of the kind of table that JdbcRefreshCoordinator works with. The table and column names, as well as the general
+-- column types, are what is important. Specific column types and sizes that work may vary across database vendors and
+-- the required sizes may vary across API providers. 
+
+create table UserConnectionRefreshLease (providerId varchar(255) not null,
+	providerUserId varchar(255) not null,
+	refreshTokenHash varchar(64),
+	owner varchar(36) not null,
+	leaseExpireTime bigint not null,
+	accessToken varchar(512),
+	refreshToken varchar(512),
+	expireTime bigint,
+	scope varchar(512),
+	primary key (providerId, providerUserId));
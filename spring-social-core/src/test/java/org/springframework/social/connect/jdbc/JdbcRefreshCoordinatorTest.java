@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.connect.jdbc;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseFactory;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.crypto.encrypt.Encryptors;
+import org.springframework.social.connect.ConnectionKey;
+import org.springframework.social.connect.support.RefreshCoordinationException;
+import org.springframework.social.oauth2.AccessGrant;
+
+public class JdbcRefreshCoordinatorTest {
+
+	private static final ConnectionKey KEY = new ConnectionKey("provider", "123");
+
+	private EmbeddedDatabase database;
+
+	private JdbcRefreshCoordinator node1;
+
+	private JdbcRefreshCoordinator node2;
+
+	private final AtomicInteger refreshCount = new AtomicInteger();
+
+	@Before
+	public void setUp() {
+		EmbeddedDatabaseFactory factory = new EmbeddedDatabaseFactory();
+		factory.setDatabaseType(EmbeddedDatabaseType.H2);
+		ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+		populator.addScript(new ClassPathResource("JdbcRefreshCoordinator.sql", JdbcRefreshCoordinator.class));
+		factory.setDatabasePopulator(populator);
+		database = factory.getDatabase();
+		node1 = new JdbcRefreshCoordinator(database, Encryptors.noOpText());
+		node2 = new JdbcRefreshCoordinator(database, Encryptors.noOpText());
+		node1.setPollInterval(10);
+		node2.setPollInterval(10);
+	}
+
+	@After
+	public void tearDown() {
+		if (database != null) {
+			database.shutdown();
+		}
+	}
+
+	@Test
+	public void refresh() {
+		AccessGrant accessGrant = node1.refresh(KEY, "refresh1", refreshTo("access2", "refresh2"));
+		assertEquals("access2", accessGrant.getAccessToken());
+		assertEquals(1, refreshCount.get());
+	}
+
+	@Test
+	public void refresh_alreadyRefreshedByAnotherNode() {
+		node1.refresh(KEY, "refresh1", refreshTo("access2", "refresh2"));
+		AccessGrant accessGrant = node2.refresh(KEY, "refresh1", refreshTo("access3", "refresh3"));
+		assertEquals("access2", accessGrant.getAccessToken());
+		assertEquals("refresh2", accessGrant.getRefreshToken());
+		assertEquals("read write", accessGrant.getScope());
+		assertTrue(accessGrant.getExpireTime() > System.currentTimeMillis() + 3500 * 1000);
+		assertEquals(1, refreshCount.get());
+	}
+
+	@Test
+	public void refresh_nextRefreshToken() {
+		node1.refresh(KEY, "refresh1", refreshTo("access2", "refresh2"));
+		AccessGrant accessGrant = node2.refresh(KEY, "refresh2", refreshTo("access3", "refresh3"));
+		assertEquals("access3", accessGrant.getAccessToken());
+		assertEquals(2, refreshCount.get());
+	}
+
+	@Test
+	public void refresh_waitsForRefreshInProgress() throws Exception {
+		final CountDownLatch refreshing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<AccessGrant> first = executor.submit(() -> node1.refresh(KEY, "refresh1", () -> {
+				refreshing.countDown();
+				await(release);
+				return refreshTo("access2", "refresh2").get();
+			}));
+			assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+			Future<AccessGrant> second = executor.submit(() -> node2.refresh(KEY, "refresh1", refreshTo("access3", "refresh3")));
+			Thread.sleep(100);
+			assertFalse(second.isDone());
+			release.countDown();
+			assertEquals("access2", first.get(5, TimeUnit.SECONDS).getAccessToken());
+			assertEquals("access2", second.get(5, TimeUnit.SECONDS).getAccessToken());
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, refreshCount.get());
+	}
+
+	@Test
+	public void refresh_failureReleasesLease() {
+		try {
+			node1.refresh(KEY, "refresh1", () -> {
+				throw new IllegalStateException("boom");
+			});
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("boom", e.getMessage());
+		}
+		assertEquals(0, leaseCount());
+		assertEquals("access2", node2.refresh(KEY, "refresh1", refreshTo("access2", "refresh2")).getAccessToken());
+	}
+
+	@Test
+	public void refresh_completedLeasesDeletedAfterWaitTimeout() throws Exception {
+		node1.setWaitTimeout(0);
+		node1.refresh(KEY, "refresh1", refreshTo("access2", "refresh2"));
+		assertEquals(1, leaseCount());
+		Thread.sleep(10);
+		node1.refresh(new ConnectionKey("provider", "456"), "refresh1", refreshTo("access2", "refresh2"));
+		// the lease just completed is kept, the one completed before is gone along with its grant
+		assertEquals(1, leaseCount());
+		assertEquals(0, (int) new JdbcTemplate(database).queryForObject("select count(*) from UserConnectionRefreshLease where providerUserId = ?", Integer.class, KEY.getProviderUserId()));
+	}
+
+	@Test
+	public void refresh_abandonedLeaseTakenOver() {
+		insertForeignLease(System.currentTimeMillis() + 50);
+		assertEquals("access2", node1.refresh(KEY, "refresh1", refreshTo("access2", "refresh2")).getAccessToken());
+	}
+
+	@Test(expected = RefreshCoordinationException.class)
+	public void refresh_timeout() {
+		node1.setWaitTimeout(50);
+		insertForeignLease(System.currentTimeMillis() + 60 * 1000);
+		node1.refresh(KEY, "refresh1", refreshTo("access2", "refresh2"));
+	}
+
+	private void insertForeignLease(long leaseExpireTime) {
+		new JdbcTemplate(database).update("insert into UserConnectionRefreshLease (providerId, providerUserId, refreshTokenHash, owner, leaseExpireTime) values (?, ?, ?, ?, ?)",
+				KEY.getProviderId(), KEY.getProviderUserId(), "hash", "someone-else", leaseExpireTime);
+	}
+
+	private int leaseCount() {
+		return new JdbcTemplate(database).queryForObject("select count(*) from UserConnectionRefreshLease", Integer.class);
+	}
+
+	private Supplier<AccessGrant> refreshTo(String accessToken, String refreshToken) {
+		return () -> {
+			refreshCount.incrementAndGet();
+			return new AccessGrant(accessToken, "read write", refreshToken, 3600L);
+		};
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -15,6 +15,8 @@
  */
 package org.springframework.social.connect.jdbc;
 
+import static org.junit.Assert.*;
+
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -33,9 +35,11 @@ import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseFactory;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
 import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import org.springframework.security.crypto.encrypt.Encryptors;
+import org.springframework.social.DeadlineExceededException;
 import org.springframework.social.connect.ConnectionData;
 import org.springframework.social.connect.ConnectionRepository;
 import org.springframework.social.connect.UsersConnectionRepository;
+import org.springframework.social.support.Deadline;
 
 public class JdbcUsersConnectionRepositoryTest extends AbstractUsersConnectionRepositoryTest {
 
@@ -153,6 +157,30 @@ public class JdbcUsersConnectionRepositoryTest extends AbstractUsersConnectionRe
 		insertConnection(FACEBOOK_DATA_1, getUserId2(), 1);
 	}
 	
+	@Test
+	public void deadline_statementsKeepToRemainingTime() {
+		insertFacebookConnection1();
+		Deadline previous = Deadline.setCurrent(Deadline.after(60 * 1000));
+		try {
+			assertEquals(1, getConnectionRepository().findAllConnections().size());
+		} finally {
+			Deadline.setCurrent(previous);
+		}
+	}
+
+	@Test
+	public void deadline_expiredFailsFast() {
+		insertFacebookConnection1();
+		Deadline previous = Deadline.setCurrent(Deadline.after(0));
+		try {
+			getConnectionRepository().findAllConnections();
+			fail("Expected DeadlineExceededException");
+		} catch (DeadlineExceededException e) {
+		} finally {
+			Deadline.setCurrent(previous);
+		}
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void noSuchConnectionFactory() {
 		insertFooConnection();
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.connect.mem;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.springframework.social.connect.ConnectionKey;
+import org.springframework.social.oauth2.AccessGrant;
+
+public class InMemoryRefreshCoordinatorTest {
+
+	private static final ConnectionKey KEY = new ConnectionKey("provider", "123");
+
+	private final AtomicInteger refreshes = new AtomicInteger();
+
+	private final Supplier<AccessGrant> refreshOperation = () -> new AccessGrant("access" + refreshes.incrementAndGet(), null, "refresh2", 3600L);
+
+	@Test
+	public void refresh_staleRefreshTokenGetsLastGrant() {
+		InMemoryRefreshCoordinator refreshCoordinator = new InMemoryRefreshCoordinator();
+		assertEquals("access1", refreshCoordinator.refresh(KEY, "refresh1", refreshOperation).getAccessToken());
+		assertEquals("access1", refreshCoordinator.refresh(KEY, "refresh1", refreshOperation).getAccessToken());
+		assertEquals(1, refreshes.get());
+	}
+
+	@Test
+	public void refresh_outcomeForgottenAfterRetentionPeriod() throws Exception {
+		InMemoryRefreshCoordinator refreshCoordinator = new InMemoryRefreshCoordinator();
+		refreshCoordinator.setRetentionPeriod(50);
+		refreshCoordinator.refresh(KEY, "refresh1", refreshOperation);
+		Thread.sleep(100);
+		assertEquals("access2", refreshCoordinator.refresh(KEY, "refresh1", refreshOperation).getAccessToken());
+		assertEquals(2, refreshes.get());
+	}
+
+}
@@ -16,12 +16,25 @@
 package org.springframework.social.connect.oauth2;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
+import org.springframework.social.connect.ApiAdapter;
 import org.springframework.social.connect.ConnectionData;
 import org.springframework.social.connect.FakeApi;
 import org.springframework.social.connect.FakeApiAdapter;
 import org.springframework.social.connect.support.OAuth2Connection;
+import org.springframework.social.oauth2.AccessGrant;
+import org.springframework.social.oauth2.OAuth2Operations;
+import org.springframework.social.oauth2.OAuth2ServiceProvider;
+import org.springframework.social.support.SocialTaskExecutors;
 import org.springframework.util.SerializationUtils;
 
 public class OAuth2ConnectionTest {
@@ -36,5 +49,107 @@ public class OAuth2ConnectionTest {
 		@SuppressWarnings("unchecked")
 		OAuth2Connection<FakeApi> connectionFromArray = (OAuth2Connection<FakeApi>) SerializationUtils.deserialize(byteArray);
 		assertEquals(connection, connectionFromArray);
+		assertEquals("f", connectionFromArray.createData().getAccessToken());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void apiCallsNotSerialized() throws Exception {
+		final int callers = 50;
+		final CountDownLatch inCall = new CountDownLatch(callers);
+		OAuth2Connection<BlockingApi> connection = new OAuth2Connection<BlockingApi>(
+				new ConnectionData("a", "b", "c", "d", "e", "f", "g", "h", null),
+				new BlockingServiceProvider(inCall), mock(ApiAdapter.class));
+		final BlockingApi api = connection.getApi();
+		ExecutorService executor = SocialTaskExecutors.newExecutor("api-caller-");
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < callers; i++) {
+				results.add(executor.submit(api::call));
+			}
+			// every call only returns once all of them are in flight at the same time
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
 	}
+
+	@Test
+	public void refresh_callerWaitingOnAnotherRefreshDoesNotRefreshAgain() throws Exception {
+		CountDownLatch inRefresh = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		OAuth2Operations oauthOperations = mock(OAuth2Operations.class);
+		when(oauthOperations.refreshAccess("h", null)).thenAnswer(invocation -> {
+			inRefresh.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return new AccessGrant("f2", null, "h2", 3600L);
+		});
+		OAuth2Connection<FakeApi> connection = new OAuth2Connection<FakeApi>(
+				new ConnectionData("a", "b", "c", "d", "e", "f", "g", "h", 123L), new RefreshingServiceProvider(oauthOperations), new FakeApiAdapter());
+		ExecutorService executor = SocialTaskExecutors.newExecutor("refresher-");
+		try {
+			Future<?> first = executor.submit(connection::refresh);
+			assertTrue(inRefresh.await(5, TimeUnit.SECONDS));
+			Future<?> second = executor.submit(connection::refresh);
+			// let the second caller reach the lock before the first refresh completes
+			Thread.sleep(100);
+			release.countDown();
+			first.get(5, TimeUnit.SECONDS);
+			second.get(5, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		verify(oauthOperations, times(1)).refreshAccess("h", null);
+		assertEquals("f2", connection.createData().getAccessToken());
+		// a later refresh goes to the provider again
+		when(oauthOperations.refreshAccess("h2", null)).thenReturn(new AccessGrant("f3", null, "h3", 3600L));
+		connection.refresh();
+		assertEquals("f3", connection.createData().getAccessToken());
+	}
+
+	public interface BlockingApi {
+		boolean call() throws InterruptedException;
+	}
+
+	private static class BlockingServiceProvider implements OAuth2ServiceProvider<BlockingApi> {
+
+		private final CountDownLatch inCall;
+
+		public BlockingServiceProvider(CountDownLatch inCall) {
+			this.inCall = inCall;
+		}
+
+		public OAuth2Operations getOAuthOperations() {
+			return null;
+		}
+
+		public BlockingApi getApi(String accessToken) {
+			return () -> {
+				inCall.countDown();
+				return inCall.await(5, TimeUnit.SECONDS);
+			};
+		}
+
+	}
+
+	private static class RefreshingServiceProvider implements OAuth2ServiceProvider<FakeApi> {
+
+		private final OAuth2Operations oauthOperations;
+
+		public RefreshingServiceProvider(OAuth2Operations oauthOperations) {
+			this.oauthOperations = oauthOperations;
+		}
+
+		public OAuth2Operations getOAuthOperations() {
+			return oauthOperations;
+		}
+
+		public FakeApi getApi(String accessToken) {
+			return new FakeApi() {};
+		}
+
+	}
+
 }
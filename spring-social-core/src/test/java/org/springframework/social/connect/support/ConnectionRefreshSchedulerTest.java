@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.connect.support;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.social.connect.ConnectionData;
+import org.springframework.social.connect.ConnectionKey;
+import org.springframework.social.connect.ConnectionRepository;
+
+public class ConnectionRefreshSchedulerTest {
+
+	private ConnectionRefreshScheduler scheduler;
+
+	private ConnectionRepository connectionRepository;
+
+	@Before
+	public void setup() {
+		scheduler = new ConnectionRefreshScheduler();
+		scheduler.setTickDuration(10);
+		scheduler.setWheelSize(8);
+		scheduler.setLeadTime(1000);
+		scheduler.setRefreshExecutor(Runnable::run);
+		connectionRepository = mock(ConnectionRepository.class);
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.destroy();
+	}
+
+	@Test
+	public void register_refreshedWithinLeadTime() throws Exception {
+		OAuth2Connection<?> connection = connection("123", 500L, 3600 * 1000L);
+		assertTrue(scheduler.register(connection, connectionRepository));
+		verify(connection, timeout(1000)).refresh();
+		verify(connectionRepository, timeout(1000)).updateConnection(connection);
+		Thread.sleep(100);
+		assertEquals(1, scheduler.getRefreshCount());
+		// re-registered with its new expiration time
+		assertEquals(1, scheduler.getTrackedConnectionCount());
+	}
+
+	@Test
+	public void register_notDueYet() throws Exception {
+		// several rotations of the wheel away
+		OAuth2Connection<?> connection = connection("123", 3000L, 3600 * 1000L);
+		scheduler.register(connection, connectionRepository);
+		Thread.sleep(300);
+		verify(connection, never()).refresh();
+	}
+
+	@Test
+	public void register_doesNotExpire() {
+		OAuth2Connection<?> connection = mock(OAuth2Connection.class);
+		when(connection.getKey()).thenReturn(new ConnectionKey("provider", "123"));
+		when(connection.createData()).thenReturn(data("123", null));
+		assertFalse(scheduler.register(connection, connectionRepository));
+		assertEquals(0, scheduler.getTrackedConnectionCount());
+	}
+
+	@Test
+	public void unregister() throws Exception {
+		OAuth2Connection<?> connection = connection("123", 1200L, 3600 * 1000L);
+		scheduler.register(connection, connectionRepository);
+		scheduler.unregister(connection.getKey());
+		Thread.sleep(500);
+		verify(connection, never()).refresh();
+		assertEquals(0, scheduler.getTrackedConnectionCount());
+	}
+
+	@Test
+	public void refresh_rateLimitedPerProvider() throws Exception {
+		scheduler.setRefreshesPerSecond(1);
+		OAuth2Connection<?> first = connection("1", 0L, 3600 * 1000L);
+		OAuth2Connection<?> second = connection("2", 0L, 3600 * 1000L);
+		scheduler.register(first, connectionRepository);
+		scheduler.register(second, connectionRepository);
+		Thread.sleep(300);
+		assertEquals(1, scheduler.getRefreshCount());
+		assertTrue(scheduler.getThrottledCount() > 0);
+		verify(connectionRepository, timeout(2000).times(2)).updateConnection(any());
+	}
+
+	@Test
+	public void refresh_failure() throws Exception {
+		OAuth2Connection<?> connection = connection("123", 500L, 3600 * 1000L);
+		doThrow(new IllegalStateException("boom")).when(connection).refresh();
+		scheduler.register(connection, connectionRepository);
+		verify(connection, timeout(1000)).refresh();
+		Thread.sleep(100);
+		verify(connectionRepository, never()).updateConnection(any());
+		// retry would come after the connection has expired
+		assertEquals(1, scheduler.getRefreshFailureCount());
+		assertEquals(0, scheduler.getTrackedConnectionCount());
+	}
+
+	@Test
+	public void refresh_rejectedByExecutor_postponed() throws Exception {
+		AtomicInteger rejections = new AtomicInteger();
+		scheduler.setRefreshExecutor(task -> {
+			if (rejections.incrementAndGet() <= 2) {
+				throw new RejectedExecutionException("full");
+			}
+			task.run();
+		});
+		OAuth2Connection<?> connection = connection("123", 500L, 3600 * 1000L);
+		scheduler.register(connection, connectionRepository);
+		verify(connection, timeout(1000)).refresh();
+		verify(connectionRepository, timeout(1000)).updateConnection(connection);
+		assertEquals(3, rejections.get());
+	}
+
+	@Test
+	public void register_afterDestroy() {
+		scheduler.destroy();
+		try {
+			scheduler.register(connection("123", 500L, 3600 * 1000L), connectionRepository);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals(0, scheduler.getTrackedConnectionCount());
+		}
+	}
+
+	private OAuth2Connection<?> connection(String providerUserId, Long expiresIn, Long expiresInAfterRefresh) {
+		OAuth2Connection<?> connection = mock(OAuth2Connection.class);
+		long now = System.currentTimeMillis();
+		when(connection.getKey()).thenReturn(new ConnectionKey("provider", providerUserId));
+		when(connection.createData()).thenReturn(data(providerUserId, now + expiresIn), data(providerUserId, now + expiresInAfterRefresh));
+		return connection;
+	}
+
+	private ConnectionData data(String providerUserId, Long expireTime) {
+		return new ConnectionData("provider", providerUserId, null, null, null, "accessToken", null, "refreshToken", expireTime);
+	}
+
+}
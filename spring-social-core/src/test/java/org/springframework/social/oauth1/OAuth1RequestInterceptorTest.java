@@ -16,19 +16,31 @@
 package org.springframework.social.oauth1;
 
 import static org.junit.Assert.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpRequest;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.social.support.ResilienceRequestInterceptor;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.RequestMatcher;
+import org.springframework.web.client.RestTemplate;
 
 public class OAuth1RequestInterceptorTest {
 
@@ -60,6 +72,49 @@ public class OAuth1RequestInterceptorTest {
 		interceptor.intercept(new ServletServerHttpRequest(request), body, execution);
 	}
 
+	@Test
+	public void executedAgain_signatureReplaced() throws Exception {
+		OAuth1RequestInterceptor interceptor = new OAuth1RequestInterceptor(new OAuth1Credentials("consumer_key", "consumer_secret", "access_token", "token_secret"));
+		MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://api.someprovider.com/status"));
+		final List<String> nonces = new ArrayList<String>();
+		ClientHttpRequestExecution execution = new ClientHttpRequestExecution() {
+			public ClientHttpResponse execute(HttpRequest request, byte[] body) throws IOException {
+				List<String> authorizationHeaders = request.getHeaders().get("Authorization");
+				assertEquals(1, authorizationHeaders.size());
+				nonces.add(extractHeaderParameters(authorizationHeaders.get(0)).get("oauth_nonce"));
+				return null;
+			}
+		};
+		interceptor.intercept(request, new byte[0], execution);
+		interceptor.intercept(request, new byte[0], execution);
+		assertEquals(2, nonces.size());
+		assertNotEquals(nonces.get(0), nonces.get(1));
+	}
+
+	@Test
+	public void retriedThroughResilienceInterceptor_signedAnewForEveryAttempt() {
+		ResilienceRequestInterceptor resilienceInterceptor = new ResilienceRequestInterceptor("someprovider");
+		resilienceInterceptor.setInitialBackoff(1);
+		resilienceInterceptor.setMaxBackoff(5);
+		OAuth1RequestInterceptor signer = new OAuth1RequestInterceptor(new OAuth1Credentials("consumer_key", "consumer_secret", "access_token", "token_secret"));
+		RestTemplate restTemplate = new RestTemplate();
+		restTemplate.setInterceptors(Collections.singletonList(resilienceInterceptor.signingWith(signer)));
+		MockRestServiceServer mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+		final List<String> nonces = new ArrayList<String>();
+		RequestMatcher signedOnce = request -> {
+			List<String> authorizationHeaders = request.getHeaders().get("Authorization");
+			assertEquals(1, authorizationHeaders.size());
+			nonces.add(extractHeaderParameters(authorizationHeaders.get(0)).get("oauth_nonce"));
+		};
+		mockServer.expect(requestTo("https://api.someprovider.com/status")).andExpect(signedOnce).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+		mockServer.expect(requestTo("https://api.someprovider.com/status")).andExpect(signedOnce).andRespond(withSuccess("ok", MediaType.TEXT_PLAIN));
+		assertEquals("ok", restTemplate.getForObject("https://api.someprovider.com/status", String.class));
+		mockServer.verify();
+		assertEquals(1, resilienceInterceptor.getRetryCount());
+		assertEquals(2, nonces.size());
+		assertNotEquals(nonces.get(0), nonces.get(1));
+	}
+
 	private Map<String, String> extractHeaderParameters(String authorizationHeader) {
 		String[] keysAndValues = authorizationHeader.substring(6).split(",\\s");
 		Map<String, String> parameters = new HashMap<String, String>();
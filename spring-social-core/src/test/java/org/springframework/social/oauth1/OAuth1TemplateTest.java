@@ -26,6 +26,7 @@ import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.social.support.ClientHttpRequestFactorySelector;
 import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.test.web.client.RequestMatcher;
 import org.springframework.util.MultiValueMap;
@@ -76,6 +77,12 @@ public class OAuth1TemplateTest {
 				customOauth10.buildAuthorizeUrl("request_token", parameters));
 	}
 
+	@Test
+	public void setSharedRequestFactoryKey() {
+		oauth10a.setSharedRequestFactoryKey("someprovider");
+		assertSame(ClientHttpRequestFactorySelector.getSharedRequestFactory("someprovider"), oauth10a.getRestTemplate().getRequestFactory());
+	}
+
 	@Test
 	public void fetchNewRequestToken_OAuth10a() {
 		MockRestServiceServer mockServer = MockRestServiceServer.createServer(oauth10a.getRestTemplate());
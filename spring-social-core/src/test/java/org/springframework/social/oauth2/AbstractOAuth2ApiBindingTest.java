@@ -15,18 +15,29 @@
  */
 package org.springframework.social.oauth2;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.junit.Test;
 import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.util.ClassUtils;
 import org.springframework.web.client.RestTemplate;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 
 /**
  * Test methods for {@link AbstractOAuth2ApiBinding}, to verify the extension point where it's embedded
@@ -59,6 +70,48 @@ public class AbstractOAuth2ApiBindingTest {
 		assertThat(ClassUtils.isCglibProxy(template.getSubSocialTemplate().getRestTemplate()), is(true));
 	}
 
+	@Test
+	public void testSharedMessageConverters() throws Exception {
+		RestTemplate first = new SharingSocialTemplate("first access code").getRestTemplate();
+		RestTemplate second = new SharingSocialTemplate("second access code").getRestTemplate();
+		assertThat(second.getMessageConverters().size(), equalTo(first.getMessageConverters().size()));
+		for (int i = 0; i < first.getMessageConverters().size(); i++) {
+			assertThat(second.getMessageConverters().get(i), sameInstance(first.getMessageConverters().get(i)));
+		}
+		RestTemplate unshared = new MySocialTemplate("some access code").getRestTemplate();
+		assertThat(unshared.getMessageConverters().get(0), not(sameInstance(first.getMessageConverters().get(0))));
+	}
+
+	@Test
+	public void testAsyncOperations() throws Exception {
+		MySocialTemplate template = new MySocialTemplate("some access code");
+		template.setAsyncExecutor(Runnable::run);
+		MockRestServiceServer mockServer = MockRestServiceServer.bindTo(template.getRestTemplate()).build();
+		mockServer.expect(requestTo("https://api.someprovider.com/me"))
+			.andExpect(method(HttpMethod.GET))
+			.andExpect(header("Authorization", "Bearer some access code"))
+			.andRespond(withSuccess("me", MediaType.TEXT_PLAIN));
+		CompletableFuture<String> me = template.getAsyncOperations().getForObject("https://api.someprovider.com/me", String.class);
+		assertThat(me.get(), equalTo("me"));
+		mockServer.verify();
+	}
+
+	/**
+	 * Imaginary social service that shares its message converters across instances.
+	 */
+	private static class SharingSocialTemplate extends AbstractOAuth2ApiBinding {
+
+		public SharingSocialTemplate(String accessToken) {
+			super(accessToken);
+		}
+
+		@Override
+		protected boolean shareMessageConverters() {
+			return true;
+		}
+
+	}
+
 	/**
 	 * Imaginary social service that extends the {@link AbstractOAuth2ApiBinding}. Used to
 	 * demonstrate default behavior of pass through on {@link RestTemplate}.
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.oauth2;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.social.support.AllocationMeter;
+
+public class AccessTokenResponseHttpMessageConverterTest {
+
+	private final AccessTokenResponseHttpMessageConverter converter = new AccessTokenResponseHttpMessageConverter();
+
+	@Test
+	public void canRead() {
+		assertTrue(converter.canRead(Map.class, MediaType.APPLICATION_JSON));
+		assertTrue(converter.canRead(Map.class, MediaType.APPLICATION_FORM_URLENCODED));
+		assertTrue(converter.canRead(Map.class, MediaType.TEXT_PLAIN));
+		assertFalse(converter.canRead(String.class, MediaType.APPLICATION_JSON));
+		assertFalse(converter.canWrite(Map.class, MediaType.APPLICATION_JSON));
+	}
+
+	@Test
+	public void read_json() throws Exception {
+		Map<String, Object> response = read("{\"access_token\":\"abc\",\"expires_in\":3600,\"scope\":\"read\",\"user\":{\"id\":42,\"roles\":[\"a\",\"b\"]},\"admin\":true}", MediaType.APPLICATION_JSON);
+		assertEquals("abc", response.get("access_token"));
+		assertEquals(3600L, response.get("expires_in"));
+		assertEquals("read", response.get("scope"));
+		assertEquals(Boolean.TRUE, response.get("admin"));
+		assertEquals("{\"id\":42,\"roles\":[\"a\",\"b\"]}", response.get("user"));
+	}
+
+	@Test
+	public void read_expires() throws Exception {
+		assertEquals(5183999L, read("access_token=a&expires=5183999", MediaType.TEXT_PLAIN).get("expires_in"));
+		assertEquals(5183999L, read("{\"access_token\":\"a\",\"expires\":5183999}", MediaType.APPLICATION_JSON).get("expires_in"));
+		Map<String, Object> both = read("access_token=a&expires=60&expires_in=3600", MediaType.APPLICATION_FORM_URLENCODED);
+		assertEquals(3600L, both.get("expires_in"));
+		assertFalse(both.containsKey("expires"));
+	}
+
+	@Test
+	public void read_json_expiresInAsString() throws Exception {
+		assertEquals(3600L, read("{\"access_token\":\"abc\",\"expires_in\":\"3600\"}", MediaType.APPLICATION_JSON).get("expires_in"));
+		assertEquals("soon", read("{\"access_token\":\"abc\",\"expires_in\":\"soon\"}", MediaType.APPLICATION_JSON).get("expires_in"));
+	}
+
+	@Test
+	public void read_form() throws Exception {
+		Map<String, Object> response = read("access_token=a%7Cb&expires_in=5183999&refresh_token=", MediaType.APPLICATION_FORM_URLENCODED);
+		assertEquals("a|b", response.get("access_token"));
+		assertEquals(5183999L, response.get("expires_in"));
+		assertEquals("", response.get("refresh_token"));
+	}
+
+	@Test
+	public void read_textPlain() throws Exception {
+		assertEquals("a", read("access_token=a&expires=5183999\n", MediaType.TEXT_PLAIN).get("access_token"));
+		assertEquals("b", read("  {\"access_token\":\"b\"}", MediaType.TEXT_PLAIN).get("access_token"));
+	}
+
+	@Test
+	public void read_allocationsPerExchange() throws Exception {
+		Assume.assumeTrue(AllocationMeter.isSupported());
+		String body = "{\"access_token\":\"2YotnFZFEjr1zCsicMWpAA\",\"token_type\":\"bearer\",\"expires_in\":3600," +
+				"\"refresh_token\":\"tGzv3JOkF0XG5Qx2TlKWIA\",\"scope\":\"read write\",\"user_id\":\"42\"}";
+		int exchanges = 2000;
+		for (int i = 0; i < exchanges; i++) {
+			read(body, MediaType.APPLICATION_JSON);
+		}
+		long before = AllocationMeter.allocatedBytes();
+		for (int i = 0; i < exchanges; i++) {
+			read(body, MediaType.APPLICATION_JSON);
+		}
+		long perExchange = (AllocationMeter.allocatedBytes() - before) / exchanges;
+		// the parser's buffers are recycled, so what remains is the Map, its values and the message itself: a few kilobytes
+		assertTrue("Allocated " + perExchange + " bytes per token response", perExchange < 16 * 1024);
+	}
+
+	@Test(expected = HttpMessageNotReadableException.class)
+	public void read_notAJsonObject() throws Exception {
+		read("[\"access_token\"]", MediaType.APPLICATION_JSON);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> read(String body, MediaType contentType) throws Exception {
+		MockHttpInputMessage inputMessage = new MockHttpInputMessage(body.getBytes("UTF-8"));
+		inputMessage.getHeaders().setContentType(contentType);
+		return converter.read((Class<Map<String, Object>>) (Class<?>) Map.class, inputMessage);
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.oauth2;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ClientCredentialsGrantManagerTest {
+
+	private OAuth2Operations oauthOperations;
+
+	private ClientCredentialsGrantManager grantManager;
+
+	@Before
+	public void setup() {
+		oauthOperations = mock(OAuth2Operations.class);
+		grantManager = new ClientCredentialsGrantManager(oauthOperations);
+		grantManager.setRenewalExecutor(new Executor() {
+			public void execute(Runnable command) {
+				command.run();
+			}
+		});
+	}
+
+	@Test
+	public void getAccessGrant_cachedUntilRenewalSkew() {
+		when(oauthOperations.authenticateClient("read")).thenReturn(new AccessGrant("token1", "read", null, 3600L));
+		assertEquals("token1", grantManager.getAccessGrant("read").getAccessToken());
+		assertEquals("token1", grantManager.getAccessGrant("read").getAccessToken());
+		verify(oauthOperations, times(1)).authenticateClient("read");
+		assertEquals(1, grantManager.getHitCount());
+		assertEquals(1, grantManager.getMissCount());
+		assertEquals(1, grantManager.getRenewalCount());
+	}
+
+	@Test
+	public void getAccessGrant_keyedByScope() {
+		when(oauthOperations.authenticateClient(null)).thenReturn(new AccessGrant("noscope"));
+		when(oauthOperations.authenticateClient("read")).thenReturn(new AccessGrant("read"));
+		assertEquals("noscope", grantManager.getAccessGrant().getAccessToken());
+		assertEquals("read", grantManager.getAccessGrant("read").getAccessToken());
+		assertEquals("noscope", grantManager.getAccessGrant().getAccessToken());
+		verify(oauthOperations, times(1)).authenticateClient(null);
+		verify(oauthOperations, times(1)).authenticateClient("read");
+	}
+
+	@Test
+	public void getAccessGrant_renewsInBackgroundWithinSkew() {
+		when(oauthOperations.authenticateClient(null)).thenReturn(new AccessGrant("token1", null, null, 30L), new AccessGrant("token2", null, null, 3600L));
+		grantManager.setRenewalSkew(60 * 1000);
+		assertEquals("token1", grantManager.getAccessGrant().getAccessToken());
+		// still valid, so handed out while the renewal happens
+		assertEquals("token1", grantManager.getAccessGrant().getAccessToken());
+		assertEquals("token2", grantManager.getAccessGrant().getAccessToken());
+		verify(oauthOperations, times(2)).authenticateClient(null);
+		assertEquals(2, grantManager.getRenewalCount());
+	}
+
+	@Test
+	public void getAccessGrant_expired() {
+		when(oauthOperations.authenticateClient(null)).thenReturn(new AccessGrant("token1", null, null, -1L), new AccessGrant("token2", null, null, 3600L));
+		assertEquals("token1", grantManager.getAccessGrant().getAccessToken());
+		assertEquals("token2", grantManager.getAccessGrant().getAccessToken());
+		assertEquals(2, grantManager.getMissCount());
+	}
+
+	@Test
+	public void getAccessGrant_failure() {
+		when(oauthOperations.authenticateClient(null)).thenThrow(new IllegalStateException("boom"));
+		try {
+			grantManager.getAccessGrant();
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("boom", e.getMessage());
+		}
+		assertEquals(1, grantManager.getRenewalFailureCount());
+	}
+
+	@Test
+	public void getAccessGrant_concurrentRequestsCoalesced() throws Exception {
+		final CountDownLatch inTokenEndpoint = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		when(oauthOperations.authenticateClient(null)).thenAnswer(new Answer<AccessGrant>() {
+			public AccessGrant answer(InvocationOnMock invocation) throws Throwable {
+				inTokenEndpoint.countDown();
+				release.await(5, TimeUnit.SECONDS);
+				return new AccessGrant("token", null, null, 3600L);
+			}
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<AccessGrant> first = executor.submit(() -> grantManager.getAccessGrant());
+			assertTrue(inTokenEndpoint.await(5, TimeUnit.SECONDS));
+			Future<AccessGrant> second = executor.submit(() -> grantManager.getAccessGrant());
+			Thread.sleep(100);
+			release.countDown();
+			assertEquals("token", first.get(5, TimeUnit.SECONDS).getAccessToken());
+			assertEquals("token", second.get(5, TimeUnit.SECONDS).getAccessToken());
+		} finally {
+			executor.shutdownNow();
+		}
+		verify(oauthOperations, times(1)).authenticateClient(null);
+	}
+
+	@Test
+	public void getAccessGrant_errorReachesWaiters() throws Exception {
+		final CountDownLatch inTokenEndpoint = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		when(oauthOperations.authenticateClient(null)).thenAnswer(new Answer<AccessGrant>() {
+			public AccessGrant answer(InvocationOnMock invocation) throws Throwable {
+				inTokenEndpoint.countDown();
+				release.await(5, TimeUnit.SECONDS);
+				throw new AssertionError("boom");
+			}
+		}).thenReturn(new AccessGrant("token", null, null, 3600L));
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<AccessGrant> first = executor.submit(() -> grantManager.getAccessGrant());
+			assertTrue(inTokenEndpoint.await(5, TimeUnit.SECONDS));
+			Future<AccessGrant> second = executor.submit(() -> grantManager.getAccessGrant());
+			Thread.sleep(100);
+			release.countDown();
+			assertFailedWithError(first);
+			assertFailedWithError(second);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, grantManager.getRenewalFailureCount());
+		// the failed renewal is no longer pending, so the next request tries again
+		assertEquals("token", grantManager.getAccessGrant().getAccessToken());
+	}
+
+	private void assertFailedWithError(Future<AccessGrant> future) throws Exception {
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("Expected AssertionError");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof AssertionError);
+			assertEquals("boom", e.getCause().getMessage());
+		}
+	}
+
+}
@@ -18,15 +18,22 @@ package org.springframework.social.oauth2;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
 
+import org.junit.Assume;
 import org.junit.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
 import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpRequest;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.social.support.AllocationMeter;
 
 public class OAuth2RequestInterceptorTest {
 	
@@ -48,6 +55,55 @@ public class OAuth2RequestInterceptorTest {
 		assertThatInterceptorWritesAuthorizationHeader(interceptor, "Token token=\"access_token\"");
 	}
 
+	@Test
+	public void headersModifiedInPlace() throws Exception {
+		OAuth2RequestInterceptor interceptor = new OAuth2RequestInterceptor("access_token", OAuth2Version.BEARER);
+		MockHttpServletRequest request = new MockHttpServletRequest(HttpMethod.GET.name(), "https://api.someprovider.com/me");
+		final HttpRequest originalRequest = new ServletServerHttpRequest(request);
+		ClientHttpRequestExecution execution = new ClientHttpRequestExecution() {
+			public ClientHttpResponse execute(HttpRequest request, byte[] body) throws IOException {
+				assertSame(originalRequest, request);
+				assertEquals("Bearer access_token", request.getHeaders().getFirst("Authorization"));
+				return null;
+			}
+		};
+		interceptor.intercept(originalRequest, new byte[0], execution);
+	}
+
+	@Test
+	public void intercept_allocations() throws Exception {
+		Assume.assumeTrue(AllocationMeter.isSupported());
+		OAuth2RequestInterceptor interceptor = new OAuth2RequestInterceptor("access_token", OAuth2Version.BEARER);
+		MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, new URI("https://api.someprovider.com/me"));
+		request.getHeaders().setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+		final HttpHeaders readOnlyHeaders = HttpHeaders.readOnlyHttpHeaders(request.getHeaders());
+		HttpRequest readOnlyRequest = new HttpRequestWrapper(request) {
+			@Override
+			public HttpHeaders getHeaders() {
+				return readOnlyHeaders;
+			}
+		};
+		int requests = 10000;
+		long inPlace = allocatedBytes(interceptor, request, requests);
+		long decorated = allocatedBytes(interceptor, readOnlyRequest, requests);
+		assertEquals("Bearer access_token", request.getHeaders().getFirst("Authorization"));
+		// writable headers only get the header set; read-only ones cost a decorator and a copy of the headers per request
+		assertTrue("Allocated " + inPlace / requests + " bytes per request, against " + decorated / requests + " with a copy of the headers", inPlace * 2 < decorated);
+	}
+
+	private long allocatedBytes(OAuth2RequestInterceptor interceptor, HttpRequest request, int requests) throws IOException {
+		ClientHttpRequestExecution execution = (interceptedRequest, interceptedBody) -> null;
+		byte[] body = new byte[0];
+		for (int i = 0; i < requests; i++) {
+			interceptor.intercept(request, body, execution);
+		}
+		long before = AllocationMeter.allocatedBytes();
+		for (int i = 0; i < requests; i++) {
+			interceptor.intercept(request, body, execution);
+		}
+		return AllocationMeter.allocatedBytes() - before;
+	}
+
 	private void assertThatInterceptorWritesAuthorizationHeader(OAuth2RequestInterceptor interceptor, final String expected) throws Exception {
 		byte[] body = "status=Hello+there".getBytes();
 		MockHttpServletRequest request = new MockHttpServletRequest(HttpMethod.POST.name(), "https://api.someprovider.com/status/update");
@@ -17,6 +17,7 @@ package org.springframework.social.oauth2;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.springframework.http.HttpMethod.POST;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
@@ -29,6 +30,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.MediaType;
+import org.springframework.social.support.ClientHttpRequestFactorySelector;
 import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.test.web.client.ResponseActions;
 
@@ -48,6 +50,12 @@ public class OAuth2TemplateTest {
 		oAuth2TemplateParamBased.setUseParametersForClientAuthentication(true);
 	}
 
+	@Test
+	public void setSharedRequestFactoryKey() {
+		oAuth2TemplateParamBased.setSharedRequestFactoryKey("someprovider");
+		assertSame(ClientHttpRequestFactorySelector.getSharedRequestFactory("someprovider"), oAuth2TemplateParamBased.getRestTemplate().getRequestFactory());
+	}
+
 	@Test
 	public void buildAuthorizeUrl_codeResponseType() {
 		OAuth2Parameters parameters = new OAuth2Parameters();
@@ -115,6 +123,21 @@ public class OAuth2TemplateTest {
 		assertEquals("read", accessGrant.getScope());
 	}
 
+	@Test
+	public void exchangeForAccess_formEncodedResponse() {
+		MockRestServiceServer mockServer = MockRestServiceServer.createServer(oAuth2Template.getRestTemplate());
+		mockServer.expect(requestTo(ACCESS_TOKEN_URL))
+				.andExpect(method(POST))
+				.andRespond(withSuccess(new ClassPathResource("accessToken.facebook", getClass()), MediaType.TEXT_PLAIN));
+		AccessGrant accessGrant = oAuth2Template.exchangeForAccess("code", "https://www.someclient.com/callback", null);
+		assertEquals("162868103756545|bf4de6ed613f7901204c222g-738140579|YAufyoV9n7LmEAgzRKqnc300B0B", accessGrant.getAccessToken());
+		long approximateExpirationTime = System.currentTimeMillis() + 5183999000L;
+		long actualExpirationTime = (long) accessGrant.getExpireTime();
+		//allow for 1 second of wiggle room on expiration time.
+		assertTrue(approximateExpirationTime - actualExpirationTime < 1000);
+		assertNull(accessGrant.getScope());
+	}
+
 	@Test
 	public void exchangeForAccess_jsonResponse_noExpiresIn() {
 		AccessGrant accessGrant = getAccessGrant("accessToken_noExpiresIn.json");
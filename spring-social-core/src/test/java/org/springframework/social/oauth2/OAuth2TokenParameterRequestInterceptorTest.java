@@ -18,7 +18,9 @@ package org.springframework.social.oauth2;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.net.URI;
 
+import org.junit.Assume;
 import org.junit.Test;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpRequest;
@@ -26,7 +28,9 @@ import org.springframework.http.MediaType;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpRequest;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.social.support.AllocationMeter;
 
 public class OAuth2TokenParameterRequestInterceptorTest {
 
@@ -36,6 +40,46 @@ public class OAuth2TokenParameterRequestInterceptorTest {
 		assertThatInterceptorAddsTokenParameter(interceptor);
 	}
 	
+	@Test
+	public void rewrittenUriReused() throws Exception {
+		OAuth2TokenParameterRequestInterceptor interceptor = new OAuth2TokenParameterRequestInterceptor("SOME TOKEN", "token");
+		final URI[] uris = new URI[2];
+		for (int i = 0; i < 2; i++) {
+			final int index = i;
+			MockHttpServletRequest request = new MockHttpServletRequest(HttpMethod.GET.name(), "/me");
+			request.setServerName("api.someprovider.com");
+			request.setQueryString("fields=name");
+			interceptor.intercept(new ServletServerHttpRequest(request), new byte[0], new ClientHttpRequestExecution() {
+				public ClientHttpResponse execute(HttpRequest request, byte[] body) throws IOException {
+					uris[index] = request.getURI();
+					return null;
+				}
+			});
+		}
+		assertEquals("fields=name&token=SOME+TOKEN", uris[0].getRawQuery());
+		assertSame(uris[0], uris[1]);
+	}
+
+	@Test
+	public void intercept_allocations() throws Exception {
+		Assume.assumeTrue(AllocationMeter.isSupported());
+		OAuth2TokenParameterRequestInterceptor interceptor = new OAuth2TokenParameterRequestInterceptor("SOMETOKEN");
+		MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, new URI("https://api.someprovider.com/me?fields=name,email"));
+		ClientHttpRequestExecution execution = (interceptedRequest, interceptedBody) -> null;
+		byte[] body = new byte[0];
+		int requests = 10000;
+		for (int i = 0; i < requests; i++) {
+			interceptor.intercept(request, body, execution);
+		}
+		long before = AllocationMeter.allocatedBytes();
+		for (int i = 0; i < requests; i++) {
+			interceptor.intercept(request, body, execution);
+		}
+		long perRequest = (AllocationMeter.allocatedBytes() - before) / requests;
+		// a repeated URI is looked up, not rebuilt: only the wrapper carrying it is left, where a rewrite parses and encodes a new URI
+		assertTrue("Allocated " + perRequest + " bytes per request", perRequest < 256);
+	}
+
 	private void assertThatInterceptorAddsTokenParameter(OAuth2TokenParameterRequestInterceptor interceptor) throws Exception {
 		byte[] body = "status=Hello+there".getBytes();
 		MockHttpServletRequest originalRequest = new MockHttpServletRequest(HttpMethod.POST.name(), "/status/update");
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads how many bytes the current thread has allocated on the heap, for tests asserting that a code path does not
+ * allocate in proportion to the data it moves.
+ * Relies on the HotSpot extension of {@link ThreadMXBean}; tests should skip themselves where {@link #isSupported()} is false.
+ */
+public final class AllocationMeter {
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private AllocationMeter() {
+	}
+
+	/**
+	 * @return true if allocated bytes can be read on this JVM
+	 */
+	public static boolean isSupported() {
+		if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+			return false;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+		return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+	}
+
+	/**
+	 * @return the bytes the current thread has allocated so far
+	 */
+	public static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+}
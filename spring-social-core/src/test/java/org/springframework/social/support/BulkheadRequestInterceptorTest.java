@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.social.ConcurrencyLimitExceededException;
+
+public class BulkheadRequestInterceptorTest {
+
+	private final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://api.someprovider.com/me"));
+
+	private ConcurrencyLimiter limiter;
+
+	private BulkheadRequestInterceptor interceptor;
+
+	@Before
+	public void setup() {
+		limiter = new ConcurrencyLimiter("someprovider", 1);
+		limiter.setMinLimit(1);
+		interceptor = new BulkheadRequestInterceptor(limiter);
+	}
+
+	@Test
+	public void slotHeldUntilResponseClosed() throws Exception {
+		ClientHttpResponse response = interceptor.intercept(request, new byte[0], (request, body) -> new MockClientHttpResponse("me".getBytes(), HttpStatus.OK));
+		// the body is yet to be read
+		assertEquals(1, limiter.getInFlight());
+		try {
+			interceptor.intercept(request, new byte[0], (request, body) -> new MockClientHttpResponse("me".getBytes(), HttpStatus.OK));
+			fail("Expected ConcurrencyLimitExceededException");
+		} catch (ConcurrencyLimitExceededException e) {
+			assertEquals("someprovider", e.getProviderId());
+		}
+		response.close();
+		response.close();
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(0, limiter.getDroppedCount());
+	}
+
+	@Test
+	public void overloadedResponse_dropped() throws Exception {
+		interceptor.intercept(request, new byte[0], (request, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.SERVICE_UNAVAILABLE)).close();
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(1, limiter.getDroppedCount());
+	}
+
+	@Test
+	public void timeoutReadingBody_dropped() throws Exception {
+		InputStream slowBody = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new SocketTimeoutException("Read timed out");
+			}
+		};
+		ClientHttpResponse response = interceptor.intercept(request, new byte[0], (request, body) -> new MockClientHttpResponse(slowBody, HttpStatus.OK));
+		try {
+			response.getBody().read();
+			fail("Expected SocketTimeoutException");
+		} catch (SocketTimeoutException e) {
+		}
+		response.close();
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(1, limiter.getDroppedCount());
+	}
+
+	@Test
+	public void failedRequest_slotReleased() throws Exception {
+		try {
+			interceptor.intercept(request, new byte[0], (request, body) -> {
+				throw new IOException("Connection reset");
+			});
+			fail("Expected IOException");
+		} catch (IOException e) {
+		}
+		assertEquals(0, limiter.getInFlight());
+		try {
+			interceptor.intercept(request, new byte[0], (request, body) -> {
+				throw new OutOfMemoryError("Java heap space");
+			});
+			fail("Expected OutOfMemoryError");
+		} catch (OutOfMemoryError e) {
+		}
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(0, limiter.getDroppedCount());
+	}
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+
+public class CachingRequestInterceptorTest {
+
+	private static final String PROFILE_URL = "https://api.someprovider.com/me";
+
+	private HttpResponseCache cache;
+
+	private RestTemplate restTemplate;
+
+	private MockRestServiceServer mockServer;
+
+	@Before
+	public void setup() {
+		cache = new HttpResponseCache();
+		restTemplate = restTemplate("token");
+		mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+	}
+
+	@Test
+	public void maxAge() {
+		mockServer.expect(requestTo(PROFILE_URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.CACHE_CONTROL, "private, max-age=60")));
+		assertEquals("me", restTemplate.getForObject(PROFILE_URL, String.class));
+		assertEquals("me", restTemplate.getForObject(PROFILE_URL, String.class));
+		mockServer.verify();
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(0.5, cache.getHitRatio(), 0.001);
+	}
+
+	@Test
+	public void etagRevalidation() {
+		mockServer.expect(requestTo(PROFILE_URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.ETAG, "\"v1\"")));
+		mockServer.expect(requestTo(PROFILE_URL))
+			.andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+			.andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+		mockServer.expect(requestTo(PROFILE_URL))
+			.andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+			.andRespond(withSuccess("me again", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.ETAG, "\"v2\"")));
+		assertEquals("me", restTemplate.getForObject(PROFILE_URL, String.class));
+		assertEquals("me", restTemplate.getForObject(PROFILE_URL, String.class));
+		assertEquals("me again", restTemplate.getForObject(PROFILE_URL, String.class));
+		mockServer.verify();
+		assertEquals(1, cache.getRevalidatedCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void lastModifiedRevalidation() {
+		mockServer.expect(requestTo(PROFILE_URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.LAST_MODIFIED, "Wed, 21 Oct 2015 07:28:00 GMT")));
+		mockServer.expect(requestTo(PROFILE_URL))
+			.andExpect(header(HttpHeaders.IF_MODIFIED_SINCE, "Wed, 21 Oct 2015 07:28:00 GMT"))
+			.andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+		assertEquals("me", restTemplate.getForObject(PROFILE_URL, String.class));
+		assertEquals("me", restTemplate.getForObject(PROFILE_URL, String.class));
+		mockServer.verify();
+	}
+
+	@Test
+	public void noStore() {
+		mockServer.expect(requestTo(PROFILE_URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.CACHE_CONTROL, "no-store, max-age=60")));
+		mockServer.expect(requestTo(PROFILE_URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.CACHE_CONTROL, "no-store, max-age=60")));
+		restTemplate.getForObject(PROFILE_URL, String.class);
+		restTemplate.getForObject(PROFILE_URL, String.class);
+		mockServer.verify();
+		assertEquals(0, cache.getResponseCount());
+	}
+
+	@Test
+	public void partitionedByCredentials() {
+		RestTemplate otherUser = restTemplate("other token");
+		MockRestServiceServer otherServer = MockRestServiceServer.bindTo(otherUser).build();
+		mockServer.expect(requestTo(PROFILE_URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+		otherServer.expect(requestTo(PROFILE_URL)).andRespond(withSuccess("someone else", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+		assertEquals("me", restTemplate.getForObject(PROFILE_URL, String.class));
+		assertEquals("someone else", otherUser.getForObject(PROFILE_URL, String.class));
+		assertEquals("me", restTemplate.getForObject(PROFILE_URL, String.class));
+		mockServer.verify();
+		otherServer.verify();
+		assertEquals(2, cache.getResponseCount());
+	}
+
+	@Test
+	public void sizeBudget() {
+		cache = new HttpResponseCache(1024);
+		restTemplate = restTemplate("token");
+		mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+		for (int i = 0; i < 4; i++) {
+			mockServer.expect(requestTo(PROFILE_URL + "/" + i)).andRespond(withSuccess(new String(new char[300]).replace('\0', 'x'), MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+			restTemplate.getForObject(PROFILE_URL + "/" + i, String.class);
+		}
+		mockServer.verify();
+		assertTrue(cache.getSize() <= 1024);
+		assertTrue(cache.getEvictionCount() > 0);
+		assertEquals(4 - cache.getEvictionCount(), cache.getResponseCount());
+	}
+
+	@Test
+	public void keyedByAccept() {
+		mockServer.expect(requestTo(PROFILE_URL)).andExpect(header(HttpHeaders.ACCEPT, "application/json"))
+			.andRespond(withSuccess("{}", MediaType.APPLICATION_JSON).headers(headers(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+		mockServer.expect(requestTo(PROFILE_URL)).andExpect(header(HttpHeaders.ACCEPT, "image/png"))
+			.andRespond(withSuccess(new byte[] { 1, 2, 3 }, MediaType.IMAGE_PNG).headers(headers(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+		assertEquals("{}", exchange("application/json", String.class));
+		assertArrayEquals(new byte[] { 1, 2, 3 }, exchange("image/png", byte[].class));
+		assertEquals("{}", exchange("application/json", String.class));
+		mockServer.verify();
+		assertEquals(2, cache.getResponseCount());
+	}
+
+	@Test
+	public void varyingOnOtherHeaders_notCached() {
+		HttpHeaders headers = headers(HttpHeaders.CACHE_CONTROL, "max-age=60");
+		headers.set(HttpHeaders.VARY, "Accept, Accept-Language");
+		mockServer.expect(requestTo(PROFILE_URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN).headers(headers));
+		restTemplate.getForObject(PROFILE_URL, String.class);
+		mockServer.verify();
+		assertEquals(0, cache.getResponseCount());
+	}
+
+	@Test
+	public void oversizedBodyWithoutContentLength_notBuffered() throws Exception {
+		cache.setMaxEntrySize(16);
+		byte[] body = new byte[1024];
+		ByteArrayInputStream received = new ByteArrayInputStream(body);
+		mockServer.expect(requestTo(PROFILE_URL)).andRespond(request -> {
+			MockClientHttpResponse response = new MockClientHttpResponse(received, HttpStatus.OK);
+			response.getHeaders().set(HttpHeaders.CACHE_CONTROL, "max-age=60");
+			return response;
+		});
+		byte[] read = restTemplate.execute(PROFILE_URL, HttpMethod.GET, null, response -> {
+			byte[] start = new byte[8];
+			assertEquals(8, response.getBody().read(start));
+			// no more than one byte past the maximum entry size has been taken from the connection
+			assertEquals(body.length - 17, received.available());
+			return StreamUtils.copyToByteArray(response.getBody());
+		});
+		assertEquals(body.length - 8, read.length);
+		mockServer.verify();
+		assertEquals(0, cache.getResponseCount());
+	}
+
+	private <T> T exchange(String accept, Class<T> responseType) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.ACCEPT, accept);
+		return restTemplate.exchange(PROFILE_URL, HttpMethod.GET, new HttpEntity<Void>(headers), responseType).getBody();
+	}
+
+	private RestTemplate restTemplate(String credentials) {
+		RestTemplate restTemplate = new RestTemplate();
+		restTemplate.setInterceptors(Collections.singletonList(new CachingRequestInterceptor(cache, credentials)));
+		return restTemplate;
+	}
+
+	private HttpHeaders headers(String name, String value) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(name, value);
+		return headers;
+	}
+
+}
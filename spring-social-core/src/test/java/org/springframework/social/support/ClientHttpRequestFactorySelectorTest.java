@@ -15,12 +15,24 @@
  */
 package org.springframework.social.support;
 
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.client.HttpClient;
 import org.junit.After;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -29,6 +41,12 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
+import org.springframework.social.DeadlineExceededException;
+import org.springframework.web.client.RestTemplate;
+
+import com.sun.net.httpserver.HttpServer;
 
 public class ClientHttpRequestFactorySelectorTest {
 
@@ -36,6 +54,7 @@ public class ClientHttpRequestFactorySelectorTest {
 	public void teardown() {
 		System.getProperties().remove("http.proxyHost");
 		System.getProperties().remove("http.proxyPort");
+		ClientHttpRequestFactorySelector.resetHttpClientSettings();
 	}
 	
 	@Test
@@ -69,6 +88,111 @@ public class ClientHttpRequestFactorySelectorTest {
 //		assertEquals(80, proxy.getPort());
 	}
 
+	@Test
+	public void getSharedRequestFactory() {
+		ClientHttpRequestFactory requestFactory = ClientHttpRequestFactorySelector.getSharedRequestFactory("providerA");
+		assertSame(requestFactory, ClientHttpRequestFactorySelector.getSharedRequestFactory("providerA"));
+		assertNotSame(requestFactory, ClientHttpRequestFactorySelector.getSharedRequestFactory("providerB"));
+		assertNotSame(requestFactory, ClientHttpRequestFactorySelector.getRequestFactory());
+	}
+
+	@Test
+	public void getRequestFactory_pooled() {
+		HttpClientSettings settings = new HttpClientSettings();
+		settings.setMaxTotal(42);
+		settings.setMaxPerRoute(7);
+		ClientHttpRequestFactorySelector.setHttpClientSettings(settings);
+		try {
+			HttpComponentsClientHttpRequestFactory first = (HttpComponentsClientHttpRequestFactory) ClientHttpRequestFactorySelector.getRequestFactory();
+			HttpComponentsClientHttpRequestFactory second = (HttpComponentsClientHttpRequestFactory) ClientHttpRequestFactorySelector.getRequestFactory();
+			assertSame(first.getHttpClient(), second.getHttpClient());
+			ConnectionPoolStatistics statistics = ClientHttpRequestFactorySelector.getConnectionPoolStatistics();
+			assertEquals(42, statistics.getMax());
+			assertEquals(0, statistics.getLeased());
+			assertEquals(0, statistics.getPending());
+		} finally {
+			ClientHttpRequestFactorySelector.setHttpClientSettings(new HttpClientSettings());
+		}
+	}
+
+	@Test
+	public void setHttpClientSettings_requestFactoryHandedOutEarlierMovesToNewTransport() throws Exception {
+		HttpComponentsClientHttpRequestFactory requestFactory = (HttpComponentsClientHttpRequestFactory) ClientHttpRequestFactorySelector.getSharedRequestFactory("providerH");
+		HttpClient before = requestFactory.getHttpClient();
+		HttpClientSettings settings = new HttpClientSettings();
+		settings.setMaxTotal(42);
+		ClientHttpRequestFactorySelector.setHttpClientSettings(settings);
+		HttpClient after = requestFactory.getHttpClient();
+		assertNotSame(before, after);
+		assertSame(after, ((HttpComponentsClientHttpRequestFactory) ClientHttpRequestFactorySelector.getRequestFactory()).getHttpClient());
+		assertEquals(42, ClientHttpRequestFactorySelector.getConnectionPoolStatistics().getMax());
+		assertNotNull(requestFactory.createRequest(new URI("https://api.someprovider.com/me"), HttpMethod.GET));
+	}
+
+	@Test
+	public void getSharedRequestFactory_ownSettings() {
+		HttpClientSettings settings = new HttpClientSettings();
+		settings.setMaxTotal(3);
+		ClientHttpRequestFactorySelector.setHttpClientSettings("providerC", settings);
+		HttpComponentsClientHttpRequestFactory shared = (HttpComponentsClientHttpRequestFactory) ClientHttpRequestFactorySelector.getSharedRequestFactory("providerC");
+		HttpComponentsClientHttpRequestFactory unshared = (HttpComponentsClientHttpRequestFactory) ClientHttpRequestFactorySelector.getRequestFactory();
+		assertNotSame(shared.getHttpClient(), unshared.getHttpClient());
+	}
+
+	@Test
+	public void setHttpClientSettings_replacesOnlyThatKeysTransport() {
+		ClientHttpRequestFactorySelector.setHttpClientSettings("providerE", new HttpClientSettings());
+		ClientHttpRequestFactorySelector.setHttpClientSettings("providerF", new HttpClientSettings());
+		ClientHttpRequestFactory providerE = ClientHttpRequestFactorySelector.getSharedRequestFactory("providerE");
+		ClientHttpRequestFactory providerF = ClientHttpRequestFactorySelector.getSharedRequestFactory("providerF");
+		ClientHttpRequestFactory shared = ClientHttpRequestFactorySelector.getSharedRequestFactory("providerG");
+		HttpClientSettings settings = new HttpClientSettings();
+		settings.setMaxTotal(4);
+		ClientHttpRequestFactorySelector.setHttpClientSettings("providerE", settings);
+		assertNotSame(providerE, ClientHttpRequestFactorySelector.getSharedRequestFactory("providerE"));
+		assertSame(providerF, ClientHttpRequestFactorySelector.getSharedRequestFactory("providerF"));
+		assertSame(shared, ClientHttpRequestFactorySelector.getSharedRequestFactory("providerG"));
+	}
+
+	@Test
+	public void getRequestFactory_okHttp() {
+		HttpClientSettings settings = new HttpClientSettings();
+		settings.setClientType(HttpClientType.OK_HTTP);
+		settings.setMaxTotal(5);
+		ClientHttpRequestFactorySelector.setHttpClientSettings("providerD", settings);
+		assertTrue(ClientHttpRequestFactorySelector.getSharedRequestFactory("providerD") instanceof OkHttp3ClientHttpRequestFactory);
+		assertTrue(ClientHttpRequestFactorySelector.getRequestFactory() instanceof HttpComponentsClientHttpRequestFactory);
+		assertTrue(ClientHttpRequestFactorySelector.getConnectionPoolStatistics().getMax() >= 5);
+	}
+
+	@Test
+	public void getRequestFactory_okHttp_deadlinePassed() throws Exception {
+		HttpClientSettings settings = new HttpClientSettings();
+		settings.setClientType(HttpClientType.OK_HTTP);
+		ClientHttpRequestFactorySelector.setHttpClientSettings("providerD", settings);
+		ClientHttpRequestFactory requestFactory = ClientHttpRequestFactorySelector.getSharedRequestFactory("providerD");
+		assertNotNull(requestFactory.createRequest(new URI("https://api.someprovider.com/me"), HttpMethod.GET));
+		Deadline previous = Deadline.setCurrent(Deadline.after(1));
+		try {
+			Thread.sleep(10);
+			requestFactory.createRequest(new URI("https://api.someprovider.com/me"), HttpMethod.GET);
+			fail("Expected DeadlineExceededException");
+		} catch (DeadlineExceededException e) {
+			// expected
+		} finally {
+			Deadline.setCurrent(previous);
+		}
+	}
+
+	@Test
+	public void getSharedRequestFactory_concurrentCallsReuseConnections() throws Exception {
+		// 8 callers making 400 calls in all: connections grow with the calls in flight, not with the calls made
+		assertTrue(connectionsOpened(HttpClientType.HTTP_COMPONENTS, 20, 8, 50) <= 8);
+		assertTrue(connectionsOpened(HttpClientType.OK_HTTP, 20, 8, 50) <= 8);
+		// calls beyond the per-route limit wait for a pooled connection rather than opening one
+		assertTrue(connectionsOpened(HttpClientType.HTTP_COMPONENTS, 2, 8, 50) <= 2);
+	}
+
 	@Test
 	public void bufferRequests() throws Exception {
 		ClientHttpRequest mockRequest = mock(ClientHttpRequest.class);
@@ -87,4 +211,48 @@ public class ClientHttpRequestFactorySelectorTest {
 		response.getBody();
 		verify(mockRequest, times(1)).getBody();
 	}
+
+	// the number of connections a local HTTP/1.1 server sees while the given number of callers make their calls through a shared request factory
+	private int connectionsOpened(HttpClientType clientType, int maxPerRoute, int callers, final int callsPerCaller) throws Exception {
+		final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+		final byte[] body = "{\"id\":\"42\"}".getBytes("UTF-8");
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/me", exchange -> {
+			connections.add(exchange.getRemoteAddress());
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		ExecutorService serverThreads = Executors.newFixedThreadPool(callers);
+		server.setExecutor(serverThreads);
+		server.start();
+		ExecutorService callerThreads = Executors.newFixedThreadPool(callers);
+		try {
+			HttpClientSettings settings = new HttpClientSettings();
+			settings.setClientType(clientType);
+			settings.setMaxPerRoute(maxPerRoute);
+			ClientHttpRequestFactorySelector.setHttpClientSettings("providerH", settings);
+			final RestTemplate restTemplate = new RestTemplate(ClientHttpRequestFactorySelector.getSharedRequestFactory("providerH"));
+			final String url = "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort() + "/me";
+			List<Future<?>> calls = new ArrayList<Future<?>>();
+			for (int i = 0; i < callers; i++) {
+				calls.add(callerThreads.submit(() -> {
+					for (int j = 0; j < callsPerCaller; j++) {
+						assertEquals("{\"id\":\"42\"}", restTemplate.getForObject(url, String.class));
+					}
+					return null;
+				}));
+			}
+			for (Future<?> call : calls) {
+				call.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			callerThreads.shutdownNow();
+			server.stop(0);
+			serverThreads.shutdownNow();
+		}
+		return connections.size();
+	}
+
 }
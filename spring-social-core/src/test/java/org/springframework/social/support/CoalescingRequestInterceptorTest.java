@@ -0,0 +1,250 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.social.DeadlineExceededException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+public class CoalescingRequestInterceptorTest {
+
+	private static final String URL = "https://api.someprovider.com/page";
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private volatile boolean fail;
+
+	private volatile Error error;
+
+	private volatile boolean contentLength;
+
+	private RequestCoalescer coalescer;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		coalescer = new RequestCoalescer();
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void teardown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void identicalRequests_coalesced() throws Exception {
+		RestTemplate restTemplate = restTemplate("app token");
+		List<Future<String>> pages = new ArrayList<Future<String>>();
+		for (int i = 0; i < 5; i++) {
+			pages.add(executor.submit(() -> restTemplate.getForObject(URL, String.class)));
+		}
+		awaitCoalesced(4);
+		release.countDown();
+		for (Future<String> page : pages) {
+			assertEquals("page 1", page.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, calls.get());
+		assertEquals(1, coalescer.getRequestCount());
+		assertEquals(4, coalescer.getCoalescedCount());
+		assertEquals(0, coalescer.getInFlightCount());
+		// no longer in flight, so sent afresh
+		assertEquals("page 2", restTemplate.getForObject(URL, String.class));
+	}
+
+	@Test
+	public void differentCredentials_notCoalesced() throws Exception {
+		Future<String> first = executor.submit(() -> restTemplate("token 1").getForObject(URL, String.class));
+		Future<String> second = executor.submit(() -> restTemplate("token 2").getForObject(URL, String.class));
+		while (calls.get() < 2) {
+			Thread.sleep(10);
+		}
+		release.countDown();
+		assertNotEquals(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+		assertEquals(0, coalescer.getCoalescedCount());
+	}
+
+	@Test
+	public void failure_sharedByWaiters() throws Exception {
+		fail = true;
+		RestTemplate restTemplate = restTemplate("app token");
+		List<Future<String>> pages = new ArrayList<Future<String>>();
+		for (int i = 0; i < 3; i++) {
+			pages.add(executor.submit(() -> restTemplate.getForObject(URL, String.class)));
+		}
+		awaitCoalesced(2);
+		release.countDown();
+		for (Future<String> page : pages) {
+			try {
+				page.get(5, TimeUnit.SECONDS);
+				fail("Expected ResourceAccessException");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof ResourceAccessException);
+			}
+		}
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void error_sharedByWaitersAndUnregistered() throws Exception {
+		error = new OutOfMemoryError("Simulated");
+		RestTemplate restTemplate = restTemplate("app token");
+		List<Future<String>> pages = new ArrayList<Future<String>>();
+		for (int i = 0; i < 3; i++) {
+			pages.add(executor.submit(() -> restTemplate.getForObject(URL, String.class)));
+		}
+		awaitCoalesced(2);
+		release.countDown();
+		for (Future<String> page : pages) {
+			try {
+				page.get(5, TimeUnit.SECONDS);
+				fail("Expected OutOfMemoryError");
+			} catch (ExecutionException e) {
+				assertSame(error, e.getCause());
+			}
+		}
+		assertEquals(0, coalescer.getInFlightCount());
+	}
+
+	@Test
+	public void waiter_boundedByDeadline() throws Exception {
+		RestTemplate restTemplate = restTemplate("app token");
+		Future<String> first = executor.submit(() -> restTemplate.getForObject(URL, String.class));
+		while (calls.get() < 1) {
+			Thread.sleep(10);
+		}
+		Future<String> waiter = executor.submit(() -> {
+			Deadline.setCurrent(Deadline.after(100));
+			try {
+				return restTemplate.getForObject(URL, String.class);
+			} finally {
+				Deadline.setCurrent(null);
+			}
+		});
+		try {
+			waiter.get(5, TimeUnit.SECONDS);
+			fail("Expected DeadlineExceededException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof DeadlineExceededException);
+		}
+		release.countDown();
+		assertEquals("page 1", first.get(5, TimeUnit.SECONDS));
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void oversizedBody_passedThroughAndSentByWaiters() throws Exception {
+		assertOversizedBodyPassedThrough();
+	}
+
+	@Test
+	public void oversizedContentLength_passedThroughAndSentByWaiters() throws Exception {
+		contentLength = true;
+		assertOversizedBodyPassedThrough();
+	}
+
+	@Test
+	public void post_notCoalesced() {
+		release.countDown();
+		RestTemplate restTemplate = restTemplate("app token");
+		assertEquals("page 1", restTemplate.postForObject(URL, "form", String.class));
+		assertEquals("page 2", restTemplate.postForObject(URL, "form", String.class));
+		assertEquals(0, coalescer.getRequestCount());
+	}
+
+	private RestTemplate restTemplate(String credentials) {
+		RestTemplate restTemplate = new RestTemplate((uri, method) -> {
+			int call = calls.incrementAndGet();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			if (fail) {
+				throw new IOException("Connection reset");
+			}
+			if (error != null) {
+				throw error;
+			}
+			MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+			MockClientHttpResponse response = new MockClientHttpResponse(("page " + call).getBytes(), HttpStatus.OK);
+			response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+			if (contentLength) {
+				response.getHeaders().setContentLength(("page " + call).length());
+			}
+			request.setResponse(response);
+			return request;
+		});
+		restTemplate.setInterceptors(Collections.singletonList(new CoalescingRequestInterceptor(coalescer, credentials)));
+		return restTemplate;
+	}
+
+	private void assertOversizedBodyPassedThrough() throws Exception {
+		coalescer.setMaxBodySize(4);
+		RestTemplate restTemplate = restTemplate("app token");
+		List<Future<String>> pages = new ArrayList<Future<String>>();
+		for (int i = 0; i < 3; i++) {
+			pages.add(executor.submit(() -> restTemplate.getForObject(URL, String.class)));
+		}
+		awaitCoalesced(2);
+		release.countDown();
+		Set<String> answers = new HashSet<String>();
+		for (Future<String> page : pages) {
+			answers.add(page.get(5, TimeUnit.SECONDS));
+		}
+		// the first response is too large to share, so each waiter is answered by a call of its own
+		assertEquals(new HashSet<String>(Arrays.asList("page 1", "page 2", "page 3")), answers);
+		assertEquals(3, calls.get());
+		assertEquals(1, coalescer.getPassedThroughCount());
+		assertEquals(0, coalescer.getInFlightCount());
+	}
+
+	private void awaitCoalesced(int count) throws InterruptedException {
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (coalescer.getCoalescedCount() < count && System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, coalescer.getCoalescedCount());
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+
+public class CompressionRequestInterceptorTest {
+
+	private static final String URL = "https://api.someprovider.com/friends";
+
+	private ResponseCompression compression;
+
+	private MockClientHttpRequest lastRequest;
+
+	@Before
+	public void setup() {
+		compression = new ResponseCompression();
+	}
+
+	@Test
+	public void acceptEncodingAdvertised() throws Exception {
+		restTemplate(friends(), null, HttpStatus.OK).getForObject(URL, String.class);
+		assertEquals("gzip, deflate", lastRequest.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+	}
+
+	@Test
+	public void acceptEncodingKeptWhenSet() throws Exception {
+		RestTemplate restTemplate = restTemplate(friends(), null, HttpStatus.OK);
+		restTemplate.getInterceptors().add(0, (request, body, execution) -> execution.execute(HttpRequestDecorator.setHeader(request, HttpHeaders.ACCEPT_ENCODING, "identity"), body));
+		restTemplate.getForObject(URL, String.class);
+		assertEquals("identity", lastRequest.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+	}
+
+	@Test
+	public void gzip_decodedIntoJackson() throws Exception {
+		byte[] json = friends();
+		List<?> friends = restTemplate(gzip(json), "gzip", HttpStatus.OK).getForObject(URL, List.class);
+		assertEquals(500, friends.size());
+		assertEquals("friend 499", ((Map<?, ?>) friends.get(499)).get("name"));
+		assertEquals(1, compression.getResponseCount());
+		assertEquals(1, compression.getCompressedResponseCount());
+		assertEquals(json.length, compression.getBytesDecoded());
+		// the repetitive payload of a typical provider response compresses well
+		assertTrue(compression.getCompressionRatio() < 0.2);
+	}
+
+	@Test
+	public void gzip_decodedAsRead() throws Exception {
+		Assume.assumeTrue(AllocationMeter.isSupported());
+		// a feed of 50,000 entries: about 3.7 MB decoded
+		byte[] json = friends(50000);
+		MockClientHttpResponse received = new MockClientHttpResponse(gzip(json), HttpStatus.OK);
+		received.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+		MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create(URL));
+		byte[] buffer = new byte[8192];
+		long decoded = 0;
+		long before = AllocationMeter.allocatedBytes();
+		try (ClientHttpResponse response = new CompressionRequestInterceptor(compression).intercept(request, new byte[0], (interceptedRequest, requestBody) -> received)) {
+			InputStream body = response.getBody();
+			for (int read; (read = body.read(buffer)) != -1;) {
+				decoded += read;
+			}
+		}
+		long allocated = AllocationMeter.allocatedBytes() - before;
+		assertEquals(json.length, decoded);
+		// the body is inflated into the reader's buffer as it is read, never held whole
+		assertTrue("Allocated " + allocated + " bytes decoding " + decoded, allocated < json.length / 100);
+		assertTrue(compression.getBytesReceived() * 5 < compression.getBytesDecoded());
+	}
+
+	@Test
+	public void gzip_headersAdjusted() throws Exception {
+		ResponseEntity<String> response = restTemplate(gzip(friends()), "gzip", HttpStatus.OK).getForEntity(URL, String.class);
+		assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH));
+		assertEquals(new String(friends(), "UTF-8"), response.getBody());
+		assertEquals(gzip(friends()).length, compression.getBytesReceived());
+		assertEquals(friends().length, compression.getBytesDecoded());
+	}
+
+	@Test
+	public void deflate_zlibWrapped() throws Exception {
+		byte[] json = friends();
+		assertEquals(500, restTemplate(deflate(json, false), "deflate", HttpStatus.OK).getForObject(URL, List.class).size());
+		assertEquals(json.length, compression.getBytesDecoded());
+	}
+
+	@Test
+	public void deflate_raw() throws Exception {
+		byte[] json = friends();
+		assertEquals(500, restTemplate(deflate(json, true), "deflate", HttpStatus.OK).getForObject(URL, List.class).size());
+		assertEquals(json.length, compression.getBytesDecoded());
+	}
+
+	@Test
+	public void uncompressed_passedThrough() throws Exception {
+		byte[] json = friends();
+		assertEquals(500, restTemplate(json, null, HttpStatus.OK).getForObject(URL, List.class).size());
+		assertEquals(1, compression.getResponseCount());
+		assertEquals(0, compression.getCompressedResponseCount());
+		assertEquals(json.length, compression.getBytesReceived());
+		assertEquals(json.length, compression.getBytesDecoded());
+		assertEquals(1.0, compression.getCompressionRatio(), 0.0);
+	}
+
+	@Test
+	public void emptyCompressedBody() throws Exception {
+		ResponseEntity<String> response = restTemplate(new byte[0], "gzip", HttpStatus.OK).getForEntity(URL, String.class);
+		assertNull(response.getBody());
+		response = restTemplate(new byte[0], "gzip", HttpStatus.NO_CONTENT).exchange(URL, HttpMethod.GET, null, String.class);
+		assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+	}
+
+	@Test
+	public void gzip_decoderClosedWithResponse() throws Exception {
+		assertDecoderClosedWithResponse(gzip(friends()), "gzip");
+	}
+
+	@Test
+	public void deflate_decoderClosedWithResponse() throws Exception {
+		assertDecoderClosedWithResponse(deflate(friends(), true), "deflate");
+	}
+
+	private void assertDecoderClosedWithResponse(byte[] body, String contentEncoding) throws IOException {
+		MockClientHttpResponse received = new MockClientHttpResponse(body, HttpStatus.OK);
+		received.getHeaders().set(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+		ClientHttpResponse response = new CompressionRequestInterceptor(compression).intercept(new MockClientHttpRequest(HttpMethod.GET, URI.create(URL)), new byte[0], (request, requestBody) -> received);
+		InputStream decoded = response.getBody();
+		assertEquals('[', decoded.read());
+		response.close();
+		try {
+			decoded.read();
+			fail("Expected the decoder to be closed");
+		} catch (IOException e) {
+		}
+	}
+
+	private RestTemplate restTemplate(byte[] body, String contentEncoding, HttpStatus status) {
+		RestTemplate restTemplate = new RestTemplate((uri, method) -> {
+			MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+			MockClientHttpResponse response = new MockClientHttpResponse(body, status);
+			response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+			response.getHeaders().setContentLength(body.length);
+			if (contentEncoding != null) {
+				response.getHeaders().set(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+			}
+			request.setResponse(response);
+			lastRequest = request;
+			return request;
+		});
+		restTemplate.setInterceptors(new ArrayList<ClientHttpRequestInterceptor>(Collections.singletonList(new CompressionRequestInterceptor(compression))));
+		return restTemplate;
+	}
+
+	private byte[] friends() throws IOException {
+		return friends(500);
+	}
+
+	private byte[] friends(int count) throws IOException {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < count; i++) {
+			json.append(i > 0 ? "," : "").append("{\"id\":").append(i).append(",\"name\":\"friend ").append(i).append("\",\"link\":\"https://www.someprovider.com/friends/").append(i).append("\"}");
+		}
+		return json.append("]").toString().getBytes("UTF-8");
+	}
+
+	private byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		out.write(data);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private byte[] deflate(byte[] data, boolean raw) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DeflaterOutputStream out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, raw));
+		out.write(data);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.social.ConcurrencyLimitExceededException;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+public class ConcurrencyLimiterTest {
+
+	private static final long MILLIS = 1000 * 1000;
+
+	@Test
+	public void tryAcquire_rejectedBeyondLimit() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("someprovider", 2);
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+		assertEquals(2, limiter.getInFlight());
+		assertEquals(1, limiter.getRejectedCount());
+		limiter.onIgnore();
+		assertTrue(limiter.tryAcquire());
+	}
+
+	@Test
+	public void limit_growsWhileLatencyIsSteady() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("someprovider", 4);
+		for (int i = 0; i < 20; i++) {
+			saturate(limiter);
+			completeAll(limiter, 50 * MILLIS);
+		}
+		assertTrue(limiter.getLimit() > 4);
+		assertEquals(50, limiter.getMinRtt());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void limit_shrinksAsLatencyGrows() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("someprovider", 40);
+		saturate(limiter);
+		completeAll(limiter, 50 * MILLIS);
+		int limit = limiter.getLimit();
+		for (int i = 0; i < 5; i++) {
+			saturate(limiter);
+			completeAll(limiter, 500 * MILLIS);
+		}
+		assertTrue(limiter.getLimit() < limit);
+	}
+
+	@Test
+	public void limit_shrinksOnDrops() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("someprovider", 10);
+		limiter.setMinLimit(5);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(limiter.tryAcquire());
+			limiter.onDropped();
+		}
+		assertEquals(5, limiter.getLimit());
+		assertEquals(10, limiter.getDroppedCount());
+	}
+
+	@Test
+	public void interceptor() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("someprovider", 1);
+		limiter.setMinLimit(1);
+		RestTemplate restTemplate = new RestTemplate();
+		restTemplate.setInterceptors(Collections.singletonList(new BulkheadRequestInterceptor(limiter)));
+		MockRestServiceServer mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+		mockServer.expect(requestTo("https://api.someprovider.com/me")).andRespond(withSuccess("me", MediaType.TEXT_PLAIN));
+		mockServer.expect(requestTo("https://api.someprovider.com/me")).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+		assertEquals("me", restTemplate.getForObject("https://api.someprovider.com/me", String.class));
+		try {
+			restTemplate.getForObject("https://api.someprovider.com/me", String.class);
+			fail("Expected HttpServerErrorException");
+		} catch (HttpServerErrorException e) {
+		}
+		mockServer.verify();
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(1, limiter.getDroppedCount());
+		assertTrue(limiter.tryAcquire());
+		try {
+			restTemplate.getForObject("https://api.someprovider.com/me", String.class);
+			fail("Expected ConcurrencyLimitExceededException");
+		} catch (ConcurrencyLimitExceededException e) {
+			assertEquals("someprovider", e.getProviderId());
+		}
+	}
+
+	private void saturate(ConcurrencyLimiter limiter) {
+		while (limiter.tryAcquire()) {
+		}
+	}
+
+	private void completeAll(ConcurrencyLimiter limiter, long rttNanos) {
+		while (limiter.getInFlight() > 0) {
+			limiter.onSuccess(rttNanos);
+		}
+	}
+
+}
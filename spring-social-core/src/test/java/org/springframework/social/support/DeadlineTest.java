@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.social.DeadlineExceededException;
+
+public class DeadlineTest {
+
+	@After
+	public void teardown() {
+		Deadline.setCurrent(null);
+	}
+
+	@Test
+	public void remaining() {
+		Deadline deadline = Deadline.after(60 * 1000);
+		assertFalse(deadline.isExpired());
+		assertTrue(deadline.getRemaining() > 59 * 1000);
+		assertTrue(Deadline.after(0).isExpired());
+		assertEquals(0, Deadline.after(0).getRemaining());
+	}
+
+	@Test
+	public void capTimeout() {
+		Deadline deadline = Deadline.after(60 * 1000);
+		assertEquals(5000, deadline.capTimeout(5000));
+		assertTrue(deadline.capTimeout(120 * 1000) <= 60 * 1000);
+		assertTrue(deadline.capTimeout(0) > 59 * 1000);
+		assertTrue(deadline.capTimeout(-1) > 59 * 1000);
+		assertEquals(1, Deadline.after(0).capTimeout(5000));
+	}
+
+	@Test
+	public void sleepCurrent_failsFastPastDeadline() throws Exception {
+		Deadline.sleepCurrent(1, "nothing");
+		Deadline.setCurrent(Deadline.after(60 * 1000));
+		Deadline.sleepCurrent(1, "something");
+		Deadline.setCurrent(Deadline.after(100));
+		try {
+			Deadline.sleepCurrent(60 * 1000, "something slow");
+			fail("Expected DeadlineExceededException");
+		} catch (DeadlineExceededException e) {
+			assertTrue(e.getMessage().contains("something slow"));
+		}
+	}
+
+	@Test
+	public void setCurrent_returnsPrevious() {
+		assertNull(Deadline.getCurrent());
+		Deadline outer = Deadline.after(1000);
+		assertNull(Deadline.setCurrent(outer));
+		Deadline inner = Deadline.after(500);
+		assertSame(outer, Deadline.setCurrent(inner));
+		assertSame(inner, Deadline.getCurrent());
+		assertSame(inner, Deadline.setCurrent(outer));
+		assertSame(outer, Deadline.setCurrent(null));
+		assertNull(Deadline.getCurrent());
+	}
+
+	@Test
+	public void checkCurrent() {
+		Deadline.checkCurrent("nothing");
+		Deadline.setCurrent(Deadline.after(0));
+		try {
+			Deadline.checkCurrent("calling the provider");
+			fail("Expected DeadlineExceededException");
+		} catch (DeadlineExceededException e) {
+			assertEquals("Deadline exceeded before calling the provider", e.getMessage());
+		}
+	}
+
+	@Test
+	public void bindCurrent() throws Exception {
+		Supplier<Deadline> task = Deadline::getCurrent;
+		assertSame(task, Deadline.bindCurrent(task));
+		Deadline deadline = Deadline.after(1000);
+		Deadline.setCurrent(deadline);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertNull(CompletableFuture.supplyAsync(task, executor).get());
+			assertSame(deadline, CompletableFuture.supplyAsync(Deadline.bindCurrent(task), executor).get());
+			// restored once the task is done
+			assertNull(CompletableFuture.supplyAsync(task, executor).get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
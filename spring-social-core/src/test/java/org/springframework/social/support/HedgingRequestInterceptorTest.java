@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.social.support.RateLimit.Scope;
+import org.springframework.web.client.RestTemplate;
+
+public class HedgingRequestInterceptorTest {
+
+	private static final String URL = "https://api.someprovider.com/me";
+
+	private final AtomicInteger attempts = new AtomicInteger();
+
+	private final AtomicInteger slowAttempts = new AtomicInteger();
+
+	private ExecutorService executor;
+
+	private HedgingPolicy hedgingPolicy;
+
+	@Before
+	public void setup() {
+		executor = Executors.newCachedThreadPool();
+		hedgingPolicy = new HedgingPolicy();
+		hedgingPolicy.setInitialDelay(50);
+	}
+
+	@After
+	public void teardown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void fastAnswer_notHedged() {
+		RestTemplate restTemplate = restTemplate(0, 0);
+		assertEquals("attempt 1", restTemplate.getForObject(URL, String.class));
+		assertEquals(1, attempts.get());
+		assertEquals(0, hedgingPolicy.getHedgedCount());
+	}
+
+	@Test
+	public void slowAnswer_hedgeWins() {
+		RestTemplate restTemplate = restTemplate(2000, 0);
+		assertEquals("attempt 2", restTemplate.getForObject(URL, String.class));
+		assertEquals(2, attempts.get());
+		assertEquals(1, hedgingPolicy.getHedgedCount());
+		assertEquals(1, hedgingPolicy.getHedgeWinCount());
+	}
+
+	@Test
+	public void slowHedge_firstAnswerWins() {
+		RestTemplate restTemplate = restTemplate(100, 2000);
+		assertEquals("attempt 1", restTemplate.getForObject(URL, String.class));
+		assertEquals(1, hedgingPolicy.getHedgedCount());
+		assertEquals(0, hedgingPolicy.getHedgeWinCount());
+	}
+
+	@Test
+	public void errorAnswer_successfulHedgePreferred() {
+		RestTemplate restTemplate = restTemplate(new HedgingRequestInterceptor(hedgingPolicy, executor), 100, HttpStatus.SERVICE_UNAVAILABLE, 300);
+		assertEquals("attempt 2", restTemplate.getForObject(URL, String.class));
+		assertEquals(1, hedgingPolicy.getHedgedCount());
+		assertEquals(1, hedgingPolicy.getHedgeWinCount());
+	}
+
+	@Test
+	public void exhaustedRateLimit_notHedged() {
+		RateLimitThrottle throttle = new RateLimitThrottle("someprovider", new HeaderRateLimitExtractor(Scope.USER));
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-RateLimit-Limit", "100");
+		headers.set("X-RateLimit-Remaining", "0");
+		headers.set("X-RateLimit-Reset", "60");
+		throttle.update(RateLimitThrottle.userKey("token"), 200, headers);
+		HedgingRequestInterceptor interceptor = new HedgingRequestInterceptor(hedgingPolicy, executor);
+		interceptor.setRateLimitThrottle(throttle, "token");
+		RestTemplate restTemplate = restTemplate(interceptor, 200, HttpStatus.OK, 0);
+		assertEquals("attempt 1", restTemplate.getForObject(URL, String.class));
+		assertEquals(1, attempts.get());
+		assertEquals(0, hedgingPolicy.getHedgedCount());
+	}
+
+	@Test
+	public void fullBulkhead_notHedged() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("someprovider", 1);
+		// the first attempt's slot, taken by the bulkhead interceptor in a real chain
+		assertTrue(limiter.tryAcquire());
+		HedgingRequestInterceptor interceptor = new HedgingRequestInterceptor(hedgingPolicy, executor);
+		interceptor.setConcurrencyLimiter(limiter);
+		RestTemplate restTemplate = restTemplate(interceptor, 200, HttpStatus.OK, 0);
+		assertEquals("attempt 1", restTemplate.getForObject(URL, String.class));
+		assertEquals(1, attempts.get());
+		assertEquals(0, hedgingPolicy.getHedgedCount());
+		assertEquals(1, limiter.getInFlight());
+	}
+
+	@Test
+	public void hedge_takesAndReleasesBulkheadSlot() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("someprovider", 2);
+		HedgingRequestInterceptor interceptor = new HedgingRequestInterceptor(hedgingPolicy, executor);
+		interceptor.setConcurrencyLimiter(limiter);
+		RestTemplate restTemplate = restTemplate(interceptor, 200, HttpStatus.OK, 0);
+		assertEquals("attempt 2", restTemplate.getForObject(URL, String.class));
+		assertEquals(1, hedgingPolicy.getHedgedCount());
+		// the winning hedge's response has been closed by the RestTemplate
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void post_notHedged() {
+		RestTemplate restTemplate = restTemplate(200, 0);
+		assertEquals("attempt 1", restTemplate.postForObject(URL, "status", String.class));
+		assertEquals(1, attempts.get());
+		assertEquals(0, hedgingPolicy.getHedgedCount());
+	}
+
+	@Test
+	public void longTail_onlySlowestRequestsHedged() {
+		// 1 request in 10 takes 300ms, the others 1ms: once learned, the 80th percentile delay hedges just the slow ones
+		hedgingPolicy.setPercentile(0.8);
+		hedgingPolicy.setMinDelay(20);
+		RestTemplate restTemplate = new RestTemplate(longTailRequestFactory());
+		restTemplate.setInterceptors(Collections.singletonList(new HedgingRequestInterceptor(hedgingPolicy, executor)));
+		for (int i = 0; i < 50; i++) {
+			restTemplate.getForObject(URL, String.class);
+		}
+		assertEquals(20, hedgingPolicy.getDelay());
+		long hedged = hedgingPolicy.getHedgedCount();
+		long hedgeWins = hedgingPolicy.getHedgeWinCount();
+		int slow = slowAttempts.get();
+		for (int i = 0; i < 50; i++) {
+			restTemplate.getForObject(URL, String.class);
+		}
+		// every slow request is hedged, and its hedge, a fast attempt, answers first
+		long slowRequests = slowAttempts.get() - slow;
+		assertTrue(slowRequests > 0);
+		assertEquals(slowRequests, hedgingPolicy.getHedgedCount() - hedged);
+		assertEquals(slowRequests, hedgingPolicy.getHedgeWinCount() - hedgeWins);
+	}
+
+	@Test
+	public void policy_percentileOfObservedLatencies() {
+		HedgingPolicy policy = new HedgingPolicy(100);
+		policy.setMinDelay(0);
+		assertEquals(1000, policy.getDelay());
+		for (int i = 1; i <= 100; i++) {
+			policy.recordLatency(i);
+		}
+		assertEquals(95, policy.getDelay());
+		policy.setPercentile(0.5);
+		assertEquals(50, policy.getDelay());
+	}
+
+	private RestTemplate restTemplate(long firstDelay, long hedgeDelay) {
+		return restTemplate(new HedgingRequestInterceptor(hedgingPolicy, executor), firstDelay, HttpStatus.OK, hedgeDelay);
+	}
+
+	private RestTemplate restTemplate(HedgingRequestInterceptor interceptor, long firstDelay, HttpStatus firstStatus, long hedgeDelay) {
+		RestTemplate restTemplate = new RestTemplate((uri, method) -> {
+			int attempt = attempts.incrementAndGet();
+			sleep(attempt == 1 ? firstDelay : hedgeDelay);
+			return request(method, uri, "attempt " + attempt, attempt == 1 ? firstStatus : HttpStatus.OK);
+		});
+		restTemplate.setInterceptors(Collections.singletonList(interceptor));
+		return restTemplate;
+	}
+
+	private ClientHttpRequestFactory longTailRequestFactory() {
+		return (uri, method) -> {
+			int attempt = attempts.incrementAndGet();
+			if (attempt % 10 == 0) {
+				slowAttempts.incrementAndGet();
+				sleep(300);
+			} else {
+				sleep(1);
+			}
+			return request(method, uri, "attempt " + attempt);
+		};
+	}
+
+	private MockClientHttpRequest request(HttpMethod method, URI uri, String body) {
+		return request(method, uri, body, HttpStatus.OK);
+	}
+
+	private MockClientHttpRequest request(HttpMethod method, URI uri, String body, HttpStatus status) {
+		MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+		MockClientHttpResponse response = new MockClientHttpResponse(body.getBytes(), status);
+		response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+		request.setResponse(response);
+		return request;
+	}
+
+	private void sleep(long millis) throws IOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+public class LoggingErrorHandlerTest {
+
+	@Test
+	public void handleError_clientError() throws Exception {
+		LoggingErrorHandler errorHandler = new LoggingErrorHandler();
+		try {
+			errorHandler.handleError(new MockClientHttpResponse("{\"error\":\"invalid_grant\"}".getBytes("UTF-8"), HttpStatus.BAD_REQUEST));
+			fail("Expected HttpClientErrorException");
+		} catch (HttpClientErrorException e) {
+			assertEquals("{\"error\":\"invalid_grant\"}", e.getResponseBodyAsString());
+		}
+	}
+
+	@Test
+	public void handleError_fullBodyKeptBeyondLoggedSize() throws Exception {
+		LoggingErrorHandler errorHandler = new LoggingErrorHandler();
+		errorHandler.setMaxBodySize(16);
+		errorHandler.setMaxLogsPerSecond(1);
+		byte[] page = new byte[64 * 1024];
+		try {
+			errorHandler.handleError(new MockClientHttpResponse(page, HttpStatus.SERVICE_UNAVAILABLE));
+			fail("Expected HttpServerErrorException");
+		} catch (HttpServerErrorException e) {
+			assertEquals(64 * 1024, e.getResponseBodyAsByteArray().length);
+		}
+	}
+
+	@Test
+	public void handleError_capturedBodyCapped() throws Exception {
+		LoggingErrorHandler errorHandler = new LoggingErrorHandler();
+		errorHandler.setMaxCapturedBodySize(1024);
+		errorHandler.setMaxLogsPerSecond(1);
+		byte[] page = new byte[1024 * 1024];
+		MockClientHttpResponse response = new MockClientHttpResponse(page, HttpStatus.SERVICE_UNAVAILABLE);
+		try {
+			errorHandler.handleError(response);
+			fail("Expected HttpServerErrorException");
+		} catch (HttpServerErrorException e) {
+			assertEquals(1024, e.getResponseBodyAsByteArray().length);
+		}
+		// the capture, and the byte read to find out the body was longer
+		assertEquals(page.length - 1025, response.getBody().available());
+	}
+
+	@Test
+	public void handleError_capturedBodyHandedToSubclass() throws Exception {
+		final byte[][] captured = new byte[1][];
+		LoggingErrorHandler errorHandler = new LoggingErrorHandler() {
+			@Override
+			protected void handleError(ClientHttpResponse response, byte[] body) throws IOException {
+				captured[0] = body;
+			}
+		};
+		errorHandler.setSampleRate(0);
+		errorHandler.handleError(new MockClientHttpResponse("oops".getBytes("UTF-8"), HttpStatus.INTERNAL_SERVER_ERROR));
+		assertEquals("oops", new String(captured[0], "UTF-8"));
+	}
+
+}
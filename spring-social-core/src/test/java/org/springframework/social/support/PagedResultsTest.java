@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class PagedResultsTest {
+
+	private static final int TOTAL = 95;
+
+	private static final int PAGE_SIZE = 10;
+
+	private final List<String> fetchedCursors = new CopyOnWriteArrayList<String>();
+
+	@Test
+	public void stream_allItemsInOrder() {
+		List<Integer> items = cursorPaged().stream().collect(Collectors.toList());
+		assertEquals(TOTAL, items.size());
+		for (int i = 0; i < TOTAL; i++) {
+			assertEquals(Integer.valueOf(i), items.get(i));
+		}
+		assertEquals(10, fetchedCursors.size());
+	}
+
+	@Test
+	public void stream_lazy() throws Exception {
+		PagedResults<Page, Integer> results = cursorPaged();
+		results.setPrefetchPages(0);
+		try (Stream<Integer> stream = results.stream()) {
+			assertEquals(14, stream.limit(15).reduce((a, b) -> b).get().intValue());
+		}
+		assertEquals(2, fetchedCursors.size());
+	}
+
+	@Test
+	public void iterator_prefetchBounded() throws Exception {
+		PagedResults<Page, Integer> results = cursorPaged();
+		results.setPrefetchPages(2);
+		Iterator<Integer> iterator = results.iterator();
+		assertEquals(Integer.valueOf(0), iterator.next());
+		// the first page and at most two ahead of it
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (fetchedCursors.size() < 3 && System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(50);
+		assertEquals(3, fetchedCursors.size());
+		((Closeable) iterator).close();
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void offsetCursor() {
+		PagedResults<Page, Integer> results = new PagedResults<Page, Integer>(offset -> fetch(offset != null ? Integer.parseInt(offset) : 0), Page::getItems, PagedResults.offsetCursor(PAGE_SIZE, Page::getItems));
+		List<Integer> items = new ArrayList<Integer>();
+		for (Integer item : results) {
+			items.add(item);
+		}
+		assertEquals(TOTAL, items.size());
+		assertEquals("[null, 10, 20, 30, 40, 50, 60, 70, 80, 90]", fetchedCursors.toString());
+	}
+
+	@Test
+	public void emptyPagesSkipped() {
+		PagedResults<Page, Integer> results = new PagedResults<Page, Integer>(cursor -> {
+			fetchedCursors.add(cursor);
+			return cursor == null ? new Page(new ArrayList<Integer>(), "1") : new Page(Arrays.asList(1, 2), null);
+		}, Page::getItems, (page, cursor) -> page.getNextCursor());
+		assertEquals(2, results.stream().count());
+	}
+
+	@Test
+	public void failure_propagated() {
+		PagedResults<Page, Integer> results = new PagedResults<Page, Integer>(cursor -> {
+			if (cursor != null) {
+				throw new IllegalStateException("boom");
+			}
+			return fetch(0);
+		}, Page::getItems, (page, cursor) -> page.getNextCursor());
+		Iterator<Integer> iterator = results.iterator();
+		for (int i = 0; i < PAGE_SIZE; i++) {
+			iterator.next();
+		}
+		try {
+			iterator.hasNext();
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("boom", e.getMessage());
+		}
+	}
+
+	@Test
+	public void prefetch_keepsToConsumersDeadline() {
+		Deadline deadline = Deadline.after(60 * 1000);
+		List<Deadline> fetchDeadlines = new CopyOnWriteArrayList<Deadline>();
+		PagedResults<Page, Integer> results = new PagedResults<Page, Integer>(cursor -> {
+			fetchDeadlines.add(Deadline.getCurrent());
+			return fetch(cursor != null ? Integer.parseInt(cursor.substring(1)) : 0);
+		}, Page::getItems, (page, cursor) -> page.getNextCursor());
+		results.setPrefetchPages(2);
+		Deadline previous = Deadline.setCurrent(deadline);
+		try (Stream<Integer> stream = results.stream()) {
+			assertEquals(TOTAL, stream.count());
+		} finally {
+			Deadline.setCurrent(previous);
+		}
+		assertEquals(10, fetchDeadlines.size());
+		for (Deadline fetchDeadline : fetchDeadlines) {
+			assertSame(deadline, fetchDeadline);
+		}
+	}
+
+	private PagedResults<Page, Integer> cursorPaged() {
+		return new PagedResults<Page, Integer>(cursor -> fetch(cursor != null ? Integer.parseInt(cursor.substring(1)) : 0), Page::getItems, (page, cursor) -> page.getNextCursor());
+	}
+
+	private Page fetch(int offset) {
+		fetchedCursors.add(offset == 0 ? null : String.valueOf(offset));
+		List<Integer> items = new ArrayList<Integer>();
+		for (int i = offset; i < Math.min(offset + PAGE_SIZE, TOTAL); i++) {
+			items.add(i);
+		}
+		return new Page(items, offset + PAGE_SIZE < TOTAL ? "c" + (offset + PAGE_SIZE) : null);
+	}
+
+	private static class Page {
+
+		private final List<Integer> items;
+
+		private final String nextCursor;
+
+		public Page(List<Integer> items, String nextCursor) {
+			this.items = items;
+			this.nextCursor = nextCursor;
+		}
+
+		public List<Integer> getItems() {
+			return items;
+		}
+
+		public String getNextCursor() {
+			return nextCursor;
+		}
+
+	}
+
+}
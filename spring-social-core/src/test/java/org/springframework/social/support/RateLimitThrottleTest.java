@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.social.DeadlineExceededException;
+import org.springframework.social.RateLimitExceededException;
+import org.springframework.social.support.RateLimit.Scope;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+public class RateLimitThrottleTest {
+
+	private static final String URL = "https://api.someprovider.com/me";
+
+	private RateLimitThrottle throttle;
+
+	private RestTemplate restTemplate;
+
+	private MockRestServiceServer mockServer;
+
+	@Before
+	public void setup() {
+		throttle = new RateLimitThrottle("someprovider", new HeaderRateLimitExtractor(Scope.USER));
+		restTemplate = new RestTemplate();
+		restTemplate.setInterceptors(Collections.singletonList(new ThrottlingRequestInterceptor(throttle, "token")));
+		mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+	}
+
+	@Test
+	public void remainingQuotaTracked() {
+		mockServer.expect(requestTo(URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN).headers(rateLimitHeaders(100, 99, 60)));
+		assertNull(throttle.getUserRateLimit("token"));
+		restTemplate.getForObject(URL, String.class);
+		RateLimit rateLimit = throttle.getUserRateLimit("token");
+		assertEquals(100, rateLimit.getLimit());
+		assertEquals(99, rateLimit.getRemaining());
+		assertNull(throttle.getUserRateLimit("other token"));
+		assertNull(throttle.getAppRateLimit());
+		assertEquals(0, throttle.getDelayedCount());
+	}
+
+	@Test
+	public void exhausted_rejectedWithoutCallingProvider() {
+		throttle.setMaxDelay(100);
+		mockServer.expect(requestTo(URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN).headers(rateLimitHeaders(100, 0, 60)));
+		restTemplate.getForObject(URL, String.class);
+		try {
+			restTemplate.getForObject(URL, String.class);
+			fail("Expected RateLimitExceededException");
+		} catch (RateLimitExceededException e) {
+			assertEquals("someprovider", e.getProviderId());
+		}
+		mockServer.verify();
+		assertEquals(1, throttle.getRejectedCount());
+	}
+
+	@Test
+	public void exhausted_waitPastDeadlineFailsFast() {
+		throttle.setMaxDelay(60 * 1000);
+		mockServer.expect(requestTo(URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN).headers(rateLimitHeaders(100, 0, 30)));
+		restTemplate.getForObject(URL, String.class);
+		Deadline previous = Deadline.setCurrent(Deadline.after(1000));
+		try {
+			restTemplate.getForObject(URL, String.class);
+			fail("Expected DeadlineExceededException");
+		} catch (DeadlineExceededException e) {
+			// the wait for the rate limit to reset would outlast the deadline
+		} finally {
+			Deadline.setCurrent(previous);
+		}
+		mockServer.verify();
+	}
+
+	@Test
+	public void tooManyRequests_retryAfterHonored() {
+		throttle.setMaxDelay(100);
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("Retry-After", "30");
+		mockServer.expect(requestTo(URL)).andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS).headers(headers));
+		try {
+			restTemplate.getForObject(URL, String.class);
+			fail("Expected HttpClientErrorException");
+		} catch (HttpClientErrorException e) {
+			assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+		}
+		try {
+			restTemplate.getForObject(URL, String.class);
+			fail("Expected RateLimitExceededException");
+		} catch (RateLimitExceededException e) {
+		}
+		mockServer.verify();
+	}
+
+	@Test
+	public void pacedNearExhaustion() {
+		mockServer.expect(requestTo(URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN).headers(rateLimitHeaders(100, 2, 1)));
+		restTemplate.getForObject(URL, String.class);
+		String userKey = RateLimitThrottle.userKey("token");
+		// 2 calls left for the rest of the second: the first goes now, the next about half a second later
+		assertEquals(0, throttle.acquire(userKey));
+		long delay = throttle.acquire(userKey);
+		assertTrue(delay > 0 && delay <= 1000);
+		assertEquals(1, throttle.getDelayedCount());
+	}
+
+	@Test
+	public void relativeReset_windowKeptAcrossResponses() {
+		throttle = new RateLimitThrottle("someprovider", new HeaderRateLimitExtractor(Scope.USER, null, "X-RateLimit-Remaining", "X-RateLimit-Reset"));
+		throttle.setMaxDelay(60 * 1000);
+		String userKey = RateLimitThrottle.userKey("token");
+		throttle.update(userKey, 200, rateLimitHeaders(100, 20, 60));
+		// a second later: the same window, although its reset time is computed anew
+		throttle.update(userKey, 200, rateLimitHeaders(100, 3, 59));
+		// without a reported limit, the 20 calls seen remaining stand in for it, so the last 3 are paced over the rest of the window
+		assertEquals(0, throttle.acquire(userKey));
+		long delay = throttle.acquire(userKey);
+		assertTrue(delay > 15 * 1000 && delay <= 20 * 1000);
+	}
+
+	@Test
+	public void appBucketRejecting_userPermitKept() {
+		long resetTime = System.currentTimeMillis() + 60 * 1000;
+		throttle = new RateLimitThrottle("someprovider", headers -> Arrays.asList(new RateLimit(Scope.USER, 100, 50, resetTime), new RateLimit(Scope.APP, 1000, 0, resetTime)));
+		throttle.setMaxDelay(100);
+		String userKey = RateLimitThrottle.userKey("token");
+		throttle.update(userKey, 200, new HttpHeaders());
+		for (int i = 0; i < 3; i++) {
+			try {
+				throttle.acquire(userKey);
+				fail("Expected RateLimitExceededException");
+			} catch (RateLimitExceededException e) {
+			}
+		}
+		assertEquals(50, throttle.getUserRateLimit("token").getRemaining());
+		assertEquals(3, throttle.getRejectedCount());
+	}
+
+	@Test
+	public void headerRateLimitExtractor() {
+		HeaderRateLimitExtractor extractor = new HeaderRateLimitExtractor(Scope.APP, null, "X-App-Remaining", "X-App-Reset");
+		HttpHeaders headers = new HttpHeaders();
+		assertTrue(extractor.extract(headers).isEmpty());
+		headers.set("X-App-Remaining", "5");
+		headers.set("X-App-Reset", "1500000000");
+		List<RateLimit> rateLimits = extractor.extract(headers);
+		assertEquals(1, rateLimits.size());
+		assertEquals(Scope.APP, rateLimits.get(0).getScope());
+		assertEquals(-1, rateLimits.get(0).getLimit());
+		assertEquals(5, rateLimits.get(0).getRemaining());
+		assertEquals(1500000000000L, rateLimits.get(0).getResetTime());
+	}
+
+	private HttpHeaders rateLimitHeaders(long limit, long remaining, long resetSeconds) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-RateLimit-Limit", Long.toString(limit));
+		headers.set("X-RateLimit-Remaining", Long.toString(remaining));
+		headers.set("X-RateLimit-Reset", Long.toString(resetSeconds));
+		return headers;
+	}
+
+}
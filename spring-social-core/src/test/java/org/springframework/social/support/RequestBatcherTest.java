@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.social.ResourceNotFoundException;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+public class RequestBatcherTest {
+
+	private MockRestServiceServer mockServer;
+
+	private RequestBatcher<String, String, String> batcher;
+
+	@Before
+	public void setup() {
+		RestTemplate restTemplate = new RestTemplate();
+		mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+		batcher = new RequestBatcher<String, String, String>(restTemplate, new LineEncoder(), new LineDecoder());
+		batcher.setExecutor(Runnable::run);
+		batcher.setFlushInterval(60 * 1000);
+	}
+
+	@Test
+	public void submit_flushedBySize() throws Exception {
+		batcher.setMaxBatchSize(3);
+		mockServer.expect(requestTo("https://api.someprovider.com/batch"))
+			.andExpect(method(HttpMethod.POST))
+			.andExpect(content().string("a\nb\nc"))
+			.andRespond(withSuccess("A\nB\nC", MediaType.TEXT_PLAIN));
+		CompletableFuture<String> a = batcher.submit("a");
+		CompletableFuture<String> b = batcher.submit("b");
+		assertFalse(a.isDone());
+		CompletableFuture<String> c = batcher.submit("c");
+		assertEquals("A", a.get());
+		assertEquals("B", b.get());
+		assertEquals("C", c.get());
+		mockServer.verify();
+		assertEquals(3, batcher.getRequestCount());
+		assertEquals(1, batcher.getBatchCount());
+	}
+
+	@Test
+	public void submit_flushedByInterval() throws Exception {
+		batcher.setFlushInterval(10);
+		mockServer.expect(requestTo("https://api.someprovider.com/batch"))
+			.andExpect(content().string("a\nb"))
+			.andRespond(withSuccess("A\nB", MediaType.TEXT_PLAIN));
+		CompletableFuture<String> a = batcher.submit("a");
+		CompletableFuture<String> b = batcher.submit("b");
+		assertEquals("A", a.get(5, TimeUnit.SECONDS));
+		assertEquals("B", b.get(5, TimeUnit.SECONDS));
+		mockServer.verify();
+	}
+
+	@Test
+	public void flush_failuresPerRequest() throws Exception {
+		mockServer.expect(requestTo("https://api.someprovider.com/batch"))
+			.andRespond(withSuccess("A\n!", MediaType.TEXT_PLAIN));
+		CompletableFuture<String> a = batcher.submit("a");
+		CompletableFuture<String> b = batcher.submit("b");
+		CompletableFuture<String> c = batcher.submit("c");
+		batcher.flush();
+		assertEquals("A", a.get());
+		assertCause(ResourceNotFoundException.class, b);
+		// no line in the response for the third request
+		assertCause(BatchException.class, c);
+	}
+
+	@Test
+	public void flush_batchFailure() throws Exception {
+		mockServer.expect(requestTo("https://api.someprovider.com/batch"))
+			.andRespond(withServerError());
+		CompletableFuture<String> a = batcher.submit("a");
+		CompletableFuture<String> b = batcher.submit("b");
+		batcher.flush();
+		assertCause(HttpServerErrorException.class, a);
+		assertCause(HttpServerErrorException.class, b);
+	}
+
+	@Test
+	public void flush_nothingPending() {
+		batcher.flush();
+		assertEquals(0, batcher.getBatchCount());
+		mockServer.verify();
+	}
+
+	private void assertCause(Class<? extends Exception> expected, CompletableFuture<String> future) throws InterruptedException {
+		try {
+			future.get();
+			fail("Expected " + expected.getSimpleName());
+		} catch (ExecutionException e) {
+			assertTrue(expected.isInstance(e.getCause()));
+		}
+	}
+
+	// one request per line
+	private static class LineEncoder implements BatchEncoder<String> {
+
+		public RequestEntity<?> encode(List<String> requests) {
+			return RequestEntity.post(URI.create("https://api.someprovider.com/batch")).contentType(MediaType.TEXT_PLAIN).body(StringUtils.collectionToDelimitedString(requests, "\n"));
+		}
+
+	}
+
+	// one result per line, "!" meaning not found
+	private static class LineDecoder implements BatchDecoder<String, String, String> {
+
+		public Class<String> getResponseType() {
+			return String.class;
+		}
+
+		public void decode(List<String> requests, String response, Results<String> results) {
+			String[] lines = response.split("\n");
+			for (int i = 0; i < lines.length; i++) {
+				if (lines[i].equals("!")) {
+					results.fail(i, new ResourceNotFoundException("someprovider", requests.get(i) + " not found"));
+				} else {
+					results.complete(i, lines[i]);
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.client.ExpectedCount.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.social.DeadlineExceededException;
+import org.springframework.social.ServerDownException;
+import org.springframework.social.support.RateLimit.Scope;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+public class ResilienceRequestInterceptorTest {
+
+	private static final String URL = "https://api.someprovider.com/me";
+
+	private CircuitBreaker circuitBreaker;
+
+	private ResilienceRequestInterceptor interceptor;
+
+	private RestTemplate restTemplate;
+
+	private MockRestServiceServer mockServer;
+
+	@Before
+	public void setup() {
+		circuitBreaker = new CircuitBreaker("someprovider");
+		interceptor = new ResilienceRequestInterceptor("someprovider", circuitBreaker);
+		interceptor.setInitialBackoff(1);
+		interceptor.setMaxBackoff(5);
+		restTemplate = new RestTemplate();
+		restTemplate.setInterceptors(Collections.singletonList(interceptor));
+		mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+	}
+
+	@Test
+	public void get_retriedUntilSuccess() {
+		mockServer.expect(requestTo(URL)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+		mockServer.expect(requestTo(URL)).andRespond(withStatus(HttpStatus.BAD_GATEWAY));
+		mockServer.expect(requestTo(URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN));
+		assertEquals("me", restTemplate.getForObject(URL, String.class));
+		mockServer.verify();
+		assertEquals(2, interceptor.getRetryCount());
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void get_backoffPastDeadlineFailsFast() {
+		interceptor.setMaxBackoff(5000);
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("Retry-After", "2");
+		mockServer.expect(requestTo(URL)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE).headers(headers));
+		Deadline previous = Deadline.setCurrent(Deadline.after(500));
+		try {
+			restTemplate.getForObject(URL, String.class);
+			fail("Expected DeadlineExceededException");
+		} catch (DeadlineExceededException e) {
+			// the retry would only be sent after the deadline
+		} finally {
+			Deadline.setCurrent(previous);
+		}
+		mockServer.verify();
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void get_givesUpAfterMaxAttempts() {
+		mockServer.expect(times(3), requestTo(URL)).andRespond(withStatus(HttpStatus.GATEWAY_TIMEOUT));
+		try {
+			restTemplate.getForObject(URL, String.class);
+			fail("Expected HttpServerErrorException");
+		} catch (HttpServerErrorException e) {
+			assertEquals(HttpStatus.GATEWAY_TIMEOUT, e.getStatusCode());
+		}
+		mockServer.verify();
+	}
+
+	@Test
+	public void post_notRetried() {
+		mockServer.expect(requestTo(URL)).andExpect(method(HttpMethod.POST)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+		try {
+			restTemplate.postForObject(URL, "status", String.class);
+			fail("Expected HttpServerErrorException");
+		} catch (HttpServerErrorException e) {
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+		}
+		mockServer.verify();
+		assertEquals(0, interceptor.getRetryCount());
+	}
+
+	@Test
+	public void internalServerError_notRetried() {
+		mockServer.expect(requestTo(URL)).andRespond(withServerError());
+		try {
+			restTemplate.getForObject(URL, String.class);
+			fail("Expected HttpServerErrorException");
+		} catch (HttpServerErrorException e) {
+			assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, e.getStatusCode());
+		}
+		mockServer.verify();
+	}
+
+	@Test
+	public void circuitOpen_failsFast() {
+		interceptor.setMaxAttempts(1);
+		circuitBreaker.setFailureThreshold(2);
+		mockServer.expect(times(2), requestTo(URL)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+		for (int i = 0; i < 2; i++) {
+			try {
+				restTemplate.getForObject(URL, String.class);
+				fail("Expected HttpServerErrorException");
+			} catch (HttpServerErrorException e) {
+			}
+		}
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		try {
+			restTemplate.getForObject(URL, String.class);
+			fail("Expected ServerDownException");
+		} catch (ServerDownException e) {
+			assertEquals("someprovider", e.getProviderId());
+		}
+		mockServer.verify();
+		assertEquals(1, circuitBreaker.getOpenCount());
+		assertEquals(1, circuitBreaker.getRejectedCount());
+	}
+
+	@Test
+	public void circuitHalfOpen_closedByTrialCall() {
+		circuitBreaker.setFailureThreshold(1);
+		circuitBreaker.setOpenDuration(0);
+		circuitBreaker.recordFailure();
+		assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		mockServer.expect(requestTo(URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN));
+		assertEquals("me", restTemplate.getForObject(URL, String.class));
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void circuitHalfOpen_trialCallThrowing() {
+		circuitBreaker.setFailureThreshold(1);
+		circuitBreaker.setOpenDuration(0);
+		circuitBreaker.recordFailure();
+		AtomicInteger calls = new AtomicInteger();
+		restTemplate.setInterceptors(Arrays.asList(interceptor, (request, body, execution) -> {
+			if (calls.incrementAndGet() == 1) {
+				throw new DeadlineExceededException("Deadline passed");
+			}
+			return execution.execute(request, body);
+		}));
+		mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+		mockServer.expect(requestTo(URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN));
+		try {
+			restTemplate.getForObject(URL, String.class);
+			fail("Expected DeadlineExceededException");
+		} catch (DeadlineExceededException e) {
+		}
+		// the abandoned trial call does not keep the circuit from trying again
+		assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		assertEquals("me", restTemplate.getForObject(URL, String.class));
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		mockServer.verify();
+	}
+
+	@Test
+	public void forBinding_retryTakesRateLimitPermit() {
+		RateLimitThrottle throttle = new RateLimitThrottle("someprovider", new HeaderRateLimitExtractor(Scope.USER));
+		restTemplate.setInterceptors(Collections.singletonList(interceptor.forBinding(null, throttle, "token", null)));
+		mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+		mockServer.expect(requestTo(URL)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE).headers(rateLimitHeaders(100, 50, 60)));
+		mockServer.expect(requestTo(URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN));
+		assertEquals("me", restTemplate.getForObject(URL, String.class));
+		mockServer.verify();
+		// the retry's permit is taken from what the failed attempt reported
+		assertEquals(49, throttle.getUserRateLimit("token").getRemaining());
+	}
+
+	@Test
+	public void forBinding_exhaustedRateLimit_notRetried() {
+		RateLimitThrottle throttle = new RateLimitThrottle("someprovider", new HeaderRateLimitExtractor(Scope.USER));
+		throttle.setMaxDelay(100);
+		restTemplate.setInterceptors(Collections.singletonList(interceptor.forBinding(null, throttle, "token", null)));
+		mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+		mockServer.expect(once(), requestTo(URL)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE).headers(rateLimitHeaders(100, 0, 60)));
+		try {
+			restTemplate.getForObject(URL, String.class);
+			fail("Expected HttpServerErrorException");
+		} catch (HttpServerErrorException e) {
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+		}
+		mockServer.verify();
+		assertEquals(0, interceptor.getRetryCount());
+	}
+
+	@Test
+	public void forBinding_slotHeldPerAttempt() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("someprovider", 2);
+		AtomicInteger maxInFlight = new AtomicInteger();
+		restTemplate.setInterceptors(Collections.singletonList(interceptor.forBinding(null, null, null, limiter)));
+		mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+		ResponseCreator unavailable = request -> {
+			maxInFlight.accumulateAndGet(limiter.getInFlight(), Math::max);
+			return withStatus(HttpStatus.SERVICE_UNAVAILABLE).createResponse(request);
+		};
+		mockServer.expect(requestTo(URL)).andRespond(unavailable);
+		mockServer.expect(requestTo(URL)).andRespond(unavailable);
+		mockServer.expect(requestTo(URL)).andRespond(withSuccess("me", MediaType.TEXT_PLAIN));
+		assertEquals("me", restTemplate.getForObject(URL, String.class));
+		mockServer.verify();
+		// the slot of a failed attempt is released before the retry takes one
+		assertEquals(1, maxInFlight.get());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	private HttpHeaders rateLimitHeaders(long limit, long remaining, long resetSeconds) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-RateLimit-Limit", Long.toString(limit));
+		headers.set("X-RateLimit-Remaining", Long.toString(remaining));
+		headers.set("X-RateLimit-Reset", Long.toString(resetSeconds));
+		return headers;
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class SocialTaskExecutorsTest {
+
+	@Test
+	public void newExecutor_bounded() throws Exception {
+		ExecutorService executor = SocialTaskExecutors.newExecutor("bounded-", 1, 1);
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(2);
+		AtomicReference<Thread> overflowThread = new AtomicReference<Thread>();
+		try {
+			executor.execute(() -> {
+				running.countDown();
+				await(release);
+				done.countDown();
+			});
+			assertTrue(running.await(5, TimeUnit.SECONDS));
+			// queued behind the running task
+			executor.execute(done::countDown);
+			// neither a thread nor room in the queue left: run by the submitting thread
+			executor.execute(() -> overflowThread.set(Thread.currentThread()));
+			assertSame(Thread.currentThread(), overflowThread.get());
+			release.countDown();
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+public class StreamingDownloaderTest {
+
+	private static final String URL = "https://photos.someprovider.com/{id}.jpg";
+
+	private static final int IMAGE_SIZE = 1024 * 1024;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final AtomicInteger openBodies = new AtomicInteger();
+
+	private volatile MockClientHttpRequest lastRequest;
+
+	private HttpStatus status = HttpStatus.OK;
+
+	@Test
+	public void download_toFile() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("photo.jpg");
+		assertEquals(IMAGE_SIZE, downloader().download(URL, file, "42"));
+		byte[] written = Files.readAllBytes(file);
+		assertEquals(IMAGE_SIZE, written.length);
+		for (int i = 0; i < written.length; i++) {
+			assertEquals(imageByte(i), written[i]);
+		}
+		assertEquals(URI.create("https://photos.someprovider.com/42.jpg"), lastRequest.getURI());
+		assertEquals(0, openBodies.get());
+	}
+
+	@Test
+	public void download_replacesFile() throws Exception {
+		Path file = folder.newFile("photo.jpg").toPath();
+		Files.write(file, new byte[IMAGE_SIZE * 2]);
+		downloader().download(URL, file, "42");
+		assertEquals(IMAGE_SIZE, Files.size(file));
+	}
+
+	@Test
+	public void download_toChannel() throws Exception {
+		CountingChannel channel = new CountingChannel();
+		assertEquals(IMAGE_SIZE, downloader().download(URL, channel, "42"));
+		assertEquals(IMAGE_SIZE, channel.count);
+		assertTrue(channel.isOpen());
+		assertEquals(0, openBodies.get());
+	}
+
+	@Test
+	public void openStream() throws Exception {
+		try (InputStream body = downloader().openStream(URL, "42")) {
+			assertEquals(imageByte(0), (byte) body.read());
+			assertEquals(1, openBodies.get());
+		}
+		assertEquals(0, openBodies.get());
+		assertEquals(MediaType.ALL, lastRequest.getHeaders().getAccept().get(0));
+	}
+
+	@Test
+	public void openStream_throughInterceptors() throws Exception {
+		RestTemplate restTemplate = restTemplate();
+		restTemplate.getInterceptors().add((request, body, execution) -> {
+			request.getHeaders().set(HttpHeaders.AUTHORIZATION, "Bearer token");
+			return execution.execute(request, body);
+		});
+		new StreamingDownloader(restTemplate).openStream(URL, "42").close();
+		assertEquals("Bearer token", lastRequest.getHeaders().getFirst(HttpHeaders.AUTHORIZATION));
+	}
+
+	@Test
+	public void download_pastCacheAndCoalescer() throws Exception {
+		HttpResponseCache cache = new HttpResponseCache();
+		RequestCoalescer coalescer = new RequestCoalescer();
+		RestTemplate restTemplate = restTemplate();
+		restTemplate.getInterceptors().add(new CachingRequestInterceptor(cache, "token"));
+		restTemplate.getInterceptors().add(new CoalescingRequestInterceptor(coalescer, "token"));
+		StreamingDownloader downloader = new StreamingDownloader(restTemplate);
+		assertEquals(IMAGE_SIZE, downloader.download(URL, new CountingChannel(), "42"));
+		assertEquals(IMAGE_SIZE, downloader.download(URL, new CountingChannel(), "42"));
+		assertEquals(0, cache.getResponseCount());
+		assertEquals(0, cache.getMissCount());
+		assertEquals(0, coalescer.getRequestCount());
+		assertFalse(StreamingDownloader.isDownloading());
+	}
+
+	@Test
+	public void openStream_errorResponse() throws Exception {
+		status = HttpStatus.NOT_FOUND;
+		try {
+			downloader().openStream(URL, "42");
+			fail("Expected HttpClientErrorException");
+		} catch (HttpClientErrorException e) {
+			assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+		}
+		assertEquals(0, openBodies.get());
+	}
+
+	@Test
+	public void download_concurrently() throws Exception {
+		// 1,000 images, 1 GB in all, which would not be held on the heap at once
+		StreamingDownloader downloader = downloader();
+		boolean measured = AllocationMeter.isSupported();
+		ExecutorService executor = Executors.newFixedThreadPool(50);
+		try {
+			List<Future<Long>> downloads = new ArrayList<Future<Long>>();
+			for (int i = 0; i < 1000; i++) {
+				String id = String.valueOf(i);
+				downloads.add(executor.submit(() -> {
+					long before = measured ? AllocationMeter.allocatedBytes() : 0;
+					assertEquals(IMAGE_SIZE, downloader.download(URL, new CountingChannel(), id));
+					return measured ? AllocationMeter.allocatedBytes() - before : 0;
+				}));
+			}
+			long maxAllocated = 0;
+			for (Future<Long> download : downloads) {
+				maxAllocated = Math.max(maxAllocated, download.get(60, TimeUnit.SECONDS));
+			}
+			// each download costs its chunk buffer and the request around it, not a copy of the image
+			assertTrue("Allocated up to " + maxAllocated + " bytes per download", maxAllocated < IMAGE_SIZE / 4);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(0, openBodies.get());
+	}
+
+	private StreamingDownloader downloader() {
+		return new StreamingDownloader(restTemplate());
+	}
+
+	private RestTemplate restTemplate() {
+		return new RestTemplate((uri, method) -> {
+			MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+			MockClientHttpResponse response = new MockClientHttpResponse(new ImageInputStream(), status);
+			response.getHeaders().setContentType(MediaType.IMAGE_JPEG);
+			response.getHeaders().setCacheControl("public, max-age=86400");
+			request.setResponse(response);
+			lastRequest = request;
+			return request;
+		});
+	}
+
+	private static byte imageByte(int position) {
+		return (byte) (position % 251);
+	}
+
+	// generates an image's bytes as they are read, so that the test itself buffers nothing
+	private class ImageInputStream extends InputStream {
+
+		private int position;
+
+		private boolean closed;
+
+		public ImageInputStream() {
+			openBodies.incrementAndGet();
+		}
+
+		@Override
+		public int read() {
+			return position < IMAGE_SIZE ? imageByte(position++) & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (position >= IMAGE_SIZE) {
+				return -1;
+			}
+			int n = Math.min(len, IMAGE_SIZE - position);
+			for (int i = 0; i < n; i++) {
+				b[off + i] = imageByte(position++);
+			}
+			return n;
+		}
+
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				openBodies.decrementAndGet();
+			}
+		}
+
+	}
+
+	private static class CountingChannel implements WritableByteChannel {
+
+		private long count;
+
+		public int write(ByteBuffer src) throws IOException {
+			int n = src.remaining();
+			src.position(src.limit());
+			count += n;
+			return n;
+		}
+
+		public boolean isOpen() {
+			return true;
+		}
+
+		public void close() {
+		}
+
+	}
+
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+public class StreamingMultipartUploaderTest {
+
+	private static final String URL = "https://graph.someprovider.com/{id}/videos";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private StreamingRequest lastRequest;
+
+	private HttpStatus status = HttpStatus.OK;
+
+	@Test
+	public void writeTo() throws Exception {
+		Path file = folder.newFile("beach.jpg").toPath();
+		Files.write(file, "JPEG".getBytes("UTF-8"));
+		StreamingMultipartWriter multipart = new StreamingMultipartWriter();
+		multipart.addPart("caption", "At the \"beach\"");
+		multipart.addPart("source", file, MediaType.IMAGE_JPEG);
+		String boundary = multipart.getContentType().getParameter("boundary");
+		assertTrue(MediaType.MULTIPART_FORM_DATA.includes(multipart.getContentType()));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		multipart.writeTo(out);
+		assertEquals("--" + boundary + "\r\n" +
+				"Content-Disposition: form-data; name=\"caption\"\r\n" +
+				"\r\n" +
+				"At the \"beach\"\r\n" +
+				"--" + boundary + "\r\n" +
+				"Content-Disposition: form-data; name=\"source\"; filename=\"beach.jpg\"\r\n" +
+				"Content-Type: image/jpeg\r\n" +
+				"\r\n" +
+				"JPEG\r\n" +
+				"--" + boundary + "--\r\n", out.toString("UTF-8"));
+		assertEquals(out.size(), multipart.getContentLength());
+		// the body may be written again, for instance on a retry
+		ByteArrayOutputStream again = new ByteArrayOutputStream();
+		multipart.writeTo(again);
+		assertEquals(out.toString("UTF-8"), again.toString("UTF-8"));
+	}
+
+	@Test
+	public void writeTo_progress() throws Exception {
+		StreamingMultipartWriter multipart = new StreamingMultipartWriter();
+		multipart.addPart("source", sparseFile("video.mp4", 1024 * 1024), MediaType.parseMediaType("video/mp4"));
+		List<Long> progress = new ArrayList<Long>();
+		multipart.setProgressListener((bytesWritten, contentLength) -> {
+			assertEquals(multipart.getContentLength(), contentLength);
+			progress.add(bytesWritten);
+		});
+		multipart.writeTo(new CountingOutputStream());
+		// a chunk at a time, and then some
+		assertTrue(progress.size() > 16);
+		for (int i = 1; i < progress.size(); i++) {
+			assertTrue(progress.get(i) >= progress.get(i - 1));
+		}
+		assertEquals(multipart.getContentLength(), progress.get(progress.size() - 1).longValue());
+	}
+
+	@Test
+	public void writeTo_chunked() throws Exception {
+		StreamingMultipartWriter multipart = new StreamingMultipartWriter();
+		multipart.addPart("caption", "At the beach");
+		multipart.setChunked(true);
+		List<Long> contentLengths = new ArrayList<Long>();
+		multipart.setProgressListener((bytesWritten, contentLength) -> contentLengths.add(contentLength));
+		multipart.writeTo(new CountingOutputStream());
+		assertEquals(-1, multipart.getContentLength());
+		assertEquals(-1, contentLengths.get(0).longValue());
+	}
+
+	@Test
+	public void post_streamed() throws Exception {
+		// far larger than what the test is willing to see buffered
+		StreamingMultipartWriter multipart = new StreamingMultipartWriter();
+		multipart.addPart("title", "Beach");
+		multipart.addPart("source", sparseFile("video.mp4", 256 * 1024 * 1024), MediaType.parseMediaType("video/mp4"));
+		RestTemplate restTemplate = new RestTemplate();
+		restTemplate.getInterceptors().add((request, body, execution) -> {
+			assertEquals(0, body.length);
+			request.getHeaders().set(HttpHeaders.AUTHORIZATION, "Bearer token");
+			return execution.execute(request, body);
+		});
+		Map<?, ?> video = new StreamingMultipartUploader(restTemplate, this::createRequest).post(URL, multipart, Map.class, "42");
+		assertEquals("123", video.get("id"));
+		assertEquals(URI.create("https://graph.someprovider.com/42/videos"), lastRequest.getURI());
+		assertEquals(HttpMethod.POST, lastRequest.getMethod());
+		assertEquals("Bearer token", lastRequest.getHeaders().getFirst(HttpHeaders.AUTHORIZATION));
+		assertEquals(multipart.getContentType(), lastRequest.getHeaders().getContentType());
+		assertEquals(multipart.getContentLength(), lastRequest.getHeaders().getContentLength());
+		assertEquals(multipart.getContentLength(), lastRequest.bytesWritten);
+	}
+
+	@Test
+	public void post_oneGigabyte() throws Exception {
+		Assume.assumeTrue(AllocationMeter.isSupported());
+		long size = 1024L * 1024 * 1024;
+		StreamingMultipartWriter multipart = new StreamingMultipartWriter();
+		multipart.addPart("source", sparseFile("video.mp4", size), MediaType.parseMediaType("video/mp4"));
+		StreamingMultipartUploader uploader = new StreamingMultipartUploader(new RestTemplate(), this::createRequest);
+		long before = AllocationMeter.allocatedBytes();
+		uploader.post(URL, multipart, null, "42");
+		long allocated = AllocationMeter.allocatedBytes() - before;
+		assertEquals(multipart.getContentLength(), lastRequest.bytesWritten);
+		// the file passes through one reused chunk buffer: the heap sees kilobytes for a gigabyte sent
+		assertTrue("Allocated " + allocated + " bytes uploading " + size, allocated < size / 256);
+	}
+
+	@Test
+	public void post_chunked() throws Exception {
+		StreamingMultipartWriter multipart = new StreamingMultipartWriter();
+		multipart.addPart("title", "Beach");
+		multipart.setChunked(true);
+		new StreamingMultipartUploader(new RestTemplate(), this::createRequest).post(URL, multipart, null, "42");
+		assertFalse(lastRequest.getHeaders().containsKey(HttpHeaders.CONTENT_LENGTH));
+		assertTrue(lastRequest.bytesWritten > 0);
+	}
+
+	@Test
+	public void post_errorResponse() throws Exception {
+		status = HttpStatus.BAD_REQUEST;
+		StreamingMultipartWriter multipart = new StreamingMultipartWriter();
+		multipart.addPart("title", "Beach");
+		try {
+			new StreamingMultipartUploader(new RestTemplate(), this::createRequest).post(URL, multipart, Map.class, "42");
+			fail("Expected HttpClientErrorException");
+		} catch (HttpClientErrorException e) {
+			assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+		}
+	}
+
+	private StreamingRequest createRequest(URI uri, HttpMethod method) {
+		lastRequest = new StreamingRequest(uri, method, status);
+		return lastRequest;
+	}
+
+	private Path sparseFile(String name, long length) throws IOException {
+		Path file = folder.getRoot().toPath().resolve(name);
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+			randomAccessFile.setLength(length);
+		}
+		return file;
+	}
+
+	// a request streaming its body into a byte counter, as a non-buffering transport would into the connection
+	private static class StreamingRequest extends AbstractClientHttpRequest implements StreamingHttpOutputMessage {
+
+		private final URI uri;
+
+		private final HttpMethod method;
+
+		private final HttpStatus status;
+
+		private Body body;
+
+		private long bytesWritten;
+
+		public StreamingRequest(URI uri, HttpMethod method, HttpStatus status) {
+			this.uri = uri;
+			this.method = method;
+			this.status = status;
+		}
+
+		public HttpMethod getMethod() {
+			return method;
+		}
+
+		public String getMethodValue() {
+			return method.name();
+		}
+
+		public URI getURI() {
+			return uri;
+		}
+
+		public void setBody(Body body) {
+			this.body = body;
+		}
+
+		@Override
+		protected OutputStream getBodyInternal(HttpHeaders headers) {
+			throw new UnsupportedOperationException("Request bodies are to be streamed");
+		}
+
+		@Override
+		protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+			CountingOutputStream out = new CountingOutputStream();
+			body.writeTo(out);
+			bytesWritten = out.count;
+			MockClientHttpResponse response = new MockClientHttpResponse("{\"id\":\"123\"}".getBytes("UTF-8"), status);
+			response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+			return response;
+		}
+
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+
+	}
+
+}
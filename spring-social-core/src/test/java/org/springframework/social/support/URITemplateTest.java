@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.social.support;
+
+import static org.junit.Assert.*;
+
+import java.net.URI;
+import java.net.URLEncoder;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+public class URITemplateTest {
+
+	@Test
+	public void build_noExistingQuery() {
+		URITemplate template = URITemplate.compile("https://someurl.com/foo/bar");
+		assertEquals("https://someurl.com/foo/bar", template.newBuilder().build());
+		assertEquals("https://someurl.com/foo/bar?xyz=987&abc", template.newBuilder().queryParam("xyz", "987").queryParam("abc").build());
+	}
+
+	@Test
+	public void build_existingQuery() {
+		URITemplate template = URITemplate.compile("https://someurl.com/foo/bar?abc=123");
+		assertEquals("https://someurl.com/foo/bar?abc=123&xyz=987", template.newBuilder().queryParam("xyz", "987").build());
+	}
+
+	@Test
+	public void build_questionMarkInFragmentOnly() {
+		URITemplate template = URITemplate.compile("/signin#a?b");
+		assertEquals("/signin#a?b?error=x", template.newBuilder().queryParam("error", "x").build());
+	}
+
+	@Test
+	public void build_staticParameters() {
+		URITemplate template = URITemplate.compile("https://someurl.com/authorize").queryParam("client_id", "a b").queryParam("response_type", "code");
+		assertEquals("https://someurl.com/authorize?client_id=a+b&response_type=code", template.toString());
+		assertEquals("https://someurl.com/authorize?client_id=a+b&response_type=code&state=s%26t&nullValue=", template.newBuilder().queryParam("state", "s&t").queryParam("nullValue", null).build());
+		// the template itself is unaffected by its builders
+		assertEquals("https://someurl.com/authorize?client_id=a+b&response_type=code", template.newBuilder().build());
+	}
+
+	@Test
+	public void build_queryParams() {
+		MultiValueMap<String, String> params = new LinkedMultiValueMap<String, String>();
+		params.add("scope", "read,write");
+		params.add("scope", "admin");
+		params.add("redirect_uri", "https://example.com/callback");
+		assertEquals("/authorize?scope=read%2Cwrite&scope=admin&redirect_uri=https%3A%2F%2Fexample.com%2Fcallback", URITemplate.compile("/authorize").newBuilder().queryParams(params).build());
+	}
+
+	@Test
+	public void build_allocations() throws Exception {
+		Assume.assumeTrue(AllocationMeter.isSupported());
+		URITemplate template = URITemplate.compile("https://www.facebook.com/v2.12/dialog/oauth").queryParam("client_id", "1234567890123456").queryParam("response_type", "code");
+		assertEquals(authorizeUrl(template), authorizeUrlEncodedPerCall());
+		int urls = 5000;
+		for (int i = 0; i < urls; i++) {
+			authorizeUrl(template);
+			authorizeUrlEncodedPerCall();
+		}
+		long before = AllocationMeter.allocatedBytes();
+		for (int i = 0; i < urls; i++) {
+			authorizeUrl(template);
+		}
+		long compiled = AllocationMeter.allocatedBytes() - before;
+		before = AllocationMeter.allocatedBytes();
+		for (int i = 0; i < urls; i++) {
+			authorizeUrlEncodedPerCall();
+		}
+		long perCall = AllocationMeter.allocatedBytes() - before;
+		// about 1 KB against 3 KB per URL on JDK 17, and 1.9 KB against 4.2 KB without compact strings: what is left is mostly the URL itself
+		assertTrue("Allocated " + compiled / urls + " bytes per URL, against " + perCall / urls + " when encoding every parameter per call", compiled * 3 < perCall * 2);
+	}
+
+	@Test
+	public void formEncode_matchesURLEncoder() throws Exception {
+		String[] values = { "", "plain", "a b", "*-._~", "a+b=c&d", "read,write", "caf\u00e9", "\u65e5\u672c\u8a9e", "emoji \ud83d\ude00!", "lone \ud83d surrogate", "%2F/?#" };
+		for (String value : values) {
+			assertEquals(URLEncoder.encode(value, "UTF-8"), FormEncoder.encode(value));
+		}
+	}
+
+	@Test
+	public void formEncode_unchangedInstanceReturned() {
+		String value = "nothing_to-encode.123";
+		assertSame(value, FormEncoder.encode(value));
+	}
+
+	private String authorizeUrl(URITemplate template) {
+		return template.newBuilder().queryParam("redirect_uri", "https://example.com/signin/facebook").queryParam("scope", "email,user_friends").queryParam("state", "b9a3c1f0-5d2e-4c7a-9f61-0e8f2d4b7a13").build();
+	}
+
+	// the way authorize URLs were built before they were compiled: the base URI parsed and every parameter encoded on each call
+	private String authorizeUrlEncodedPerCall() throws Exception {
+		String baseUri = "https://www.facebook.com/v2.12/dialog/oauth";
+		StringBuilder builder = new StringBuilder(baseUri).append(URI.create(baseUri).getQuery() == null ? '?' : '&');
+		String[] params = { "client_id", "1234567890123456", "response_type", "code", "redirect_uri", "https://example.com/signin/facebook", "scope", "email,user_friends", "state", "b9a3c1f0-5d2e-4c7a-9f61-0e8f2d4b7a13" };
+		for (int i = 0; i < params.length; i += 2) {
+			if (i > 0) {
+				builder.append('&');
+			}
+			builder.append(URLEncoder.encode(params[i], "UTF-8")).append('=').append(URLEncoder.encode(params[i + 1], "UTF-8"));
+		}
+		return builder.toString();
+	}
+
+}
@@ -36,8 +36,10 @@ import org.springframework.social.connect.ConnectionRepository;
 import org.springframework.social.connect.DuplicateConnectionException;
 import org.springframework.social.connect.support.OAuth1ConnectionFactory;
 import org.springframework.social.connect.support.OAuth2ConnectionFactory;
+import org.springframework.social.support.Deadline;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
@@ -90,6 +92,8 @@ public class ConnectController implements InitializingBean {
 	private SessionStrategy sessionStrategy = new HttpSessionSessionStrategy();
 
 	private String applicationUrl = null;
+
+	private long callbackTimeout;
 	
 	/**
 	 * Constructs a ConnectController.
@@ -175,6 +179,17 @@ public class ConnectController implements InitializingBean {
 	public void setSessionStrategy(SessionStrategy sessionStrategy) {
 		this.sessionStrategy = sessionStrategy;
 	}
+
+	/**
+	 * Sets the time budget (in milliseconds) of an authorization callback: the token exchange, the fetch of the user's profile and the repository updates it performs.
+	 * The budget is set as the current {@link Deadline} for the duration of the callback, so that provider calls and JDBC statements are given no more than the time remaining,
+	 * and once it runs out the callback fails fast instead of waiting on a slow provider. Defaults to 0, for no budget.
+	 * @param callbackTimeout the callback time budget in milliseconds, or 0 for none
+	 */
+	public void setCallbackTimeout(long callbackTimeout) {
+		Assert.isTrue(callbackTimeout >= 0, "The callbackTimeout property cannot be negative");
+		this.callbackTimeout = callbackTimeout;
+	}
 	
 	/**
 	 * Adds a ConnectInterceptor to receive callbacks during the connection process.
@@ -265,6 +280,7 @@ public class ConnectController implements InitializingBean {
 	 */
 	@RequestMapping(value="/{providerId}", method=RequestMethod.GET, params="oauth_token")
 	public RedirectView oauth1Callback(@PathVariable String providerId, NativeWebRequest request) {
+		Deadline previousDeadline = startCallbackDeadline();
 		try {
 			OAuth1ConnectionFactory<?> connectionFactory = (OAuth1ConnectionFactory<?>) connectionFactoryLocator.getConnectionFactory(providerId);
 			Connection<?> connection = connectSupport.completeConnection(connectionFactory, request);
@@ -272,6 +288,8 @@ public class ConnectController implements InitializingBean {
 		} catch (Exception e) {
 			sessionStrategy.setAttribute(request, PROVIDER_ERROR_ATTRIBUTE, e);
 			logger.warn("Exception while handling OAuth1 callback (" + e.getMessage() + "). Redirecting to " + providerId +" connection status page.");
+		} finally {
+			Deadline.setCurrent(previousDeadline);
 		}
 		return connectionStatusRedirect(providerId, request);
 	}
@@ -286,6 +304,7 @@ public class ConnectController implements InitializingBean {
 	 */
 	@RequestMapping(value="/{providerId}", method=RequestMethod.GET, params="code")
 	public RedirectView oauth2Callback(@PathVariable String providerId, NativeWebRequest request) {
+		Deadline previousDeadline = startCallbackDeadline();
 		try {
 			OAuth2ConnectionFactory<?> connectionFactory = (OAuth2ConnectionFactory<?>) connectionFactoryLocator.getConnectionFactory(providerId);
 			Connection<?> connection = connectSupport.completeConnection(connectionFactory, request);
@@ -293,6 +312,8 @@ public class ConnectController implements InitializingBean {
 		} catch (Exception e) {
 			sessionStrategy.setAttribute(request, PROVIDER_ERROR_ATTRIBUTE, e);
 			logger.warn("Exception while handling OAuth2 callback (" + e.getMessage() + "). Redirecting to " + providerId +" connection status page.");
+		} finally {
+			Deadline.setCurrent(previousDeadline);
 		}
 		return connectionStatusRedirect(providerId, request);
 	}
@@ -416,6 +437,10 @@ public class ConnectController implements InitializingBean {
 
 	// internal helpers
 
+	private Deadline startCallbackDeadline() {
+		return callbackTimeout > 0 ? Deadline.setCurrent(Deadline.after(callbackTimeout)) : Deadline.getCurrent();
+	}
+
 	private boolean prependServletPath(HttpServletRequest request) {
 		return !this.urlPathHelper.getPathWithinServletMapping(request).equals("");
 	}
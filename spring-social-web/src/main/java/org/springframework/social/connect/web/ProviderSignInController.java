@@ -30,8 +30,10 @@ import org.springframework.social.connect.ConnectionFactoryLocator;
 import org.springframework.social.connect.UsersConnectionRepository;
 import org.springframework.social.connect.support.OAuth1ConnectionFactory;
 import org.springframework.social.connect.support.OAuth2ConnectionFactory;
-import org.springframework.social.support.URIBuilder;
+import org.springframework.social.support.Deadline;
+import org.springframework.social.support.URITemplate;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -68,6 +70,12 @@ public class ProviderSignInController implements InitializingBean {
 
 	private String signInUrl = "/signin";
 
+	private URITemplate signInUrlTemplate = URITemplate.compile(signInUrl);
+
+	private String providerErrorUrl = signInUrlTemplate.queryParam("error", "provider").toString();
+
+	private String multipleUsersErrorUrl = signInUrlTemplate.queryParam("error", "multiple_users").toString();
+
 	private String signUpUrl = "/signup";
 
 	private String postSignInUrl = "/";
@@ -76,6 +84,8 @@ public class ProviderSignInController implements InitializingBean {
 
 	private SessionStrategy sessionStrategy = new HttpSessionSessionStrategy();
 
+	private long callbackTimeout;
+
 	/**
 	 * Creates a new provider sign-in controller.
 	 * @param connectionFactoryLocator the locator of {@link ConnectionFactory connection factories} used to support provider sign-in.
@@ -111,6 +121,9 @@ public class ProviderSignInController implements InitializingBean {
 	 */
 	public void setSignInUrl(String signInUrl) {
 		this.signInUrl = signInUrl;
+		this.signInUrlTemplate = URITemplate.compile(signInUrl);
+		this.providerErrorUrl = signInUrlTemplate.queryParam("error", "provider").toString();
+		this.multipleUsersErrorUrl = signInUrlTemplate.queryParam("error", "multiple_users").toString();
 	}
 
 	/**
@@ -153,6 +166,17 @@ public class ProviderSignInController implements InitializingBean {
 		this.sessionStrategy = sessionStrategy;
 	}
 
+	/**
+	 * Sets the time budget (in milliseconds) of an authorization callback: the token exchange, the fetch of the user's profile and the repository updates it performs.
+	 * The budget is set as the current {@link Deadline} for the duration of the callback, so that provider calls and JDBC statements are given no more than the time remaining,
+	 * and once it runs out the callback fails fast instead of waiting on a slow provider. Defaults to 0, for no budget.
+	 * @param callbackTimeout the callback time budget in milliseconds, or 0 for none
+	 */
+	public void setCallbackTimeout(long callbackTimeout) {
+		Assert.isTrue(callbackTimeout >= 0, "The callbackTimeout property cannot be negative");
+		this.callbackTimeout = callbackTimeout;
+	}
+
 	/**
 	 * Adds a ConnectInterceptor to receive callbacks during the connection process.
 	 * Useful for programmatic configuration.
@@ -180,7 +204,7 @@ public class ProviderSignInController implements InitializingBean {
 			return new RedirectView(connectSupport.buildOAuthUrl(connectionFactory, request, parameters));
 		} catch (Exception e) {
 			logger.error("Exception while building authorization URL: ", e);
-			return redirect(URIBuilder.fromUri(signInUrl).queryParam("error", "provider").build().toString());
+			return redirect(providerErrorUrl);
 		}
 	}
 
@@ -198,13 +222,16 @@ public class ProviderSignInController implements InitializingBean {
 	 */
 	@RequestMapping(value="/{providerId}", method=RequestMethod.GET, params="oauth_token")
 	public RedirectView oauth1Callback(@PathVariable String providerId, NativeWebRequest request) {
+		Deadline previousDeadline = startCallbackDeadline();
 		try {
 			OAuth1ConnectionFactory<?> connectionFactory = (OAuth1ConnectionFactory<?>) connectionFactoryLocator.getConnectionFactory(providerId);
 			Connection<?> connection = connectSupport.completeConnection(connectionFactory, request);
 			return handleSignIn(connection, connectionFactory, request);
 		} catch (Exception e) {
 			logger.error("Exception while completing OAuth 1.0(a) connection: ", e);
-			return redirect(URIBuilder.fromUri(signInUrl).queryParam("error", "provider").build().toString());
+			return redirect(providerErrorUrl);
+		} finally {
+			Deadline.setCurrent(previousDeadline);
 		}
 	}
 
@@ -223,13 +250,16 @@ public class ProviderSignInController implements InitializingBean {
 	 */
 	@RequestMapping(value="/{providerId}", method=RequestMethod.GET, params="code")
 	public RedirectView oauth2Callback(@PathVariable String providerId, @RequestParam("code") String code, NativeWebRequest request) {
+		Deadline previousDeadline = startCallbackDeadline();
 		try {
 			OAuth2ConnectionFactory<?> connectionFactory = (OAuth2ConnectionFactory<?>) connectionFactoryLocator.getConnectionFactory(providerId);
 			Connection<?> connection = connectSupport.completeConnection(connectionFactory, request);
 			return handleSignIn(connection, connectionFactory, request);
 		} catch (Exception e) {
 			logger.error("Exception while completing OAuth 2 connection: ", e);
-			return redirect(URIBuilder.fromUri(signInUrl).queryParam("error", "provider").build().toString());
+			return redirect(providerErrorUrl);
+		} finally {
+			Deadline.setCurrent(previousDeadline);
 		}
 	}
 
@@ -251,10 +281,10 @@ public class ProviderSignInController implements InitializingBean {
 			@RequestParam(value="error_uri", required=false) String errorUri,
 			NativeWebRequest request) {
 		logger.warn("Error during authorization: " + error);
-		URIBuilder uriBuilder = URIBuilder.fromUri(signInUrl).queryParam("error", error);
+		URITemplate.Builder uriBuilder = signInUrlTemplate.newBuilder().queryParam("error", error);
 		if (errorDescription != null ) { uriBuilder.queryParam("error_description", errorDescription); }
 		if (errorUri != null ) { uriBuilder.queryParam("error_uri", errorUri); }
-		return redirect(uriBuilder.build().toString());
+		return redirect(uriBuilder.build());
 	}
 
 	/**
@@ -278,6 +308,10 @@ public class ProviderSignInController implements InitializingBean {
 
 	// internal helpers
 
+	private Deadline startCallbackDeadline() {
+		return callbackTimeout > 0 ? Deadline.setCurrent(Deadline.after(callbackTimeout)) : Deadline.getCurrent();
+	}
+
 	private RedirectView handleSignIn(Connection<?> connection, ConnectionFactory<?> connectionFactory, NativeWebRequest request) {
 		List<String> userIds = usersConnectionRepository.findUserIdsWithConnection(connection);
 		if (userIds.size() == 0) {
@@ -290,7 +324,7 @@ public class ProviderSignInController implements InitializingBean {
 			postSignIn(connectionFactory, connection, (WebRequest) request);
 			return originalUrl != null ? redirect(originalUrl) : redirect(postSignInUrl);
 		} else {
-			return redirect(URIBuilder.fromUri(signInUrl).queryParam("error", "multiple_users").build().toString());
+			return redirect(multipleUsersErrorUrl);
 		}
 	}
 
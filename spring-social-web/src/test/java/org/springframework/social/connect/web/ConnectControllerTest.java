@@ -46,6 +46,7 @@ import org.springframework.social.connect.web.test.StubOAuthTemplateBehavior;
 import org.springframework.social.connect.web.test.TestApi1;
 import org.springframework.social.connect.web.test.TestApi2;
 import org.springframework.social.oauth1.OAuthToken;
+import org.springframework.social.support.Deadline;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
@@ -232,6 +233,38 @@ public class ConnectControllerTest {
 		assertFalse(((TestConnectInterceptor<?>)(interceptors.get(1))).postConnectInvoked);
 	}
 
+	@Test
+	public void oauth1Callback_callbackTimeout() throws Exception {
+		ConnectionFactoryRegistry connectionFactoryLocator = new ConnectionFactoryRegistry();
+		connectionFactoryLocator.addConnectionFactory(new StubOAuth1ConnectionFactory("clientId", "clientSecret"));
+		ConnectController connectController = new ConnectController(connectionFactoryLocator, new StubConnectionRepository());
+		final Deadline[] callbackDeadline = new Deadline[1];
+		connectController.addInterceptor(new TestConnectInterceptor<TestApi1>() {
+			public void postConnect(Connection<TestApi1> connection, WebRequest request) {
+				callbackDeadline[0] = Deadline.getCurrent();
+			}
+		});
+		connectController.setCallbackTimeout(5000);
+		connectController.afterPropertiesSet();
+		MockMvc mockMvc = standaloneSetup(connectController).build();
+		Deadline requestDeadline = Deadline.after(60 * 1000);
+		Deadline previous = Deadline.setCurrent(requestDeadline);
+		try {
+			mockMvc.perform(get("/connect/oauth1Provider")
+							.sessionAttr("oauthToken", new OAuthToken("requestToken", "requestTokenSecret"))
+							.param("oauth_token", "requestToken")
+							.param("oauth_verifier", "verifier"))
+				.andExpect(redirectedUrl("/connect/oauth1Provider"));
+			// the callback ran within its own budget, and the request's deadline was restored afterwards
+			assertNotNull(callbackDeadline[0]);
+			assertNotSame(requestDeadline, callbackDeadline[0]);
+			assertTrue(callbackDeadline[0].getRemaining() <= 5000);
+			assertSame(requestDeadline, Deadline.getCurrent());
+		} finally {
+			Deadline.setCurrent(previous);
+		}
+	}
+
 	@Test
 	public void oauth1Callback_exceptionWhileFetchingAccessToken() throws Exception {
 		ConnectionFactoryRegistry connectionFactoryLocator = new ConnectionFactoryRegistry();
@@ -17,6 +17,7 @@ package org.springframework.social.connect.web;
 
 import static java.util.Arrays.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
@@ -37,6 +38,7 @@ import org.springframework.social.connect.web.test.StubUsersConnectionRepository
 import org.springframework.social.connect.web.test.TestApi1;
 import org.springframework.social.connect.web.test.TestApi2;
 import org.springframework.social.oauth1.OAuthToken;
+import org.springframework.social.support.Deadline;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.context.request.NativeWebRequest;
 
@@ -185,6 +187,35 @@ public class ProviderSignInControllerTest {
 		performOAuth1Callback("/original", null);
 	}
 
+	@Test
+	public void oauth1Callback_callbackTimeout() throws Exception {
+		ConnectionFactoryRegistry connectionFactoryLocator = new ConnectionFactoryRegistry();
+		connectionFactoryLocator.addConnectionFactory(new StubOAuth1ConnectionFactory("clientId", "clientSecret"));
+		StubUsersConnectionRepository usersConnectionRepository = new StubUsersConnectionRepository(asList("habuma"));
+		final Deadline[] callbackDeadline = new Deadline[1];
+		SignInAdapter signInAdapter = (userId, connection, request) -> {
+			callbackDeadline[0] = Deadline.getCurrent();
+			return null;
+		};
+		ProviderSignInController controller = new ProviderSignInController(connectionFactoryLocator, usersConnectionRepository, signInAdapter);
+		controller.setCallbackTimeout(5000);
+		controller.afterPropertiesSet();
+		MockMvc mockMvc = standaloneSetup(controller).build();
+		Deadline requestDeadline = Deadline.after(60 * 1000);
+		Deadline previous = Deadline.setCurrent(requestDeadline);
+		try {
+			mockMvc.perform(get("/signin/oauth1Provider").param("verifier", "verifier").param("oauth_token", "requestToken"))
+				.andExpect(redirectedUrl("/"));
+			// the callback ran within its own budget, and the request's deadline was restored afterwards
+			assertNotNull(callbackDeadline[0]);
+			assertNotSame(requestDeadline, callbackDeadline[0]);
+			assertTrue(callbackDeadline[0].getRemaining() <= 5000);
+			assertSame(requestDeadline, Deadline.getCurrent());
+		} finally {
+			Deadline.setCurrent(previous);
+		}
+	}
+
 	private void performOAuth1Callback(String originalUrl, String postSignInUrl) throws Exception {
 		ConnectionFactoryRegistry connectionFactoryLocator = new ConnectionFactoryRegistry();
 		ConnectionFactory<TestApi1> connectionFactory1 = new StubOAuth1ConnectionFactory("clientId", "clientSecret");